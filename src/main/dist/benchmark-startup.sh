@@ -0,0 +1,24 @@
+#!/bin/sh
+# Compara o tempo de uma compilação "fria" com java -jar e com a distribuição otimizada (jlink + AppCDS).
+# Uso: benchmark-startup.sh [programa.alg] [repeticoes]   (executar na raiz do projeto após mvn -Pdistribuicao package)
+PROGRAMA="${1:-exemplos/registros_funcoes.alg}"
+REPETICOES="${2:-20}"
+JAR="target/JanderLexico-1.0-SNAPSHOT-jar-with-dependencies.jar"
+LAUNCHER="target/jander/bin/jander"
+SAIDA="$(mktemp)"
+
+medir() {
+    inicio=$(date +%s%N)
+    i=0
+    while [ "$i" -lt "$REPETICOES" ]; do
+        "$@" "$PROGRAMA" "$SAIDA" > /dev/null
+        i=$((i + 1))
+    done
+    fim=$(date +%s%N)
+    echo $(( (fim - inicio) / REPETICOES / 1000000 ))
+}
+
+echo "Programa: $PROGRAMA ($REPETICOES execuções)"
+echo "java -jar:              $(medir java -jar "$JAR") ms/execução"
+echo "jlink + AppCDS:         $(medir "$LAUNCHER") ms/execução"
+rm -f "$SAIDA"
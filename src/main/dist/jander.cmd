@@ -0,0 +1,6 @@
+@echo off
+rem Executa o compilador com o runtime reduzido (jlink) e o arquivo AppCDS gerado no treino.
+rem JANDER_JAVA_OPTS substitui as opcoes padrao da JVM, pensadas para compilacoes curtas.
+set "DIR=%~dp0.."
+if "%JANDER_JAVA_OPTS%"=="" (set "OPTS=-XX:TieredStopAtLevel=1 -XX:+UseSerialGC") else (set "OPTS=%JANDER_JAVA_OPTS%")
+"%DIR%\runtime\bin\java" -XX:SharedArchiveFile="%DIR%\lib\jander.jsa" -Xshare:auto %OPTS% -cp "%DIR%\lib\jander.jar" br.ufscar.dc.compiladores.Main %*
@@ -0,0 +1,119 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Alcance das declarações globais a partir do corpo do algoritmo. Parte dos
+ * nomes usados entre "algoritmo" e "fim_algoritmo" e segue chamadas, tipos
+ * (de variáveis, parâmetros, retornos e campos de registro) e constantes; o
+ * que não é alcançado não precisa ser emitido no C.
+ *
+ * Os nomes são comparados sem considerar escopo: um local com o nome de uma
+ * declaração global a mantém viva, o que só deixa a análise conservadora.
+ */
+public class AnaliseAlcance {
+
+    // Declarações globais na ordem do fonte, com o tipo de cada uma para o relatório
+    private final Map<String, ParseTree> declaracoes = new LinkedHashMap<>();
+    private final Map<String, String> categorias = new LinkedHashMap<>();
+    private final Set<String> vivas = new HashSet<>();
+    // Declarações vindas de uma interface pré-compilada: sem árvore, só o que cada uma usa
+    private final Map<String, Set<String>> externas = new HashMap<>();
+
+    public AnaliseAlcance(ProgramaContext programa, GrafoChamadas grafo) {
+        this(programa, grafo, null);
+    }
+
+    /** Alcance de um programa cujas primeiras declarações vêm da interface (null se não há) */
+    public AnaliseAlcance(ProgramaContext programa, GrafoChamadas grafo, InterfaceDeclaracoes interfaceBloco) {
+        if (interfaceBloco != null) {
+            for (InterfaceDeclaracoes.Declaracao d : interfaceBloco.getDeclaracoes()) {
+                registrar(d.nome, null, d.categoria);
+                externas.put(d.nome, d.usados);
+            }
+        }
+        if (programa.declaracoes() != null) {
+            for (Decl_local_globalContext decl : programa.declaracoes().decl_local_global()) {
+                if (decl.declaracao_global() != null) {
+                    Declaracao_globalContext global = decl.declaracao_global();
+                    registrar(global.IDENT().getText(), global, global.FUNCAO() != null ? "funcao" : "procedimento");
+                } else if (decl.declaracao_local().TIPO() != null) {
+                    registrar(decl.declaracao_local().IDENT().getText(), decl.declaracao_local().tipo(), "tipo");
+                } else if (decl.declaracao_local().CONSTANTE() != null) {
+                    registrar(decl.declaracao_local().IDENT().getText(), decl.declaracao_local(), "constante");
+                } else {
+                    // Variáveis globais: o tipo delas fica vivo se forem usadas
+                    for (IdentificadorContext ident : decl.declaracao_local().variavel().identificador()) {
+                        registrar(ident.IDENT(0).getText(), decl.declaracao_local().variavel().tipo(), "variavel");
+                    }
+                }
+            }
+        }
+
+        Deque<String> pendentes = new ArrayDeque<>();
+        if (programa.corpo() != null) {
+            pendentes.addAll(nomesUsados(programa.corpo()));
+        }
+        while (!pendentes.isEmpty()) {
+            String nome = pendentes.pop();
+            if (!declaracoes.containsKey(nome) || !vivas.add(nome)) {
+                continue;
+            }
+            pendentes.addAll(externas.containsKey(nome) ? externas.get(nome)
+                    : dependencias(nome, declaracoes.get(nome), categorias.get(nome), grafo));
+        }
+    }
+
+    /** Nomes que mantêm vivos quando a declaração nome está viva (chamadas, tipos e constantes) */
+    static Set<String> dependencias(String nome, ParseTree decl, String categoria, GrafoChamadas grafo) {
+        if (categoria.equals("constante")) {
+            return Set.of();
+        }
+        Set<String> nomes = nomesUsados(decl);
+        if (decl instanceof Declaracao_globalContext) {
+            nomes.addAll(grafo.getChamadas(nome));
+        }
+        return nomes;
+    }
+
+    private void registrar(String nome, ParseTree decl, String categoria) {
+        // Com nomes repetidos (erro semântico) vale a primeira declaração
+        declaracoes.putIfAbsent(nome, decl);
+        categorias.putIfAbsent(nome, categoria);
+    }
+
+    private static Set<String> nomesUsados(ParseTree t) {
+        Set<String> nomes = new HashSet<>();
+        ExpansaoEmLinha.coletarNomes(t, nomes);
+        GrafoChamadas.coletarChamadas(t, nomes);
+        return nomes;
+    }
+
+    /** Verdadeiro se a declaração global nome é usada, direta ou indiretamente, pelo algoritmo */
+    public boolean ehViva(String nome) {
+        return vivas.contains(nome);
+    }
+
+    /** Funções, procedimentos, tipos e constantes não alcançados, como "categoria nome" */
+    public List<String> getEliminadas() {
+        List<String> eliminadas = new ArrayList<>();
+        for (Map.Entry<String, String> e : categorias.entrySet()) {
+            if (!vivas.contains(e.getKey()) && !e.getValue().equals("variavel")) {
+                eliminadas.add(e.getValue() + " " + e.getKey());
+            }
+        }
+        return eliminadas;
+    }
+}
@@ -0,0 +1,802 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Análise de apelidos (aliasing) sobre os ponteiros do C gerado. No LA os
+ * vetores não são passados como parâmetro; o que vira ponteiro são os
+ * parâmetros var, os literais e os ^T. Uma função tem os parâmetros disjuntos
+ * quando, em toda chamada, esses argumentos são objetos diferentes: nomes
+ * distintos de locais, de &local ou de parâmetros de quem chama que também
+ * são disjuntos. Só assim o gcc pode receber esses ponteiros como restrict.
+ *
+ * O cálculo é um ponto fixo otimista: todas as candidatas começam disjuntas e
+ * cada rodada tira as que têm uma chamada que passa o mesmo objeto duas vezes,
+ * um ponteiro de origem desconhecida ou dois parâmetros de uma função que
+ * deixou de ser disjunta. Funções que chamam a si mesmas ficam de fora, porque
+ * a chamada de cauda vira reatribuição dos parâmetros.
+ *
+ * Também decide os laços para sem dependências entre iterações pela memória
+ * (#pragma GCC ivdep): o corpo só atribui a locais que não têm o endereço
+ * tomado e a elementos de vetores locais com índice afim na variável do laço,
+ * e todo acesso a um vetor escrito usa o mesmo índice. Com regras parecidas
+ * (que aceitam para aninhados, reduções e escalares privados de cada
+ * iteração) decide os laços que podem virar #pragma omp parallel for.
+ */
+public final class AnaliseApelidos {
+
+    // Nomes de uma função (ou do algoritmo) relevantes para os apelidos
+    private static final class Escopo {
+        final List<Boolean> ponteiros = new ArrayList<>(); // Por parâmetro: o C recebe um ponteiro
+        final Set<String> parametrosPonteiro = new HashSet<>();
+        final Set<String> parametrosEndereco = new HashSet<>(); // ^T e literal: o valor do parâmetro é o ponteiro
+        final Set<String> reatribuidos = new HashSet<>(); // Desses, os que recebem outro endereço no corpo
+        final Set<String> locaisPonteiro = new HashSet<>();
+        final Set<String> vetores = new HashSet<>(); // Vetores locais que não são de literais
+        final Set<String> literais = new HashSet<>();
+        final Set<String> registros = new HashSet<>();
+        final Set<String> escapados = new HashSet<>(); // Locais com o endereço tomado
+        final Set<String> enderecados = new HashSet<>(); // Locais usados com &
+    }
+
+    private record Chamada(String chamador, String chamado, List<ExpressaoContext> argumentos) {
+    }
+
+    private static final String ALGORITMO = "";
+
+    private final AnalisePureza pureza;
+    private final InterfaceDeclaracoes externa;
+    private final Map<String, Escopo> escopos = new HashMap<>();
+    private final Set<String> disjuntas = new HashSet<>();
+    private boolean violaInterface = false;
+    private final boolean ativa;
+
+    public AnaliseApelidos(ProgramaContext programa, AnalisePureza pureza, InterfaceDeclaracoes externa) {
+        this.pureza = pureza;
+        this.externa = externa;
+        GrafoChamadas grafo = pureza.getGrafo();
+        boolean globais = false;
+        if (programa.declaracoes() != null) {
+            for (Decl_local_globalContext decl : programa.declaracoes().decl_local_global()) {
+                globais |= decl.declaracao_local() != null && decl.declaracao_local().variavel() != null;
+            }
+        }
+        // Variáveis globais seriam memória visível por todas as funções
+        ativa = !globais;
+
+        List<Chamada> chamadas = new ArrayList<>();
+        for (String nome : grafo.getFuncoes()) {
+            Declaracao_globalContext decl = grafo.getDeclaracao(nome);
+            Escopo escopo = new Escopo();
+            if (decl.parametros() != null) {
+                for (ParametroContext p : decl.parametros().parametro()) {
+                    String tipo = p.tipo_estendido().getText();
+                    boolean ponteiro = p.VAR() != null || tipo.startsWith("^") || tipo.equals("literal");
+                    for (IdentificadorContext ident : p.identificador()) {
+                        escopo.ponteiros.add(ponteiro);
+                        if (ponteiro) {
+                            escopo.parametrosPonteiro.add(ident.IDENT(0).getText());
+                        }
+                        if (tipo.startsWith("^") || tipo.equals("literal")) {
+                            escopo.parametrosEndereco.add(ident.IDENT(0).getText());
+                        }
+                    }
+                }
+            }
+            registrarLocais(decl.declaracao_local(), escopo);
+            escopos.put(nome, escopo);
+            coletar(nome, escopo, decl, chamadas);
+            // Um parâmetro reatribuído pode passar a apontar para o mesmo objeto de outro
+            if (escopo.parametrosPonteiro.size() > 0 && escopo.reatribuidos.isEmpty()
+                    && !grafo.getChamadas(nome).contains(nome)) {
+                disjuntas.add(nome);
+            }
+        }
+        Escopo algoritmo = new Escopo();
+        if (programa.corpo() != null) {
+            registrarLocais(programa.corpo().declaracao_local(), algoritmo);
+            coletar(ALGORITMO, algoritmo, programa.corpo(), chamadas);
+        }
+        escopos.put(ALGORITMO, algoritmo);
+        for (Chamada c : chamadas) {
+            marcarEscapados(c);
+        }
+
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (Chamada c : chamadas) {
+                if (ehDisjunta(c.chamado()) && !separados(c)) {
+                    if (disjuntas.remove(c.chamado())) {
+                        mudou = true;
+                    } else {
+                        // Chamada que a interface não previu: o C dela já tem restrict
+                        violaInterface = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Verdadeiro se os parâmetros ponteiro de nome podem ser emitidos como restrict */
+    public boolean ehDisjunta(String nome) {
+        if (!ativa) {
+            return false;
+        }
+        if (disjuntas.contains(nome)) {
+            return true;
+        }
+        InterfaceDeclaracoes.Declaracao d = externa != null ? externa.getDeclaracao(nome) : null;
+        return d != null && d.disjunta;
+    }
+
+    /** Parâmetros ponteiro de nome, na ordem (true onde o C recebe um ponteiro) */
+    List<Boolean> getPonteiros(String nome) {
+        Escopo escopo = escopos.get(nome);
+        if (escopo != null) {
+            return escopo.ponteiros;
+        }
+        InterfaceDeclaracoes.Declaracao d = externa != null ? externa.getDeclaracao(nome) : null;
+        return d != null ? d.ponteiros : List.of();
+    }
+
+    /**
+     * Verdadeiro se o programa chama uma função da interface emitida com restrict de
+     * um jeito que o bloco sozinho não previa; aí ele precisa ser compilado inteiro
+     */
+    public boolean violaInterface() {
+        return violaInterface;
+    }
+
+    private static void registrarLocais(List<Declaracao_localContext> locais, Escopo escopo) {
+        for (Declaracao_localContext local : locais) {
+            if (local.variavel() == null) {
+                continue;
+            }
+            TipoContext tipo = local.variavel().tipo();
+            String texto = tipo.getText();
+            for (IdentificadorContext ident : local.variavel().identificador()) {
+                String nome = ident.IDENT(0).getText();
+                if (texto.startsWith("^")) {
+                    escopo.locaisPonteiro.add(nome);
+                } else if (texto.equals("literal")) {
+                    escopo.literais.add(nome);
+                } else if (tipo.registro() != null || (tipo.tipo_estendido() != null
+                        && tipo.tipo_estendido().tipo_basico_ident().IDENT() != null)) {
+                    escopo.registros.add(nome);
+                } else if (!ident.dimensao().exp_aritmetica().isEmpty()) {
+                    escopo.vetores.add(nome);
+                }
+            }
+        }
+    }
+
+    // Chamadas feitas no corpo, locais usados com & e parâmetros ponteiro reatribuídos
+    private static void coletar(String chamador, Escopo escopo, ParseTree t, List<Chamada> destino) {
+        if (t instanceof Parcela_nao_unarioContext && ((Parcela_nao_unarioContext) t).identificador() != null) {
+            String nome = ((Parcela_nao_unarioContext) t).identificador().IDENT(0).getText();
+            escopo.escapados.add(nome);
+            escopo.enderecados.add(nome);
+        } else if (t instanceof CmdAtribuicaoContext && !t.getChild(0).getText().equals("^")) {
+            String nome = ((CmdAtribuicaoContext) t).identificador().IDENT(0).getText();
+            if (escopo.parametrosEndereco.contains(nome)) {
+                escopo.reatribuidos.add(nome);
+            }
+        } else if (t instanceof CmdChamadaContext) {
+            CmdChamadaContext c = (CmdChamadaContext) t;
+            destino.add(new Chamada(chamador, c.IDENT().getText(), c.expressao()));
+        } else if (t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null) {
+            Parcela_unarioContext c = (Parcela_unarioContext) t;
+            destino.add(new Chamada(chamador, c.IDENT().getText(), c.expressao()));
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            coletar(chamador, escopo, t.getChild(i), destino);
+        }
+    }
+
+    // Locais passados para parâmetros ponteiro deixam de ser só registradores
+    private void marcarEscapados(Chamada c) {
+        Escopo escopo = escopos.get(c.chamador());
+        List<Boolean> ponteiros = getPonteiros(c.chamado());
+        for (int i = 0; i < c.argumentos().size(); i++) {
+            if (i < ponteiros.size() && ponteiros.get(i)) {
+                ParcelaContext parcela = parcelaUnica(c.argumentos().get(i));
+                if (parcela != null && parcela.parcela_unario() != null
+                        && parcela.parcela_unario().identificador() != null) {
+                    escopo.escapados.add(parcela.parcela_unario().identificador().IDENT(0).getText());
+                }
+            }
+        }
+    }
+
+    // Argumentos ponteiro da chamada apontam para objetos diferentes entre si
+    private boolean separados(Chamada c) {
+        Escopo escopo = escopos.get(c.chamador());
+        List<Boolean> ponteiros = getPonteiros(c.chamado());
+        Set<String> bases = new HashSet<>();
+        int parametros = 0;
+        for (int i = 0; i < c.argumentos().size() && i < ponteiros.size(); i++) {
+            if (!ponteiros.get(i)) {
+                continue;
+            }
+            String base = base(c.argumentos().get(i), escopo);
+            if (base == null || !bases.add(base)) {
+                return false;
+            }
+            if (escopo.parametrosPonteiro.contains(base)) {
+                parametros++;
+            }
+        }
+        // Dois parâmetros de quem chama só são objetos diferentes se ele for disjunto
+        return parametros < 2 || ehDisjunta(c.chamador());
+    }
+
+    // Objeto apontado por um argumento ponteiro: nome da variável ou do parâmetro de quem
+    // chama, "" + posição para cadeias constantes, null quando não se sabe
+    private static String base(ExpressaoContext arg, Escopo escopo) {
+        ParcelaContext parcela = parcelaUnica(arg);
+        if (parcela == null) {
+            return null;
+        }
+        IdentificadorContext ident;
+        if (parcela.parcela_nao_unario() != null) {
+            ident = parcela.parcela_nao_unario().identificador();
+            if (ident == null) {
+                return "\"" + arg.start.getStartIndex();
+            }
+        } else {
+            Parcela_unarioContext p = parcela.parcela_unario();
+            if (p.identificador() == null || p.getText().startsWith("^")) {
+                return null;
+            }
+            ident = p.identificador();
+        }
+        String nome = ident.IDENT(0).getText();
+        // Ponteiro local ou parâmetro reatribuído: pode ter recebido qualquer endereço. Um
+        // local usado com & pode estar guardado em qualquer outro ponteiro, e um campo de
+        // registro pode ser ele mesmo um ponteiro
+        if (escopo.locaisPonteiro.contains(nome) || escopo.reatribuidos.contains(nome)
+                || escopo.enderecados.contains(nome) || ident.IDENT().size() > 1) {
+            return null;
+        }
+        return nome;
+    }
+
+    private static ParcelaContext parcelaUnica(ExpressaoContext expr) {
+        Exp_aritmeticaContext aritmetica = AnaliseIntervalos.aritmetica(expr);
+        if (aritmetica == null || aritmetica.termo().size() != 1 || aritmetica.termo(0).fator().size() != 1
+                || aritmetica.termo(0).fator(0).parcela().size() != 1) {
+            return null;
+        }
+        ParcelaContext parcela = aritmetica.termo(0).fator(0).parcela(0);
+        return parcela.op_unario() == null ? parcela : null;
+    }
+
+    /**
+     * Verdadeiro se as iterações do laço não dependem umas das outras pela memória:
+     * só atribuições (e se) a locais sem endereço tomado e a vetores locais com
+     * índices afins na variável do laço, sem ponteiros, entrada/saída ou chamadas
+     * que não sejam constantes
+     */
+    public boolean semDependenciasDeMemoria(CmdParaContext laco) {
+        if (!ativa) {
+            return false;
+        }
+        Escopo escopo = escopos.get(funcaoDe(laco));
+        String variavel = laco.IDENT().getText();
+        if (escopo == null || !locais(variavel, escopo)) {
+            return false;
+        }
+        Set<String> escritos = new HashSet<>();
+        escritos.add(variavel);
+        Map<String, IdentificadorContext> vetores = new HashMap<>(); // Vetor escrito -> primeira escrita
+        for (CmdContext cmd : laco.cmd()) {
+            if (!comandoSimples(cmd, escopo, escritos, vetores)) {
+                return false;
+            }
+        }
+        if (vetores.isEmpty()) {
+            return false;
+        }
+        for (IdentificadorContext escrita : vetores.values()) {
+            if (!indiceAfim(escrita, variavel, escritos)) {
+                return false;
+            }
+        }
+        // Toda leitura de um vetor escrito usa o mesmo índice da escrita
+        return leiturasNoIndice(laco, vetores);
+    }
+
+    private boolean comandoSimples(ParseTree t, Escopo escopo, Set<String> escritos,
+                                   Map<String, IdentificadorContext> vetores) {
+        if (t instanceof CmdContext) {
+            return comandoSimples(t.getChild(0), escopo, escritos, vetores);
+        }
+        if (t instanceof CmdSeContext) {
+            CmdSeContext se = (CmdSeContext) t;
+            if (!expressaoSimples(se.expressao(), false)) {
+                return false;
+            }
+            for (CmdContext cmd : se.cmd()) {
+                if (!comandoSimples(cmd, escopo, escritos, vetores)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (!(t instanceof CmdAtribuicaoContext)) {
+            return false;
+        }
+        CmdAtribuicaoContext atribuicao = (CmdAtribuicaoContext) t;
+        IdentificadorContext alvo = atribuicao.identificador();
+        String nome = alvo.IDENT(0).getText();
+        if (atribuicao.getChild(0).getText().equals("^") || alvo.IDENT().size() > 1
+                || !expressaoSimples(atribuicao.expressao(), false)) {
+            return false;
+        }
+        List<Exp_aritmeticaContext> dimensoes = alvo.dimensao().exp_aritmetica();
+        if (dimensoes.isEmpty()) {
+            if (!locais(nome, escopo) || escopo.vetores.contains(nome)) {
+                return false;
+            }
+            escritos.add(nome);
+            return true;
+        }
+        if (!escopo.vetores.contains(nome)) {
+            return false;
+        }
+        IdentificadorContext anterior = vetores.putIfAbsent(nome, alvo);
+        return anterior == null || anterior.dimensao().getText().equals(alvo.dimensao().getText());
+    }
+
+    // Escalar que vive num registrador: local (ou parâmetro por valor) sem endereço tomado
+    private static boolean locais(String nome, Escopo escopo) {
+        return !escopo.parametrosPonteiro.contains(nome) && !escopo.locaisPonteiro.contains(nome)
+                && !escopo.literais.contains(nome) && !escopo.registros.contains(nome)
+                && !escopo.escapados.contains(nome);
+    }
+
+    // Sem ^, &, cadeias nem chamadas que não sejam constantes (ou puras, se aceitaPuras)
+    private boolean expressaoSimples(ParseTree t, boolean aceitaPuras) {
+        if (t instanceof Parcela_nao_unarioContext) {
+            return false;
+        }
+        if (t instanceof Parcela_unarioContext) {
+            Parcela_unarioContext p = (Parcela_unarioContext) t;
+            if (p.getText().startsWith("^")) {
+                return false;
+            }
+            if (p.IDENT() != null && !(aceitaPuras ? pureza.ehPura(p.IDENT().getText())
+                    : pureza.ehConstante(p.IDENT().getText()))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (!expressaoSimples(t.getChild(i), aceitaPuras)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Uma dimensão i, i+c ou i-c (c um número ou um nome que o laço não altera) e as
+    // demais invariantes: iterações diferentes escrevem elementos diferentes
+    private static boolean indiceAfim(IdentificadorContext alvo, String variavel, Set<String> escritos) {
+        boolean usaVariavel = false;
+        for (Exp_aritmeticaContext dimensao : alvo.dimensao().exp_aritmetica()) {
+            Set<String> nomes = new HashSet<>();
+            ExpansaoEmLinha.coletarNomes(dimensao, nomes);
+            if (!nomes.contains(variavel)) {
+                // Dimensão invariante no laço
+                nomes.retainAll(escritos);
+                if (!nomes.isEmpty()) {
+                    return false;
+                }
+                continue;
+            }
+            if (usaVariavel || !afim(dimensao, variavel, escritos)) {
+                return false;
+            }
+            usaVariavel = true;
+        }
+        return usaVariavel;
+    }
+
+    private static boolean afim(Exp_aritmeticaContext e, String variavel, Set<String> escritos) {
+        if (e.termo().size() > 2) {
+            return false;
+        }
+        if (e.termo().size() == 1) {
+            return e.getText().equals(variavel);
+        }
+        String a = e.termo(0).getText();
+        String b = e.termo(1).getText();
+        boolean soma = e.op1(0).getText().equals("+");
+        return a.equals(variavel) && deslocamento(b, escritos)
+                || soma && b.equals(variavel) && deslocamento(a, escritos);
+    }
+
+    private static boolean deslocamento(String texto, Set<String> escritos) {
+        return texto.matches("[0-9]+") || texto.matches("[A-Za-z_][A-Za-z0-9_]*") && !escritos.contains(texto);
+    }
+
+    private static boolean leiturasNoIndice(ParseTree t, Map<String, IdentificadorContext> vetores) {
+        if (t instanceof IdentificadorContext) {
+            IdentificadorContext ident = (IdentificadorContext) t;
+            IdentificadorContext escrita = vetores.get(ident.IDENT(0).getText());
+            if (escrita != null && !ident.dimensao().getText().equals(escrita.dimensao().getText())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (!leiturasNoIndice(t.getChild(i), vetores)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cláusulas de um laço para paralelizável: variáveis privadas de cada iteração,
+     * as que guardam depois do laço o valor da última iteração (a do próprio laço
+     * quando ela é usada fora dele) e as reduções, com o operador
+     */
+    public record Paralelizacao(List<String> privadas, List<String> ultimas, Map<String, String> reducoes) {
+    }
+
+    // Escalares escritos no corpo e vetores escritos (com a primeira escrita) de um laço candidato
+    private static final class Escritas {
+        final Map<String, String> reducoes = new HashMap<>(); // Nome -> operador, null se não for redução
+        final Map<String, Integer> reduzidos = new HashMap<>(); // Atribuições de redução de cada nome
+        final Map<String, IdentificadorContext> vetores = new HashMap<>();
+    }
+
+    /**
+     * Cláusulas para rodar as iterações do laço em paralelo, ou null se elas podem
+     * depender umas das outras. O corpo só tem atribuições, se e para aninhados, sem
+     * entrada/saída nem chamadas a funções que não sejam puras. Cada escalar escrito é
+     * uma redução (s <- s + e, s - e ou s * e, sem outros usos de s no corpo) ou é
+     * escrito antes de toda leitura na mesma iteração; cada vetor escrito é local e tem
+     * uma dimensão afim na variável do laço, a mesma em todas as escritas e leituras,
+     * então iterações diferentes usam elementos diferentes.
+     */
+    public Paralelizacao paralelizacao(CmdParaContext laco) {
+        if (!ativa) {
+            return null;
+        }
+        Escopo escopo = escopos.get(funcaoDe(laco));
+        String variavel = laco.IDENT().getText();
+        if (escopo == null || !locais(variavel, escopo)) {
+            return null;
+        }
+        Escritas escritas = new Escritas();
+        for (CmdContext cmd : laco.cmd()) {
+            if (!coletarEscritas(cmd, escopo, escritas)) {
+                return null;
+            }
+        }
+        if (escritas.reducoes.containsKey(variavel)) {
+            return null;
+        }
+        // Redução: todo uso do nome no corpo está nas suas atribuições de redução
+        Map<String, Integer> usos = new HashMap<>();
+        for (CmdContext cmd : laco.cmd()) {
+            contarUsos(cmd, usos);
+        }
+        Map<String, String> reducoes = new TreeMap<>();
+        for (Map.Entry<String, String> e : escritas.reducoes.entrySet()) {
+            String nome = e.getKey();
+            if (e.getValue() != null && usos.get(nome) == 2 * escritas.reduzidos.get(nome)) {
+                reducoes.put(nome, e.getValue());
+            }
+        }
+        if (reducoes.isEmpty() && escritas.vetores.isEmpty()) {
+            return null;
+        }
+
+        // Os demais escalares são escritos antes de serem lidos em cada iteração
+        Set<String> privadasCandidatas = new HashSet<>(escritas.reducoes.keySet());
+        privadasCandidatas.removeAll(reducoes.keySet());
+        Set<String> definidos = new HashSet<>();
+        for (CmdContext cmd : laco.cmd()) {
+            if (!lidasDepoisDeEscritas(cmd, privadasCandidatas, reducoes.keySet(), definidos)) {
+                return null;
+            }
+        }
+
+        Set<String> escritos = new HashSet<>(escritas.reducoes.keySet());
+        escritos.add(variavel);
+        Map<String, Integer> dimensoes = new HashMap<>();
+        for (Map.Entry<String, IdentificadorContext> e : escritas.vetores.entrySet()) {
+            int dimensao = dimensaoAfim(e.getValue(), variavel, escritos);
+            if (dimensao < 0) {
+                return null;
+            }
+            dimensoes.put(e.getKey(), dimensao);
+        }
+        if (!acessosNaDimensao(laco, escritas.vetores, dimensoes)) {
+            return null;
+        }
+
+        // Fora do laço o valor das privadas só importa se elas forem usadas lá
+        Set<String> usadosFora = new HashSet<>();
+        nomesFora(raizDe(laco), laco, new HashSet<>(), usadosFora);
+        List<String> privadas = new ArrayList<>();
+        List<String> ultimas = new ArrayList<>();
+        if (usadosFora.contains(variavel)) {
+            ultimas.add(variavel);
+        }
+        for (String nome : new TreeSet<>(privadasCandidatas)) {
+            if (!usadosFora.contains(nome)) {
+                privadas.add(nome);
+            } else if (definidos.contains(nome)) {
+                ultimas.add(nome);
+            } else {
+                // Escrita só em algumas iterações: o valor que fica depois do laço é incerto
+                return null;
+            }
+        }
+        return new Paralelizacao(privadas, ultimas, reducoes);
+    }
+
+    private boolean coletarEscritas(ParseTree t, Escopo escopo, Escritas escritas) {
+        if (t instanceof CmdContext) {
+            return coletarEscritas(t.getChild(0), escopo, escritas);
+        }
+        if (t instanceof CmdSeContext) {
+            CmdSeContext se = (CmdSeContext) t;
+            if (!expressaoSimples(se.expressao(), true)) {
+                return false;
+            }
+            for (CmdContext cmd : se.cmd()) {
+                if (!coletarEscritas(cmd, escopo, escritas)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (t instanceof CmdParaContext) {
+            CmdParaContext para = (CmdParaContext) t;
+            String nome = para.IDENT().getText();
+            if (!locais(nome, escopo) || escopo.vetores.contains(nome) || !expressaoSimples(para.exp_aritmetica(0), true)
+                    || !expressaoSimples(para.exp_aritmetica(1), true)) {
+                return false;
+            }
+            escritas.reducoes.put(nome, null);
+            for (CmdContext cmd : para.cmd()) {
+                if (!coletarEscritas(cmd, escopo, escritas)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (!(t instanceof CmdAtribuicaoContext)) {
+            return false;
+        }
+        CmdAtribuicaoContext atribuicao = (CmdAtribuicaoContext) t;
+        IdentificadorContext alvo = atribuicao.identificador();
+        String nome = alvo.IDENT(0).getText();
+        if (atribuicao.getChild(0).getText().equals("^") || alvo.IDENT().size() > 1
+                || !expressaoSimples(atribuicao.expressao(), true) || !expressaoSimples(alvo.dimensao(), true)) {
+            return false;
+        }
+        if (!alvo.dimensao().exp_aritmetica().isEmpty()) {
+            // Com o endereço tomado, uma função pura poderia ler elementos de outras iterações
+            if (!escopo.vetores.contains(nome) || escopo.escapados.contains(nome)) {
+                return false;
+            }
+            escritas.vetores.putIfAbsent(nome, alvo);
+            return true;
+        }
+        if (!locais(nome, escopo) || escopo.vetores.contains(nome)) {
+            return false;
+        }
+        String operador = operadorReducao(nome, atribuicao.expressao());
+        if (escritas.reducoes.containsKey(nome) && !Objects.equals(escritas.reducoes.get(nome), operador)) {
+            operador = null;
+        }
+        escritas.reducoes.put(nome, operador);
+        escritas.reduzidos.merge(nome, 1, Integer::sum);
+        return true;
+    }
+
+    // "+" para s + e, e + s e s - e; "*" para s * e e e * s; null se não for redução de s
+    private static String operadorReducao(String nome, ExpressaoContext expr) {
+        Exp_aritmeticaContext e = AnaliseIntervalos.aritmetica(expr);
+        if (e == null) {
+            return null;
+        }
+        if (e.termo().size() == 2) {
+            boolean soma = e.op1(0).getText().equals("+");
+            return e.termo(0).getText().equals(nome) || soma && e.termo(1).getText().equals(nome) ? "+" : null;
+        }
+        TermoContext termo = e.termo(0);
+        if (e.termo().size() == 1 && termo.fator().size() == 2 && termo.op2(0).getText().equals("*")
+                && (termo.fator(0).getText().equals(nome) || termo.fator(1).getText().equals(nome))) {
+            return "*";
+        }
+        return null;
+    }
+
+    // Ocorrências de cada nome de variável (identificadores e variáveis de laços para)
+    private static void contarUsos(ParseTree t, Map<String, Integer> usos) {
+        if (t instanceof IdentificadorContext) {
+            usos.merge(((IdentificadorContext) t).IDENT(0).getText(), 1, Integer::sum);
+        } else if (t instanceof CmdParaContext) {
+            usos.merge(((CmdParaContext) t).IDENT().getText(), 1, Integer::sum);
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            contarUsos(t.getChild(i), usos);
+        }
+    }
+
+    // Toda leitura de uma privada vem depois de uma escrita dela na mesma iteração. definidos
+    // guarda as escritas certas até aqui: as de um se ou do corpo de um para aninhado podem
+    // não acontecer, a variável de um para aninhado sempre recebe o início
+    private static boolean lidasDepoisDeEscritas(ParseTree t, Set<String> privadas, Set<String> reducoes,
+                                                 Set<String> definidos) {
+        if (t instanceof CmdContext) {
+            return lidasDepoisDeEscritas(t.getChild(0), privadas, reducoes, definidos);
+        }
+        if (t instanceof CmdSeContext) {
+            CmdSeContext se = (CmdSeContext) t;
+            if (!lidas(se.expressao(), privadas, definidos)) {
+                return false;
+            }
+            Set<String> ramo = new HashSet<>(definidos);
+            for (CmdContext cmd : se.cmd()) {
+                if (!lidasDepoisDeEscritas(cmd, privadas, reducoes, ramo)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (t instanceof CmdParaContext) {
+            CmdParaContext para = (CmdParaContext) t;
+            if (!lidas(para.exp_aritmetica(0), privadas, definidos) || !lidas(para.exp_aritmetica(1), privadas, definidos)) {
+                return false;
+            }
+            definidos.add(para.IDENT().getText());
+            Set<String> corpo = new HashSet<>(definidos);
+            for (CmdContext cmd : para.cmd()) {
+                if (!lidasDepoisDeEscritas(cmd, privadas, reducoes, corpo)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        CmdAtribuicaoContext atribuicao = (CmdAtribuicaoContext) t;
+        String nome = atribuicao.identificador().IDENT(0).getText();
+        if (reducoes.contains(nome)) {
+            // s <- s op e: e não usa s
+            return lidas(atribuicao.expressao(), privadas, definidos);
+        }
+        if (!lidas(atribuicao.identificador().dimensao(), privadas, definidos)
+                || !lidas(atribuicao.expressao(), privadas, definidos)) {
+            return false;
+        }
+        if (atribuicao.identificador().dimensao().exp_aritmetica().isEmpty()) {
+            definidos.add(nome);
+        }
+        return true;
+    }
+
+    private static boolean lidas(ParseTree t, Set<String> privadas, Set<String> definidos) {
+        if (t instanceof IdentificadorContext) {
+            String nome = ((IdentificadorContext) t).IDENT(0).getText();
+            if (privadas.contains(nome) && !definidos.contains(nome)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (!lidas(t.getChild(i), privadas, definidos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Primeira dimensão com índice afim na variável do laço, ou -1
+    private static int dimensaoAfim(IdentificadorContext alvo, String variavel, Set<String> escritos) {
+        List<Exp_aritmeticaContext> dimensoes = alvo.dimensao().exp_aritmetica();
+        for (int d = 0; d < dimensoes.size(); d++) {
+            if (afim(dimensoes.get(d), variavel, escritos)) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    // Todo acesso a um vetor escrito tem na dimensão afim o mesmo índice da primeira escrita
+    private static boolean acessosNaDimensao(ParseTree t, Map<String, IdentificadorContext> vetores,
+                                             Map<String, Integer> dimensoes) {
+        if (t instanceof IdentificadorContext) {
+            IdentificadorContext ident = (IdentificadorContext) t;
+            String nome = ident.IDENT(0).getText();
+            IdentificadorContext escrita = vetores.get(nome);
+            if (escrita != null) {
+                List<Exp_aritmeticaContext> indices = ident.dimensao().exp_aritmetica();
+                int d = dimensoes.get(nome);
+                if (indices.size() != escrita.dimensao().exp_aritmetica().size()
+                        || !indices.get(d).getText().equals(escrita.dimensao().exp_aritmetica(d).getText())) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (!acessosNaDimensao(t.getChild(i), vetores, dimensoes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Variáveis lidas na função (ou no algoritmo) fora do laço, sem contar as declarações nem
+    // as leituras da variável de outro para dentro dele, que sempre recebeu o início antes
+    private static void nomesFora(ParseTree t, CmdParaContext laco, Set<String> ocultos, Set<String> nomes) {
+        if (t == laco || t instanceof Declaracao_localContext || t instanceof ParametroContext) {
+            return;
+        }
+        if (t instanceof IdentificadorContext) {
+            String nome = ((IdentificadorContext) t).IDENT(0).getText();
+            if (!ocultos.contains(nome)) {
+                nomes.add(nome);
+            }
+        } else if (t instanceof CmdParaContext && !contem((CmdParaContext) t, laco)) {
+            CmdParaContext para = (CmdParaContext) t;
+            nomesFora(para.exp_aritmetica(0), laco, ocultos, nomes);
+            nomesFora(para.exp_aritmetica(1), laco, ocultos, nomes);
+            Set<String> corpo = new HashSet<>(ocultos);
+            corpo.add(para.IDENT().getText());
+            for (CmdContext cmd : para.cmd()) {
+                nomesFora(cmd, laco, corpo, nomes);
+            }
+            return;
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            nomesFora(t.getChild(i), laco, ocultos, nomes);
+        }
+    }
+
+    private static boolean contem(ParserRuleContext t, ParserRuleContext no) {
+        for (ParserRuleContext p = no; p != null; p = p.getParent()) {
+            if (p == t) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Declaração da função que contém o nó, ou o corpo do algoritmo
+    private static ParserRuleContext raizDe(ParserRuleContext t) {
+        for (ParserRuleContext p = t; p != null; p = p.getParent()) {
+            if (p instanceof Declaracao_globalContext || p instanceof CorpoContext) {
+                return p;
+            }
+        }
+        return t;
+    }
+
+    // Nome da função que contém o nó, ou ALGORITMO
+    private static String funcaoDe(ParserRuleContext t) {
+        for (ParserRuleContext p = t; p != null; p = p.getParent()) {
+            if (p instanceof Declaracao_globalContext) {
+                return ((Declaracao_globalContext) p).IDENT().getText();
+            }
+        }
+        return ALGORITMO;
+    }
+}
@@ -0,0 +1,455 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+import br.ufscar.dc.compiladores.SymbolTable.SymbolTableEntry;
+
+/**
+ * Diagnósticos de um documento LA mantidos incrementalmente, para o servidor
+ * LSP. O texto é dividido em regiões: cada decl_local_global e o corpo. Uma
+ * edição dentro de uma região relê e reanalisa só aquele trecho; a análise
+ * semântica refaz a região editada e, em seguida, apenas as regiões que
+ * citam símbolos globais cuja declaração mudou. Os erros são os mesmos do
+ * compilador (MyCustomErrorListener e JanderSemanticoUtils); quando a
+ * edição cruza regiões, ou um erro sintático fica na fronteira de uma região,
+ * o documento é analisado por inteiro.
+ */
+public class AnaliseIncremental {
+
+    /** Erro publicado: linha a partir de 1 e mensagem sem o prefixo "Linha N: " */
+    public record Erro(int linha, String mensagem) {
+    }
+
+    private static final Pattern LINHA_ERRO = Pattern.compile("Linha (\\d+): (.*)");
+
+    // Trecho [inicio, fim) do texto analisado de forma independente
+    private static final class Regiao {
+        int inicio;
+        int fim;
+        final boolean corpo;
+        ParserRuleContext arvore; // null enquanto a região tem erro sintático
+        int linhaBase; // Linha que a primeira linha da região tem nos tokens da árvore
+        Erro erroSintatico; // Linha relativa ao início da região
+        List<Erro> erros = List.of(); // Erros semânticos, com linha relativa
+        Set<String> referencias = Set.of(); // Identificadores citados na região
+        Map<String, SymbolTableEntry> efeito = Map.of(); // Símbolos globais que a região declara
+        boolean suja; // Texto mudou desde a última leitura
+        boolean reverificar; // Precisa de nova análise semântica
+
+        Regiao(int inicio, int fim, boolean corpo) {
+            this.inicio = inicio;
+            this.fim = fim;
+            this.corpo = corpo;
+        }
+    }
+
+    // Escopo global que registra o que cada região declara
+    private static final class EscopoGravado extends HashMap<String, SymbolTableEntry> {
+        private static final long serialVersionUID = 1L;
+        // Só vale durante a análise de uma região; nunca é serializado
+        transient Map<String, SymbolTableEntry> efeito;
+
+        @Override
+        public SymbolTableEntry put(String nome, SymbolTableEntry entrada) {
+            if (efeito != null) {
+                efeito.put(nome, entrada);
+            }
+            return super.put(nome, entrada);
+        }
+    }
+
+    private String texto;
+    private int[] inicioLinhas;
+    private List<Regiao> regioes; // null quando a estrutura do documento é desconhecida
+    private List<Erro> errosGerais = List.of(); // Erro sintático da última análise completa
+    private boolean pendente;
+    // Tabela base: guarda os descritores de registro internados entre as análises
+    private SymbolTable base = new SymbolTable();
+
+    private int analisesCompletas;
+    private int regioesRelidas;
+    private int regioesVerificadas;
+
+    public AnaliseIncremental(String texto) {
+        this.texto = texto;
+        this.inicioLinhas = calcularInicioLinhas(texto);
+        this.pendente = true;
+    }
+
+    public String getTexto() {
+        return texto;
+    }
+
+    /** Quantas vezes o documento foi analisado por inteiro */
+    public int getAnalisesCompletas() {
+        return analisesCompletas;
+    }
+
+    /** Regiões relidas e regiões verificadas semanticamente desde a criação */
+    public int getRegioesRelidas() {
+        return regioesRelidas;
+    }
+
+    public int getRegioesVerificadas() {
+        return regioesVerificadas;
+    }
+
+    /** Posição no texto de (linha, coluna), ambas a partir de 0 como no LSP */
+    public int posicao(int linha, int coluna) {
+        if (linha >= inicioLinhas.length) {
+            return texto.length();
+        }
+        int inicio = inicioLinhas[linha];
+        int fimLinha = linha + 1 < inicioLinhas.length ? inicioLinhas[linha + 1] - 1 : texto.length();
+        return Math.min(inicio + coluna, fimLinha);
+    }
+
+    /** Texto da linha (a partir de 1), sem a quebra */
+    public String linha(int linha) {
+        if (linha < 1 || linha > inicioLinhas.length) {
+            return "";
+        }
+        int inicio = inicioLinhas[linha - 1];
+        int fim = linha < inicioLinhas.length ? inicioLinhas[linha] - 1 : texto.length();
+        return texto.substring(inicio, fim);
+    }
+
+    /** Troca o trecho [inicio, fim) por novo; a análise acontece em diagnosticos() */
+    public void editar(int inicio, int fim, String novo) {
+        texto = texto.substring(0, inicio) + novo + texto.substring(fim);
+        atualizarLinhas(inicio, fim, novo);
+        pendente = true;
+        if (regioes == null) {
+            return;
+        }
+        int delta = novo.length() - (fim - inicio);
+        Regiao alvo = null;
+        for (Regiao r : regioes) {
+            if (alvo != null) {
+                r.inicio += delta;
+                r.fim += delta;
+            } else if (r.inicio <= inicio && fim <= r.fim) {
+                alvo = r;
+                r.fim += delta;
+                r.suja = true;
+            }
+        }
+        // Fora das regiões (palavras algoritmo/fim_algoritmo) ou juntando uma palavra com a vizinha
+        if (alvo == null || colado(alvo.inicio) || colado(alvo.fim)) {
+            regioes = null;
+        }
+    }
+
+    // Verdadeiro se a fronteira fica entre dois caracteres de palavra, que o léxico juntaria num só token
+    private boolean colado(int fronteira) {
+        return fronteira > 0 && fronteira < texto.length()
+                && ehPalavra(texto.charAt(fronteira - 1)) && ehPalavra(texto.charAt(fronteira));
+    }
+
+    private static boolean ehPalavra(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /** Diagnósticos atuais do documento, na ordem em que o compilador os imprime */
+    public List<Erro> diagnosticos() {
+        if (pendente) {
+            atualizar();
+            pendente = false;
+        }
+        if (regioes == null) {
+            return errosGerais;
+        }
+        for (Regiao r : regioes) {
+            // Como no compilador, um erro sintático (o primeiro) esconde os semânticos
+            if (r.erroSintatico != null) {
+                return List.of(absoluto(r, r.erroSintatico));
+            }
+        }
+        List<Erro> todos = new ArrayList<>();
+        for (Regiao r : regioes) {
+            for (Erro e : r.erros) {
+                todos.add(absoluto(r, e));
+            }
+        }
+        return todos;
+    }
+
+    private Erro absoluto(Regiao r, Erro relativo) {
+        int linhaRegiao = linhaDe(r.inicio);
+        return new Erro(relativo.linha() < 0 ? linhaRegiao : linhaRegiao + relativo.linha(), relativo.mensagem());
+    }
+
+    private void atualizar() {
+        if (regioes == null) {
+            analisarTudo();
+            return;
+        }
+        for (Regiao r : regioes) {
+            if (r.suja && !reler(r)) {
+                analisarTudo();
+                return;
+            }
+        }
+        verificarAlteradas();
+    }
+
+    private void analisarTudo() {
+        analisesCompletas++;
+        base = new SymbolTable();
+        StringWriter saida = new StringWriter();
+        PrintWriter pw = new PrintWriter(saida);
+        JanderLexer lexer = new JanderLexer(CharStreams.fromString(texto));
+        lexer.removeErrorListeners();
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        JanderParser parser = new JanderParser(tokens);
+        MyCustomErrorListener listener = new MyCustomErrorListener(pw);
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+        ProgramaContext programa = parser.programa();
+        pw.flush();
+        if (listener.parada) {
+            regioes = null;
+            errosGerais = lerErros(saida.toString());
+            return;
+        }
+
+        regioes = new ArrayList<>();
+        List<Decl_local_globalContext> decls = programa.declaracoes().decl_local_global();
+        int inicioAlgoritmo = programa.ALGORITMO().getSymbol().getStartIndex();
+        for (int i = 0; i < decls.size(); i++) {
+            int fim = i + 1 < decls.size() ? decls.get(i + 1).start.getStartIndex() : inicioAlgoritmo;
+            regioes.add(novaRegiao(decls.get(i), decls.get(i).start.getStartIndex(), fim, false, tokens));
+        }
+        regioes.add(novaRegiao(programa.corpo(), programa.ALGORITMO().getSymbol().getStopIndex() + 1,
+                programa.FIM_ALGORITMO().getSymbol().getStartIndex(), true, tokens));
+
+        // Verificação completa em ordem, registrando o que cada região declara
+        EscopoGravado escopo = new EscopoGravado();
+        for (Regiao r : regioes) {
+            verificar(r, escopo);
+        }
+    }
+
+    private Regiao novaRegiao(ParserRuleContext ctx, int inicio, int fim, boolean corpo, CommonTokenStream tokens) {
+        Regiao r = new Regiao(inicio, fim, corpo);
+        r.arvore = ctx;
+        r.linhaBase = linhaDe(inicio);
+        int primeiro = ctx.start.getTokenIndex();
+        int ultimo = ctx.stop != null ? ctx.stop.getTokenIndex() : primeiro - 1;
+        r.referencias = referencias(tokens.getTokens(), primeiro, ultimo);
+        return r;
+    }
+
+    private static Set<String> referencias(List<Token> tokens, int primeiro, int ultimo) {
+        Set<String> nomes = new HashSet<>();
+        for (int i = Math.max(0, primeiro); i <= ultimo && i < tokens.size(); i++) {
+            if (tokens.get(i).getType() == JanderLexer.IDENT) {
+                nomes.add(tokens.get(i).getText());
+            }
+        }
+        return nomes;
+    }
+
+    /**
+     * Relê só o texto da região. Devolve false quando o resultado pode diferir
+     * da leitura do documento inteiro (a região deixou de ser exatamente uma
+     * declaração, ou o erro sintático está na última linha dela).
+     */
+    private boolean reler(Regiao r) {
+        regioesRelidas++;
+        r.suja = false;
+        String trecho = texto.substring(r.inicio, r.fim);
+        StringWriter saida = new StringWriter();
+        PrintWriter pw = new PrintWriter(saida);
+        JanderLexer lexer = new JanderLexer(CharStreams.fromString(trecho));
+        lexer.removeErrorListeners();
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        JanderParser parser = new JanderParser(tokens);
+        MyCustomErrorListener listener = new MyCustomErrorListener(pw);
+        Token[] primeiroErro = new Token[1];
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+        parser.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object simbolo, int linha, int coluna,
+                    String msg, RecognitionException e) {
+                if (primeiroErro[0] == null) {
+                    primeiroErro[0] = (Token) simbolo;
+                }
+            }
+        });
+        ParserRuleContext arvore = r.corpo ? parser.corpo() : parser.decl_local_global();
+        pw.flush();
+
+        int ultimaLinha = 1 + (int) trecho.chars().filter(c -> c == '\n').count();
+        if (listener.parada) {
+            Token t = primeiroErro[0];
+            if (t == null || t.getType() == Token.EOF || t.getLine() >= ultimaLinha) {
+                return false;
+            }
+            List<Erro> erros = lerErros(saida.toString());
+            r.arvore = null;
+            r.erroSintatico = new Erro(erros.get(0).linha() - 1, erros.get(0).mensagem());
+            return true;
+        }
+        if (tokens.LA(1) != Token.EOF) {
+            return false;
+        }
+        r.arvore = arvore;
+        r.linhaBase = 1;
+        r.erroSintatico = null;
+        r.referencias = referencias(tokens.getTokens(), 0, tokens.size() - 1);
+        r.reverificar = true;
+        return true;
+    }
+
+    // Refaz a semântica das regiões relidas e, em cascata, das que citam símbolos cuja declaração mudou
+    private void verificarAlteradas() {
+        Set<String> alterados = new HashSet<>();
+        EscopoGravado escopo = new EscopoGravado();
+        int mescladas = 0;
+        for (int k = 0; k < regioes.size(); k++) {
+            Regiao r = regioes.get(k);
+            if (!r.reverificar && Collections.disjoint(r.referencias, alterados)) {
+                continue;
+            }
+            if (r.arvore == null) {
+                r.reverificar = true; // Verificada quando o erro sintático for corrigido
+                continue;
+            }
+            // Escopo global como estava antes da região: efeitos das anteriores, em ordem
+            escopo.efeito = null;
+            for (; mescladas < k; mescladas++) {
+                escopo.putAll(regioes.get(mescladas).efeito);
+            }
+            Map<String, SymbolTableEntry> anterior = r.efeito;
+            verificar(r, escopo);
+            mescladas = k + 1;
+            alterados.addAll(diferencas(anterior, r.efeito));
+        }
+    }
+
+    private void verificar(Regiao r, EscopoGravado escopo) {
+        regioesVerificadas++;
+        escopo.efeito = new HashMap<>();
+        JanderSemantico semantico = new JanderSemantico(new PrintWriter(Writer.nullWriter()), base.withGlobalScope(escopo));
+        JanderSemanticoUtils.semanticErrors().setLimite(Integer.MAX_VALUE);
+        JanderSemanticoUtils.clearCurrentAssignmentVariableStack();
+        semantico.visit(r.arvore);
+        List<Erro> erros = new ArrayList<>();
+        for (Diagnosticos.Diagnostico d : JanderSemanticoUtils.semanticErrors().listar()) {
+            erros.add(new Erro(d.linha() < 0 ? -1 : d.linha() - r.linhaBase, d.mensagem()));
+        }
+        JanderSemanticoUtils.semanticErrors().clear();
+        r.erros = erros;
+        r.efeito = escopo.efeito;
+        r.reverificar = false;
+        escopo.efeito = null;
+    }
+
+    private static Set<String> diferencas(Map<String, SymbolTableEntry> antes, Map<String, SymbolTableEntry> depois) {
+        Set<String> nomes = new HashSet<>();
+        for (Map.Entry<String, SymbolTableEntry> e : antes.entrySet()) {
+            if (!mesmaDeclaracao(e.getValue(), depois.get(e.getKey()))) {
+                nomes.add(e.getKey());
+            }
+        }
+        for (String nome : depois.keySet()) {
+            if (!antes.containsKey(nome)) {
+                nomes.add(nome);
+            }
+        }
+        return nomes;
+    }
+
+    private static boolean mesmaDeclaracao(SymbolTableEntry a, SymbolTableEntry b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        // Descritores de registro são internados: mesma estrutura, mesmo objeto
+        return a.type == b.type && a.pointedType == b.pointedType && a.returnType == b.returnType
+                && Objects.equals(a.paramTypes, b.paramTypes) && a.recordType == b.recordType
+                && a.arrayElementType == b.arrayElementType && Arrays.equals(a.arrayDimensions, b.arrayDimensions)
+                && Objects.equals(a.constantValue, b.constantValue);
+    }
+
+    private static List<Erro> lerErros(String saida) {
+        List<Erro> erros = new ArrayList<>();
+        for (String linha : saida.split("\n")) {
+            Matcher m = LINHA_ERRO.matcher(linha.strip());
+            if (m.matches()) {
+                erros.add(new Erro(Integer.parseInt(m.group(1)), m.group(2)));
+            }
+        }
+        return erros;
+    }
+
+    // Linha (a partir de 1) da posição no texto
+    private int linhaDe(int posicao) {
+        int i = Arrays.binarySearch(inicioLinhas, posicao);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static int[] calcularInicioLinhas(String texto) {
+        int[] inicios = new int[16];
+        int n = 0;
+        inicios[n++] = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '\n') {
+                if (n == inicios.length) {
+                    inicios = Arrays.copyOf(inicios, n * 2);
+                }
+                inicios[n++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(inicios, n);
+    }
+
+    // Ajusta os inícios de linha depois de trocar [inicio, fim) por novo, sem reler o texto todo
+    private void atualizarLinhas(int inicio, int fim, String novo) {
+        int antes = 0;
+        while (antes < inicioLinhas.length && inicioLinhas[antes] <= inicio) {
+            antes++;
+        }
+        int depois = antes;
+        while (depois < inicioLinhas.length && inicioLinhas[depois] <= fim) {
+            depois++;
+        }
+        int[] novas = calcularInicioLinhas(novo);
+        int delta = novo.length() - (fim - inicio);
+        int[] resultado = new int[antes + novas.length - 1 + inicioLinhas.length - depois];
+        System.arraycopy(inicioLinhas, 0, resultado, 0, antes);
+        for (int i = 1; i < novas.length; i++) {
+            resultado[antes + i - 1] = inicio + novas[i];
+        }
+        for (int i = depois; i < inicioLinhas.length; i++) {
+            resultado[antes + novas.length - 1 + i - depois] = inicioLinhas[i] + delta;
+        }
+        inicioLinhas = resultado;
+    }
+}
@@ -0,0 +1,296 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Análise de intervalos para expressões inteiras. Conhece constantes inteiras
+ * da tabela de símbolos e as variáveis de laços "para" cujo corpo não as
+ * altera; com isso prova, em tempo de compilação, que um índice fica dentro
+ * das dimensões declaradas do vetor.
+ */
+public class AnaliseIntervalos {
+
+    // Limite para manter a aritmética de intervalos longe de estouro
+    private static final long LIMITE = Integer.MAX_VALUE;
+
+    /** Intervalo fechado [min, max] dos valores possíveis de uma expressão */
+    public static final class Intervalo {
+        public final long min;
+        public final long max;
+
+        Intervalo(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        /** Verdadeiro se todos os valores são índices válidos para a dimensão */
+        public boolean dentroDe(int dimensao) {
+            return min >= 0 && max < dimensao;
+        }
+    }
+
+    private final SymbolTable tabela;
+    private final Map<String, Intervalo> variaveis = new HashMap<>();
+
+    public AnaliseIntervalos(SymbolTable tabela) {
+        this.tabela = tabela;
+    }
+
+    /**
+     * Entra no corpo de um laço "para": a variável vale entre o menor início e
+     * o maior fim possíveis, desde que o corpo não a altere (nem por um ponteiro
+     * ou parâmetro var que possa apontar para ela). Devolve o
+     * intervalo anterior da variável (para sair) ou ela mesma se nada mudou.
+     */
+    public Intervalo entrarPara(CmdParaContext ctx) {
+        String var = ctx.IDENT().getText();
+        Intervalo anterior = variaveis.remove(var);
+        Intervalo inicio = avaliar(ctx.exp_aritmetica(0));
+        Intervalo fim = avaliar(ctx.exp_aritmetica(1));
+        if (inicio != null && fim != null && inicio.min <= fim.max) {
+            boolean alterada = false;
+            for (CmdContext cmd : ctx.cmd()) {
+                alterada |= altera(cmd, var);
+            }
+            if (!alterada && !alteravelDeFora(ctx, var)) {
+                variaveis.put(var, new Intervalo(inicio.min, fim.max));
+            }
+        }
+        return anterior;
+    }
+
+    // Verdadeiro se o corpo do laço pode alterar a variável sem citá-la: ela tem o endereço
+    // tomado (um ^p <-, leia(^p) ou chamada escreveria nela), é parâmetro var (pode ser o
+    // mesmo objeto que outro parâmetro) ou é global e o corpo chama alguma função
+    private static boolean alteravelDeFora(CmdParaContext laco, String var) {
+        ParseTree raiz = laco;
+        while (raiz.getParent() != null && !(raiz instanceof Declaracao_globalContext)
+                && !(raiz instanceof CorpoContext)) {
+            raiz = raiz.getParent();
+        }
+        if (raiz instanceof Declaracao_globalContext) {
+            Declaracao_globalContext decl = (Declaracao_globalContext) raiz;
+            if (decl.parametros() != null) {
+                for (ParametroContext p : decl.parametros().parametro()) {
+                    for (IdentificadorContext ident : p.identificador()) {
+                        if (ident.IDENT(0).getText().equals(var)) {
+                            return p.VAR() != null || enderecoTomado(raiz, var);
+                        }
+                    }
+                }
+            }
+        }
+        List<Declaracao_localContext> locais = raiz instanceof Declaracao_globalContext
+                ? ((Declaracao_globalContext) raiz).declaracao_local()
+                : raiz instanceof CorpoContext ? ((CorpoContext) raiz).declaracao_local() : List.of();
+        for (Declaracao_localContext local : locais) {
+            if (local.variavel() != null) {
+                for (IdentificadorContext ident : local.variavel().identificador()) {
+                    if (ident.IDENT(0).getText().equals(var)) {
+                        return enderecoTomado(raiz, var);
+                    }
+                }
+            }
+        }
+        // Global: o endereço pode ser tomado em qualquer parte do programa
+        ParseTree programa = raiz;
+        while (programa.getParent() != null) {
+            programa = programa.getParent();
+        }
+        return enderecoTomado(programa, var) || chama(laco);
+    }
+
+    private static boolean enderecoTomado(ParseTree t, String var) {
+        if (t instanceof Parcela_nao_unarioContext) {
+            IdentificadorContext ident = ((Parcela_nao_unarioContext) t).identificador();
+            return ident != null && ident.IDENT(0).getText().equals(var);
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (enderecoTomado(t.getChild(i), var)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean chama(ParseTree t) {
+        if (t instanceof CmdChamadaContext
+                || t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null) {
+            return true;
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (chama(t.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void sairPara(CmdParaContext ctx, Intervalo anterior) {
+        String var = ctx.IDENT().getText();
+        if (anterior != null) {
+            variaveis.put(var, anterior);
+        } else {
+            variaveis.remove(var);
+        }
+    }
+
+    /** Intervalo da expressão, ou null se não for possível limitá-la */
+    public Intervalo avaliar(Exp_aritmeticaContext ctx) {
+        Intervalo r = avaliar(ctx.termo(0));
+        for (int i = 0; r != null && i < ctx.op1().size(); i++) {
+            Intervalo t = avaliar(ctx.termo(i + 1));
+            if (t == null) {
+                return null;
+            }
+            r = ctx.op1(i).getText().equals("+")
+                    ? limitar(r.min + t.min, r.max + t.max)
+                    : limitar(r.min - t.max, r.max - t.min);
+        }
+        return r;
+    }
+
+    private Intervalo avaliar(TermoContext ctx) {
+        Intervalo r = avaliar(ctx.fator(0));
+        for (int i = 0; r != null && i < ctx.op2().size(); i++) {
+            Intervalo f = avaliar(ctx.fator(i + 1));
+            if (f == null) {
+                return null;
+            }
+            if (ctx.op2(i).getText().equals("*")) {
+                long a = r.min * f.min, b = r.min * f.max, c = r.max * f.min, d = r.max * f.max;
+                r = limitar(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+            } else if (f.min == f.max && f.min > 0) {
+                // Divisão inteira do C por constante positiva é monotônica
+                r = new Intervalo(r.min / f.min, r.max / f.min);
+            } else {
+                return null;
+            }
+        }
+        return r;
+    }
+
+    private Intervalo avaliar(FatorContext ctx) {
+        Intervalo r = avaliar(ctx.parcela(0));
+        for (int i = 1; r != null && i < ctx.parcela().size(); i++) {
+            Intervalo d = avaliar(ctx.parcela(i));
+            if (d == null || d.min != d.max || d.min <= 0) {
+                return null;
+            }
+            long m = d.min - 1;
+            if (r.min >= 0) {
+                r = r.max <= m ? r : new Intervalo(0, m);
+            } else {
+                // Resto do C tem o sinal do dividendo e módulo menor que o divisor
+                r = new Intervalo(Math.max(r.min, -m), r.max < 0 ? 0 : Math.min(r.max, m));
+            }
+        }
+        return r;
+    }
+
+    private Intervalo avaliar(ParcelaContext ctx) {
+        if (ctx.parcela_unario() == null) {
+            return null;
+        }
+        Intervalo r = avaliar(ctx.parcela_unario());
+        if (r != null && ctx.op_unario() != null) {
+            r = new Intervalo(-r.max, -r.min);
+        }
+        return r;
+    }
+
+    private Intervalo avaliar(Parcela_unarioContext ctx) {
+        if (ctx.NUM_INT() != null) {
+            long v = Long.parseLong(ctx.NUM_INT().getText());
+            return v <= LIMITE ? new Intervalo(v, v) : null;
+        }
+        if (ctx.identificador() != null) {
+            IdentificadorContext ident = ctx.identificador();
+            if (ctx.getText().startsWith("^") || ident.IDENT().size() > 1
+                    || !ident.dimensao().exp_aritmetica().isEmpty()) {
+                return null;
+            }
+            String nome = ident.IDENT(0).getText();
+            Intervalo v = variaveis.get(nome);
+            if (v != null) {
+                return v;
+            }
+            Long constante = tabela.getConstantValue(nome);
+            return constante != null ? new Intervalo(constante, constante) : null;
+        }
+        if (ctx.IDENT() == null && ctx.expressao().size() == 1) {
+            Exp_aritmeticaContext interna = aritmetica(ctx.expressao(0));
+            return interna != null ? avaliar(interna) : null;
+        }
+        return null;
+    }
+
+    // Expressão entre parênteses que é apenas aritmética (sem operadores lógicos ou relacionais)
+    static Exp_aritmeticaContext aritmetica(ExpressaoContext ctx) {
+        if (ctx.termo_logico().size() != 1 || ctx.termo_logico(0).fator_logico().size() != 1) {
+            return null;
+        }
+        Fator_logicoContext fator = ctx.termo_logico(0).fator_logico(0);
+        if (fator.getChildCount() > 1 || fator.parcela_logica().exp_relacional() == null) {
+            return null;
+        }
+        Exp_relacionalContext rel = fator.parcela_logica().exp_relacional();
+        return rel.op_relacional() == null ? rel.exp_aritmetica(0) : null;
+    }
+
+    private static Intervalo limitar(long min, long max) {
+        return min < -LIMITE || max > LIMITE ? null : new Intervalo(min, max);
+    }
+
+    /**
+     * Verdadeiro se o trecho pode alterar a variável: atribuição, leitura, laço
+     * "para" sobre ela, endereço tomado com '&' ou passagem direta como
+     * argumento (que pode ser um parâmetro var).
+     */
+    static boolean altera(ParseTree t, String var) {
+        if (t instanceof CmdAtribuicaoContext) {
+            if (((CmdAtribuicaoContext) t).identificador().IDENT(0).getText().equals(var)) {
+                return true;
+            }
+        } else if (t instanceof CmdLeiaContext) {
+            for (IdentificadorContext ident : ((CmdLeiaContext) t).identificador()) {
+                if (ident.IDENT(0).getText().equals(var)) {
+                    return true;
+                }
+            }
+        } else if (t instanceof CmdParaContext) {
+            if (((CmdParaContext) t).IDENT().getText().equals(var)) {
+                return true;
+            }
+        } else if (t instanceof Parcela_nao_unarioContext) {
+            IdentificadorContext ident = ((Parcela_nao_unarioContext) t).identificador();
+            if (ident != null && ident.IDENT(0).getText().equals(var)) {
+                return true;
+            }
+        } else if (t instanceof CmdChamadaContext) {
+            for (ExpressaoContext arg : ((CmdChamadaContext) t).expressao()) {
+                if (arg.getText().equals(var)) {
+                    return true;
+                }
+            }
+        } else if (t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null) {
+            for (ExpressaoContext arg : ((Parcela_unarioContext) t).expressao()) {
+                if (arg.getText().equals(var)) {
+                    return true;
+                }
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (altera(t.getChild(i), var)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
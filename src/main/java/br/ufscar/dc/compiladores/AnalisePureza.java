@@ -0,0 +1,165 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Análise de efeitos colaterais das funções e procedimentos de um programa LA.
+ * Uma declaração é pura quando não faz leia/escreva, não escreve em variáveis
+ * globais nem em parâmetros que o C recebe por endereço (var, literal e
+ * vetores), não usa ponteiros (^) e só chama declarações puras. Se, além disso,
+ * só lê parâmetros por valor, locais e constantes, o resultado depende só dos
+ * argumentos: é constante no sentido do __attribute__((const)) do gcc.
+ *
+ * O cálculo é um ponto fixo sobre o grafo de chamadas: todas começam com o
+ * efeito local do corpo e cada rodada rebaixa quem chama algo mais fraco, o
+ * que também resolve funções recursivas.
+ */
+public class AnalisePureza {
+
+    public enum Efeito {
+        CONSTANTE, PURA, IMPURA
+    }
+
+    private final GrafoChamadas grafo;
+    private final Map<String, Efeito> efeitos = new HashMap<>();
+
+    public AnalisePureza(ProgramaContext programa, GrafoChamadas grafo) {
+        this(programa, grafo, null);
+    }
+
+    /**
+     * Análise de um programa cujas primeiras declarações vêm da interface (null se
+     * não há): o efeito delas já foi calculado e entra fixo no ponto fixo.
+     */
+    public AnalisePureza(ProgramaContext programa, GrafoChamadas grafo, InterfaceDeclaracoes interfaceBloco) {
+        this.grafo = grafo;
+        Set<String> constantes = new HashSet<>();
+        if (interfaceBloco != null) {
+            for (InterfaceDeclaracoes.Declaracao d : interfaceBloco.getDeclaracoes()) {
+                if (d.efeito != null) {
+                    efeitos.put(d.nome, d.efeito);
+                } else if (d.categoria.equals("constante")) {
+                    constantes.add(d.nome);
+                }
+            }
+        }
+        if (programa.declaracoes() != null) {
+            for (Decl_local_globalContext decl : programa.declaracoes().decl_local_global()) {
+                if (decl.declaracao_local() != null && decl.declaracao_local().CONSTANTE() != null) {
+                    constantes.add(decl.declaracao_local().IDENT().getText());
+                }
+            }
+        }
+        for (String nome : grafo.getFuncoes()) {
+            efeitos.put(nome, efeitoLocal(grafo.getDeclaracao(nome), constantes));
+        }
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (String nome : grafo.getFuncoes()) {
+                Efeito efeito = efeitos.get(nome);
+                for (String chamado : grafo.getChamadas(nome)) {
+                    efeito = pior(efeito, efeitos.get(chamado));
+                }
+                if (efeito != efeitos.get(nome)) {
+                    efeitos.put(nome, efeito);
+                    mudou = true;
+                }
+            }
+        }
+    }
+
+    public GrafoChamadas getGrafo() {
+        return grafo;
+    }
+
+    /** Efeito de nome; nomes que não são declarações do programa contam como impuros */
+    public Efeito getEfeito(String nome) {
+        return efeitos.getOrDefault(nome, Efeito.IMPURA);
+    }
+
+    /** Verdadeiro se chamar nome não altera nenhuma variável nem faz entrada/saída */
+    public boolean ehPura(String nome) {
+        return getEfeito(nome) != Efeito.IMPURA;
+    }
+
+    /** Verdadeiro se o resultado de nome depende só dos argumentos */
+    public boolean ehConstante(String nome) {
+        return getEfeito(nome) == Efeito.CONSTANTE;
+    }
+
+    private static Efeito pior(Efeito a, Efeito b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Efeito efeitoLocal(Declaracao_globalContext decl, Set<String> constantes) {
+        // Parâmetros copiados na chamada podem ser lidos e escritos à vontade; os demais
+        // apontam para a memória de quem chamou
+        Set<String> copias = new HashSet<>();
+        Set<String> referencias = new HashSet<>();
+        if (decl.parametros() != null) {
+            for (ParametroContext p : decl.parametros().parametro()) {
+                boolean literal = p.tipo_estendido().getText().equals("literal");
+                for (IdentificadorContext ident : p.identificador()) {
+                    boolean vetor = !ident.dimensao().exp_aritmetica().isEmpty();
+                    (p.VAR() != null || literal || vetor ? referencias : copias).add(ident.IDENT(0).getText());
+                }
+            }
+        }
+        for (Declaracao_localContext local : decl.declaracao_local()) {
+            if (local.variavel() != null) {
+                for (IdentificadorContext ident : local.variavel().identificador()) {
+                    copias.add(ident.IDENT(0).getText());
+                }
+            } else if (local.CONSTANTE() != null) {
+                copias.add(local.IDENT().getText());
+            }
+        }
+        Efeito[] efeito = {Efeito.CONSTANTE};
+        for (CmdContext cmd : decl.cmd()) {
+            visitar(cmd, copias, referencias, constantes, efeito);
+        }
+        return efeito[0];
+    }
+
+    private static void visitar(ParseTree t, Set<String> copias, Set<String> referencias,
+                                Set<String> constantes, Efeito[] efeito) {
+        if (efeito[0] == Efeito.IMPURA) {
+            return;
+        }
+        if (t instanceof CmdLeiaContext || t instanceof CmdEscrevaContext) {
+            efeito[0] = Efeito.IMPURA;
+            return;
+        }
+        if (t instanceof CmdAtribuicaoContext) {
+            CmdAtribuicaoContext atribuicao = (CmdAtribuicaoContext) t;
+            if (atribuicao.getChild(0).getText().equals("^")
+                    || !copias.contains(atribuicao.identificador().IDENT(0).getText())) {
+                efeito[0] = Efeito.IMPURA;
+                return;
+            }
+        } else if (t instanceof CmdParaContext && !copias.contains(((CmdParaContext) t).IDENT().getText())) {
+            efeito[0] = Efeito.IMPURA;
+            return;
+        } else if (t instanceof Parcela_unarioContext && t.getChild(0).getText().equals("^")) {
+            efeito[0] = Efeito.IMPURA;
+            return;
+        } else if (t instanceof IdentificadorContext) {
+            String nome = ((IdentificadorContext) t).IDENT(0).getText();
+            if (!copias.contains(nome) && (referencias.contains(nome) || !constantes.contains(nome))) {
+                // Lê memória que a chamada não copiou (global, var, literal ou vetor)
+                efeito[0] = Efeito.PURA;
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            visitar(t.getChild(i), copias, referencias, constantes, efeito);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package br.ufscar.dc.compiladores;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Mede o uso da análise de apelidos no C gerado: o programa sintético tem um
+ * procedimento que acumula em dois parâmetros var dentro de um laço (sem
+ * restrict o gcc precisa gravar e reler os dois a cada volta, porque um pode
+ * ser o outro) e laços para sobre vetores locais que recebem #pragma GCC ivdep.
+ * Compila com e sem as anotações e confere que as saídas são iguais. O gcc
+ * recebe -fno-inline: expandido no algoritmo, o procedimento já veria que os
+ * argumentos são variáveis diferentes, o que não acontece quando ele é
+ * chamado de vários lugares ou é grande demais para ser expandido.
+ *
+ * Uso: ApelidosBenchmark [n]
+ */
+public class ApelidosBenchmark {
+
+    private static final int MEDICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        Medicoes.Programa programa = Medicoes.analisar(gerarPrograma(n));
+        Path dir = Files.createTempDirectory("jander-apelidos");
+        JanderGeradorC gerador = new JanderGeradorC(programa.semantico());
+        gerador.visit(programa.arvore());
+        String codigo = gerador.getOutput();
+        Path comAnalise = Medicoes.compilarGcc(dir, "com", codigo, "-O2", "-fno-inline");
+        System.out.printf("restrict: %d parametros, ivdep: %d lacos%n",
+                contar(codigo, "restrict") / 2, contar(codigo, "#pragma GCC ivdep"));
+
+        gerador = new JanderGeradorC(programa.semantico());
+        gerador.setAnotarApelidos(false);
+        gerador.visit(programa.arvore());
+        Path semAnalise = Medicoes.compilarGcc(dir, "sem", gerador.getOutput(), "-O2", "-fno-inline");
+
+        byte[] saidaCom = Medicoes.executar(comAnalise);
+        byte[] saidaSem = Medicoes.executar(semAnalise);
+        System.out.printf("Saidas: %s%n", Arrays.equals(saidaCom, saidaSem) ? "iguais" : "DIFERENTES");
+
+        double com = Medicoes.mediana(0, MEDICOES, () -> Medicoes.executar(comAnalise));
+        double sem = Medicoes.mediana(0, MEDICOES, () -> Medicoes.executar(semAnalise));
+        System.out.printf("n = %d (gcc -O2 -fno-inline, mediana de %d execucoes)%n", n, MEDICOES);
+        Medicoes.imprimirComparacao("Sem as anotacoes", sem, "Com as anotacoes", com);
+        Medicoes.apagar(dir);
+    }
+
+    private static int contar(String texto, String trecho) {
+        int n = 0;
+        for (int i = texto.indexOf(trecho); i >= 0; i = texto.indexOf(trecho, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    static String gerarPrograma(int n) {
+        StringBuilder sb = new StringBuilder();
+        // Chamado sempre com variáveis diferentes: restrict nos dois ponteiros
+        sb.append("procedimento acumula(var s: inteiro, var t: inteiro, n: inteiro)\n")
+          .append("  declare k: inteiro\n")
+          .append("  para k <- 1 ate n faca\n")
+          .append("    s <- s + k % 3\n")
+          .append("    t <- t + s % 2\n")
+          .append("  fim_para\n")
+          .append("fim_procedimento\n");
+        sb.append("algoritmo\n")
+          .append("  declare a[4096], b[4096]: inteiro\n")
+          .append("  declare i, r, x, y, soma: inteiro\n")
+          .append("  para i <- 0 ate 4095 faca\n")
+          .append("    a[i] <- i % 13\n")
+          .append("    b[i] <- i % 7\n")
+          .append("  fim_para\n")
+          .append("  x <- 0\n")
+          .append("  y <- 0\n")
+          .append("  soma <- 0\n")
+          .append("  para r <- 1 ate ").append(n).append(" faca\n")
+          .append("    acumula(x, y, 4096)\n")
+          .append("    para i <- 0 ate 4095 faca\n")
+          .append("      a[i] <- a[i] + b[i]\n")
+          .append("    fim_para\n")
+          .append("  fim_para\n")
+          .append("  para i <- 0 ate 4095 faca\n")
+          .append("    soma <- soma + a[i]\n")
+          .append("  fim_para\n")
+          .append("  escreva(x, \" \", y, \" \", soma, \"\\n\")\n")
+          .append("fim_algoritmo\n");
+        return sb.toString();
+    }
+}
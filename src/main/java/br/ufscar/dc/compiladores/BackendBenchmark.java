@@ -0,0 +1,148 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Compara, para o mesmo programa LA, o caminho gcc (gerar C, compilar com
+ * gcc -O2, executar o binário) com o backend de bytecode (classe oculta
+ * executada pelo JIT), com a máquina de registradores (JanderVM) e com o
+ * interpretador de nós. As saídas são comparadas antes das medições.
+ *
+ * Uso: BackendBenchmark [programa.alg [entrada]] — sem argumentos usa um
+ * programa sintético com laços numéricos.
+ */
+public class BackendBenchmark {
+
+    private static final int AQUECIMENTO = 3;
+    private static final int MEDICOES = 7;
+
+    public static void main(String[] args) throws Exception {
+        CharStream fonte = args.length > 0
+                ? CharStreams.fromPath(Paths.get(args[0]), StandardCharsets.UTF_8)
+                : CharStreams.fromString(programaSintetico());
+        byte[] entrada = args.length > 1 ? Files.readAllBytes(Paths.get(args[1])) : new byte[0];
+
+        JanderCompilador compilador = new JanderCompilador();
+        PrintWriter erros = new PrintWriter(System.err, true);
+        ProgramaContext arvore = compilador.analisar(fonte, erros);
+        if (arvore == null) {
+            System.exit(1);
+        }
+        fonte.seek(0);
+        JanderCompilador.Resultado c = compilador.compilar(fonte);
+
+        // gcc: geração de C + compilação + execução do binário
+        Path dir = Files.createTempDirectory("jander-bench");
+        long inicio = System.nanoTime();
+        Path binario = Medicoes.compilarGcc(dir, "programa", c.saida, "-O2");
+        double compilacaoGcc = (System.nanoTime() - inicio) / 1_000_000.0;
+        byte[] saidaGcc = Medicoes.executar(binario, entrada, Map.of());
+
+        // Bytecode e interpretador, a partir da mesma árvore de nós
+        JanderInterpretador interpretador = new JanderInterpretador();
+        inicio = System.nanoTime();
+        JanderInterpretador.Programa nos = interpretador.compilar(arvore);
+        double compilacaoNos = (System.nanoTime() - inicio) / 1_000_000.0;
+        JanderBytecode backend = new JanderBytecode();
+        inicio = System.nanoTime();
+        JanderBytecode.Programa classe = backend.compilar(nos);
+        double compilacaoBytecode = (System.nanoTime() - inicio) / 1_000_000.0;
+        JanderVM vm = new JanderVM();
+        inicio = System.nanoTime();
+        JanderVM.Programa registradores = new JanderGeradorVM().compilar(nos);
+        double compilacaoVm = (System.nanoTime() - inicio) / 1_000_000.0;
+
+        inicio = System.nanoTime();
+        byte[] saidaBytecode = executar(out -> backend.executar(classe, new ByteArrayInputStream(entrada), out));
+        double primeiraBytecode = (System.nanoTime() - inicio) / 1_000_000.0;
+        byte[] saidaNos = executar(out -> interpretador.executar(nos, new ByteArrayInputStream(entrada), out));
+        byte[] saidaVm = executar(out -> vm.executar(registradores, new ByteArrayInputStream(entrada), out));
+
+        System.out.printf("Saidas: bytecode %s interpretador, bytecode %s gcc, vm %s interpretador%n",
+                Arrays.equals(saidaBytecode, saidaNos) ? "==" : "!=",
+                Arrays.equals(saidaBytecode, saidaGcc) ? "==" : "!=",
+                Arrays.equals(saidaVm, saidaNos) ? "==" : "!=");
+        System.out.printf("Classe gerada: %d bytes; codigo da vm: %d ints%n%n",
+                classe.getTamanhoClasse(), registradores.getTamanhoCodigo());
+
+        double gccExec = medir(() -> Medicoes.executar(binario, entrada, Map.of()));
+        double bytecodeExec = medir(() -> executar(out -> backend.executar(classe, new ByteArrayInputStream(entrada), out)));
+        double vmExec = medir(() -> executar(out -> vm.executar(registradores, new ByteArrayInputStream(entrada), out)));
+        double nosExec = medir(() -> executar(out -> interpretador.executar(nos, new ByteArrayInputStream(entrada), out)));
+
+        System.out.printf("%-14s %14s %18s%n", "caminho", "compilacao ms", "execucao ms (med)");
+        System.out.printf("%-14s %14.2f %18.2f%n", "gcc -O2", compilacaoGcc, gccExec);
+        System.out.printf("%-14s %14.2f %18.2f   (1a execucao %.2f ms)%n", "bytecode",
+                compilacaoNos + compilacaoBytecode, bytecodeExec, primeiraBytecode);
+        System.out.printf("%-14s %14.2f %18.2f%n", "vm", compilacaoNos + compilacaoVm, vmExec);
+        System.out.printf("%-14s %14.2f %18.2f%n", "interpretador", compilacaoNos, nosExec);
+
+        Medicoes.apagar(dir);
+    }
+
+    private interface Execucao {
+        void executar(OutputStream out) throws Exception;
+    }
+
+    private static byte[] executar(Execucao execucao) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        execucao.executar(out);
+        return out.toByteArray();
+    }
+
+    private static double medir(Medicoes.Medicao medicao) throws Exception {
+        return Medicoes.mediana(AQUECIMENTO, MEDICOES, medicao);
+    }
+
+    static String programaSintetico() {
+        return "algoritmo\n"
+                + "  declare crivo[2000000]: inteiro\n"
+                + "  declare i, j, primos, soma, n: inteiro\n"
+                + "  declare x: real\n"
+                + "  n <- 2000000\n"
+                + "  para i <- 2 ate n - 1 faca\n"
+                + "    crivo[i] <- 1\n"
+                + "  fim_para\n"
+                + "  i <- 2\n"
+                + "  enquanto i * i < n faca\n"
+                + "    se crivo[i] = 1 entao\n"
+                + "      j <- i * i\n"
+                + "      enquanto j < n faca\n"
+                + "        crivo[j] <- 0\n"
+                + "        j <- j + i\n"
+                + "      fim_enquanto\n"
+                + "    fim_se\n"
+                + "    i <- i + 1\n"
+                + "  fim_enquanto\n"
+                + "  primos <- 0\n"
+                + "  soma <- 0\n"
+                + "  para i <- 2 ate n - 1 faca\n"
+                + "    se crivo[i] = 1 entao\n"
+                + "      primos <- primos + 1\n"
+                + "      soma <- (soma + i) % 1000007\n"
+                + "    fim_se\n"
+                + "  fim_para\n"
+                + "  x <- 0.0\n"
+                + "  para i <- 1 ate 3000 faca\n"
+                + "    para j <- 1 ate 1000 faca\n"
+                + "      x <- x + (i % 7) * 0.5 - (j % 3)\n"
+                + "    fim_para\n"
+                + "  fim_para\n"
+                + "  escreva(primos, \" \", soma, \" \", x, \"\\n\")\n"
+                + "fim_algoritmo\n";
+    }
+}
@@ -0,0 +1,213 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Cache local de binários gerados pelo gcc, no estilo do ccache. A chave é o
+ * SHA-256 do C gerado, da versão do gcc e das flags; cada binário fica em
+ * DIR/xx/chave (xx = dois primeiros dígitos), então o conteúdo determina o nome.
+ *
+ * Não há travas: entradas são escritas num arquivo temporário e publicadas por
+ * rename atômico, e leituras copiam para um temporário ao lado do destino antes
+ * de renomeá-lo. Várias JVMs podem usar o mesmo diretório ao mesmo tempo; no
+ * pior caso duas gravam a mesma entrada, com o mesmo conteúdo. Acertos atualizam
+ * a data de modificação, e quando o total passa do limite as entradas mais
+ * antigas são apagadas até sobrar 90% dele (LRU aproximado). O total fica em
+ * memória, somado a cada gravação; o diretório só é percorrido de novo quando
+ * ele passa do limite.
+ */
+public class CacheBinarios {
+
+    private final Path diretorio;
+    private final long limiteBytes;
+    // Saída de "gcc --version" por comando, calculada uma vez
+    private final Map<String, String> versoes = new ConcurrentHashMap<>();
+    private final AtomicInteger acertos = new AtomicInteger();
+    private final AtomicInteger falhas = new AtomicInteger();
+    private final AtomicInteger removidos = new AtomicInteger();
+    // Bytes das entradas: lido do disco na primeira gravação e atualizado a cada gravação e
+    // remoção; o que outros processos gravam ou apagam só entra na próxima listagem
+    private long ocupado = -1;
+
+    public CacheBinarios(Path diretorio, long limiteBytes) throws IOException {
+        this.diretorio = diretorio;
+        this.limiteBytes = limiteBytes;
+        Files.createDirectories(diretorio);
+    }
+
+    /** Chave de um binário: hash do comando gcc, da versão dele, das flags e do código C */
+    public String chave(String gcc, List<String> flags, String codigoC) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            sha.update(versoes.computeIfAbsent(gcc, CacheBinarios::versao).getBytes(StandardCharsets.UTF_8));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (String flag : flags) {
+            sha.update((byte) 0);
+            sha.update(flag.getBytes(StandardCharsets.UTF_8));
+        }
+        sha.update((byte) 1);
+        sha.update(codigoC.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    private static String versao(String gcc) {
+        try {
+            Process p = new ProcessBuilder(gcc, "--version").redirectErrorStream(true).start();
+            String saida;
+            try (InputStream in = p.getInputStream()) {
+                saida = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            p.waitFor();
+            return gcc + "\n" + saida;
+        } catch (IOException e) {
+            throw new UncheckedIOException("falha ao executar " + gcc + " --version", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrompido", e);
+        }
+    }
+
+    private Path entrada(String chave) {
+        return diretorio.resolve(chave.substring(0, 2)).resolve(chave);
+    }
+
+    /** Copia o binário da chave para destino; false (falha) se ele não está no cache */
+    public boolean buscar(String chave, Path destino) throws IOException {
+        Path origem = entrada(chave);
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            Files.copy(origem, temporario, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            // Ausente, ou apagada por outro processo no meio da cópia
+            Files.deleteIfExists(temporario);
+            falhas.incrementAndGet();
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(origem, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Removida depois da cópia: o destino já está completo
+        }
+        acertos.incrementAndGet();
+        return true;
+    }
+
+    /** Publica o binário compilado sob a chave e aplica o limite de tamanho */
+    public void guardar(String chave, Path binario) throws IOException {
+        Path destino = entrada(chave);
+        Files.createDirectories(destino.getParent());
+        Path temporario = destino.resolveSibling(".tmp-" + UUID.randomUUID());
+        long tamanho;
+        try {
+            Files.copy(binario, temporario, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.setLastModifiedTime(temporario, FileTime.fromMillis(System.currentTimeMillis()));
+            tamanho = Files.size(temporario);
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        limitar(tamanho);
+    }
+
+    private record Entrada(Path arquivo, long tamanho, long modificacao) {
+    }
+
+    // Soma a entrada gravada ao total; se ele passar do limite, lista o diretório e apaga as
+    // entradas menos usadas recentemente enquanto o total passar de 90% do limite
+    private synchronized void limitar(long gravados) throws IOException {
+        if (ocupado < 0) {
+            // Primeira gravação: a listagem já inclui a entrada nova
+            ocupado = ocupadoNoDisco(listar());
+        } else {
+            ocupado += gravados;
+        }
+        if (ocupado <= limiteBytes) {
+            return;
+        }
+        List<Entrada> entradas = listar();
+        long total = ocupadoNoDisco(entradas);
+        if (total > limiteBytes) {
+            entradas.sort(Comparator.comparingLong(Entrada::modificacao));
+            for (Entrada e : entradas) {
+                if (total <= limiteBytes * 9 / 10) {
+                    break;
+                }
+                if (Files.deleteIfExists(e.arquivo())) {
+                    removidos.incrementAndGet();
+                }
+                total -= e.tamanho();
+            }
+        }
+        ocupado = total;
+    }
+
+    private static long ocupadoNoDisco(List<Entrada> entradas) {
+        return entradas.stream().mapToLong(Entrada::tamanho).sum();
+    }
+
+    private List<Entrada> listar() throws IOException {
+        List<Entrada> entradas = new ArrayList<>();
+        try (Stream<Path> arquivos = Files.walk(diretorio, 2)) {
+            for (Path p : (Iterable<Path>) arquivos::iterator) {
+                if (p.getFileName().toString().startsWith(".tmp-")) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes atributos = Files.readAttributes(p, BasicFileAttributes.class);
+                    if (atributos.isRegularFile()) {
+                        entradas.add(new Entrada(p, atributos.size(), atributos.lastModifiedTime().toMillis()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Apagada por outro processo durante a listagem
+                }
+            }
+        }
+        return entradas;
+    }
+
+    public int getAcertos() {
+        return acertos.get();
+    }
+
+    public int getFalhas() {
+        return falhas.get();
+    }
+
+    public void imprimirRelatorio(PrintStream out) throws IOException {
+        int consultas = acertos.get() + falhas.get();
+        long ocupado = ocupadoNoDisco(listar());
+        out.printf("Cache de binarios (%s): %d acerto(s), %d falha(s)%s; %d removido(s); %.1f de %.1f MB ocupados%n",
+                diretorio, acertos.get(), falhas.get(),
+                consultas > 0 ? String.format(" (%.0f%% de acertos)", 100.0 * acertos.get() / consultas) : "",
+                removidos.get(), ocupado / 1048576.0, limiteBytes / 1048576.0);
+    }
+}
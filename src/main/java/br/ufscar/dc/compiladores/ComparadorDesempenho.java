@@ -0,0 +1,361 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.CharStreams;
+
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Verificação de regressões de desempenho do compilador. Passa um corpus fixo
+ * (os .alg sem erros de exemplos/, fora das subpastas como exemplos/regressao/,
+ * mais um programa sintético grande) pelas fases léxico, sintático, semântico
+ * e geração de C, medindo vazão (KB de fonte por segundo) e alocação (bytes
+ * alocados por byte de fonte) de cada uma.
+ *
+ * Cada medição roda em várias JVMs separadas (forks), para que JIT, layout do
+ * heap e ruído da máquina entrem na variância; cada fork devolve a mediana das
+ * suas iterações. A comparação com a linha de base usa o teste t de Welch
+ * (unilateral, 95%): uma fase só regride se piorar mais que o limiar e a
+ * diferença for significativa.
+ *
+ * Uso: ComparadorDesempenho [--forks N] [--limiar PCT] [--corpus DIR]
+ *          (--gravar ARQUIVO | --comparar ARQUIVO)
+ * Com --comparar termina com código 1 se alguma fase regrediu.
+ */
+public class ComparadorDesempenho {
+
+    private static final int VERSAO = 1;
+    private static final String[] FASES = {"lexico", "sintatico", "semantico", "geracao"};
+    // Aquecimento por tempo, para o JIT compilar as quatro fases antes das medições
+    private static final long AQUECIMENTO_MS = 4000;
+    private static final int MEDICOES = 30;
+
+    /** Média e desvio padrão amostral de uma métrica sobre os forks */
+    public record Amostra(double media, double desvio, int n) {
+        static Amostra de(double[] valores) {
+            double media = Arrays.stream(valores).average().orElse(0);
+            double soma = 0;
+            for (double v : valores) {
+                soma += (v - media) * (v - media);
+            }
+            return new Amostra(media, valores.length > 1 ? Math.sqrt(soma / (valores.length - 1)) : 0, valores.length);
+        }
+    }
+
+    /** Vazão em KB/s e alocação em bytes por byte de fonte de uma fase */
+    public record Fase(String nome, Amostra vazao, Amostra alocacao) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int forks = 5;
+        double limiar = 10;
+        Path corpus = Paths.get("exemplos");
+        Path gravar = null;
+        Path comparar = null;
+        boolean fork = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--forks":
+                    forks = Integer.parseInt(args[++i]);
+                    break;
+                case "--limiar":
+                    limiar = Double.parseDouble(args[++i]);
+                    break;
+                case "--corpus":
+                    corpus = Paths.get(args[++i]);
+                    break;
+                case "--gravar":
+                    gravar = Paths.get(args[++i]);
+                    break;
+                case "--comparar":
+                    comparar = Paths.get(args[++i]);
+                    break;
+                case "--fork":
+                    fork = true;
+                    break;
+                default:
+                    System.err.println("Opcao desconhecida: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        List<String> fontes = carregarCorpus(corpus);
+        if (fork) {
+            medirNoFork(fontes);
+            return;
+        }
+        if ((gravar == null) == (comparar == null)) {
+            System.err.println("Uso: ComparadorDesempenho [--forks N] [--limiar PCT] [--corpus DIR] "
+                    + "(--gravar ARQUIVO | --comparar ARQUIVO)");
+            System.exit(2);
+        }
+
+        String hash = hashCorpus(fontes);
+        // Linha de base de outro corpus falha antes dos forks
+        Map<String, Fase> base = comparar != null ? lerLinhaBase(comparar, hash) : null;
+        long bytes = fontes.stream().mapToLong(String::length).sum();
+        System.out.printf("Corpus: %d programa(s), %d bytes (%s); %d fork(s) x %d medicoes%n",
+                fontes.size(), bytes, hash.substring(0, 12), forks, MEDICOES);
+        List<Fase> atuais = medir(corpus, forks, bytes);
+
+        if (gravar != null) {
+            gravarLinhaBase(gravar, hash, atuais);
+            imprimir(atuais);
+            System.out.println("Linha de base gravada em " + gravar);
+            return;
+        }
+        if (comparar(base, atuais, limiar) > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Programas do corpus em ordem fixa; os que têm erros ficam de fora, e os casos de
+    // regressão nas subpastas também, para não mudar o corpus a cada caso novo
+    static List<String> carregarCorpus(Path diretorio) throws IOException {
+        List<Path> arquivos;
+        try (Stream<Path> s = Files.list(diretorio)) {
+            arquivos = s.filter(p -> p.toString().endsWith(".alg")).sorted().collect(Collectors.toList());
+        }
+        List<String> fontes = new ArrayList<>();
+        JanderCompilador compilador = new JanderCompilador();
+        for (Path arquivo : arquivos) {
+            String fonte = Files.readString(arquivo, StandardCharsets.UTF_8);
+            if (compilador.compilar(CharStreams.fromString(fonte), new PrintWriter(Writer.nullWriter()))) {
+                fontes.add(fonte);
+            }
+        }
+        fontes.add(GeradorCBenchmark.gerarPrograma(40, 20));
+        return fontes;
+    }
+
+    private static String hashCorpus(List<String> fontes) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        for (String fonte : fontes) {
+            sha.update(fonte.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    // Executado em cada fork: imprime "fase nanos bytes" com as medianas por iteração do corpus
+    private static void medirNoFork(List<String> fontes) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[][] tempos = new long[FASES.length][MEDICOES];
+        long[][] alocacoes = new long[FASES.length][MEDICOES];
+        long[] tempo = new long[FASES.length];
+        long[] alocacao = new long[FASES.length];
+        long fimAquecimento = System.nanoTime() + AQUECIMENTO_MS * 1_000_000;
+        while (System.nanoTime() < fimAquecimento) {
+            iteracao(fontes, threads, tempo, alocacao);
+        }
+        for (int i = 0; i < MEDICOES; i++) {
+            iteracao(fontes, threads, tempo, alocacao);
+            for (int f = 0; f < FASES.length; f++) {
+                tempos[f][i] = tempo[f];
+                alocacoes[f][i] = alocacao[f];
+            }
+        }
+        for (int f = 0; f < FASES.length; f++) {
+            Arrays.sort(tempos[f]);
+            Arrays.sort(alocacoes[f]);
+            System.out.println(FASES[f] + " " + tempos[f][MEDICOES / 2] + " " + alocacoes[f][MEDICOES / 2]);
+        }
+    }
+
+    // Compila o corpus uma vez, somando tempo e alocação de cada fase
+    private static void iteracao(List<String> fontes, com.sun.management.ThreadMXBean threads,
+                                 long[] tempo, long[] alocacao) {
+        Arrays.fill(tempo, 0);
+        Arrays.fill(alocacao, 0);
+        for (String fonte : fontes) {
+            long t0 = System.nanoTime();
+            long a0 = threads.getCurrentThreadAllocatedBytes();
+            FluxoTokensCompacto tokens = new FluxoTokensCompacto(new JanderLexer(CharStreams.fromString(fonte)));
+            tokens.preencher();
+            long t1 = System.nanoTime();
+            long a1 = threads.getCurrentThreadAllocatedBytes();
+            ProgramaContext arvore = new JanderParser(tokens).programa();
+            long t2 = System.nanoTime();
+            long a2 = threads.getCurrentThreadAllocatedBytes();
+            JanderSemantico semantico = new JanderSemantico(new PrintWriter(Writer.nullWriter()));
+            semantico.visit(arvore);
+            long t3 = System.nanoTime();
+            long a3 = threads.getCurrentThreadAllocatedBytes();
+            // Geração sequencial, para que toda a alocação seja desta thread
+            JanderGeradorC gerador = new JanderGeradorC(semantico);
+            gerador.setThreads(1);
+            gerador.visit(arvore);
+            gerador.getOutput();
+            long t4 = System.nanoTime();
+            long a4 = threads.getCurrentThreadAllocatedBytes();
+            tempo[0] += t1 - t0;
+            tempo[1] += t2 - t1;
+            tempo[2] += t3 - t2;
+            tempo[3] += t4 - t3;
+            alocacao[0] += a1 - a0;
+            alocacao[1] += a2 - a1;
+            alocacao[2] += a3 - a2;
+            alocacao[3] += a4 - a3;
+        }
+    }
+
+    // Roda os forks e resume cada fase sobre eles
+    private static List<Fase> medir(Path corpus, int forks, long bytes) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        double[][] vazoes = new double[FASES.length][forks];
+        double[][] alocacoes = new double[FASES.length][forks];
+        for (int k = 0; k < forks; k++) {
+            Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ComparadorDesempenho.class.getName(), "--fork", "--corpus", corpus.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            p.getOutputStream().close();
+            List<String> linhas;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                linhas = in.lines().collect(Collectors.toList());
+            }
+            if (p.waitFor() != 0 || linhas.size() != FASES.length) {
+                throw new IOException("fork " + (k + 1) + " falhou");
+            }
+            for (int f = 0; f < FASES.length; f++) {
+                String[] campos = linhas.get(f).split(" ");
+                vazoes[f][k] = bytes / 1024.0 / (Long.parseLong(campos[1]) / 1e9);
+                alocacoes[f][k] = (double) Long.parseLong(campos[2]) / bytes;
+            }
+            System.out.printf("  fork %d/%d concluido%n", k + 1, forks);
+        }
+        List<Fase> fases = new ArrayList<>();
+        for (int f = 0; f < FASES.length; f++) {
+            fases.add(new Fase(FASES[f], Amostra.de(vazoes[f]), Amostra.de(alocacoes[f])));
+        }
+        return fases;
+    }
+
+    private static void gravarLinhaBase(Path arquivo, String hash, List<Fase> fases) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# jander-desempenho ").append(VERSAO).append('\n');
+        sb.append(String.format("# java %s, %s %s, %d nucleo(s)%n", System.getProperty("java.version"),
+                System.getProperty("os.name"), System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors()));
+        sb.append("# fase vazao_kb_s desvio alocacao_b_por_b desvio forks\n");
+        sb.append("corpus ").append(hash).append('\n');
+        for (Fase f : fases) {
+            sb.append(String.format(Locale.ROOT, "%s %.3f %.3f %.3f %.3f %d%n", f.nome(), f.vazao().media(),
+                    f.vazao().desvio(), f.alocacao().media(), f.alocacao().desvio(), f.vazao().n()));
+        }
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        Files.writeString(arquivo, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Fase> lerLinhaBase(Path arquivo, String hash) throws IOException {
+        Map<String, Fase> fases = new LinkedHashMap<>();
+        List<String> linhas = Files.readAllLines(arquivo, StandardCharsets.UTF_8);
+        if (linhas.isEmpty() || !linhas.get(0).equals("# jander-desempenho " + VERSAO)) {
+            throw new IOException(arquivo + ": formato de linha de base desconhecido; grave de novo com --gravar");
+        }
+        for (String linha : linhas) {
+            String[] campos = linha.trim().split("\\s+");
+            if (campos[0].equals("corpus")) {
+                if (!campos[1].equals(hash)) {
+                    throw new IOException(arquivo + ": linha de base medida com outro corpus; grave de novo com --gravar");
+                }
+            } else if (campos.length == 6 && !campos[0].startsWith("#")) {
+                int n = Integer.parseInt(campos[5]);
+                fases.put(campos[0], new Fase(campos[0],
+                        new Amostra(Double.parseDouble(campos[1]), Double.parseDouble(campos[2]), n),
+                        new Amostra(Double.parseDouble(campos[3]), Double.parseDouble(campos[4]), n)));
+            }
+        }
+        return fases;
+    }
+
+    private static void imprimir(List<Fase> fases) {
+        System.out.printf("%-10s %14s %9s %16s %9s%n", "fase", "vazao (KB/s)", "desvio", "alocacao (B/B)", "desvio");
+        for (Fase f : fases) {
+            System.out.printf("%-10s %14.1f %9.1f %16.1f %9.2f%n", f.nome(), f.vazao().media(), f.vazao().desvio(),
+                    f.alocacao().media(), f.alocacao().desvio());
+        }
+    }
+
+    // Imprime a comparação e devolve quantas métricas regrediram
+    static int comparar(Map<String, Fase> base, List<Fase> atuais, double limiar) {
+        int regressoes = 0;
+        System.out.printf("%-10s %-9s %12s %12s %9s  %s%n", "fase", "metrica", "base", "atual", "variacao", "status");
+        for (Fase atual : atuais) {
+            Fase anterior = base.get(atual.nome());
+            if (anterior == null) {
+                System.out.printf("%-10s (sem linha de base)%n", atual.nome());
+                continue;
+            }
+            // Menos vazão e mais alocação são piores
+            if (!linha(atual.nome(), "vazao", anterior.vazao(), atual.vazao(), -1, limiar)) {
+                regressoes++;
+            }
+            if (!linha(atual.nome(), "alocacao", anterior.alocacao(), atual.alocacao(), 1, limiar)) {
+                regressoes++;
+            }
+        }
+        System.out.println(regressoes == 0 ? "Sem regressoes (limiar " + limiar + "%)"
+                : regressoes + " regressao(oes) acima de " + limiar + "%");
+        return regressoes;
+    }
+
+    // false se a métrica piorou (no sentido indicado) mais que o limiar com significância
+    private static boolean linha(String fase, String metrica, Amostra base, Amostra atual, int pior, double limiar) {
+        double variacao = 100 * (atual.media() - base.media()) / base.media();
+        boolean significativa = significativa(base, atual);
+        boolean regrediu = pior * variacao > limiar && significativa;
+        String status = regrediu ? "REGRESSAO" : pior * variacao < -limiar && significativa ? "melhora" : "ok";
+        System.out.printf("%-10s %-9s %12.1f %12.1f %+8.1f%%  %s%n", fase, metrica, base.media(), atual.media(),
+                variacao, status);
+        return !regrediu;
+    }
+
+    /** Teste t de Welch, unilateral a 95%: as médias diferem além do ruído entre forks? */
+    static boolean significativa(Amostra a, Amostra b) {
+        if (a.n() < 2 || b.n() < 2) {
+            return true;
+        }
+        double va = a.desvio() * a.desvio() / a.n();
+        double vb = b.desvio() * b.desvio() / b.n();
+        if (va + vb == 0) {
+            return a.media() != b.media();
+        }
+        double t = Math.abs(a.media() - b.media()) / Math.sqrt(va + vb);
+        // Graus de liberdade de Welch-Satterthwaite
+        double gl = (va + vb) * (va + vb) / (va * va / (a.n() - 1) + vb * vb / (b.n() - 1));
+        return t > tCritico((int) Math.floor(gl));
+    }
+
+    // Quantil 0,95 da distribuição t de Student
+    private static final double[] T95 = {6.314, 2.920, 2.353, 2.132, 2.015, 1.943, 1.895, 1.860, 1.833, 1.812,
+        1.796, 1.782, 1.771, 1.761, 1.753, 1.746, 1.740, 1.734, 1.729, 1.725,
+        1.721, 1.717, 1.714, 1.711, 1.708, 1.706, 1.703, 1.701, 1.699, 1.697};
+
+    private static double tCritico(int grausLiberdade) {
+        if (grausLiberdade < 1) {
+            return T95[0];
+        }
+        return grausLiberdade <= T95.length ? T95[grausLiberdade - 1] : 1.645;
+    }
+}
@@ -0,0 +1,231 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Compila um lote de programas LA para C em três estágios sobrepostos:
+ * leitura antecipada dos fontes (uma thread virtual por arquivo), compilação
+ * em threads de plataforma (uma por núcleo) e gravação do .c de cada arquivo
+ * (de novo em threads virtuais). Assim a latência de E/S de um arquivo fica
+ * escondida atrás da compilação dos outros.
+ *
+ * Um semáforo limita quantos arquivos estão em voo entre o início da leitura
+ * e o fim da gravação: quando a compilação fica para trás a leitura para, o
+ * que mantém a memória limitada mesmo com milhares de arquivos. Cada .c é
+ * gravado inteiro por uma única thread e o relatório sai na ordem da entrada.
+ */
+public class CompiladorLote {
+
+    /** Resultado de um arquivo do lote */
+    public static class Relatorio {
+        public final Path fonte;
+        public final Path saida;
+        public boolean sucesso;
+        public String erro; // Falha de leitura ou gravação (null se não houve)
+        public long compilacaoNanos;
+
+        Relatorio(Path fonte, Path saida) {
+            this.fonte = fonte;
+            this.saida = saida;
+        }
+    }
+
+    // Fonte lido, à espera de uma thread de compilação; FIM encerra as threads
+    private record Lido(int indice, String fonte) {
+    }
+
+    private static final Lido FIM = new Lido(-1, null);
+
+    private final JanderCompilador compilador;
+    private final Path diretorioSaida;
+    private final int jobs;
+    private final int emVoo;
+    private final AtomicLong bytesLidos = new AtomicLong();
+    private final AtomicLong bytesGravados = new AtomicLong();
+
+    public CompiladorLote(JanderCompilador compilador, Path diretorioSaida, int jobs, int emVoo) {
+        this.compilador = compilador;
+        this.diretorioSaida = diretorioSaida;
+        this.jobs = Math.max(1, Math.min(jobs, Runtime.getRuntime().availableProcessors()));
+        this.emVoo = Math.max(this.jobs, emVoo);
+    }
+
+    /** Compila os fontes e devolve os relatórios na ordem da entrada; cada .c leva o nome do fonte */
+    public List<Relatorio> executar(List<Path> fontes, PrintStream out) throws IOException, InterruptedException {
+        List<Path> nomes = new ArrayList<>();
+        for (Path fonte : fontes) {
+            nomes.add(fonte.getFileName());
+        }
+        return executar(fontes, nomes, out);
+    }
+
+    /**
+     * Como executar(fontes, out), com o .c de cada fonte no caminho relativo nomes[i]
+     * dentro do diretório de saída (a/teste.alg -> a/teste.c). Dois fontes com a mesma
+     * saída não são sobrescritos: o segundo é recusado com erro
+     */
+    public List<Relatorio> executar(List<Path> fontes, List<Path> nomes, PrintStream out)
+            throws IOException, InterruptedException {
+        Files.createDirectories(diretorioSaida);
+        List<Relatorio> relatorios = new ArrayList<>();
+        Map<Path, Path> saidas = new HashMap<>(); // Saída -> fonte que a usa
+        for (int i = 0; i < fontes.size(); i++) {
+            Relatorio r = new Relatorio(fontes.get(i), diretorioSaida.resolve(nomeSaida(nomes.get(i))).normalize());
+            Path anterior = saidas.putIfAbsent(r.saida, r.fonte);
+            if (anterior != null) {
+                r.erro = "saida " + r.saida + " ja e usada por " + anterior;
+            }
+            relatorios.add(r);
+        }
+
+        Semaphore vagas = new Semaphore(emVoo);
+        BlockingQueue<Lido> lidos = new LinkedBlockingQueue<>();
+        CountDownLatch concluidos = new CountDownLatch(fontes.size());
+        Ordenador ordenador = new Ordenador(relatorios, out);
+
+        List<Thread> compiladores = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            Thread t = new Thread(() -> compilar(lidos, relatorios, vagas, concluidos, ordenador), "lote-" + i);
+            t.start();
+            compiladores.add(t);
+        }
+
+        // Leitura antecipada: para quando há emVoo arquivos entre leitura e gravação
+        for (int i = 0; i < fontes.size(); i++) {
+            vagas.acquire();
+            int indice = i;
+            if (relatorios.get(indice).erro != null) {
+                concluir(indice, vagas, concluidos, ordenador);
+                continue;
+            }
+            Thread.ofVirtual().name("leitura-" + i).start(() -> {
+                Relatorio r = relatorios.get(indice);
+                try {
+                    byte[] bytes = Files.readAllBytes(r.fonte);
+                    bytesLidos.addAndGet(bytes.length);
+                    lidos.add(new Lido(indice, new String(bytes, StandardCharsets.UTF_8)));
+                } catch (IOException | RuntimeException e) {
+                    r.erro = "leitura: " + e.getMessage();
+                    concluir(indice, vagas, concluidos, ordenador);
+                }
+            });
+        }
+
+        concluidos.await();
+        for (int i = 0; i < jobs; i++) {
+            lidos.add(FIM);
+        }
+        for (Thread t : compiladores) {
+            t.join();
+        }
+        return relatorios;
+    }
+
+    private void compilar(BlockingQueue<Lido> lidos, List<Relatorio> relatorios, Semaphore vagas,
+                          CountDownLatch concluidos, Ordenador ordenador) {
+        while (true) {
+            Lido lido;
+            try {
+                lido = lidos.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (lido == FIM) {
+                return;
+            }
+            Relatorio r = relatorios.get(lido.indice());
+            long inicio = System.nanoTime();
+            JanderCompilador.Resultado resultado;
+            try {
+                resultado = compilador.compilar(CharStreams.fromString(lido.fonte(), r.fonte.toString()));
+            } catch (RuntimeException | Error e) {
+                // Inclui StackOverflowError de fontes muito aninhados: sem concluir, executar
+                // esperaria para sempre por este arquivo
+                r.erro = "compilacao: " + e;
+                concluir(lido.indice(), vagas, concluidos, ordenador);
+                continue;
+            }
+            r.compilacaoNanos = System.nanoTime() - inicio;
+            r.sucesso = resultado.sucesso;
+
+            // A gravação não ocupa a thread de compilação
+            Thread.ofVirtual().name("gravacao-" + lido.indice()).start(() -> {
+                try {
+                    byte[] bytes = resultado.saida.getBytes(StandardCharsets.UTF_8);
+                    Files.createDirectories(r.saida.getParent());
+                    Files.write(r.saida, bytes);
+                    bytesGravados.addAndGet(bytes.length);
+                } catch (IOException | RuntimeException e) {
+                    r.erro = "gravacao: " + e.getMessage();
+                } finally {
+                    concluir(lido.indice(), vagas, concluidos, ordenador);
+                }
+            });
+        }
+    }
+
+    private static void concluir(int indice, Semaphore vagas, CountDownLatch concluidos, Ordenador ordenador) {
+        ordenador.pronto(indice);
+        vagas.release();
+        concluidos.countDown();
+    }
+
+    // Imprime as falhas na ordem da entrada, à medida que os arquivos anteriores terminam
+    private static class Ordenador {
+        private final List<Relatorio> relatorios;
+        private final PrintStream out;
+        private final Set<Integer> prontos = new HashSet<>();
+        private int proximo = 0;
+
+        Ordenador(List<Relatorio> relatorios, PrintStream out) {
+            this.relatorios = relatorios;
+            this.out = out;
+        }
+
+        synchronized void pronto(int indice) {
+            prontos.add(indice);
+            while (prontos.remove(proximo)) {
+                Relatorio r = relatorios.get(proximo);
+                if (r.erro != null) {
+                    out.println(r.fonte + ": " + r.erro);
+                } else if (!r.sucesso) {
+                    out.println(r.fonte + ": erros de compilacao (mensagens em " + r.saida + ")");
+                }
+                proximo++;
+            }
+        }
+    }
+
+    // programa.alg -> programa.c, mantendo os diretórios de um caminho relativo
+    static Path nomeSaida(Path fonte) {
+        String nome = fonte.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        return fonte.resolveSibling((ponto > 0 ? nome.substring(0, ponto) : nome) + ".c");
+    }
+
+    public void imprimirResumo(List<Relatorio> relatorios, long totalNanos, PrintStream out) {
+        long ok = relatorios.stream().filter(r -> r.sucesso && r.erro == null).count();
+        long compilacao = relatorios.stream().mapToLong(r -> r.compilacaoNanos).sum();
+        out.printf("Lote: %d arquivo(s), %d ok, %d com erros; %d KB lidos, %d KB gravados%n",
+                relatorios.size(), ok, relatorios.size() - ok, bytesLidos.get() / 1024, bytesGravados.get() / 1024);
+        out.printf("Tempo total %.2f ms; compilacao somada %.2f ms em %d thread(s)%n",
+                totalNanos / 1e6, compilacao / 1e6, jobs);
+    }
+}
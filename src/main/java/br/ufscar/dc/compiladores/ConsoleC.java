@@ -0,0 +1,213 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Emulação da entrada e saída padrão do C usadas pelo código gerado por
+ * JanderGeradorC (scanf com %d e %f, gets e printf com %d, %f e %s), para que
+ * os executores em processo produzam byte a byte a saída do programa compilado
+ * pelo gcc. Textos são mantidos em ISO-8859-1, um char por byte, como no C.
+ */
+public class ConsoleC {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int posicao;
+    private int limite;
+
+    private final OutputStream out;
+    private final StringBuilder saida = new StringBuilder();
+
+    // Resultado da última leitura: false quando o scanf/gets do C não teria alterado a variável
+    private boolean leituraOk;
+
+    public ConsoleC(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /** Converte um texto do fonte (Unicode) para a representação em bytes usada em tempo de execução */
+    public static String paraBytes(String texto) {
+        return new String(texto.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+
+    /** Interpreta as sequências de escape de uma CADEIA, sem as aspas externas, como o compilador C faria */
+    public static String cadeiaC(String cadeia) {
+        String conteudo = cadeia.substring(1, cadeia.length() - 1);
+        StringBuilder sb = new StringBuilder(conteudo.length());
+        for (int i = 0; i < conteudo.length(); i++) {
+            char c = conteudo.charAt(i);
+            if (c != '\\' || i + 1 == conteudo.length()) {
+                sb.append(c);
+                continue;
+            }
+            char e = conteudo.charAt(++i);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                default: sb.append(e); break;
+            }
+        }
+        return paraBytes(sb.toString());
+    }
+
+    private int espiar() {
+        if (posicao == limite) {
+            try {
+                limite = in.read(buffer, 0, buffer.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            posicao = 0;
+            if (limite <= 0) {
+                limite = 0;
+                return -1;
+            }
+        }
+        return buffer[posicao] & 0xFF;
+    }
+
+    private void avancar() {
+        posicao++;
+    }
+
+    private void pularEspacos() {
+        int c;
+        while ((c = espiar()) == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B) {
+            avancar();
+        }
+    }
+
+    private static boolean digito(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public boolean leituraOk() {
+        return leituraOk;
+    }
+
+    /** scanf("%d") */
+    public int lerInteiro() {
+        pularEspacos();
+        boolean negativo = false;
+        int c = espiar();
+        if (c == '-' || c == '+') {
+            negativo = c == '-';
+            avancar();
+        }
+        long valor = 0;
+        boolean algum = false;
+        while (digito(c = espiar())) {
+            valor = valor * 10 + (c - '0');
+            algum = true;
+            avancar();
+        }
+        leituraOk = algum;
+        return (int) (negativo ? -valor : valor);
+    }
+
+    /** scanf("%f") em uma variável float */
+    public double lerReal() {
+        pularEspacos();
+        StringBuilder sb = new StringBuilder();
+        int c = espiar();
+        if (c == '-' || c == '+') {
+            sb.append((char) c);
+            avancar();
+        }
+        boolean algum = false;
+        while (digito(c = espiar())) {
+            sb.append((char) c);
+            algum = true;
+            avancar();
+        }
+        if (c == '.') {
+            sb.append('.');
+            avancar();
+            while (digito(c = espiar())) {
+                sb.append((char) c);
+                algum = true;
+                avancar();
+            }
+        }
+        if (algum && (c == 'e' || c == 'E')) {
+            sb.append('e');
+            avancar();
+            c = espiar();
+            if (c == '-' || c == '+') {
+                sb.append((char) c);
+                avancar();
+            }
+            boolean expoente = false;
+            while (digito(c = espiar())) {
+                sb.append((char) c);
+                expoente = true;
+                avancar();
+            }
+            if (!expoente) sb.append('0');
+        }
+        leituraOk = algum;
+        if (!algum) return 0;
+        return Float.parseFloat(sb.toString());
+    }
+
+    /** gets(): lê até o fim da linha, descartando o '\n' */
+    public String lerLinha() {
+        StringBuilder sb = new StringBuilder();
+        int c = espiar();
+        if (c == -1) {
+            leituraOk = false;
+            return "";
+        }
+        while ((c = espiar()) != -1 && c != '\n') {
+            sb.append((char) c);
+            avancar();
+        }
+        if (c == '\n') avancar();
+        leituraOk = true;
+        return sb.toString();
+    }
+
+    public void escrever(String texto) {
+        saida.append(texto);
+        if (saida.length() >= 8192) descarregar();
+    }
+
+    public void escreverInteiro(int valor) {
+        saida.append(valor);
+        if (saida.length() >= 8192) descarregar();
+    }
+
+    public void escreverReal(double valor) {
+        saida.append(formatarReal(valor));
+        if (saida.length() >= 8192) descarregar();
+    }
+
+    /** printf("%f") de um valor float/double, com o mesmo arredondamento da glibc */
+    public static String formatarReal(double valor) {
+        boolean negativo = Double.doubleToRawLongBits(valor) < 0;
+        if (Double.isNaN(valor)) return negativo ? "-nan" : "nan";
+        if (Double.isInfinite(valor)) return negativo ? "-inf" : "inf";
+        String absoluto = new BigDecimal(Math.abs(valor)).setScale(6, RoundingMode.HALF_EVEN).toPlainString();
+        return negativo ? "-" + absoluto : absoluto;
+    }
+
+    public void descarregar() {
+        try {
+            out.write(saida.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        saida.setLength(0);
+    }
+}
@@ -0,0 +1,302 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+import org.antlr.v4.runtime.CharStreams;
+
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Curvas de crescimento do compilador: compila famílias de programas LA
+ * parametrizadas por um tamanho n (número de comandos, profundidade de
+ * aninhamento, número de identificadores, largura de intervalo no caso) e
+ * mede, por fase, o tempo e o pico de heap. Para cada família e fase ajusta
+ * por mínimos quadrados o expoente k de t ~ n^k em escala log-log e o de
+ * t / (n log n); se o segundo passar de TOLERANCIA a fase cresce mais rápido
+ * que n log n e é marcada.
+ *
+ * O pico de heap de uma fase é o maior uso dos pools do heap durante ela,
+ * descontado o uso logo após um System.gc() feito antes; inclui lixo ainda não
+ * coletado, então serve para comparar tamanhos, não como valor absoluto.
+ *
+ * Uso: CurvasCrescimento [--csv ARQUIVO] [--repeticoes N] [--familia NOME]
+ * Grava o CSV (familia,n,fase,ms,heap_kb), pronto para gráficos, e termina
+ * com código 1 se alguma curva foi marcada.
+ */
+public class CurvasCrescimento {
+
+    private static final String[] FASES = {"lexico", "sintatico", "semantico", "geracao"};
+    // Folga no expoente de t / (n log n) para ruído de medição
+    private static final double TOLERANCIA = 0.25;
+    private static final int AQUECIMENTO = 2;
+    // Abaixo disso a medida é ruído (nanoTime com JIT, regiões do G1): o ponto fica fora do ajuste
+    private static final double RESOLUCAO_MS = 0.5;
+    private static final double RESOLUCAO_KB = 2048;
+
+    /** Família de programas: nome, tamanhos e gerador do fonte para cada tamanho */
+    record Familia(String nome, String dimensao, int[] tamanhos, IntFunction<String> gerador) {
+    }
+
+    static final List<Familia> FAMILIAS = List.of(
+            new Familia("comandos", "atribuicoes no algoritmo", new int[] {1000, 2000, 4000, 8000, 16000, 32000},
+                    CurvasCrescimento::programaComandos),
+            new Familia("aninhamento", "se aninhados", new int[] {64, 128, 256, 512, 1024, 2048},
+                    CurvasCrescimento::programaAninhado),
+            new Familia("identificadores", "variaveis declaradas", new int[] {500, 1000, 2000, 4000, 8000, 16000},
+                    CurvasCrescimento::programaIdentificadores),
+            new Familia("faixa", "largura do intervalo no caso", new int[] {8000, 16000, 32000, 64000, 128000, 256000},
+                    CurvasCrescimento::programaFaixa));
+
+    public static void main(String[] args) throws Exception {
+        Path csv = Paths.get("curvas.csv");
+        int repeticoes = 5;
+        String somente = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--csv":
+                    csv = Paths.get(args[++i]);
+                    break;
+                case "--repeticoes":
+                    repeticoes = Integer.parseInt(args[++i]);
+                    break;
+                case "--familia":
+                    somente = args[++i];
+                    break;
+                default:
+                    System.err.println("Opcao desconhecida: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        // Programas muito aninhados recursam fundo no parser e nos visitantes
+        int[] marcadas = new int[1];
+        Throwable[] erro = new Throwable[1];
+        final Path arquivoCsv = csv;
+        final int n = repeticoes;
+        final String familia = somente;
+        Thread t = new Thread(null, () -> {
+            try {
+                marcadas[0] = executar(arquivoCsv, n, familia);
+            } catch (Throwable e) {
+                erro[0] = e;
+            }
+        }, "curvas", 1L << 30);
+        t.start();
+        t.join();
+        if (erro[0] != null) {
+            throw new IllegalStateException(erro[0]);
+        }
+        System.exit(marcadas[0] > 0 ? 1 : 0);
+    }
+
+    private static int executar(Path csv, int repeticoes, String somente) throws IOException {
+        StringBuilder linhas = new StringBuilder("familia,n,fase,ms,heap_kb\n");
+        int marcadas = 0;
+        for (Familia familia : FAMILIAS) {
+            if (somente != null && !somente.equals(familia.nome())) {
+                continue;
+            }
+            System.out.printf("%s (%s)%n", familia.nome(), familia.dimensao());
+            int pontos = familia.tamanhos().length;
+            double[][] tempos = new double[FASES.length][pontos];
+            double[][] heaps = new double[FASES.length][pontos];
+            for (int p = 0; p < pontos; p++) {
+                int tamanho = familia.tamanhos()[p];
+                String fonte = familia.gerador().apply(tamanho);
+                medir(fonte, repeticoes, tempos, heaps, p);
+                System.out.printf("  n = %6d (%7d bytes):", tamanho, fonte.length());
+                for (int f = 0; f < FASES.length; f++) {
+                    System.out.printf("  %s %8.2f ms %8.0f KB", FASES[f], tempos[f][p], heaps[f][p]);
+                    linhas.append(String.format(Locale.ROOT, "%s,%d,%s,%.4f,%.1f%n", familia.nome(), tamanho,
+                            FASES[f], tempos[f][p], heaps[f][p]));
+                }
+                System.out.println();
+            }
+            System.out.printf("  %-10s %9s %12s %9s %12s%n", "fase", "k tempo", "vs n log n", "k heap", "vs n log n");
+            for (int f = 0; f < FASES.length; f++) {
+                double[] ajusteTempo = ajustar(familia.tamanhos(), tempos[f], RESOLUCAO_MS);
+                double[] ajusteHeap = ajustar(familia.tamanhos(), heaps[f], RESOLUCAO_KB);
+                boolean marcada = ajusteTempo[1] > TOLERANCIA || ajusteHeap[1] > TOLERANCIA;
+                if (marcada) {
+                    marcadas++;
+                }
+                System.out.printf("  %-10s %9.2f %+12.2f %9.2f %+12.2f  %s%n", FASES[f], ajusteTempo[0], ajusteTempo[1],
+                        ajusteHeap[0], ajusteHeap[1], marcada ? "SUPERLINEAR (acima de n log n)" : "ok");
+            }
+            System.out.println();
+        }
+        Files.writeString(csv, linhas.toString(), StandardCharsets.UTF_8);
+        System.out.println("CSV gravado em " + csv);
+        System.out.println(marcadas == 0 ? "Nenhuma curva acima de n log n"
+                : marcadas + " curva(s) acima de n log n (tolerancia " + TOLERANCIA + " no expoente)");
+        return marcadas;
+    }
+
+    // Mediana das repetições de cada fase em tempos[f][p] (ms) e heaps[f][p] (KB)
+    private static void medir(String fonte, int repeticoes, double[][] tempos, double[][] heaps, int p) {
+        long[][] t = new long[FASES.length][repeticoes];
+        long[][] h = new long[FASES.length][repeticoes];
+        for (int r = -AQUECIMENTO; r < repeticoes; r++) {
+            long[] tempo = new long[FASES.length];
+            long[] heap = new long[FASES.length];
+
+            long base = prepararPico();
+            long inicio = System.nanoTime();
+            FluxoTokensCompacto tokens = new FluxoTokensCompacto(new JanderLexer(CharStreams.fromString(fonte)));
+            tokens.preencher();
+            tempo[0] = System.nanoTime() - inicio;
+            heap[0] = pico() - base;
+
+            base = prepararPico();
+            inicio = System.nanoTime();
+            ProgramaContext arvore = new JanderParser(tokens).programa();
+            tempo[1] = System.nanoTime() - inicio;
+            heap[1] = pico() - base;
+
+            base = prepararPico();
+            inicio = System.nanoTime();
+            JanderSemantico semantico = new JanderSemantico(new PrintWriter(Writer.nullWriter()));
+            semantico.visit(arvore);
+            tempo[2] = System.nanoTime() - inicio;
+            heap[2] = pico() - base;
+            if (semantico.hasErrors()) {
+                throw new IllegalStateException("programa gerado contem erros semanticos");
+            }
+
+            base = prepararPico();
+            inicio = System.nanoTime();
+            JanderGeradorC gerador = new JanderGeradorC(semantico);
+            gerador.setThreads(1);
+            gerador.visit(arvore);
+            gerador.getOutput();
+            tempo[3] = System.nanoTime() - inicio;
+            heap[3] = pico() - base;
+
+            if (r >= 0) {
+                for (int f = 0; f < FASES.length; f++) {
+                    t[f][r] = tempo[f];
+                    h[f][r] = heap[f];
+                }
+            }
+        }
+        for (int f = 0; f < FASES.length; f++) {
+            Arrays.sort(t[f]);
+            Arrays.sort(h[f]);
+            tempos[f][p] = t[f][repeticoes / 2] / 1_000_000.0;
+            heaps[f][p] = Math.max(h[f][repeticoes / 2], 0) / 1024.0;
+        }
+    }
+
+    // Coleta o lixo, zera os picos dos pools do heap e devolve o uso atual
+    private static long prepararPico() {
+        System.gc();
+        long usado = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                usado += pool.getUsage().getUsed();
+            }
+        }
+        return usado;
+    }
+
+    private static long pico() {
+        long pico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pico += pool.getPeakUsage().getUsed();
+            }
+        }
+        return pico;
+    }
+
+    /**
+     * Ajuste log-log: {k, k'} com y ~ n^k e y / (n log n) ~ n^k'. Pontos abaixo
+     * da resolução da medida ficam de fora; com menos de três, não há ajuste.
+     */
+    static double[] ajustar(int[] tamanhos, double[] valores, double resolucao) {
+        List<double[]> pontos = new ArrayList<>();
+        for (int i = 0; i < tamanhos.length; i++) {
+            if (valores[i] >= resolucao) {
+                pontos.add(new double[] {tamanhos[i], valores[i]});
+            }
+        }
+        if (pontos.size() < 3) {
+            return new double[] {0, 0};
+        }
+        double[] x = new double[pontos.size()];
+        double[] y = new double[pontos.size()];
+        double[] yNLogN = new double[pontos.size()];
+        for (int i = 0; i < pontos.size(); i++) {
+            double n = pontos.get(i)[0];
+            x[i] = Math.log(n);
+            y[i] = Math.log(pontos.get(i)[1]);
+            yNLogN[i] = Math.log(pontos.get(i)[1] / (n * Math.log(n)));
+        }
+        return new double[] {inclinacao(x, y), inclinacao(x, yNLogN)};
+    }
+
+    private static double inclinacao(double[] x, double[] y) {
+        double mx = Arrays.stream(x).average().orElse(0);
+        double my = Arrays.stream(y).average().orElse(0);
+        double num = 0;
+        double den = 0;
+        for (int i = 0; i < x.length; i++) {
+            num += (x[i] - mx) * (y[i] - my);
+            den += (x[i] - mx) * (x[i] - mx);
+        }
+        return den == 0 ? 0 : num / den;
+    }
+
+    static String programaComandos(int n) {
+        StringBuilder sb = new StringBuilder("algoritmo\n  declare i, x: inteiro\n  x <- 0\n  i <- 1\n");
+        for (int c = 0; c < n; c++) {
+            sb.append("  x <- x + i * ").append(c % 97).append('\n');
+        }
+        return sb.append("  escreva(x)\nfim_algoritmo\n").toString();
+    }
+
+    static String programaAninhado(int n) {
+        StringBuilder sb = new StringBuilder("algoritmo\n  declare x: inteiro\n  x <- 0\n");
+        // Sem indentação, para o fonte crescer linearmente com a profundidade
+        for (int d = 0; d < n; d++) {
+            sb.append("se x < ").append(d + 1000).append(" entao\n");
+            sb.append("x <- x + 1\n");
+        }
+        for (int d = 0; d < n; d++) {
+            sb.append("fim_se\n");
+        }
+        return sb.append("  escreva(x)\nfim_algoritmo\n").toString();
+    }
+
+    static String programaIdentificadores(int n) {
+        StringBuilder sb = new StringBuilder("algoritmo\n");
+        for (int v = 0; v < n; v++) {
+            sb.append("  declare v").append(v).append(": inteiro\n");
+        }
+        for (int v = 0; v < n; v++) {
+            sb.append("  v").append(v).append(" <- ").append(v == 0 ? "1" : "v" + (v - 1) + " + 1").append('\n');
+        }
+        return sb.append("  escreva(v").append(n - 1).append(")\nfim_algoritmo\n").toString();
+    }
+
+    static String programaFaixa(int n) {
+        return "algoritmo\n  declare x: inteiro\n  leia(x)\n  caso x seja\n"
+                + "    1.." + n + ": escreva(\"dentro\")\n"
+                + "    senao escreva(\"fora\")\n  fim_caso\nfim_algoritmo\n";
+    }
+}
@@ -0,0 +1,87 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Erros semânticos guardados como registros compactos (linha, tipo, símbolo).
+ * O texto "Linha N: ..." só é montado na hora de imprimir, erros repetidos
+ * (mesma linha, tipo e símbolo) são guardados uma única vez e existe um
+ * limite opcional de erros a partir do qual a análise pode ser interrompida.
+ */
+public class Diagnosticos {
+
+    public enum TipoErro {
+        NAO_DECLARADO("identificador ", " nao declarado"),
+        JA_DECLARADO("identificador ", " ja declarado anteriormente"),
+        ATRIBUICAO_INCOMPATIVEL("atribuicao nao compativel para ", ""),
+        PARAMETROS_INCOMPATIVEIS("incompatibilidade de parametros na chamada de ", ""),
+        RETORNE_FORA_DE_FUNCAO("comando retorne nao permitido nesse escopo", ""),
+        // Mensagens pouco frequentes, já montadas por quem reporta
+        MENSAGEM("", "");
+
+        private final String prefixo;
+        private final String sufixo;
+
+        TipoErro(String prefixo, String sufixo) {
+            this.prefixo = prefixo;
+            this.sufixo = sufixo;
+        }
+    }
+
+    // Linha < 0 indica erro sem token associado
+    public record Diagnostico(int linha, TipoErro tipo, String simbolo) {
+        public String mensagem() {
+            return tipo.prefixo + (simbolo != null ? simbolo : "") + tipo.sufixo;
+        }
+
+        public String formatar() {
+            return (linha >= 0 ? "Linha " + linha + ": " : "Error: ") + mensagem();
+        }
+    }
+
+    private final Set<Diagnostico> itens = new LinkedHashSet<>();
+    private int limite = Integer.MAX_VALUE;
+
+    /** Define o número máximo de erros guardados; ao atingi-lo a análise pode parar */
+    public synchronized void setLimite(int limite) {
+        this.limite = Math.max(1, limite);
+    }
+
+    public synchronized void adicionar(int linha, TipoErro tipo, String simbolo) {
+        if (itens.size() >= limite) {
+            return;
+        }
+        itens.add(new Diagnostico(linha, tipo, simbolo));
+    }
+
+    public synchronized boolean limiteAtingido() {
+        return itens.size() >= limite;
+    }
+
+    public synchronized boolean isEmpty() {
+        return itens.isEmpty();
+    }
+
+    public synchronized int size() {
+        return itens.size();
+    }
+
+    public synchronized void clear() {
+        itens.clear();
+    }
+
+    /** Cópia dos diagnósticos na ordem em que foram encontrados */
+    public synchronized List<Diagnostico> listar() {
+        return new ArrayList<>(itens);
+    }
+
+    public synchronized void imprimir(PrintWriter pw) {
+        for (Diagnostico d : itens) {
+            pw.println(d.formatar());
+        }
+    }
+}
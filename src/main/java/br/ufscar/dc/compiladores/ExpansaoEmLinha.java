@@ -0,0 +1,201 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Política de expansão em linha (--inline) do gerador de C. Com o grafo de
+ * chamadas escolhe as funções e procedimentos não recursivos que cabem no
+ * orçamento de tamanho: esses viram "static inline" no C e, quando a forma do
+ * corpo permite, são substituídos direto nos pontos de chamada. Chamadas
+ * dentro de laços têm orçamento maior, e cada função gerada tem um limite de
+ * crescimento para a soma das expansões.
+ *
+ * Formas substituíveis: procedimentos cujas declarações locais são variáveis
+ * simples (o corpo vira um bloco C) e funções cujo corpo é só "retorne
+ * expressão", sem locais nem parâmetros var (a chamada vira a expressão).
+ */
+public class ExpansaoEmLinha {
+
+    // Orçamentos em tokens da declaração LA
+    static final int LIMITE_CANDIDATA = 80;
+    static final int LIMITE_CHAMADA = 30;
+    static final int LIMITE_CHAMADA_LACO = 80;
+    static final int LIMITE_CRESCIMENTO = 1500;
+
+    private final GrafoChamadas grafo;
+    private final AnalisePureza pureza;
+    private final Set<String> candidatas = new LinkedHashSet<>();
+    private final Set<String> procedimentos = new HashSet<>();
+    private final Set<String> expressoes = new HashSet<>();
+    // Nomes que o corpo usa sem declarar (globais, tipos e funções chamadas)
+    private final Map<String, Set<String>> nomesLivres = new HashMap<>();
+    private final AtomicInteger substituicoes = new AtomicInteger();
+
+    public ExpansaoEmLinha(AnalisePureza pureza) {
+        this.grafo = pureza.getGrafo();
+        this.pureza = pureza;
+        for (String nome : grafo.getFuncoes()) {
+            if (grafo.ehRecursiva(nome) || grafo.getTamanho(nome) > LIMITE_CANDIDATA) {
+                continue;
+            }
+            candidatas.add(nome);
+            Declaracao_globalContext decl = grafo.getDeclaracao(nome);
+            if (procedimentoSimples(decl)) {
+                procedimentos.add(nome);
+            } else if (funcaoDeExpressao(decl)) {
+                expressoes.add(nome);
+            }
+            nomesLivres.put(nome, nomesLivres(decl));
+        }
+    }
+
+    public GrafoChamadas getGrafo() {
+        return grafo;
+    }
+
+    /** Verdadeiro se nome deve ser emitida como static inline */
+    public boolean ehCandidata(String nome) {
+        return candidatas.contains(nome);
+    }
+
+    public boolean ehProcedimentoExpansivel(String nome) {
+        return procedimentos.contains(nome);
+    }
+
+    public boolean ehExpressaoExpansivel(String nome) {
+        return expressoes.contains(nome);
+    }
+
+    public AnalisePureza getPureza() {
+        return pureza;
+    }
+
+    /** Verdadeiro se o corpo de nome chama algo que pode alterar variáveis */
+    public boolean chamaComEfeitos(String nome) {
+        return grafo.getChamadas(nome).stream().anyMatch(chamado -> !pureza.ehPura(chamado));
+    }
+
+    public Set<String> getNomesLivres(String nome) {
+        return nomesLivres.getOrDefault(nome, Set.of());
+    }
+
+    /**
+     * Verdadeiro se uma chamada a nome cabe no orçamento: o limite depende de a
+     * chamada estar num laço, e crescimento é o que a função que a contém já
+     * recebeu de outras expansões.
+     */
+    public boolean cabe(String nome, boolean emLaco, int crescimento) {
+        int tamanho = grafo.getTamanho(nome);
+        return tamanho <= (emLaco ? LIMITE_CHAMADA_LACO : LIMITE_CHAMADA)
+                && crescimento + tamanho <= LIMITE_CRESCIMENTO;
+    }
+
+    void registrarSubstituicao() {
+        substituicoes.incrementAndGet();
+    }
+
+    /** Funções e procedimentos emitidos como static inline */
+    public int getCandidatas() {
+        return candidatas.size();
+    }
+
+    /** Pontos de chamada substituídos pelo corpo */
+    public int getSubstituicoes() {
+        return substituicoes.get();
+    }
+
+    private static boolean parametrosSimples(Declaracao_globalContext decl) {
+        if (decl.parametros() == null) {
+            return true;
+        }
+        for (ParametroContext p : decl.parametros().parametro()) {
+            for (IdentificadorContext ident : p.identificador()) {
+                if (ident.IDENT().size() > 1 || !ident.dimensao().exp_aritmetica().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean procedimentoSimples(Declaracao_globalContext decl) {
+        if (decl.PROCEDIMENTO() == null || !parametrosSimples(decl)) {
+            return false;
+        }
+        for (Declaracao_localContext local : decl.declaracao_local()) {
+            // Tipos e constantes locais e registros ou vetores declarados no corpo ficam fora
+            if (local.DECLARE() == null || local.variavel().tipo().tipo_estendido() == null) {
+                return false;
+            }
+            for (IdentificadorContext ident : local.variavel().identificador()) {
+                if (ident.IDENT().size() > 1 || !ident.dimensao().exp_aritmetica().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean funcaoDeExpressao(Declaracao_globalContext decl) {
+        if (decl.FUNCAO() == null || !decl.declaracao_local().isEmpty()
+                || decl.cmd().size() != 1 || decl.cmd(0).cmdRetorne() == null
+                || !tipoBasico(decl.tipo_estendido()) || !parametrosSimples(decl)) {
+            return false;
+        }
+        if (decl.parametros() != null) {
+            for (ParametroContext p : decl.parametros().parametro()) {
+                if (p.VAR() != null || !tipoBasico(p.tipo_estendido())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean tipoBasico(Tipo_estendidoContext tipo) {
+        return !tipo.getText().startsWith("^") && tipo.tipo_basico_ident().tipo_basico() != null;
+    }
+
+    private static Set<String> nomesLivres(Declaracao_globalContext decl) {
+        Set<String> usados = new HashSet<>();
+        coletarNomes(decl, usados);
+        GrafoChamadas.coletarChamadas(decl, usados);
+        if (decl.parametros() != null) {
+            for (ParametroContext p : decl.parametros().parametro()) {
+                for (IdentificadorContext ident : p.identificador()) {
+                    usados.remove(ident.IDENT(0).getText());
+                }
+            }
+        }
+        for (Declaracao_localContext local : decl.declaracao_local()) {
+            if (local.variavel() != null) {
+                for (IdentificadorContext ident : local.variavel().identificador()) {
+                    usados.remove(ident.IDENT(0).getText());
+                }
+            }
+        }
+        return usados;
+    }
+
+    static void coletarNomes(ParseTree t, Set<String> destino) {
+        if (t instanceof IdentificadorContext) {
+            destino.add(((IdentificadorContext) t).IDENT(0).getText());
+        } else if (t instanceof Tipo_basico_identContext && ((Tipo_basico_identContext) t).IDENT() != null) {
+            destino.add(((Tipo_basico_identContext) t).IDENT().getText());
+        } else if (t instanceof CmdParaContext) {
+            destino.add(((CmdParaContext) t).IDENT().getText());
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            coletarNomes(t.getChild(i), destino);
+        }
+    }
+}
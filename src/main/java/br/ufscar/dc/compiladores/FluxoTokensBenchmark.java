@@ -0,0 +1,70 @@
+package br.ufscar.dc.compiladores;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenStream;
+
+/**
+ * Compara a memória retida pelos tokens com CommonTokenStream e com
+ * FluxoTokensCompacto num programa sintético grande: primeiro só o fluxo
+ * preenchido, depois fluxo e árvore sintática juntos (como ficam durante a
+ * análise semântica e a geração). Também confere que as duas árvores são iguais.
+ *
+ * Uso: FluxoTokensBenchmark [comandos]
+ */
+public class FluxoTokensBenchmark {
+
+    public static void main(String[] args) {
+        int comandos = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        CharStream fonte = CharStreams.fromString(CurvasCrescimento.programaComandos(comandos));
+
+        fonte.seek(0);
+        long antes = usado();
+        CommonTokenStream comum = new CommonTokenStream(new JanderLexer(fonte));
+        comum.fill();
+        long bytesComum = usado() - antes;
+        int tokens = comum.size();
+
+        fonte.seek(0);
+        antes = usado();
+        FluxoTokensCompacto compacto = new FluxoTokensCompacto(new JanderLexer(fonte));
+        compacto.preencher();
+        long bytesCompacto = usado() - antes;
+
+        System.out.printf("Programa: %d comandos, %d tokens, %d caracteres%n", comandos, tokens, fonte.size());
+        System.out.printf("So os tokens:       CommonTokenStream %6.1f B/token, compacto %6.1f B/token (%.1fx)%n",
+                (double) bytesComum / tokens, (double) bytesCompacto / tokens, (double) bytesComum / bytesCompacto);
+        comum = null;
+        compacto = null;
+
+        long[] arvoreComum = new long[1];
+        String textoComum = arvore(fonte, false, arvoreComum);
+        long[] arvoreCompacta = new long[1];
+        String textoCompacto = arvore(fonte, true, arvoreCompacta);
+        System.out.printf("Tokens + arvore:    CommonTokenStream %6.1f B/token, compacto %6.1f B/token (%.1fx)%n",
+                (double) arvoreComum[0] / tokens, (double) arvoreCompacta[0] / tokens,
+                (double) arvoreComum[0] / arvoreCompacta[0]);
+        System.out.println("Arvores: " + (textoComum.equals(textoCompacto) ? "iguais" : "DIFERENTES"));
+    }
+
+    // Analisa o fonte e mede o que fluxo e árvore retêm juntos; devolve a árvore em texto
+    private static String arvore(CharStream fonte, boolean compacto, long[] bytes) {
+        fonte.seek(0);
+        JanderLexer lexer = new JanderLexer(fonte);
+        long antes = usado();
+        TokenStream tokens = compacto ? new FluxoTokensCompacto(lexer) : new CommonTokenStream(lexer);
+        JanderParser parser = new JanderParser(tokens);
+        JanderParser.ProgramaContext programa = parser.programa();
+        bytes[0] = usado() - antes;
+        return programa.toStringTree(parser);
+    }
+
+    private static long usado() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,319 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * TokenStream que guarda os tokens em vetores paralelos de tipos primitivos em
+ * vez de um CommonToken por token: tipo (short), início e fim no CharStream
+ * (int). Linha e coluna saem de uma tabela de inícios de linha, com uma entrada
+ * por linha que contém tokens. São cerca de 10 bytes por token contra uns 50
+ * de um CommonToken, e o fonte fica no CharStream que o lexer já usa.
+ *
+ * O parser recebe visões leves (tokens que só sabem o próprio índice); um
+ * pequeno cache evita criar uma visão nova a cada LT do mesmo token. A árvore
+ * guarda as visões dos terminais, que leem texto e posição destes vetores.
+ *
+ * Como o CommonTokenStream, busca tokens do lexer sob demanda e entrega só os
+ * do canal padrão; os demais são descartados (a gramática do LA não usa
+ * outros canais), então os índices coincidem com os do CommonTokenStream.
+ */
+public class FluxoTokensCompacto implements TokenStream {
+
+    private static final int CACHE_VISOES = 64;
+
+    private final TokenSource fonte;
+    private final CharStream entrada;
+    private short[] tipos;
+    private int[] inicios;
+    private int[] fins;
+    private int n = 0;
+    private boolean fimAlcancado = false;
+    private int p = 0;
+
+    // Linhas com tokens, em ordem: número da linha e posição do seu primeiro caractere
+    private int[] numerosLinha = new int[256];
+    private int[] iniciosLinha = new int[256];
+    private int linhas = 0;
+
+    private final Visao[] visoes = new Visao[CACHE_VISOES];
+
+    public FluxoTokensCompacto(TokenSource fonte) {
+        this.fonte = fonte;
+        this.entrada = fonte.getInputStream() instanceof CharStream cs ? cs : null;
+        // Programas LA têm em média um token a cada 4 ou 5 caracteres; o excesso é devolvido no EOF
+        int capacidade = entrada != null ? entrada.size() / 4 + 16 : 1024;
+        tipos = new short[capacidade];
+        inicios = new int[capacidade];
+        fins = new int[capacidade];
+        buscar(0);
+    }
+
+    /** Lê todos os tokens do lexer até o EOF */
+    public void preencher() {
+        while (!fimAlcancado) {
+            buscarUm();
+        }
+    }
+
+    // Garante que o token i foi lido (se existir)
+    private void buscar(int i) {
+        while (n <= i && !fimAlcancado) {
+            buscarUm();
+        }
+    }
+
+    private void buscarUm() {
+        Token t = fonte.nextToken();
+        if (t.getType() == Token.EOF) {
+            fimAlcancado = true;
+        } else if (t.getChannel() != Token.DEFAULT_CHANNEL) {
+            return;
+        }
+        if (n == tipos.length) {
+            tipos = Arrays.copyOf(tipos, n * 2);
+            inicios = Arrays.copyOf(inicios, n * 2);
+            fins = Arrays.copyOf(fins, n * 2);
+        }
+        tipos[n] = (short) t.getType();
+        inicios[n] = t.getStartIndex();
+        fins[n] = t.getStopIndex();
+        if (linhas == 0 || numerosLinha[linhas - 1] != t.getLine()) {
+            if (linhas == numerosLinha.length) {
+                numerosLinha = Arrays.copyOf(numerosLinha, linhas * 2);
+                iniciosLinha = Arrays.copyOf(iniciosLinha, linhas * 2);
+            }
+            numerosLinha[linhas] = t.getLine();
+            iniciosLinha[linhas] = t.getStartIndex() - t.getCharPositionInLine();
+            linhas++;
+        }
+        n++;
+        if (fimAlcancado) {
+            // Sem mais tokens: devolve a folga dos vetores
+            tipos = Arrays.copyOf(tipos, n);
+            inicios = Arrays.copyOf(inicios, n);
+            fins = Arrays.copyOf(fins, n);
+            numerosLinha = Arrays.copyOf(numerosLinha, linhas);
+            iniciosLinha = Arrays.copyOf(iniciosLinha, linhas);
+        }
+    }
+
+    // Entrada da tabela de linhas que contém a posição inicio
+    private int linhaDe(int inicio) {
+        int pos = Arrays.binarySearch(iniciosLinha, 0, linhas, inicio);
+        return pos >= 0 ? pos : Math.max(0, -pos - 2);
+    }
+
+    private Visao visao(int i) {
+        Visao v = visoes[i & (CACHE_VISOES - 1)];
+        if (v == null || v.indice != i) {
+            v = new Visao(this, i);
+            visoes[i & (CACHE_VISOES - 1)] = v;
+        }
+        return v;
+    }
+
+    /** Tipo do token i, sem criar a visão */
+    public int tipo(int i) {
+        return tipos[i];
+    }
+
+    @Override
+    public Token LT(int k) {
+        if (k == 0) {
+            return null;
+        }
+        if (k < 0) {
+            return p + k >= 0 ? visao(p + k) : null;
+        }
+        int i = p + k - 1;
+        buscar(i);
+        return visao(Math.min(i, n - 1));
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+        if (i < 0) {
+            return p + i >= 0 ? tipos[p + i] : Token.INVALID_TYPE;
+        }
+        int indice = p + i - 1;
+        buscar(indice);
+        return tipos[Math.min(indice, n - 1)];
+    }
+
+    @Override
+    public void consume() {
+        if (LA(1) == Token.EOF) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        p++;
+        buscar(p);
+    }
+
+    @Override
+    public int mark() {
+        return 0;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        buscar(index);
+        p = Math.min(index, n - 1);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public String getSourceName() {
+        return fonte.getSourceName();
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("token index " + index + " out of range 0.." + (n - 1));
+        }
+        return visao(index);
+    }
+
+    @Override
+    public TokenSource getTokenSource() {
+        return fonte;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int inicio = interval.a;
+        int fim = interval.b;
+        if (inicio < 0 || fim < 0) {
+            return "";
+        }
+        buscar(fim);
+        fim = Math.min(fim, n - 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = inicio; i <= fim && tipos[i] != Token.EOF; i++) {
+            sb.append(texto(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getText() {
+        preencher();
+        return getText(Interval.of(0, n - 1));
+    }
+
+    @Override
+    public String getText(RuleContext ctx) {
+        return getText(ctx.getSourceInterval());
+    }
+
+    @Override
+    public String getText(Token inicio, Token fim) {
+        if (inicio == null || fim == null) {
+            return "";
+        }
+        return getText(Interval.of(inicio.getTokenIndex(), fim.getTokenIndex()));
+    }
+
+    // Mesmo texto que CommonToken.getText daria
+    private String texto(int i) {
+        if (entrada == null) {
+            return null;
+        }
+        int tamanho = entrada.size();
+        return inicios[i] < tamanho && fins[i] < tamanho
+                ? entrada.getText(Interval.of(inicios[i], fins[i])) : "<EOF>";
+    }
+
+    /** Token entregue ao parser: só o índice, o resto vem dos vetores do fluxo */
+    private static final class Visao implements Token {
+        private final FluxoTokensCompacto fluxo;
+        private final int indice;
+
+        Visao(FluxoTokensCompacto fluxo, int indice) {
+            this.fluxo = fluxo;
+            this.indice = indice;
+        }
+
+        @Override
+        public String getText() {
+            return fluxo.texto(indice);
+        }
+
+        @Override
+        public int getType() {
+            return fluxo.tipos[indice];
+        }
+
+        @Override
+        public int getLine() {
+            return fluxo.numerosLinha[fluxo.linhaDe(fluxo.inicios[indice])];
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return fluxo.inicios[indice] - fluxo.iniciosLinha[fluxo.linhaDe(fluxo.inicios[indice])];
+        }
+
+        @Override
+        public int getChannel() {
+            return Token.DEFAULT_CHANNEL;
+        }
+
+        @Override
+        public int getTokenIndex() {
+            return indice;
+        }
+
+        @Override
+        public int getStartIndex() {
+            return fluxo.inicios[indice];
+        }
+
+        @Override
+        public int getStopIndex() {
+            return fluxo.fins[indice];
+        }
+
+        @Override
+        public TokenSource getTokenSource() {
+            return fluxo.fonte;
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return fluxo.entrada;
+        }
+
+        @Override
+        public String toString() {
+            String texto = getText();
+            texto = texto == null ? "<no text>"
+                    : texto.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+            return "[@" + indice + "," + getStartIndex() + ":" + getStopIndex() + "='" + texto + "',<" + getType()
+                    + ">," + getLine() + ":" + getCharPositionInLine() + "]";
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Compila programas LA até binários nativos enviando o C gerado direto para
+ * o stdin de "gcc -x c -", sem gravar nem reler arquivos .c intermediários.
+ * Até "jobs" arquivos (limitado ao número de núcleos) são processados ao mesmo tempo.
+ */
+public class GccPipeline {
+
+    /** Resultado de um arquivo, com os tempos da etapa Java e do gcc medidos separadamente */
+    public static class Relatorio {
+        public final Path fonte;
+        public final boolean sucesso;
+        public final long javaNanos;
+        public final long gccNanos;
+        public final String mensagem;
+        public boolean doCache; // Binário copiado do cache, sem chamar o gcc
+
+        Relatorio(Path fonte, boolean sucesso, long javaNanos, long gccNanos, String mensagem) {
+            this.fonte = fonte;
+            this.sucesso = sucesso;
+            this.javaNanos = javaNanos;
+            this.gccNanos = gccNanos;
+            this.mensagem = mensagem;
+        }
+    }
+
+    private final JanderCompilador compilador;
+    private final Path diretorioSaida;
+    private final int jobs;
+    private final List<String> flagsGcc = new ArrayList<>();
+    private String gcc = "gcc";
+    private CacheBinarios cache;
+
+    public GccPipeline(JanderCompilador compilador, Path diretorioSaida, int jobs) {
+        this.compilador = compilador;
+        this.diretorioSaida = diretorioSaida;
+        this.jobs = Math.max(1, Math.min(jobs, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public void setGcc(String gcc) {
+        this.gcc = gcc;
+    }
+
+    public void addFlagsGcc(List<String> flags) {
+        flagsGcc.addAll(flags);
+    }
+
+    /** Reaproveita binários já compilados a partir do mesmo C, gcc e flags */
+    public void setCache(CacheBinarios cache) {
+        this.cache = cache;
+    }
+
+    /** Processa todos os fontes e devolve os relatórios na mesma ordem da entrada */
+    public List<Relatorio> executar(List<Path> fontes) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<Relatorio>> futuros = new ArrayList<>();
+            for (Path fonte : fontes) {
+                futuros.add(pool.submit(() -> processar(fonte)));
+            }
+            List<Relatorio> relatorios = new ArrayList<>();
+            for (Future<Relatorio> futuro : futuros) {
+                try {
+                    relatorios.add(futuro.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return relatorios;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Relatorio processar(Path fonte) {
+        long inicioJava = System.nanoTime();
+        JanderCompilador.Resultado resultado;
+        try {
+            resultado = compilador.compilar(CharStreams.fromPath(fonte, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return new Relatorio(fonte, false, System.nanoTime() - inicioJava, 0, "erro de leitura: " + e.getMessage());
+        }
+        long javaNanos = System.nanoTime() - inicioJava;
+
+        if (!resultado.sucesso) {
+            return new Relatorio(fonte, false, javaNanos, 0, resultado.saida.trim());
+        }
+
+        long inicioGcc = System.nanoTime();
+        try {
+            Path binario = diretorioSaida.resolve(nomeBinario(fonte));
+            String chave = cache != null ? cache.chave(gcc, flagsGcc, resultado.saida) : null;
+            if (chave != null && cache.buscar(chave, binario)) {
+                Relatorio relatorio = new Relatorio(fonte, true, javaNanos, System.nanoTime() - inicioGcc, null);
+                relatorio.doCache = true;
+                return relatorio;
+            }
+            String mensagemGcc = executarGcc(resultado.saida, binario);
+            if (mensagemGcc == null && chave != null) {
+                cache.guardar(chave, binario);
+            }
+            long gccNanos = System.nanoTime() - inicioGcc;
+            return new Relatorio(fonte, mensagemGcc == null, javaNanos, gccNanos, mensagemGcc);
+        } catch (IOException e) {
+            return new Relatorio(fonte, false, javaNanos, System.nanoTime() - inicioGcc, "falha ao executar " + gcc + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Relatorio(fonte, false, javaNanos, System.nanoTime() - inicioGcc, "interrompido");
+        }
+    }
+
+    // Retorna null em caso de sucesso ou a saída de erro do gcc
+    private String executarGcc(String codigoC, Path binario) throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(gcc);
+        comando.add("-x");
+        comando.add("c");
+        comando.add("-");
+        // -x none: arquivos nas flags do usuário (.o, .a) voltam a ser reconhecidos pela extensão
+        comando.add("-x");
+        comando.add("none");
+        comando.add("-o");
+        comando.add(binario.toString());
+        // Depois da entrada, para que bibliotecas (-lm) resolvam os símbolos do programa
+        comando.addAll(flagsGcc);
+
+        Process processo = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        // O gcc lê toda a entrada antes de emitir diagnósticos, então escrever tudo e depois ler não trava
+        try (OutputStream stdin = processo.getOutputStream()) {
+            stdin.write(codigoC.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // gcc encerrou antes de ler tudo; o motivo aparece na saída abaixo
+        }
+        String saidaGcc;
+        try (InputStream saida = processo.getInputStream()) {
+            saidaGcc = new String(saida.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return processo.waitFor() == 0 ? null : saidaGcc.trim();
+    }
+
+    static String nomeBinario(Path fonte) {
+        String nome = fonte.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        return ponto > 0 ? nome.substring(0, ponto) : nome + ".bin";
+    }
+
+    public static void imprimirRelatorio(List<Relatorio> relatorios, PrintStream out) {
+        long totalJava = 0;
+        long totalGcc = 0;
+        int falhas = 0;
+        out.printf("%-40s %10s %10s  %s%n", "arquivo", "java(ms)", "gcc(ms)", "status");
+        for (Relatorio r : relatorios) {
+            totalJava += r.javaNanos;
+            totalGcc += r.gccNanos;
+            if (!r.sucesso) falhas++;
+            out.printf("%-40s %10.2f %10.2f  %s%n", r.fonte.getFileName(), r.javaNanos / 1e6, r.gccNanos / 1e6,
+                    r.sucesso ? (r.doCache ? "ok (cache)" : "ok") : "falha");
+            if (!r.sucesso && r.mensagem != null) {
+                for (String linha : r.mensagem.split("\n")) {
+                    out.println("    " + linha);
+                }
+            }
+        }
+        out.printf("%-40s %10.2f %10.2f  %d ok, %d falha(s)%n", "total", totalJava / 1e6, totalGcc / 1e6,
+                relatorios.size() - falhas, falhas);
+    }
+}
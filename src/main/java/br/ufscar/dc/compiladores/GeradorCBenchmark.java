@@ -0,0 +1,83 @@
+package br.ufscar.dc.compiladores;
+
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Compara o tempo da geração de código sequencial com a geração paralela
+ * em um programa sintético com muitos procedimentos grandes.
+ *
+ * Uso: GeradorCBenchmark [procedimentos] [comandos por procedimento] [threads]
+ */
+public class GeradorCBenchmark {
+
+    private static final int AQUECIMENTO = 5;
+    private static final int MEDICOES = 15;
+
+    public static void main(String[] args) throws Exception {
+        int procedimentos = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int comandos = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+        Medicoes.Programa programa = Medicoes.analisar(gerarPrograma(procedimentos, comandos));
+        JanderSemantico semantico = programa.semantico();
+        ProgramaContext arvore = programa.arvore();
+
+        int nucleos = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String saidaSequencial = gerar(semantico, arvore, 1);
+        String saidaParalela = gerar(semantico, arvore, nucleos);
+        if (!saidaSequencial.equals(saidaParalela)) {
+            System.err.println("Saida paralela difere da sequencial");
+            System.exit(1);
+        }
+
+        System.out.printf("Programa: %d procedimentos x %d comandos (%d bytes de C)%n",
+                procedimentos, comandos, saidaSequencial.length());
+        double sequencial = Medicoes.mediana(AQUECIMENTO, MEDICOES, () -> gerar(semantico, arvore, 1));
+        double paralelo = Medicoes.mediana(AQUECIMENTO, MEDICOES, () -> gerar(semantico, arvore, nucleos));
+        Medicoes.imprimirComparacao("Sequencial", sequencial, "Paralelo (" + nucleos + " threads)", paralelo);
+    }
+
+    private static String gerar(JanderSemantico semantico, ProgramaContext arvore, int threads) {
+        JanderGeradorC gerador = new JanderGeradorC(semantico);
+        gerador.setThreads(threads);
+        gerador.visit(arvore);
+        return gerador.getOutput();
+    }
+
+    static String gerarPrograma(int procedimentos, int comandos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("declare total: inteiro\n");
+        for (int p = 0; p < procedimentos; p++) {
+            sb.append("procedimento proc").append(p).append("(n: inteiro, fator: inteiro)\n");
+            for (int c = 0; c < comandos; c++) {
+                switch (c % 4) {
+                    case 0:
+                        sb.append("  total <- total + n * fator - (n % 7) * ").append(c).append("\n");
+                        break;
+                    case 1:
+                        sb.append("  se total > ").append(1000 + c).append(" e n <> fator entao\n")
+                          .append("    total <- total - ").append(c).append("\n")
+                          .append("  senao\n")
+                          .append("    total <- total + (fator + ").append(c).append(") * 2\n")
+                          .append("  fim_se\n");
+                        break;
+                    case 2:
+                        sb.append("  enquanto total > 100000 faca\n")
+                          .append("    total <- total / 2\n")
+                          .append("  fim_enquanto\n");
+                        break;
+                    default:
+                        sb.append("  escreva(\"proc").append(p).append(": \", total + n, \"\\n\")\n");
+                        break;
+                }
+            }
+            sb.append("fim_procedimento\n");
+        }
+        sb.append("algoritmo\n");
+        sb.append("  total <- 0\n");
+        for (int p = 0; p < procedimentos; p++) {
+            sb.append("  proc").append(p).append("(").append(p).append(", 3)\n");
+        }
+        sb.append("fim_algoritmo\n");
+        return sb.toString();
+    }
+}
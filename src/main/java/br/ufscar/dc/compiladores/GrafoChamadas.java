@@ -0,0 +1,118 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import br.ufscar.dc.compiladores.JanderParser.*;
+
+/**
+ * Grafo de chamadas entre as funções e procedimentos de um programa LA. Para
+ * cada declaração global guarda os nomes chamados no corpo (comandos de
+ * chamada e chamadas dentro de expressões), o tamanho do corpo em tokens e se
+ * ela participa de um ciclo de chamadas (recursão direta ou mútua).
+ */
+public final class GrafoChamadas {
+
+    private final Map<String, Declaracao_globalContext> declaracoes = new LinkedHashMap<>();
+    private final Map<String, Set<String>> chamadas = new LinkedHashMap<>();
+    private final Set<String> chamadasCorpo = new LinkedHashSet<>();
+    private final Set<String> recursivas = new HashSet<>();
+
+    public GrafoChamadas(ProgramaContext programa) {
+        this(programa, Set.of());
+    }
+
+    /**
+     * Grafo de um programa cujas declarações iniciais vieram de uma interface
+     * pré-compilada: chamadas a externas também são arestas, sem corpo próprio.
+     */
+    public GrafoChamadas(ProgramaContext programa, Set<String> externas) {
+        if (programa.declaracoes() != null) {
+            for (Decl_local_globalContext decl : programa.declaracoes().decl_local_global()) {
+                if (decl.declaracao_global() != null) {
+                    declaracoes.put(decl.declaracao_global().IDENT().getText(), decl.declaracao_global());
+                }
+            }
+        }
+        for (Map.Entry<String, Declaracao_globalContext> e : declaracoes.entrySet()) {
+            Set<String> chamados = new LinkedHashSet<>();
+            coletarChamadas(e.getValue(), chamados);
+            // Só interessam chamadas a declarações do programa
+            chamados.removeIf(c -> !declaracoes.containsKey(c) && !externas.contains(c));
+            chamadas.put(e.getKey(), chamados);
+        }
+        if (programa.corpo() != null) {
+            coletarChamadas(programa.corpo(), chamadasCorpo);
+            chamadasCorpo.removeIf(c -> !declaracoes.containsKey(c) && !externas.contains(c));
+        }
+        for (String nome : declaracoes.keySet()) {
+            if (alcancaveis(chamadas.get(nome)).contains(nome)) {
+                recursivas.add(nome);
+            }
+        }
+    }
+
+    /** Nomes das funções e procedimentos, na ordem do código-fonte */
+    public Set<String> getFuncoes() {
+        return Collections.unmodifiableSet(declaracoes.keySet());
+    }
+
+    public Declaracao_globalContext getDeclaracao(String nome) {
+        return declaracoes.get(nome);
+    }
+
+    /** Funções e procedimentos chamados diretamente no corpo de nome */
+    public Set<String> getChamadas(String nome) {
+        Set<String> chamados = chamadas.get(nome);
+        return chamados != null ? Collections.unmodifiableSet(chamados) : Collections.emptySet();
+    }
+
+    /** Funções e procedimentos chamados diretamente pelo corpo do algoritmo */
+    public Set<String> getChamadasCorpo() {
+        return Collections.unmodifiableSet(chamadasCorpo);
+    }
+
+    /** Verdadeiro se nome pode chamar a si mesmo, direta ou indiretamente */
+    public boolean ehRecursiva(String nome) {
+        return recursivas.contains(nome);
+    }
+
+    /** Tamanho da declaração em tokens, usado como custo de expansão */
+    public int getTamanho(String nome) {
+        Declaracao_globalContext decl = declaracoes.get(nome);
+        return decl == null ? 0 : decl.stop.getTokenIndex() - decl.start.getTokenIndex() + 1;
+    }
+
+    /** Tudo o que pode ser chamado, direta ou indiretamente, a partir dos nomes dados */
+    public Set<String> alcancaveis(Set<String> inicio) {
+        Set<String> visitados = new LinkedHashSet<>();
+        Deque<String> pendentes = new ArrayDeque<>(inicio);
+        while (!pendentes.isEmpty()) {
+            String nome = pendentes.pop();
+            if (visitados.add(nome)) {
+                pendentes.addAll(getChamadas(nome));
+            }
+        }
+        return visitados;
+    }
+
+    /** Acrescenta a destino os nomes chamados dentro da subárvore */
+    static void coletarChamadas(ParseTree t, Set<String> destino) {
+        if (t instanceof CmdChamadaContext) {
+            destino.add(((CmdChamadaContext) t).IDENT().getText());
+        } else if (t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null) {
+            destino.add(((Parcela_unarioContext) t).IDENT().getText());
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            coletarChamadas(t.getChild(i), destino);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interface pré-compilada de um bloco de declarações (tipo, constante,
+ * procedimento e funcao) com que vários programas LA começam. Guarda o escopo
+ * global da tabela de símbolos depois do bloco, o C já gerado de cada
+ * declaração (typedef, #define, protótipo e corpo) e o que a eliminação de
+ * declarações e a análise de pureza precisam saber delas.
+ *
+ * Um programa usa a interface quando começa exatamente com o texto do bloco
+ * (conferido pelo tamanho e pelo SHA-256): só o restante é analisado, sobre a
+ * tabela já povoada, e o C do bloco é copiado nas posições em que a compilação
+ * completa o emitiria. Interfaces de outra versão do compilador são recusadas
+ * na leitura e quem chama compila tudo, como se não houvesse interface.
+ */
+public class InterfaceDeclaracoes {
+
+    private static final int MAGICO = 0x4A4C4149; // "JLAI"
+    private static final int FORMATO = 2;
+
+    // Seções do C gerado, na ordem em que aparecem no arquivo
+    static final int TIPOS = 0;
+    static final int CONSTANTES = 1;
+    static final int PROTOTIPOS = 2;
+    static final int CORPOS = 3;
+
+    private static volatile String versaoCompilador;
+
+    /** Arquivo que não é uma interface ou que foi gravado por outra versão do compilador */
+    public static class Incompativel extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Incompativel(String mensagem) {
+            super(mensagem);
+        }
+    }
+
+    /** Uma declaração do bloco, na ordem do fonte */
+    static final class Declaracao {
+        final String nome;
+        final String categoria; // tipo, constante, funcao ou procedimento
+        final String[] trechos = new String[4]; // C de cada seção (null onde ela não aparece)
+        final Set<String> usados; // Nomes que ela mantém vivos
+        final AnalisePureza.Efeito efeito; // Só para funções e procedimentos
+        final List<Boolean> porEndereco; // Parâmetros passados por endereço
+        final String retornoC; // Tipo C do retorno das funções
+        final List<Boolean> ponteiros; // Parâmetros que o C recebe como ponteiro
+        final boolean disjunta; // Emitida com restrict nesses parâmetros
+
+        Declaracao(String nome, String categoria, Set<String> usados, AnalisePureza.Efeito efeito,
+                   List<Boolean> porEndereco, String retornoC, List<Boolean> ponteiros, boolean disjunta) {
+            this.nome = nome;
+            this.categoria = categoria;
+            this.usados = usados;
+            this.efeito = efeito;
+            this.porEndereco = porEndereco;
+            this.retornoC = retornoC;
+            this.ponteiros = ponteiros;
+            this.disjunta = disjunta;
+        }
+    }
+
+    private final int tamanho; // Caracteres do bloco
+    private final String hash;
+    private final boolean verificarLimites;
+    private final SymbolTable tabela;
+    private final Map<String, Declaracao> declaracoes = new LinkedHashMap<>();
+
+    InterfaceDeclaracoes(String bloco, boolean verificarLimites, SymbolTable tabela, List<Declaracao> declaracoes) {
+        this(bloco.length(), sha256(bloco), verificarLimites, tabela, declaracoes);
+    }
+
+    private InterfaceDeclaracoes(int tamanho, String hash, boolean verificarLimites, SymbolTable tabela,
+                                 List<Declaracao> declaracoes) {
+        this.tamanho = tamanho;
+        this.hash = hash;
+        this.verificarLimites = verificarLimites;
+        this.tabela = tabela;
+        for (Declaracao d : declaracoes) {
+            this.declaracoes.put(d.nome, d);
+        }
+    }
+
+    /**
+     * Posição do fonte onde termina o bloco, ou -1 se o programa não começa com ele.
+     * O bloco precisa acabar num separador, senão o último token dele poderia
+     * continuar no programa.
+     */
+    public int fimDoBloco(String fonte) {
+        if (fonte.length() < tamanho || !sha256(fonte.substring(0, tamanho)).equals(hash)) {
+            return -1;
+        }
+        boolean separado = tamanho == 0 || tamanho == fonte.length()
+                || Character.isWhitespace(fonte.charAt(tamanho - 1)) || Character.isWhitespace(fonte.charAt(tamanho));
+        return separado ? tamanho : -1;
+    }
+
+    /** A interface guarda C gerado com estas opções; com outras o programa é compilado inteiro */
+    public boolean compativel(boolean verificarLimites) {
+        return this.verificarLimites == verificarLimites;
+    }
+
+    /** Tabela nova com o escopo global do bloco, para a análise de um programa */
+    SymbolTable novaTabela() {
+        return tabela.withGlobalScope(new HashMap<>(tabela.getGlobalScope()));
+    }
+
+    Collection<Declaracao> getDeclaracoes() {
+        return Collections.unmodifiableCollection(declaracoes.values());
+    }
+
+    /** Declaração do bloco com esse nome, ou null */
+    Declaracao getDeclaracao(String nome) {
+        return declaracoes.get(nome);
+    }
+
+    /** Funções e procedimentos do bloco */
+    Set<String> getFuncoes() {
+        Set<String> funcoes = new HashSet<>();
+        for (Declaracao d : declaracoes.values()) {
+            if (d.efeito != null) {
+                funcoes.add(d.nome);
+            }
+        }
+        return funcoes;
+    }
+
+    public int getQuantidade() {
+        return declaracoes.size();
+    }
+
+    /** Grava a interface; o arquivo só aparece completo (escrita em temporário e renomeação) */
+    public void gravar(Path arquivo) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+            out.writeInt(MAGICO);
+            out.writeInt(FORMATO);
+            out.writeUTF(versaoCompilador());
+            out.writeInt(tamanho);
+            out.writeUTF(hash);
+            out.writeBoolean(verificarLimites);
+            tabela.writeGlobalScope(out);
+            out.writeInt(declaracoes.size());
+            for (Declaracao d : declaracoes.values()) {
+                out.writeUTF(d.nome);
+                out.writeUTF(d.categoria);
+                for (String trecho : d.trechos) {
+                    escreverTexto(out, trecho);
+                }
+                out.writeInt(d.usados.size());
+                for (String nome : d.usados) {
+                    out.writeUTF(nome);
+                }
+                out.writeByte(d.efeito != null ? d.efeito.ordinal() : -1);
+                out.writeInt(d.porEndereco.size());
+                for (boolean b : d.porEndereco) {
+                    out.writeBoolean(b);
+                }
+                escreverTexto(out, d.retornoC);
+                out.writeInt(d.ponteiros.size());
+                for (boolean b : d.ponteiros) {
+                    out.writeBoolean(b);
+                }
+                out.writeBoolean(d.disjunta);
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Lê uma interface; Incompativel se ela não foi gravada por esta versão do compilador */
+    public static InterfaceDeclaracoes ler(Path arquivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            if (in.readInt() != MAGICO) {
+                throw new Incompativel(arquivo + " nao e uma interface de declaracoes");
+            }
+            if (in.readInt() != FORMATO || !in.readUTF().equals(versaoCompilador())) {
+                throw new Incompativel(arquivo + " foi gerada por outra versao do compilador");
+            }
+            int tamanho = in.readInt();
+            String hash = in.readUTF();
+            boolean verificarLimites = in.readBoolean();
+            SymbolTable tabela = SymbolTable.readGlobalScope(in);
+            int n = in.readInt();
+            List<Declaracao> declaracoes = new ArrayList<>(n);
+            AnalisePureza.Efeito[] efeitos = AnalisePureza.Efeito.values();
+            for (int i = 0; i < n; i++) {
+                String nome = in.readUTF();
+                String categoria = in.readUTF();
+                String[] trechos = new String[4];
+                for (int s = 0; s < trechos.length; s++) {
+                    trechos[s] = lerTexto(in);
+                }
+                int usados = in.readInt();
+                Set<String> nomes = new HashSet<>();
+                for (int u = 0; u < usados; u++) {
+                    nomes.add(in.readUTF());
+                }
+                int efeito = in.readByte();
+                int parametros = in.readInt();
+                List<Boolean> porEndereco = new ArrayList<>(parametros);
+                for (int p = 0; p < parametros; p++) {
+                    porEndereco.add(in.readBoolean());
+                }
+                String retornoC = lerTexto(in);
+                int quantos = in.readInt();
+                List<Boolean> ponteiros = new ArrayList<>(quantos);
+                for (int p = 0; p < quantos; p++) {
+                    ponteiros.add(in.readBoolean());
+                }
+                Declaracao d = new Declaracao(nome, categoria, nomes, efeito >= 0 ? efeitos[efeito] : null,
+                        porEndereco, retornoC, ponteiros, in.readBoolean());
+                System.arraycopy(trechos, 0, d.trechos, 0, trechos.length);
+                declaracoes.add(d);
+            }
+            return new InterfaceDeclaracoes(tamanho, hash, verificarLimites, tabela, declaracoes);
+        }
+    }
+
+    // writeUTF limita a 64 KB; corpos de funções podem passar disso
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String lerTexto(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[n];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Identifica o compilador pelas classes que decidem o conteúdo da interface
+    private static String versaoCompilador() throws IOException {
+        String versao = versaoCompilador;
+        if (versao == null) {
+            MessageDigest md = novoSha256();
+            for (Class<?> c : List.of(JanderLexer.class, JanderParser.class, JanderSemantico.class,
+                    JanderSemanticoUtils.class, SymbolTable.class, JanderGeradorC.class, AnaliseIntervalos.class,
+                    AnalisePureza.class, AnaliseAlcance.class, AnaliseApelidos.class, GrafoChamadas.class,
+                    InterfaceDeclaracoes.class)) {
+                try (InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+                    if (in == null) {
+                        throw new IOException("classe " + c.getName() + " nao encontrada");
+                    }
+                    md.update(in.readAllBytes());
+                }
+            }
+            versao = HexFormat.of().formatHex(md.digest());
+            versaoCompilador = versao;
+        }
+        return versao;
+    }
+
+    private static String sha256(String texto) {
+        return HexFormat.of().formatHex(novoSha256().digest(texto.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest novoSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,1253 @@
+package br.ufscar.dc.compiladores;
+
+import br.ufscar.dc.compiladores.SymbolTable.JanderType;
+
+/**
+ * Nós executáveis do interpretador de LA. Cada nó já tem tipos e endereços
+ * resolvidos pelo JanderInterpretador: variáveis são índices em quadros, campos
+ * de registro são deslocamentos fixos e chamadas apontam diretamente para a
+ * função chamada, sem consultas a mapas durante a execução.
+ *
+ * Modelo de memória: cada bloco (Memoria) tem uma parte primitiva "p"
+ * (inteiros, lógicos e reais como bits de double) e uma parte de objetos "o"
+ * (literais como String, ponteiros, vetores). Registros são achatados no bloco
+ * que os contém; vetores são blocos próprios.
+ */
+final class InterpretadorNos {
+
+    private InterpretadorNos() {
+    }
+
+    // ---------------------------------------------------------------- tipos
+
+    /** Descritor de tipo usado pelo interpretador: tamanho ocupado e, para registros, o layout dos campos */
+    static final class Tipo {
+        static final Tipo INTEIRO = new Tipo(JanderType.INTEGER, 1, 0);
+        static final Tipo REAL = new Tipo(JanderType.REAL, 1, 0);
+        static final Tipo LOGICO = new Tipo(JanderType.LOGICAL, 1, 0);
+        static final Tipo LITERAL = new Tipo(JanderType.LITERAL, 0, 1);
+
+        final JanderType categoria;
+        final int tamP;
+        final int tamO;
+        // Registros
+        final String[] nomesCampos;
+        final Tipo[] tiposCampos;
+        final int[] deslocP;
+        final int[] deslocO;
+        // Ponteiros
+        final Tipo apontado;
+
+        private Tipo(JanderType categoria, int tamP, int tamO) {
+            this(categoria, tamP, tamO, null, null, null, null, null);
+        }
+
+        private Tipo(JanderType categoria, int tamP, int tamO, String[] nomesCampos, Tipo[] tiposCampos,
+                     int[] deslocP, int[] deslocO, Tipo apontado) {
+            this.categoria = categoria;
+            this.tamP = tamP;
+            this.tamO = tamO;
+            this.nomesCampos = nomesCampos;
+            this.tiposCampos = tiposCampos;
+            this.deslocP = deslocP;
+            this.deslocO = deslocO;
+            this.apontado = apontado;
+        }
+
+        static Tipo ponteiro(Tipo apontado) {
+            return new Tipo(JanderType.POINTER, 0, 1, null, null, null, null, apontado);
+        }
+
+        static Tipo registro(String[] nomes, Tipo[] tipos) {
+            int[] dp = new int[tipos.length];
+            int[] dO = new int[tipos.length];
+            int p = 0;
+            int o = 0;
+            for (int i = 0; i < tipos.length; i++) {
+                dp[i] = p;
+                dO[i] = o;
+                p += tipos[i].tamP;
+                o += tipos[i].tamO;
+            }
+            return new Tipo(JanderType.RECORD, p, o, nomes, tipos, dp, dO, null);
+        }
+
+        int campo(String nome) {
+            for (int i = 0; i < nomesCampos.length; i++) {
+                if (nomesCampos[i].equals(nome)) return i;
+            }
+            return -1;
+        }
+
+        boolean primitivo() {
+            return categoria == JanderType.INTEGER || categoria == JanderType.REAL || categoria == JanderType.LOGICAL;
+        }
+    }
+
+    // ------------------------------------------------------------- memória
+
+    static class Memoria {
+        final long[] p;
+        final Object[] o;
+
+        Memoria(int tamP, int tamO) {
+            this.p = new long[tamP];
+            this.o = new Object[tamO];
+        }
+    }
+
+    /** Bloco de um vetor, com as dimensões avaliadas na declaração */
+    static final class Vetor extends Memoria {
+        final int[] dims;
+
+        Vetor(int[] dims, int tamP, int tamO) {
+            super(total(dims) * tamP, total(dims) * tamO);
+            this.dims = dims;
+        }
+
+        private static int total(int[] dims) {
+            int n = 1;
+            for (int d : dims) n *= Math.max(d, 0);
+            return n;
+        }
+    }
+
+    /** Endereço de uma posição: bloco mais índices nas partes primitiva e de objetos */
+    static final class Ponteiro {
+        final Memoria m;
+        final int p;
+        final int o;
+
+        Ponteiro(Memoria m, int p, int o) {
+            this.m = m;
+            this.p = p;
+            this.o = o;
+        }
+    }
+
+    /** Estado global de uma execução */
+    static final class Execucao {
+        final Memoria globais;
+        final ConsoleC console;
+
+        Execucao(Memoria globais, ConsoleC console) {
+            this.globais = globais;
+            this.console = console;
+        }
+    }
+
+    /** Registro de ativação de uma função (ou do algoritmo principal) */
+    static final class Quadro extends Memoria {
+        final Execucao ex;
+        // Índices calculados pelo último Lugar.resolver
+        int rp;
+        int ro;
+        boolean retornou;
+        long retP;
+        Object retO;
+
+        Quadro(int tamP, int tamO, Execucao ex) {
+            super(tamP, tamO);
+            this.ex = ex;
+        }
+    }
+
+    static final class ErroExecucao extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ErroExecucao(String mensagem) {
+            super(mensagem);
+        }
+    }
+
+    // ----------------------------------------------------------- lugares
+
+    /** Posição de memória que pode ser lida ou escrita (variável, campo, elemento, ^ponteiro) */
+    abstract static class Lugar {
+        final Tipo tipo;
+
+        Lugar(Tipo tipo) {
+            this.tipo = tipo;
+        }
+
+        /** Retorna o bloco e deixa os índices em q.rp e q.ro */
+        abstract Memoria resolver(Quadro q);
+
+        /** Mesmo lugar deslocado para um campo de registro */
+        abstract Lugar campo(Tipo tipoCampo, int dp, int dO);
+    }
+
+    static final class LugarLocal extends Lugar {
+        final int p;
+        final int o;
+
+        LugarLocal(Tipo tipo, int p, int o) {
+            super(tipo);
+            this.p = p;
+            this.o = o;
+        }
+
+        @Override
+        Memoria resolver(Quadro q) {
+            q.rp = p;
+            q.ro = o;
+            return q;
+        }
+
+        @Override
+        Lugar campo(Tipo tipoCampo, int dp, int dO) {
+            return new LugarLocal(tipoCampo, p + dp, o + dO);
+        }
+    }
+
+    static final class LugarGlobal extends Lugar {
+        final int p;
+        final int o;
+
+        LugarGlobal(Tipo tipo, int p, int o) {
+            super(tipo);
+            this.p = p;
+            this.o = o;
+        }
+
+        @Override
+        Memoria resolver(Quadro q) {
+            q.rp = p;
+            q.ro = o;
+            return q.ex.globais;
+        }
+
+        @Override
+        Lugar campo(Tipo tipoCampo, int dp, int dO) {
+            return new LugarGlobal(tipoCampo, p + dp, o + dO);
+        }
+    }
+
+    /** Elemento de vetor; o vetor está no slot de objetos "slot" do quadro ou dos globais */
+    static final class LugarVetor extends Lugar {
+        final boolean global;
+        final int slot;
+        final Expr[] indices;
+        final int dp;
+        final int dO;
+
+        LugarVetor(Tipo tipo, boolean global, int slot, Expr[] indices, int dp, int dO) {
+            super(tipo);
+            this.global = global;
+            this.slot = slot;
+            this.indices = indices;
+            this.dp = dp;
+            this.dO = dO;
+        }
+
+        @Override
+        Memoria resolver(Quadro q) {
+            Vetor v = (Vetor) (global ? q.ex.globais : q).o[slot];
+            int linear = 0;
+            for (int i = 0; i < indices.length; i++) {
+                int d = i < v.dims.length ? v.dims[i] : 1;
+                linear = linear * d + indices[i].avaliarInt(q);
+            }
+            Tipo elemento = elementoBase();
+            q.rp = linear * elemento.tamP + dp;
+            q.ro = linear * elemento.tamO + dO;
+            return v;
+        }
+
+        Tipo elementoBase;
+
+        private Tipo elementoBase() {
+            return elementoBase != null ? elementoBase : tipo;
+        }
+
+        @Override
+        Lugar campo(Tipo tipoCampo, int ddp, int ddO) {
+            LugarVetor l = new LugarVetor(tipoCampo, global, slot, indices, dp + ddp, dO + ddO);
+            l.elementoBase = elementoBase();
+            return l;
+        }
+    }
+
+    /** Posição apontada por um ponteiro (^p, parâmetros var) */
+    static final class LugarApontado extends Lugar {
+        final Expr ponteiro;
+        final int dp;
+        final int dO;
+
+        LugarApontado(Tipo tipo, Expr ponteiro, int dp, int dO) {
+            super(tipo);
+            this.ponteiro = ponteiro;
+            this.dp = dp;
+            this.dO = dO;
+        }
+
+        @Override
+        Memoria resolver(Quadro q) {
+            Ponteiro pt = (Ponteiro) ponteiro.avaliarObj(q);
+            if (pt == null) {
+                throw new ErroExecucao("acesso por ponteiro nulo");
+            }
+            q.rp = pt.p + dp;
+            q.ro = pt.o + dO;
+            return pt.m;
+        }
+
+        @Override
+        Lugar campo(Tipo tipoCampo, int ddp, int ddO) {
+            return new LugarApontado(tipoCampo, ponteiro, dp + ddp, dO + ddO);
+        }
+    }
+
+    // ---------------------------------------------------------- expressões
+
+    /**
+     * Expressão tipada. "tipo" é o tipo LA do resultado; para reais, "flutuante"
+     * indica que o tipo C correspondente é float (variáveis, funções) e não
+     * double (literais como 2.5), o que define onde o C arredonda.
+     */
+    abstract static class Expr {
+        Tipo tipo;
+        boolean flutuante;
+
+        int avaliarInt(Quadro q) {
+            throw new IllegalStateException(getClass().getSimpleName() + " nao e inteira");
+        }
+
+        double avaliarReal(Quadro q) {
+            throw new IllegalStateException(getClass().getSimpleName() + " nao e real");
+        }
+
+        boolean avaliarLogico(Quadro q) {
+            throw new IllegalStateException(getClass().getSimpleName() + " nao e logica");
+        }
+
+        Object avaliarObj(Quadro q) {
+            throw new IllegalStateException(getClass().getSimpleName() + " nao e objeto");
+        }
+    }
+
+    static final class ConstInt extends Expr {
+        final int valor;
+
+        ConstInt(int valor) {
+            this.valor = valor;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return valor;
+        }
+    }
+
+    static final class ConstReal extends Expr {
+        final double valor;
+
+        ConstReal(double valor, boolean flutuante) {
+            this.valor = valor;
+            this.tipo = Tipo.REAL;
+            this.flutuante = flutuante;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            return valor;
+        }
+    }
+
+    static final class ConstLogico extends Expr {
+        final boolean valor;
+
+        ConstLogico(boolean valor) {
+            this.valor = valor;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            return valor;
+        }
+    }
+
+    static final class ConstLiteral extends Expr {
+        final String valor;
+
+        ConstLiteral(String valor) {
+            this.valor = valor;
+            this.tipo = Tipo.LITERAL;
+        }
+
+        @Override
+        Object avaliarObj(Quadro q) {
+            return valor;
+        }
+    }
+
+    static final class LerIntLocal extends Expr {
+        final int slot;
+
+        LerIntLocal(int slot) {
+            this.slot = slot;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return (int) q.p[slot];
+        }
+    }
+
+    static final class LerRealLocal extends Expr {
+        final int slot;
+
+        LerRealLocal(int slot) {
+            this.slot = slot;
+            this.tipo = Tipo.REAL;
+            this.flutuante = true;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            return Double.longBitsToDouble(q.p[slot]);
+        }
+    }
+
+    /** Leitura genérica de um lugar, despachada pela categoria do tipo na construção */
+    static final class Ler extends Expr {
+        final Lugar lugar;
+
+        Ler(Lugar lugar) {
+            this.lugar = lugar;
+            this.tipo = lugar.tipo;
+            this.flutuante = lugar.tipo.categoria == JanderType.REAL;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            Memoria m = lugar.resolver(q);
+            return (int) m.p[q.rp];
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            Memoria m = lugar.resolver(q);
+            return Double.longBitsToDouble(m.p[q.rp]);
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            Memoria m = lugar.resolver(q);
+            return m.p[q.rp] != 0;
+        }
+
+        @Override
+        Object avaliarObj(Quadro q) {
+            Memoria m = lugar.resolver(q);
+            if (tipo.categoria == JanderType.RECORD) {
+                return new Ponteiro(m, q.rp, q.ro);
+            }
+            Object v = m.o[q.ro];
+            return v == null && tipo.categoria == JanderType.LITERAL ? "" : v;
+        }
+    }
+
+    /** &lugar */
+    static final class Endereco extends Expr {
+        final Lugar lugar;
+
+        Endereco(Lugar lugar) {
+            this.lugar = lugar;
+            this.tipo = Tipo.ponteiro(lugar.tipo);
+        }
+
+        @Override
+        Object avaliarObj(Quadro q) {
+            Memoria m = lugar.resolver(q);
+            return new Ponteiro(m, q.rp, q.ro);
+        }
+    }
+
+    static final class LogicoParaInt extends Expr {
+        final Expr e;
+
+        LogicoParaInt(Expr e) {
+            this.e = e;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return e.avaliarLogico(q) ? 1 : 0;
+        }
+    }
+
+    static final class IntParaReal extends Expr {
+        final Expr e;
+
+        IntParaReal(Expr e, boolean flutuante) {
+            this.e = e;
+            this.tipo = Tipo.REAL;
+            this.flutuante = flutuante;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            int v = e.avaliarInt(q);
+            return flutuante ? (double) (float) v : (double) v;
+        }
+    }
+
+    static final class RealParaInt extends Expr {
+        final Expr e;
+
+        RealParaInt(Expr e) {
+            this.e = e;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return (int) e.avaliarReal(q);
+        }
+    }
+
+    static final int SOMA = 0;
+    static final int SUB = 1;
+    static final int MUL = 2;
+    static final int DIV = 3;
+    static final int MOD = 4;
+
+    static final class OpInt extends Expr {
+        final int op;
+        final Expr a;
+        final Expr b;
+
+        OpInt(int op, Expr a, Expr b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            int x = a.avaliarInt(q);
+            int y = b.avaliarInt(q);
+            switch (op) {
+                case SOMA: return x + y;
+                case SUB: return x - y;
+                case MUL: return x * y;
+                case DIV:
+                    if (y == 0) throw new ErroExecucao("divisao por zero");
+                    return x / y;
+                default:
+                    if (y == 0) throw new ErroExecucao("divisao por zero");
+                    return x % y;
+            }
+        }
+    }
+
+    static final class OpReal extends Expr {
+        final int op;
+        final Expr a;
+        final Expr b;
+
+        OpReal(int op, Expr a, Expr b, boolean flutuante) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.REAL;
+            this.flutuante = flutuante;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            double x = a.avaliarReal(q);
+            double y = b.avaliarReal(q);
+            double r;
+            switch (op) {
+                case SOMA: r = x + y; break;
+                case SUB: r = x - y; break;
+                case MUL: r = x * y; break;
+                default: r = x / y; break;
+            }
+            // Operandos float: o C calcula em float; arredondar o resultado em double é equivalente
+            return flutuante ? (double) (float) r : r;
+        }
+    }
+
+    static final class NegInt extends Expr {
+        final Expr e;
+
+        NegInt(Expr e) {
+            this.e = e;
+            this.tipo = Tipo.INTEIRO;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return -e.avaliarInt(q);
+        }
+    }
+
+    static final class NegReal extends Expr {
+        final Expr e;
+
+        NegReal(Expr e) {
+            this.e = e;
+            this.tipo = Tipo.REAL;
+            this.flutuante = e.flutuante;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            return -e.avaliarReal(q);
+        }
+    }
+
+    /** Concatenação de literais (o C gerado não a suporta; mantida por completude) */
+    static final class Concatenar extends Expr {
+        final Expr a;
+        final Expr b;
+
+        Concatenar(Expr a, Expr b) {
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.LITERAL;
+        }
+
+        @Override
+        Object avaliarObj(Quadro q) {
+            return (String) a.avaliarObj(q) + (String) b.avaliarObj(q);
+        }
+    }
+
+    static final int IGUAL = 0;
+    static final int DIFERENTE = 1;
+    static final int MAIOR = 2;
+    static final int MAIOR_IGUAL = 3;
+    static final int MENOR = 4;
+    static final int MENOR_IGUAL = 5;
+
+    static boolean comparar(int op, int c) {
+        switch (op) {
+            case IGUAL: return c == 0;
+            case DIFERENTE: return c != 0;
+            case MAIOR: return c > 0;
+            case MAIOR_IGUAL: return c >= 0;
+            case MENOR: return c < 0;
+            default: return c <= 0;
+        }
+    }
+
+    static final class CompInt extends Expr {
+        final int op;
+        final Expr a;
+        final Expr b;
+
+        CompInt(int op, Expr a, Expr b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            return comparar(op, Integer.compare(a.avaliarInt(q), b.avaliarInt(q)));
+        }
+    }
+
+    static final class CompReal extends Expr {
+        final int op;
+        final Expr a;
+        final Expr b;
+
+        CompReal(int op, Expr a, Expr b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            double x = a.avaliarReal(q);
+            double y = b.avaliarReal(q);
+            switch (op) {
+                case IGUAL: return x == y;
+                case DIFERENTE: return x != y;
+                case MAIOR: return x > y;
+                case MAIOR_IGUAL: return x >= y;
+                case MENOR: return x < y;
+                default: return x <= y;
+            }
+        }
+    }
+
+    /** strcmp(a, b) op 0 */
+    static final class CompLiteral extends Expr {
+        final int op;
+        final Expr a;
+        final Expr b;
+
+        CompLiteral(int op, Expr a, Expr b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            return comparar(op, ((String) a.avaliarObj(q)).compareTo((String) b.avaliarObj(q)));
+        }
+    }
+
+    static final class Ou extends Expr {
+        final Expr[] termos;
+
+        Ou(Expr[] termos) {
+            this.termos = termos;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            for (Expr t : termos) {
+                if (t.avaliarLogico(q)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class E extends Expr {
+        final Expr[] fatores;
+
+        E(Expr[] fatores) {
+            this.fatores = fatores;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            for (Expr f : fatores) {
+                if (!f.avaliarLogico(q)) return false;
+            }
+            return true;
+        }
+    }
+
+    static final class Nao extends Expr {
+        final Expr e;
+
+        Nao(Expr e) {
+            this.e = e;
+            this.tipo = Tipo.LOGICO;
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            return !e.avaliarLogico(q);
+        }
+    }
+
+    // ------------------------------------------------------------- funções
+
+    static final int PARAM_PRIMITIVO = 0;
+    static final int PARAM_OBJETO = 1;
+    static final int PARAM_REGISTRO = 2;
+    static final int PARAM_REFERENCIA = 3;
+
+    static final class Funcao {
+        final String nome;
+        final Tipo retorno; // null para procedimentos
+        Tipo[] tiposParametros;
+        int[] modosParametros;
+        int[] slotsP;
+        int[] slotsO;
+        int tamP;
+        int tamO;
+        Cmd corpo;
+
+        Funcao(String nome, Tipo retorno) {
+            this.nome = nome;
+            this.retorno = retorno;
+        }
+    }
+
+    /**
+     * Chamada de função ou procedimento. Para parâmetros var, "argumentos"
+     * guarda null e "lugares" o lugar cujo endereço é passado.
+     */
+    static final class Chamada extends Expr {
+        final Funcao funcao;
+        final Expr[] argumentos;
+        final Lugar[] lugares;
+
+        Chamada(Funcao funcao, Expr[] argumentos, Lugar[] lugares) {
+            this.funcao = funcao;
+            this.argumentos = argumentos;
+            this.lugares = lugares;
+            this.tipo = funcao.retorno;
+            this.flutuante = funcao.retorno != null && funcao.retorno.categoria == JanderType.REAL;
+        }
+
+        Quadro invocar(Quadro q) {
+            Funcao f = funcao;
+            Quadro novo = new Quadro(f.tamP, f.tamO, q.ex);
+            for (int i = 0; i < argumentos.length; i++) {
+                Tipo t = f.tiposParametros[i];
+                switch (f.modosParametros[i]) {
+                    case PARAM_PRIMITIVO:
+                        novo.p[f.slotsP[i]] = valorPrimitivo(t, argumentos[i], q);
+                        break;
+                    case PARAM_OBJETO:
+                        novo.o[f.slotsO[i]] = argumentos[i].avaliarObj(q);
+                        break;
+                    case PARAM_REGISTRO:
+                        copiar((Ponteiro) argumentos[i].avaliarObj(q), novo, f.slotsP[i], f.slotsO[i], t);
+                        break;
+                    default:
+                        Memoria m = lugares[i].resolver(q);
+                        novo.o[f.slotsO[i]] = new Ponteiro(m, q.rp, q.ro);
+                        break;
+                }
+            }
+            try {
+                f.corpo.executar(novo);
+            } catch (StackOverflowError e) {
+                throw new ErroExecucao("estouro de pilha em " + f.nome);
+            }
+            return novo;
+        }
+
+        @Override
+        int avaliarInt(Quadro q) {
+            return (int) invocar(q).retP;
+        }
+
+        @Override
+        double avaliarReal(Quadro q) {
+            return Double.longBitsToDouble(invocar(q).retP);
+        }
+
+        @Override
+        boolean avaliarLogico(Quadro q) {
+            return invocar(q).retP != 0;
+        }
+
+        @Override
+        Object avaliarObj(Quadro q) {
+            Object v = invocar(q).retO;
+            return v == null && tipo.categoria == JanderType.LITERAL ? "" : v;
+        }
+    }
+
+    /** Valor de uma expressão convertido para a representação primitiva de uma variável do tipo t */
+    static long valorPrimitivo(Tipo t, Expr e, Quadro q) {
+        switch (t.categoria) {
+            case INTEGER:
+                return e.tipo.categoria == JanderType.REAL ? (int) e.avaliarReal(q) : e.avaliarInt(q);
+            case REAL:
+                double d = e.tipo.categoria == JanderType.REAL ? e.avaliarReal(q) : e.avaliarInt(q);
+                return Double.doubleToRawLongBits((float) d);
+            default:
+                return e.avaliarLogico(q) ? 1 : 0;
+        }
+    }
+
+    static void copiar(Ponteiro origem, Memoria destino, int p, int o, Tipo t) {
+        System.arraycopy(origem.m.p, origem.p, destino.p, p, t.tamP);
+        System.arraycopy(origem.m.o, origem.o, destino.o, o, t.tamO);
+    }
+
+    // ------------------------------------------------------------ comandos
+
+    abstract static class Cmd {
+        abstract void executar(Quadro q);
+    }
+
+    static final class Bloco extends Cmd {
+        final Cmd[] cmds;
+
+        Bloco(Cmd[] cmds) {
+            this.cmds = cmds;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            for (Cmd c : cmds) {
+                c.executar(q);
+                if (q.retornou) return;
+            }
+        }
+    }
+
+    static final class AtribuirIntLocal extends Cmd {
+        final int slot;
+        final Expr e;
+
+        AtribuirIntLocal(int slot, Expr e) {
+            this.slot = slot;
+            this.e = e;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            q.p[slot] = e.avaliarInt(q);
+        }
+    }
+
+    /** Atribuição a um lugar primitivo (inteiro, real ou lógico), com a conversão implícita do C */
+    static final class AtribuirPrimitivo extends Cmd {
+        final Lugar lugar;
+        final Expr e;
+
+        AtribuirPrimitivo(Lugar lugar, Expr e) {
+            this.lugar = lugar;
+            this.e = e;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            long v = valorPrimitivo(lugar.tipo, e, q);
+            Memoria m = lugar.resolver(q);
+            m.p[q.rp] = v;
+        }
+    }
+
+    /** Atribuição de literal (strcpy) ou ponteiro */
+    static final class AtribuirObj extends Cmd {
+        final Lugar lugar;
+        final Expr e;
+
+        AtribuirObj(Lugar lugar, Expr e) {
+            this.lugar = lugar;
+            this.e = e;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            Object v = e.avaliarObj(q);
+            Memoria m = lugar.resolver(q);
+            m.o[q.ro] = v;
+        }
+    }
+
+    static final class AtribuirRegistro extends Cmd {
+        final Lugar lugar;
+        final Expr e;
+
+        AtribuirRegistro(Lugar lugar, Expr e) {
+            this.lugar = lugar;
+            this.e = e;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            Ponteiro origem = (Ponteiro) e.avaliarObj(q);
+            Memoria m = lugar.resolver(q);
+            // Cópia temporária: origem e destino podem se sobrepor
+            long[] p = java.util.Arrays.copyOfRange(origem.m.p, origem.p, origem.p + lugar.tipo.tamP);
+            Object[] o = java.util.Arrays.copyOfRange(origem.m.o, origem.o, origem.o + lugar.tipo.tamO);
+            System.arraycopy(p, 0, m.p, q.rp, p.length);
+            System.arraycopy(o, 0, m.o, q.ro, o.length);
+        }
+    }
+
+    static final class AlocarVetor extends Cmd {
+        final boolean global;
+        final int slot;
+        final Expr[] dims;
+        final Tipo elemento;
+
+        AlocarVetor(boolean global, int slot, Expr[] dims, Tipo elemento) {
+            this.global = global;
+            this.slot = slot;
+            this.dims = dims;
+            this.elemento = elemento;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            int[] d = new int[dims.length];
+            for (int i = 0; i < d.length; i++) {
+                d[i] = dims[i].avaliarInt(q);
+            }
+            (global ? q.ex.globais : q).o[slot] = new Vetor(d, elemento.tamP, elemento.tamO);
+        }
+    }
+
+    static final class Leia extends Cmd {
+        final Lugar lugar;
+
+        Leia(Lugar lugar) {
+            this.lugar = lugar;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            ConsoleC console = q.ex.console;
+            switch (lugar.tipo.categoria) {
+                case LITERAL: {
+                    String s = console.lerLinha();
+                    if (console.leituraOk()) {
+                        Memoria m = lugar.resolver(q);
+                        m.o[q.ro] = s;
+                    }
+                    break;
+                }
+                case REAL: {
+                    double d = console.lerReal();
+                    if (console.leituraOk()) {
+                        Memoria m = lugar.resolver(q);
+                        m.p[q.rp] = Double.doubleToRawLongBits(d);
+                    }
+                    break;
+                }
+                default: {
+                    int v = console.lerInteiro();
+                    if (console.leituraOk()) {
+                        Memoria m = lugar.resolver(q);
+                        m.p[q.rp] = lugar.tipo.categoria == JanderType.LOGICAL ? (v != 0 ? 1 : 0) : v;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /** escreva: cada parte é um texto fixo (expressao == null) ou uma expressão formatada pelo seu tipo */
+    static final class Escreva extends Cmd {
+        final String[] textos;
+        final Expr[] expressoes;
+
+        Escreva(String[] textos, Expr[] expressoes) {
+            this.textos = textos;
+            this.expressoes = expressoes;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            ConsoleC console = q.ex.console;
+            for (int i = 0; i < expressoes.length; i++) {
+                Expr e = expressoes[i];
+                if (e == null) {
+                    console.escrever(textos[i]);
+                    continue;
+                }
+                switch (e.tipo.categoria) {
+                    case INTEGER: console.escreverInteiro(e.avaliarInt(q)); break;
+                    case REAL: console.escreverReal(e.avaliarReal(q)); break;
+                    case LITERAL: console.escrever((String) e.avaliarObj(q)); break;
+                    case LOGICAL: console.escrever(e.avaliarLogico(q) ? "verdadeiro" : "falso"); break;
+                    default: console.escrever("<ERRO_TIPO>"); break;
+                }
+            }
+        }
+    }
+
+    static final class Se extends Cmd {
+        final Expr condicao;
+        final Cmd entao;
+        final Cmd senao;
+
+        Se(Expr condicao, Cmd entao, Cmd senao) {
+            this.condicao = condicao;
+            this.entao = entao;
+            this.senao = senao;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            if (condicao.avaliarLogico(q)) {
+                entao.executar(q);
+            } else if (senao != null) {
+                senao.executar(q);
+            }
+        }
+    }
+
+    static final class Enquanto extends Cmd {
+        final Expr condicao;
+        final Cmd corpo;
+
+        Enquanto(Expr condicao, Cmd corpo) {
+            this.condicao = condicao;
+            this.corpo = corpo;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            while (condicao.avaliarLogico(q)) {
+                corpo.executar(q);
+                if (q.retornou) return;
+            }
+        }
+    }
+
+    /** faca ... ate cond, traduzido pelo gerador como do { ... } while (cond) */
+    static final class Faca extends Cmd {
+        final Cmd corpo;
+        final Expr condicao;
+
+        Faca(Cmd corpo, Expr condicao) {
+            this.corpo = corpo;
+            this.condicao = condicao;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            do {
+                corpo.executar(q);
+                if (q.retornou) return;
+            } while (condicao.avaliarLogico(q));
+        }
+    }
+
+    /** for (v = inicio; v <= fim; v++), com o limite reavaliado a cada iteração como no C */
+    static final class Para extends Cmd {
+        final Lugar variavel;
+        final Expr inicio;
+        final Expr fim;
+        final Cmd corpo;
+
+        Para(Lugar variavel, Expr inicio, Expr fim, Cmd corpo) {
+            this.variavel = variavel;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.corpo = corpo;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            long v = valorPrimitivo(variavel.tipo, inicio, q);
+            Memoria m = variavel.resolver(q);
+            m.p[q.rp] = v;
+            while (true) {
+                m = variavel.resolver(q);
+                int atual = (int) m.p[q.rp];
+                int limite = fim.tipo.categoria == JanderType.REAL ? (int) Math.floor(fim.avaliarReal(q)) : fim.avaliarInt(q);
+                if (atual > limite) return;
+                corpo.executar(q);
+                if (q.retornou) return;
+                m = variavel.resolver(q);
+                m.p[q.rp] = (int) m.p[q.rp] + 1;
+            }
+        }
+    }
+
+    /** Para com variável inteira local e limite inteiro: caso mais comum, sem resolver lugares */
+    static final class ParaLocal extends Cmd {
+        final int slot;
+        final Expr inicio;
+        final Expr fim;
+        final Cmd corpo;
+
+        ParaLocal(int slot, Expr inicio, Expr fim, Cmd corpo) {
+            this.slot = slot;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.corpo = corpo;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            long[] p = q.p;
+            for (p[slot] = inicio.avaliarInt(q); (int) p[slot] <= fim.avaliarInt(q); p[slot] = (int) p[slot] + 1) {
+                corpo.executar(q);
+                if (q.retornou) return;
+            }
+        }
+    }
+
+    /**
+     * caso: "chaves" ordenadas com o braço de cada uma. Se as chaves são densas,
+     * "tabela" indexa diretamente (valor - minimo); senão é feita busca binária.
+     */
+    static final class Caso extends Cmd {
+        final Expr seletor;
+        final int[] chaves;
+        final int[] bracoDaChave;
+        final int minimo;
+        final int[] tabela;
+        final Cmd[] bracos;
+        final Cmd senao;
+
+        Caso(Expr seletor, int[] chaves, int[] bracoDaChave, Cmd[] bracos, Cmd senao) {
+            this.seletor = seletor;
+            this.chaves = chaves;
+            this.bracoDaChave = bracoDaChave;
+            this.bracos = bracos;
+            this.senao = senao;
+            if (chaves.length > 0 && (long) chaves[chaves.length - 1] - chaves[0] <= 4L * chaves.length + 64) {
+                this.minimo = chaves[0];
+                this.tabela = new int[chaves[chaves.length - 1] - chaves[0] + 1];
+                java.util.Arrays.fill(tabela, -1);
+                for (int i = 0; i < chaves.length; i++) {
+                    tabela[chaves[i] - minimo] = bracoDaChave[i];
+                }
+            } else {
+                this.minimo = 0;
+                this.tabela = null;
+            }
+        }
+
+        @Override
+        void executar(Quadro q) {
+            int v = seletor.avaliarInt(q);
+            int braco = -1;
+            if (tabela != null) {
+                long i = (long) v - minimo;
+                if (i >= 0 && i < tabela.length) braco = tabela[(int) i];
+            } else {
+                int i = java.util.Arrays.binarySearch(chaves, v);
+                if (i >= 0) braco = bracoDaChave[i];
+            }
+            if (braco >= 0) {
+                bracos[braco].executar(q);
+            } else if (senao != null) {
+                senao.executar(q);
+            }
+        }
+    }
+
+    static final class ChamadaCmd extends Cmd {
+        final Chamada chamada;
+
+        ChamadaCmd(Chamada chamada) {
+            this.chamada = chamada;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            chamada.invocar(q);
+        }
+    }
+
+    static final class Retorne extends Cmd {
+        final Tipo tipo;
+        final Expr e;
+
+        Retorne(Tipo tipo, Expr e) {
+            this.tipo = tipo;
+            this.e = e;
+        }
+
+        @Override
+        void executar(Quadro q) {
+            if (tipo.primitivo()) {
+                q.retP = valorPrimitivo(tipo, e, q);
+            } else if (tipo.categoria == JanderType.RECORD) {
+                Ponteiro origem = (Ponteiro) e.avaliarObj(q);
+                Memoria copia = new Memoria(tipo.tamP, tipo.tamO);
+                copiar(origem, copia, 0, 0, tipo);
+                q.retO = new Ponteiro(copia, 0, 0);
+            } else {
+                q.retO = e.avaliarObj(q);
+            }
+            q.retornou = true;
+        }
+    }
+}
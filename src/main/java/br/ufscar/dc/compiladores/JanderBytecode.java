@@ -0,0 +1,1284 @@
+package br.ufscar.dc.compiladores;
+
+import br.ufscar.dc.compiladores.InterpretadorNos.*;
+import br.ufscar.dc.compiladores.SymbolTable.JanderType;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Backend que compila um programa LA para bytecode da JVM. Parte dos nós já
+ * resolvidos pelo JanderInterpretador: cada funcao/procedimento vira um método
+ * estático de uma classe oculta (hidden class), variáveis escalares viram
+ * variáveis locais da JVM e registros que nunca são usados inteiros são
+ * achatados em locais, um por campo. O resto (registros inteiros, vetores,
+ * literais, variáveis com endereço tomado) fica no mesmo modelo de memória do
+ * interpretador, de modo que a saída é idêntica à dele e à do C gerado.
+ *
+ * Usa ASM: a API java.lang.classfile ainda é preview no Java 22.
+ */
+public class JanderBytecode implements Opcodes {
+
+    private static final String CLASSE = "br/ufscar/dc/compiladores/ProgramaLA";
+    private static final String PRINCIPAL = "algoritmo";
+    private static final String MEMORIA = Type.getInternalName(Memoria.class);
+    private static final String VETOR = Type.getInternalName(Vetor.class);
+    private static final String PONTEIRO = Type.getInternalName(Ponteiro.class);
+    private static final String EXECUCAO = Type.getInternalName(Execucao.class);
+    private static final String CONSOLE = Type.getInternalName(ConsoleC.class);
+    private static final String SUPORTE = Type.getInternalName(JanderBytecode.class);
+
+    /** Programa carregado como classe oculta */
+    public static final class Programa {
+        private final MethodHandle principal;
+        private final int tamGlobaisP;
+        private final int tamGlobaisO;
+        private final int tamanhoClasse;
+
+        private Programa(MethodHandle principal, int tamGlobaisP, int tamGlobaisO, int tamanhoClasse) {
+            this.principal = principal;
+            this.tamGlobaisP = tamGlobaisP;
+            this.tamGlobaisO = tamGlobaisO;
+            this.tamanhoClasse = tamanhoClasse;
+        }
+
+        /** Tamanho do arquivo de classe gerado, em bytes */
+        public int getTamanhoClasse() {
+            return tamanhoClasse;
+        }
+    }
+
+    /** Gera a classe para o programa já convertido em nós e a carrega como classe oculta */
+    public Programa compilar(JanderInterpretador.Programa programa) {
+        byte[] classe = gerarClasse(programa.principal);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classe, true);
+            MethodHandle principal = lookup.findStatic(lookup.lookupClass(), PRINCIPAL,
+                    MethodType.methodType(void.class, Execucao.class));
+            return new Programa(principal, programa.tamGlobaisP, programa.tamGlobaisO, classe.length);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Falha ao carregar a classe gerada", e);
+        }
+    }
+
+    /** Executa o programa como JanderInterpretador.executar, com a mesma pilha ampliada */
+    public void executar(Programa programa, InputStream in, OutputStream out) throws InterruptedException {
+        ConsoleC console = new ConsoleC(in, out);
+        Throwable[] erro = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                programa.principal.invokeExact(new Execucao(new Memoria(programa.tamGlobaisP, programa.tamGlobaisO), console));
+            } catch (StackOverflowError e) {
+                erro[0] = new ErroExecucao("estouro de pilha");
+            } catch (Throwable e) {
+                erro[0] = e;
+            } finally {
+                console.descarregar();
+            }
+        }, "jander-bytecode", JanderInterpretador.TAMANHO_PILHA);
+        thread.start();
+        thread.join();
+        if (erro[0] instanceof RuntimeException) {
+            throw (RuntimeException) erro[0];
+        }
+        if (erro[0] instanceof Error) {
+            throw (Error) erro[0];
+        }
+        if (erro[0] != null) {
+            throw new IllegalStateException(erro[0]);
+        }
+    }
+
+    byte[] gerarClasse(Funcao principal) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String a, String b) {
+                try {
+                    return super.getCommonSuperClass(a, b);
+                } catch (RuntimeException e) {
+                    return "java/lang/Object";
+                }
+            }
+        };
+        cw.visit(V17, ACC_FINAL | ACC_SUPER, CLASSE, null, "java/lang/Object", null);
+
+        Map<Funcao, Analise> funcoes = new LinkedHashMap<>();
+        List<Funcao> pendentes = new ArrayList<>();
+        pendentes.add(principal);
+        while (!pendentes.isEmpty()) {
+            Funcao f = pendentes.remove(pendentes.size() - 1);
+            if (funcoes.containsKey(f)) continue;
+            Analise analise = new Analise(f);
+            funcoes.put(f, analise);
+            pendentes.addAll(analise.chamadas);
+        }
+        for (Analise analise : funcoes.values()) {
+            new GeradorMetodo(cw, analise, analise.funcao == principal).gerar();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static String nomeMetodo(Funcao f) {
+        return "f_" + f.nome;
+    }
+
+    private static String descritor(Funcao f) {
+        StringBuilder sb = new StringBuilder("(L").append(EXECUCAO).append(';');
+        for (int i = 0; i < f.tiposParametros.length; i++) {
+            sb.append(f.modosParametros[i] == InterpretadorNos.PARAM_PRIMITIVO ? descritorPrimitivo(f.tiposParametros[i]) : "Ljava/lang/Object;");
+        }
+        sb.append(')');
+        if (f.retorno == null) {
+            sb.append('V');
+        } else {
+            sb.append(f.retorno.primitivo() ? descritorPrimitivo(f.retorno) : "Ljava/lang/Object;");
+        }
+        return sb.toString();
+    }
+
+    private static String descritorPrimitivo(Tipo t) {
+        return t.categoria == JanderType.REAL ? "D" : "I";
+    }
+
+    // ---------------------------------------------------- suporte em tempo de execução
+
+    static int dividir(int a, int b) {
+        if (b == 0) throw new ErroExecucao("divisao por zero");
+        return a / b;
+    }
+
+    static int resto(int a, int b) {
+        if (b == 0) throw new ErroExecucao("divisao por zero");
+        return a % b;
+    }
+
+    static String literal(Object valor) {
+        return valor == null ? "" : (String) valor;
+    }
+
+    static Ponteiro ponteiro(Object valor) {
+        if (valor == null) throw new ErroExecucao("acesso por ponteiro nulo");
+        return (Ponteiro) valor;
+    }
+
+    static void copiarRegistro(Object origem, Memoria destino, int p, int o, int tamP, int tamO) {
+        Ponteiro pt = (Ponteiro) origem;
+        // Cópia temporária: origem e destino podem se sobrepor
+        long[] vp = java.util.Arrays.copyOfRange(pt.m.p, pt.p, pt.p + tamP);
+        Object[] vo = java.util.Arrays.copyOfRange(pt.m.o, pt.o, pt.o + tamO);
+        System.arraycopy(vp, 0, destino.p, p, tamP);
+        System.arraycopy(vo, 0, destino.o, o, tamO);
+    }
+
+    static Object copiaRetorno(Object origem, int tamP, int tamO) {
+        Memoria copia = new Memoria(tamP, tamO);
+        copiarRegistro(origem, copia, 0, 0, tamP, tamO);
+        return new Ponteiro(copia, 0, 0);
+    }
+
+    // ---------------------------------------------------- análise
+
+    /**
+     * Percorre os nós de uma função: funções chamadas, tipo de cada slot
+     * primitivo e slots que precisam ficar em memória (endereço tomado, parte
+     * de um registro usado inteiro, parâmetro registro).
+     */
+    private static final class Analise {
+        final Funcao funcao;
+        final List<Funcao> chamadas = new ArrayList<>();
+        final Map<Integer, JanderType> tiposSlot = new HashMap<>();
+        final boolean[] emMemoria;
+        final Map<Integer, Tipo> vetoresLocais = new LinkedHashMap<>();
+
+        Analise(Funcao funcao) {
+            this.funcao = funcao;
+            this.emMemoria = new boolean[funcao.tamP];
+            for (int i = 0; i < funcao.tiposParametros.length; i++) {
+                Tipo t = funcao.tiposParametros[i];
+                if (funcao.modosParametros[i] == InterpretadorNos.PARAM_PRIMITIVO) {
+                    tiposSlot.put(funcao.slotsP[i], t.categoria);
+                } else if (funcao.modosParametros[i] == InterpretadorNos.PARAM_REGISTRO) {
+                    marcar(funcao.slotsP[i], t.tamP);
+                }
+            }
+            cmd(funcao.corpo);
+        }
+
+        boolean registrado(int slot) {
+            return tiposSlot.containsKey(slot) && !emMemoria[slot];
+        }
+
+        boolean precisaMemoria() {
+            if (funcao.tamO > 0) return true;
+            for (boolean m : emMemoria) {
+                if (m) return true;
+            }
+            return false;
+        }
+
+        private void marcar(int inicio, int tamanho) {
+            for (int i = inicio; i < inicio + tamanho; i++) {
+                emMemoria[i] = true;
+            }
+        }
+
+        private void lugar(Lugar l, boolean escapa) {
+            if (l instanceof LugarLocal) {
+                LugarLocal local = (LugarLocal) l;
+                if (l.tipo.categoria == JanderType.RECORD || escapa) {
+                    marcar(local.p, l.tipo.tamP);
+                } else if (l.tipo.primitivo()) {
+                    tiposSlot.put(local.p, l.tipo.categoria);
+                }
+            } else if (l instanceof LugarVetor) {
+                for (Expr e : ((LugarVetor) l).indices) expr(e);
+            } else if (l instanceof LugarApontado) {
+                expr(((LugarApontado) l).ponteiro);
+            }
+        }
+
+        private void expr(Expr e) {
+            if (e instanceof LerIntLocal) {
+                tiposSlot.put(((LerIntLocal) e).slot, JanderType.INTEGER);
+            } else if (e instanceof LerRealLocal) {
+                tiposSlot.put(((LerRealLocal) e).slot, JanderType.REAL);
+            } else if (e instanceof Ler) {
+                lugar(((Ler) e).lugar, false);
+            } else if (e instanceof Endereco) {
+                lugar(((Endereco) e).lugar, true);
+            } else if (e instanceof LogicoParaInt) {
+                expr(((LogicoParaInt) e).e);
+            } else if (e instanceof IntParaReal) {
+                expr(((IntParaReal) e).e);
+            } else if (e instanceof RealParaInt) {
+                expr(((RealParaInt) e).e);
+            } else if (e instanceof OpInt) {
+                expr(((OpInt) e).a);
+                expr(((OpInt) e).b);
+            } else if (e instanceof OpReal) {
+                expr(((OpReal) e).a);
+                expr(((OpReal) e).b);
+            } else if (e instanceof NegInt) {
+                expr(((NegInt) e).e);
+            } else if (e instanceof NegReal) {
+                expr(((NegReal) e).e);
+            } else if (e instanceof Concatenar) {
+                expr(((Concatenar) e).a);
+                expr(((Concatenar) e).b);
+            } else if (e instanceof CompInt) {
+                expr(((CompInt) e).a);
+                expr(((CompInt) e).b);
+            } else if (e instanceof CompReal) {
+                expr(((CompReal) e).a);
+                expr(((CompReal) e).b);
+            } else if (e instanceof CompLiteral) {
+                expr(((CompLiteral) e).a);
+                expr(((CompLiteral) e).b);
+            } else if (e instanceof Ou) {
+                for (Expr t : ((Ou) e).termos) expr(t);
+            } else if (e instanceof E) {
+                for (Expr f : ((E) e).fatores) expr(f);
+            } else if (e instanceof Nao) {
+                expr(((Nao) e).e);
+            } else if (e instanceof Chamada) {
+                Chamada c = (Chamada) e;
+                chamadas.add(c.funcao);
+                for (int i = 0; i < c.argumentos.length; i++) {
+                    if (c.argumentos[i] != null) expr(c.argumentos[i]);
+                    if (c.lugares[i] != null) lugar(c.lugares[i], true);
+                }
+            }
+        }
+
+        private void cmd(Cmd c) {
+            if (c instanceof Bloco) {
+                for (Cmd filho : ((Bloco) c).cmds) cmd(filho);
+            } else if (c instanceof AtribuirIntLocal) {
+                tiposSlot.put(((AtribuirIntLocal) c).slot, JanderType.INTEGER);
+                expr(((AtribuirIntLocal) c).e);
+            } else if (c instanceof AtribuirPrimitivo) {
+                lugar(((AtribuirPrimitivo) c).lugar, false);
+                expr(((AtribuirPrimitivo) c).e);
+            } else if (c instanceof AtribuirObj) {
+                lugar(((AtribuirObj) c).lugar, false);
+                expr(((AtribuirObj) c).e);
+            } else if (c instanceof AtribuirRegistro) {
+                lugar(((AtribuirRegistro) c).lugar, false);
+                expr(((AtribuirRegistro) c).e);
+            } else if (c instanceof AlocarVetor) {
+                AlocarVetor a = (AlocarVetor) c;
+                for (Expr d : a.dims) expr(d);
+                if (!a.global) vetoresLocais.put(a.slot, a.elemento);
+            } else if (c instanceof Leia) {
+                lugar(((Leia) c).lugar, false);
+            } else if (c instanceof Escreva) {
+                for (Expr e : ((Escreva) c).expressoes) {
+                    if (e != null) expr(e);
+                }
+            } else if (c instanceof Se) {
+                Se se = (Se) c;
+                expr(se.condicao);
+                cmd(se.entao);
+                if (se.senao != null) cmd(se.senao);
+            } else if (c instanceof Enquanto) {
+                expr(((Enquanto) c).condicao);
+                cmd(((Enquanto) c).corpo);
+            } else if (c instanceof Faca) {
+                cmd(((Faca) c).corpo);
+                expr(((Faca) c).condicao);
+            } else if (c instanceof Para) {
+                Para p = (Para) c;
+                lugar(p.variavel, false);
+                expr(p.inicio);
+                expr(p.fim);
+                cmd(p.corpo);
+            } else if (c instanceof ParaLocal) {
+                ParaLocal p = (ParaLocal) c;
+                tiposSlot.put(p.slot, JanderType.INTEGER);
+                expr(p.inicio);
+                expr(p.fim);
+                cmd(p.corpo);
+            } else if (c instanceof Caso) {
+                Caso caso = (Caso) c;
+                expr(caso.seletor);
+                for (Cmd b : caso.bracos) cmd(b);
+                if (caso.senao != null) cmd(caso.senao);
+            } else if (c instanceof ChamadaCmd) {
+                expr(((ChamadaCmd) c).chamada);
+            } else if (c instanceof Retorne) {
+                expr(((Retorne) c).e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------- geração
+
+    /** Posição resolvida em tempo de execução: bloco em uma local e índices p/o (local opcional + constante) */
+    private static final class Resolvido {
+        int memoria;
+        int localP = -1;
+        int localO = -1;
+        int constP;
+        int constO;
+    }
+
+    private static final class GeradorMetodo {
+        private final Analise analise;
+        private final Funcao funcao;
+        private final MethodVisitor mv;
+        private final boolean principal;
+        // Local 0 é a Execucao; depois vêm os parâmetros, a memória do quadro e as demais locais
+        private int proxLocal = 1;
+        private int localMemoria = -1;
+        private final Map<Integer, Integer> localDoSlot = new HashMap<>();
+        private final Map<Integer, Integer> localDoVetor = new HashMap<>();
+
+        GeradorMetodo(ClassWriter cw, Analise analise, boolean principal) {
+            this.analise = analise;
+            this.funcao = analise.funcao;
+            this.principal = principal;
+            String nome = principal ? PRINCIPAL : nomeMetodo(funcao);
+            String descritor = principal ? "(L" + EXECUCAO + ";)V" : descritor(funcao);
+            this.mv = cw.visitMethod(ACC_STATIC | ACC_PRIVATE, nome, descritor, null, null);
+        }
+
+        private int novaLocal(boolean dupla) {
+            int l = proxLocal;
+            proxLocal += dupla ? 2 : 1;
+            return l;
+        }
+
+        void gerar() {
+            mv.visitCode();
+            int[] locaisParametros = new int[funcao.tiposParametros.length];
+            for (int i = 0; i < locaisParametros.length; i++) {
+                boolean dupla = funcao.modosParametros[i] == InterpretadorNos.PARAM_PRIMITIVO
+                        && funcao.tiposParametros[i].categoria == JanderType.REAL;
+                locaisParametros[i] = novaLocal(dupla);
+            }
+            if (analise.precisaMemoria()) {
+                localMemoria = novaLocal(false);
+                mv.visitTypeInsn(NEW, MEMORIA);
+                mv.visitInsn(DUP);
+                constante(funcao.tamP);
+                constante(funcao.tamO);
+                mv.visitMethodInsn(INVOKESPECIAL, MEMORIA, "<init>", "(II)V", false);
+                mv.visitVarInsn(ASTORE, localMemoria);
+            }
+
+            // Parâmetros: primitivos registrados continuam na própria local; o resto vai para a memória do quadro
+            for (int i = 0; i < locaisParametros.length; i++) {
+                int local = locaisParametros[i];
+                Tipo t = funcao.tiposParametros[i];
+                switch (funcao.modosParametros[i]) {
+                    case InterpretadorNos.PARAM_PRIMITIVO:
+                        if (analise.registrado(funcao.slotsP[i])) {
+                            localDoSlot.put(funcao.slotsP[i], local);
+                        } else {
+                            mv.visitVarInsn(ALOAD, localMemoria);
+                            mv.visitFieldInsn(GETFIELD, MEMORIA, "p", "[J");
+                            constante(funcao.slotsP[i]);
+                            mv.visitVarInsn(t.categoria == JanderType.REAL ? DLOAD : ILOAD, local);
+                            paraLong(t.categoria);
+                            mv.visitInsn(LASTORE);
+                        }
+                        break;
+                    case InterpretadorNos.PARAM_REGISTRO:
+                        mv.visitVarInsn(ALOAD, local);
+                        mv.visitVarInsn(ALOAD, localMemoria);
+                        constante(funcao.slotsP[i]);
+                        constante(funcao.slotsO[i]);
+                        constante(t.tamP);
+                        constante(t.tamO);
+                        mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "copiarRegistro",
+                                "(Ljava/lang/Object;L" + MEMORIA + ";IIII)V", false);
+                        break;
+                    default:
+                        mv.visitVarInsn(ALOAD, localMemoria);
+                        mv.visitFieldInsn(GETFIELD, MEMORIA, "o", "[Ljava/lang/Object;");
+                        constante(funcao.slotsO[i]);
+                        mv.visitVarInsn(ALOAD, local);
+                        mv.visitInsn(AASTORE);
+                        break;
+                }
+            }
+
+            // Demais escalares registrados começam em zero, como os slots do quadro do interpretador
+            for (Map.Entry<Integer, JanderType> e : analise.tiposSlot.entrySet()) {
+                int slot = e.getKey();
+                if (!analise.registrado(slot) || localDoSlot.containsKey(slot)) continue;
+                boolean real = e.getValue() == JanderType.REAL;
+                int local = novaLocal(real);
+                localDoSlot.put(slot, local);
+                if (real) {
+                    mv.visitInsn(DCONST_0);
+                    mv.visitVarInsn(DSTORE, local);
+                } else {
+                    mv.visitInsn(ICONST_0);
+                    mv.visitVarInsn(ISTORE, local);
+                }
+            }
+            for (int slot : analise.vetoresLocais.keySet()) {
+                int local = novaLocal(false);
+                localDoVetor.put(slot, local);
+                mv.visitInsn(ACONST_NULL);
+                mv.visitVarInsn(ASTORE, local);
+            }
+
+            cmd(funcao.corpo);
+
+            // Fim sem retorne: valor zero do tipo, como o quadro zerado do interpretador
+            if (funcao.retorno == null || principal) {
+                mv.visitInsn(RETURN);
+            } else if (funcao.retorno.primitivo()) {
+                if (funcao.retorno.categoria == JanderType.REAL) {
+                    mv.visitInsn(DCONST_0);
+                    mv.visitInsn(DRETURN);
+                } else {
+                    mv.visitInsn(ICONST_0);
+                    mv.visitInsn(IRETURN);
+                }
+            } else {
+                mv.visitInsn(ACONST_NULL);
+                mv.visitInsn(ARETURN);
+            }
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        // ------------------------------------------------ utilitários
+
+        private void constante(int v) {
+            if (v >= -1 && v <= 5) {
+                mv.visitInsn(ICONST_0 + v);
+            } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, v);
+            } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, v);
+            } else {
+                mv.visitLdcInsn(v);
+            }
+        }
+
+        private void constanteReal(double v) {
+            if (Double.doubleToRawLongBits(v) == 0L) {
+                mv.visitInsn(DCONST_0);
+            } else if (v == 1.0) {
+                mv.visitInsn(DCONST_1);
+            } else {
+                mv.visitLdcInsn(v);
+            }
+        }
+
+        private void arredondarFloat() {
+            mv.visitInsn(D2F);
+            mv.visitInsn(F2D);
+        }
+
+        /** Valor primitivo no topo (int ou double) para a representação long da memória */
+        private void paraLong(JanderType categoria) {
+            if (categoria == JanderType.REAL) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J", false);
+            } else {
+                mv.visitInsn(I2L);
+            }
+        }
+
+        private void deLong(JanderType categoria) {
+            if (categoria == JanderType.REAL) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "longBitsToDouble", "(J)D", false);
+            } else {
+                mv.visitInsn(L2I);
+            }
+        }
+
+        private void console() {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, EXECUCAO, "console", "L" + CONSOLE + ";");
+        }
+
+        private void globais() {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, EXECUCAO, "globais", "L" + MEMORIA + ";");
+        }
+
+        // ------------------------------------------------ lugares
+
+        private boolean registrado(Lugar l) {
+            return l instanceof LugarLocal && localDoSlot.containsKey(((LugarLocal) l).p);
+        }
+
+        private Resolvido resolver(Lugar l) {
+            Resolvido r = new Resolvido();
+            r.memoria = novaLocal(false);
+            if (l instanceof LugarLocal) {
+                mv.visitVarInsn(ALOAD, localMemoria);
+                mv.visitVarInsn(ASTORE, r.memoria);
+                r.constP = ((LugarLocal) l).p;
+                r.constO = ((LugarLocal) l).o;
+            } else if (l instanceof LugarGlobal) {
+                globais();
+                mv.visitVarInsn(ASTORE, r.memoria);
+                r.constP = ((LugarGlobal) l).p;
+                r.constO = ((LugarGlobal) l).o;
+            } else if (l instanceof LugarVetor) {
+                LugarVetor lv = (LugarVetor) l;
+                vetor(lv.global, lv.slot);
+                mv.visitVarInsn(ASTORE, r.memoria);
+                // linear = ((i0 * d1) + i1) * d2 + ...
+                for (int i = 0; i < lv.indices.length; i++) {
+                    if (i > 0) {
+                        mv.visitVarInsn(ALOAD, r.memoria);
+                        mv.visitFieldInsn(GETFIELD, VETOR, "dims", "[I");
+                        constante(i);
+                        mv.visitInsn(IALOAD);
+                        mv.visitInsn(IMUL);
+                    }
+                    inteiro(lv.indices[i]);
+                    if (i > 0) mv.visitInsn(IADD);
+                }
+                Tipo elemento = lv.elementoBase != null ? lv.elementoBase : lv.tipo;
+                mv.visitInsn(DUP);
+                r.localP = novaLocal(false);
+                r.localO = novaLocal(false);
+                constante(elemento.tamP);
+                mv.visitInsn(IMUL);
+                mv.visitVarInsn(ISTORE, r.localP);
+                constante(elemento.tamO);
+                mv.visitInsn(IMUL);
+                mv.visitVarInsn(ISTORE, r.localO);
+                r.constP = lv.dp;
+                r.constO = lv.dO;
+            } else {
+                LugarApontado la = (LugarApontado) l;
+                objeto(la.ponteiro);
+                mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "ponteiro", "(Ljava/lang/Object;)L" + PONTEIRO + ";", false);
+                mv.visitInsn(DUP);
+                mv.visitInsn(DUP);
+                mv.visitFieldInsn(GETFIELD, PONTEIRO, "m", "L" + MEMORIA + ";");
+                mv.visitVarInsn(ASTORE, r.memoria);
+                r.localP = novaLocal(false);
+                r.localO = novaLocal(false);
+                mv.visitFieldInsn(GETFIELD, PONTEIRO, "p", "I");
+                mv.visitVarInsn(ISTORE, r.localP);
+                mv.visitFieldInsn(GETFIELD, PONTEIRO, "o", "I");
+                mv.visitVarInsn(ISTORE, r.localO);
+                r.constP = la.dp;
+                r.constO = la.dO;
+            }
+            return r;
+        }
+
+        private void indice(int local, int constante) {
+            if (local < 0) {
+                constante(constante);
+                return;
+            }
+            mv.visitVarInsn(ILOAD, local);
+            if (constante != 0) {
+                constante(constante);
+                mv.visitInsn(IADD);
+            }
+        }
+
+        private void arrayP(Resolvido r) {
+            mv.visitVarInsn(ALOAD, r.memoria);
+            mv.visitFieldInsn(GETFIELD, MEMORIA, "p", "[J");
+            indice(r.localP, r.constP);
+        }
+
+        private void arrayO(Resolvido r) {
+            mv.visitVarInsn(ALOAD, r.memoria);
+            mv.visitFieldInsn(GETFIELD, MEMORIA, "o", "[Ljava/lang/Object;");
+            indice(r.localO, r.constO);
+        }
+
+        private void novoPonteiro(Resolvido r) {
+            mv.visitTypeInsn(NEW, PONTEIRO);
+            mv.visitInsn(DUP);
+            mv.visitVarInsn(ALOAD, r.memoria);
+            indice(r.localP, r.constP);
+            indice(r.localO, r.constO);
+            mv.visitMethodInsn(INVOKESPECIAL, PONTEIRO, "<init>", "(L" + MEMORIA + ";II)V", false);
+        }
+
+        private void vetor(boolean global, int slot) {
+            if (!global && localDoVetor.containsKey(slot)) {
+                mv.visitVarInsn(ALOAD, localDoVetor.get(slot));
+                return;
+            }
+            if (global) {
+                globais();
+            } else {
+                mv.visitVarInsn(ALOAD, localMemoria);
+            }
+            mv.visitFieldInsn(GETFIELD, MEMORIA, "o", "[Ljava/lang/Object;");
+            constante(slot);
+            mv.visitInsn(AALOAD);
+            mv.visitTypeInsn(CHECKCAST, VETOR);
+        }
+
+        /** Empilha o valor primitivo de um lugar: int para inteiro/lógico, double para real */
+        private void lerPrimitivo(Lugar l) {
+            if (registrado(l)) {
+                mv.visitVarInsn(l.tipo.categoria == JanderType.REAL ? DLOAD : ILOAD, localDoSlot.get(((LugarLocal) l).p));
+                return;
+            }
+            Resolvido r = resolver(l);
+            arrayP(r);
+            mv.visitInsn(LALOAD);
+            deLong(l.tipo.categoria);
+        }
+
+        /** Grava no lugar o valor primitivo guardado na local "valor" (já na representação do tipo) */
+        private void gravarPrimitivo(Lugar l, int valor) {
+            boolean real = l.tipo.categoria == JanderType.REAL;
+            if (registrado(l)) {
+                mv.visitVarInsn(real ? DLOAD : ILOAD, valor);
+                mv.visitVarInsn(real ? DSTORE : ISTORE, localDoSlot.get(((LugarLocal) l).p));
+                return;
+            }
+            Resolvido r = resolver(l);
+            arrayP(r);
+            mv.visitVarInsn(real ? DLOAD : ILOAD, valor);
+            paraLong(l.tipo.categoria);
+            mv.visitInsn(LASTORE);
+        }
+
+        // ------------------------------------------------ expressões
+
+        /** Valor de uma expressão convertido para uma variável do tipo t (InterpretadorNos.valorPrimitivo) */
+        private void valorPrimitivo(Tipo t, Expr e) {
+            switch (t.categoria) {
+                case INTEGER:
+                    if (e.tipo.categoria == JanderType.REAL) {
+                        real(e);
+                        mv.visitInsn(D2I);
+                    } else {
+                        inteiro(e);
+                    }
+                    break;
+                case REAL:
+                    if (e.tipo.categoria == JanderType.REAL) {
+                        real(e);
+                    } else {
+                        inteiro(e);
+                        mv.visitInsn(I2D);
+                    }
+                    arredondarFloat();
+                    break;
+                default:
+                    logico(e);
+                    break;
+            }
+        }
+
+        private void inteiro(Expr e) {
+            if (e instanceof ConstInt) {
+                constante(((ConstInt) e).valor);
+            } else if (e instanceof LerIntLocal) {
+                lerPrimitivo(new LugarLocal(Tipo.INTEIRO, ((LerIntLocal) e).slot, -1));
+            } else if (e instanceof Ler) {
+                lerPrimitivo(((Ler) e).lugar);
+            } else if (e instanceof Chamada) {
+                chamada((Chamada) e);
+            } else if (e instanceof LogicoParaInt) {
+                logico(((LogicoParaInt) e).e);
+            } else if (e instanceof RealParaInt) {
+                real(((RealParaInt) e).e);
+                mv.visitInsn(D2I);
+            } else if (e instanceof OpInt) {
+                OpInt op = (OpInt) e;
+                inteiro(op.a);
+                inteiro(op.b);
+                switch (op.op) {
+                    case InterpretadorNos.SOMA: mv.visitInsn(IADD); break;
+                    case InterpretadorNos.SUB: mv.visitInsn(ISUB); break;
+                    case InterpretadorNos.MUL: mv.visitInsn(IMUL); break;
+                    case InterpretadorNos.DIV:
+                        mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "dividir", "(II)I", false);
+                        break;
+                    default:
+                        mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "resto", "(II)I", false);
+                        break;
+                }
+            } else if (e instanceof NegInt) {
+                inteiro(((NegInt) e).e);
+                mv.visitInsn(INEG);
+            } else if (e.tipo.categoria == JanderType.LOGICAL) {
+                logico(e);
+            } else {
+                throw new IllegalStateException(e.getClass().getSimpleName() + " nao e inteira");
+            }
+        }
+
+        private void real(Expr e) {
+            if (e instanceof ConstReal) {
+                constanteReal(((ConstReal) e).valor);
+            } else if (e instanceof LerRealLocal) {
+                lerPrimitivo(new LugarLocal(Tipo.REAL, ((LerRealLocal) e).slot, -1));
+            } else if (e instanceof Ler) {
+                lerPrimitivo(((Ler) e).lugar);
+            } else if (e instanceof Chamada) {
+                chamada((Chamada) e);
+            } else if (e instanceof IntParaReal) {
+                inteiro(((IntParaReal) e).e);
+                if (e.flutuante) {
+                    mv.visitInsn(I2F);
+                    mv.visitInsn(F2D);
+                } else {
+                    mv.visitInsn(I2D);
+                }
+            } else if (e instanceof OpReal) {
+                OpReal op = (OpReal) e;
+                real(op.a);
+                real(op.b);
+                switch (op.op) {
+                    case InterpretadorNos.SOMA: mv.visitInsn(DADD); break;
+                    case InterpretadorNos.SUB: mv.visitInsn(DSUB); break;
+                    case InterpretadorNos.MUL: mv.visitInsn(DMUL); break;
+                    default: mv.visitInsn(DDIV); break;
+                }
+                if (op.flutuante) arredondarFloat();
+            } else if (e instanceof NegReal) {
+                real(((NegReal) e).e);
+                mv.visitInsn(DNEG);
+            } else {
+                throw new IllegalStateException(e.getClass().getSimpleName() + " nao e real");
+            }
+        }
+
+        private void logico(Expr e) {
+            if (e instanceof ConstLogico) {
+                mv.visitInsn(((ConstLogico) e).valor ? ICONST_1 : ICONST_0);
+            } else if (e instanceof Ler) {
+                lerPrimitivo(((Ler) e).lugar);
+            } else if (e instanceof Chamada) {
+                chamada((Chamada) e);
+            } else {
+                Label falso = new Label();
+                Label fim = new Label();
+                saltarSeFalso(e, falso);
+                mv.visitInsn(ICONST_1);
+                mv.visitJumpInsn(GOTO, fim);
+                mv.visitLabel(falso);
+                mv.visitInsn(ICONST_0);
+                mv.visitLabel(fim);
+            }
+        }
+
+        private void saltarSeFalso(Expr e, Label falso) {
+            if (e instanceof CompInt) {
+                CompInt c = (CompInt) e;
+                inteiro(c.a);
+                inteiro(c.b);
+                mv.visitJumpInsn(negacaoIcmp(c.op), falso);
+            } else if (e instanceof CompReal) {
+                CompReal c = (CompReal) e;
+                real(c.a);
+                real(c.b);
+                // dcmpg para < e <=, dcmpl para os demais: com NaN a comparação é falsa, como no interpretador
+                boolean g = c.op == InterpretadorNos.MENOR || c.op == InterpretadorNos.MENOR_IGUAL;
+                mv.visitInsn(g ? DCMPG : DCMPL);
+                mv.visitJumpInsn(negacaoZero(c.op), falso);
+            } else if (e instanceof CompLiteral) {
+                CompLiteral c = (CompLiteral) e;
+                objeto(c.a);
+                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                objeto(c.b);
+                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "compareTo", "(Ljava/lang/String;)I", false);
+                mv.visitJumpInsn(negacaoZero(c.op), falso);
+            } else if (e instanceof E) {
+                for (Expr f : ((E) e).fatores) {
+                    saltarSeFalso(f, falso);
+                }
+            } else if (e instanceof Ou) {
+                Expr[] termos = ((Ou) e).termos;
+                Label verdadeiro = new Label();
+                for (int i = 0; i < termos.length - 1; i++) {
+                    logico(termos[i]);
+                    mv.visitJumpInsn(IFNE, verdadeiro);
+                }
+                saltarSeFalso(termos[termos.length - 1], falso);
+                mv.visitLabel(verdadeiro);
+            } else if (e instanceof Nao) {
+                logico(((Nao) e).e);
+                mv.visitJumpInsn(IFNE, falso);
+            } else if (e instanceof ConstLogico) {
+                if (!((ConstLogico) e).valor) mv.visitJumpInsn(GOTO, falso);
+            } else {
+                logico(e);
+                mv.visitJumpInsn(IFEQ, falso);
+            }
+        }
+
+        private static int negacaoIcmp(int op) {
+            switch (op) {
+                case InterpretadorNos.IGUAL: return IF_ICMPNE;
+                case InterpretadorNos.DIFERENTE: return IF_ICMPEQ;
+                case InterpretadorNos.MAIOR: return IF_ICMPLE;
+                case InterpretadorNos.MAIOR_IGUAL: return IF_ICMPLT;
+                case InterpretadorNos.MENOR: return IF_ICMPGE;
+                default: return IF_ICMPGT;
+            }
+        }
+
+        private static int negacaoZero(int op) {
+            switch (op) {
+                case InterpretadorNos.IGUAL: return IFNE;
+                case InterpretadorNos.DIFERENTE: return IFEQ;
+                case InterpretadorNos.MAIOR: return IFLE;
+                case InterpretadorNos.MAIOR_IGUAL: return IFLT;
+                case InterpretadorNos.MENOR: return IFGE;
+                default: return IFGT;
+            }
+        }
+
+        private void objeto(Expr e) {
+            if (e instanceof ConstLiteral) {
+                mv.visitLdcInsn(((ConstLiteral) e).valor);
+            } else if (e instanceof Ler) {
+                Lugar l = ((Ler) e).lugar;
+                Resolvido r = resolver(l);
+                if (l.tipo.categoria == JanderType.RECORD) {
+                    novoPonteiro(r);
+                    return;
+                }
+                arrayO(r);
+                mv.visitInsn(AALOAD);
+                if (l.tipo.categoria == JanderType.LITERAL) {
+                    mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "literal", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+                }
+            } else if (e instanceof Endereco) {
+                novoPonteiro(resolver(((Endereco) e).lugar));
+            } else if (e instanceof Concatenar) {
+                objeto(((Concatenar) e).a);
+                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                objeto(((Concatenar) e).b);
+                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            } else if (e instanceof Chamada) {
+                chamada((Chamada) e);
+                if (e.tipo.categoria == JanderType.LITERAL) {
+                    mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "literal", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+                }
+            } else {
+                throw new IllegalStateException(e.getClass().getSimpleName() + " nao e objeto");
+            }
+        }
+
+        private void chamada(Chamada c) {
+            Funcao f = c.funcao;
+            mv.visitVarInsn(ALOAD, 0);
+            for (int i = 0; i < c.argumentos.length; i++) {
+                switch (f.modosParametros[i]) {
+                    case InterpretadorNos.PARAM_PRIMITIVO:
+                        valorPrimitivo(f.tiposParametros[i], c.argumentos[i]);
+                        break;
+                    case InterpretadorNos.PARAM_REFERENCIA:
+                        novoPonteiro(resolver(c.lugares[i]));
+                        break;
+                    default:
+                        objeto(c.argumentos[i]);
+                        break;
+                }
+            }
+            mv.visitMethodInsn(INVOKESTATIC, CLASSE, nomeMetodo(f), descritor(f), false);
+        }
+
+        // ------------------------------------------------ comandos
+
+        private void cmd(Cmd c) {
+            if (c instanceof Bloco) {
+                for (Cmd filho : ((Bloco) c).cmds) cmd(filho);
+            } else if (c instanceof AtribuirIntLocal) {
+                AtribuirIntLocal a = (AtribuirIntLocal) c;
+                int valor = novaLocal(false);
+                inteiro(a.e);
+                mv.visitVarInsn(ISTORE, valor);
+                gravarPrimitivo(new LugarLocal(Tipo.INTEIRO, a.slot, -1), valor);
+            } else if (c instanceof AtribuirPrimitivo) {
+                AtribuirPrimitivo a = (AtribuirPrimitivo) c;
+                boolean real = a.lugar.tipo.categoria == JanderType.REAL;
+                int valor = novaLocal(real);
+                valorPrimitivo(a.lugar.tipo, a.e);
+                mv.visitVarInsn(real ? DSTORE : ISTORE, valor);
+                gravarPrimitivo(a.lugar, valor);
+            } else if (c instanceof AtribuirObj) {
+                AtribuirObj a = (AtribuirObj) c;
+                int valor = novaLocal(false);
+                objeto(a.e);
+                mv.visitVarInsn(ASTORE, valor);
+                Resolvido r = resolver(a.lugar);
+                arrayO(r);
+                mv.visitVarInsn(ALOAD, valor);
+                mv.visitInsn(AASTORE);
+            } else if (c instanceof AtribuirRegistro) {
+                AtribuirRegistro a = (AtribuirRegistro) c;
+                int valor = novaLocal(false);
+                objeto(a.e);
+                mv.visitVarInsn(ASTORE, valor);
+                Resolvido r = resolver(a.lugar);
+                mv.visitVarInsn(ALOAD, valor);
+                mv.visitVarInsn(ALOAD, r.memoria);
+                indice(r.localP, r.constP);
+                indice(r.localO, r.constO);
+                constante(a.lugar.tipo.tamP);
+                constante(a.lugar.tipo.tamO);
+                mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "copiarRegistro",
+                        "(Ljava/lang/Object;L" + MEMORIA + ";IIII)V", false);
+            } else if (c instanceof AlocarVetor) {
+                alocarVetor((AlocarVetor) c);
+            } else if (c instanceof Leia) {
+                leia((Leia) c);
+            } else if (c instanceof Escreva) {
+                escreva((Escreva) c);
+            } else if (c instanceof Se) {
+                Se se = (Se) c;
+                Label senao = new Label();
+                Label fim = new Label();
+                saltarSeFalso(se.condicao, senao);
+                cmd(se.entao);
+                mv.visitJumpInsn(GOTO, fim);
+                mv.visitLabel(senao);
+                if (se.senao != null) cmd(se.senao);
+                mv.visitLabel(fim);
+            } else if (c instanceof Enquanto) {
+                Enquanto en = (Enquanto) c;
+                Label teste = new Label();
+                Label fim = new Label();
+                mv.visitLabel(teste);
+                saltarSeFalso(en.condicao, fim);
+                cmd(en.corpo);
+                mv.visitJumpInsn(GOTO, teste);
+                mv.visitLabel(fim);
+            } else if (c instanceof Faca) {
+                Faca fa = (Faca) c;
+                Label inicio = new Label();
+                Label fim = new Label();
+                mv.visitLabel(inicio);
+                cmd(fa.corpo);
+                saltarSeFalso(fa.condicao, fim);
+                mv.visitJumpInsn(GOTO, inicio);
+                mv.visitLabel(fim);
+            } else if (c instanceof ParaLocal && localDoSlot.containsKey(((ParaLocal) c).slot)) {
+                ParaLocal p = (ParaLocal) c;
+                int local = localDoSlot.get(p.slot);
+                Label teste = new Label();
+                Label fim = new Label();
+                inteiro(p.inicio);
+                mv.visitVarInsn(ISTORE, local);
+                mv.visitLabel(teste);
+                mv.visitVarInsn(ILOAD, local);
+                inteiro(p.fim);
+                mv.visitJumpInsn(IF_ICMPGT, fim);
+                cmd(p.corpo);
+                mv.visitIincInsn(local, 1);
+                mv.visitJumpInsn(GOTO, teste);
+                mv.visitLabel(fim);
+            } else if (c instanceof ParaLocal) {
+                ParaLocal p = (ParaLocal) c;
+                para(new LugarLocal(Tipo.INTEIRO, p.slot, -1), p.inicio, p.fim, p.corpo);
+            } else if (c instanceof Para) {
+                Para p = (Para) c;
+                para(p.variavel, p.inicio, p.fim, p.corpo);
+            } else if (c instanceof Caso) {
+                caso((Caso) c);
+            } else if (c instanceof ChamadaCmd) {
+                Chamada chamada = ((ChamadaCmd) c).chamada;
+                chamada(chamada);
+                if (chamada.funcao.retorno != null) {
+                    boolean dupla = chamada.funcao.retorno.categoria == JanderType.REAL;
+                    mv.visitInsn(dupla ? POP2 : POP);
+                }
+            } else if (c instanceof Retorne) {
+                retorne((Retorne) c);
+            } else {
+                throw new IllegalStateException("Comando sem traducao: " + c.getClass().getSimpleName());
+            }
+        }
+
+        private void alocarVetor(AlocarVetor a) {
+            int vetor = novaLocal(false);
+            mv.visitTypeInsn(NEW, VETOR);
+            mv.visitInsn(DUP);
+            constante(a.dims.length);
+            mv.visitIntInsn(NEWARRAY, T_INT);
+            for (int i = 0; i < a.dims.length; i++) {
+                mv.visitInsn(DUP);
+                constante(i);
+                inteiro(a.dims[i]);
+                mv.visitInsn(IASTORE);
+            }
+            constante(a.elemento.tamP);
+            constante(a.elemento.tamO);
+            mv.visitMethodInsn(INVOKESPECIAL, VETOR, "<init>", "([III)V", false);
+            mv.visitVarInsn(ASTORE, vetor);
+            if (a.global) {
+                globais();
+            } else {
+                mv.visitVarInsn(ALOAD, localMemoria);
+            }
+            mv.visitFieldInsn(GETFIELD, MEMORIA, "o", "[Ljava/lang/Object;");
+            constante(a.slot);
+            mv.visitVarInsn(ALOAD, vetor);
+            mv.visitInsn(AASTORE);
+            if (!a.global) {
+                mv.visitVarInsn(ALOAD, vetor);
+                mv.visitVarInsn(ASTORE, localDoVetor.get(a.slot));
+            }
+        }
+
+        private void leia(Leia leia) {
+            Lugar l = leia.lugar;
+            Label fim = new Label();
+            switch (l.tipo.categoria) {
+                case LITERAL: {
+                    int valor = novaLocal(false);
+                    console();
+                    mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "lerLinha", "()Ljava/lang/String;", false);
+                    mv.visitVarInsn(ASTORE, valor);
+                    leituraOk(fim);
+                    Resolvido r = resolver(l);
+                    arrayO(r);
+                    mv.visitVarInsn(ALOAD, valor);
+                    mv.visitInsn(AASTORE);
+                    break;
+                }
+                case REAL: {
+                    int valor = novaLocal(true);
+                    console();
+                    mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "lerReal", "()D", false);
+                    mv.visitVarInsn(DSTORE, valor);
+                    leituraOk(fim);
+                    gravarPrimitivo(l, valor);
+                    break;
+                }
+                default: {
+                    int valor = novaLocal(false);
+                    console();
+                    mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "lerInteiro", "()I", false);
+                    if (l.tipo.categoria == JanderType.LOGICAL) {
+                        Label zero = new Label();
+                        Label pronto = new Label();
+                        mv.visitJumpInsn(IFEQ, zero);
+                        mv.visitInsn(ICONST_1);
+                        mv.visitJumpInsn(GOTO, pronto);
+                        mv.visitLabel(zero);
+                        mv.visitInsn(ICONST_0);
+                        mv.visitLabel(pronto);
+                    }
+                    mv.visitVarInsn(ISTORE, valor);
+                    leituraOk(fim);
+                    gravarPrimitivo(l, valor);
+                    break;
+                }
+            }
+            mv.visitLabel(fim);
+        }
+
+        private void leituraOk(Label falhou) {
+            console();
+            mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "leituraOk", "()Z", false);
+            mv.visitJumpInsn(IFEQ, falhou);
+        }
+
+        private void escreva(Escreva escreva) {
+            for (int i = 0; i < escreva.expressoes.length; i++) {
+                Expr e = escreva.expressoes[i];
+                console();
+                if (e == null) {
+                    mv.visitLdcInsn(escreva.textos[i]);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escrever", "(Ljava/lang/String;)V", false);
+                    continue;
+                }
+                switch (e.tipo.categoria) {
+                    case INTEGER:
+                        inteiro(e);
+                        mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escreverInteiro", "(I)V", false);
+                        break;
+                    case REAL:
+                        real(e);
+                        mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escreverReal", "(D)V", false);
+                        break;
+                    case LITERAL:
+                        objeto(e);
+                        mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                        mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escrever", "(Ljava/lang/String;)V", false);
+                        break;
+                    case LOGICAL: {
+                        Label falso = new Label();
+                        Label fim = new Label();
+                        saltarSeFalso(e, falso);
+                        mv.visitLdcInsn("verdadeiro");
+                        mv.visitJumpInsn(GOTO, fim);
+                        mv.visitLabel(falso);
+                        mv.visitLdcInsn("falso");
+                        mv.visitLabel(fim);
+                        mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escrever", "(Ljava/lang/String;)V", false);
+                        break;
+                    }
+                    default:
+                        mv.visitLdcInsn("<ERRO_TIPO>");
+                        mv.visitMethodInsn(INVOKEVIRTUAL, CONSOLE, "escrever", "(Ljava/lang/String;)V", false);
+                        break;
+                }
+            }
+        }
+
+        /** Para genérico (InterpretadorNos.Para): limite reavaliado a cada volta, variável lida como inteiro */
+        private void para(Lugar variavel, Expr inicio, Expr fim, Cmd corpo) {
+            boolean real = variavel.tipo.categoria == JanderType.REAL;
+            int valor = novaLocal(real);
+            valorPrimitivo(variavel.tipo, inicio);
+            mv.visitVarInsn(real ? DSTORE : ISTORE, valor);
+            gravarPrimitivo(variavel, valor);
+
+            Label teste = new Label();
+            Label sair = new Label();
+            mv.visitLabel(teste);
+            lerComoInteiro(variavel);
+            if (fim.tipo.categoria == JanderType.REAL) {
+                real(fim);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
+                mv.visitInsn(D2I);
+            } else {
+                inteiro(fim);
+            }
+            mv.visitJumpInsn(IF_ICMPGT, sair);
+            cmd(corpo);
+            int proximo = novaLocal(real);
+            lerComoInteiro(variavel);
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IADD);
+            if (real) {
+                // O interpretador grava o inteiro cru no slot; para real isso só ocorre em programas inválidos
+                mv.visitInsn(I2L);
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "longBitsToDouble", "(J)D", false);
+                mv.visitVarInsn(DSTORE, proximo);
+            } else {
+                mv.visitVarInsn(ISTORE, proximo);
+            }
+            gravarPrimitivo(variavel, proximo);
+            mv.visitJumpInsn(GOTO, teste);
+            mv.visitLabel(sair);
+        }
+
+        private void lerComoInteiro(Lugar l) {
+            if (l.tipo.categoria != JanderType.REAL) {
+                lerPrimitivo(l);
+            } else if (registrado(l)) {
+                mv.visitVarInsn(DLOAD, localDoSlot.get(((LugarLocal) l).p));
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J", false);
+                mv.visitInsn(L2I);
+            } else {
+                Resolvido r = resolver(l);
+                arrayP(r);
+                mv.visitInsn(LALOAD);
+                mv.visitInsn(L2I);
+            }
+        }
+
+        private void caso(Caso caso) {
+            Label fim = new Label();
+            Label padrao = new Label();
+            Label[] bracos = new Label[caso.bracos.length];
+            for (int i = 0; i < bracos.length; i++) {
+                bracos[i] = new Label();
+            }
+            inteiro(caso.seletor);
+            if (caso.tabela != null) {
+                Label[] alvos = new Label[caso.tabela.length];
+                for (int i = 0; i < alvos.length; i++) {
+                    alvos[i] = caso.tabela[i] >= 0 ? bracos[caso.tabela[i]] : padrao;
+                }
+                mv.visitTableSwitchInsn(caso.minimo, caso.minimo + alvos.length - 1, padrao, alvos);
+            } else {
+                Label[] alvos = new Label[caso.chaves.length];
+                for (int i = 0; i < alvos.length; i++) {
+                    alvos[i] = bracos[caso.bracoDaChave[i]];
+                }
+                mv.visitLookupSwitchInsn(padrao, caso.chaves, alvos);
+            }
+            for (int i = 0; i < bracos.length; i++) {
+                mv.visitLabel(bracos[i]);
+                cmd(caso.bracos[i]);
+                mv.visitJumpInsn(GOTO, fim);
+            }
+            mv.visitLabel(padrao);
+            if (caso.senao != null) cmd(caso.senao);
+            mv.visitLabel(fim);
+        }
+
+        private void retorne(Retorne r) {
+            Tipo t = r.tipo;
+            if (t.primitivo()) {
+                valorPrimitivo(t, r.e);
+                mv.visitInsn(t.categoria == JanderType.REAL ? DRETURN : IRETURN);
+            } else if (t.categoria == JanderType.RECORD) {
+                objeto(r.e);
+                constante(t.tamP);
+                constante(t.tamO);
+                mv.visitMethodInsn(INVOKESTATIC, SUPORTE, "copiaRetorno", "(Ljava/lang/Object;II)Ljava/lang/Object;", false);
+                mv.visitInsn(ARETURN);
+            } else {
+                objeto(r.e);
+                mv.visitInsn(ARETURN);
+            }
+        }
+    }
+}
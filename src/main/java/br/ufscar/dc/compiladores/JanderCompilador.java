@@ -0,0 +1,305 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
+
+import br.ufscar.dc.compiladores.JanderParser.Decl_local_globalContext;
+import br.ufscar.dc.compiladores.JanderParser.Declaracao_globalContext;
+import br.ufscar.dc.compiladores.JanderParser.Declaracao_localContext;
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Pipeline completo de compilação de um programa LA: léxico, sintático,
+ * semântico e geração de C. Cada chamada a compilar é independente, então
+ * a mesma instância pode ser usada por várias threads.
+ */
+public class JanderCompilador {
+
+    private int maxErros = Integer.MAX_VALUE;
+    private boolean verificarLimites = false;
+    private boolean expandirEmLinha = false;
+    private boolean perfil = false;
+    private boolean paralelizar = false;
+    private boolean medirEliminacao = false;
+    private int threadsGeracao = Runtime.getRuntime().availableProcessors();
+    private InterfaceDeclaracoes interfaceBloco;
+
+    public void setMaxErros(int maxErros) {
+        this.maxErros = maxErros;
+    }
+
+    /** Gera C com verificação de limites nos acessos a vetores não provados seguros */
+    public void setVerificarLimites(boolean verificarLimites) {
+        this.verificarLimites = verificarLimites;
+    }
+
+    /** Expande em linha funções e procedimentos pequenos e não recursivos no C gerado */
+    public void setExpandirEmLinha(boolean expandirEmLinha) {
+        this.expandirEmLinha = expandirEmLinha;
+    }
+
+    /** Instrumenta o C gerado para medir a execução (--profile) */
+    public void setPerfil(boolean perfil) {
+        this.perfil = perfil;
+    }
+
+    /** Marca com #pragma omp parallel for os laços para de iterações independentes (--parallel) */
+    public void setParalelizar(boolean paralelizar) {
+        this.paralelizar = paralelizar;
+    }
+
+    /**
+     * Gera também o C sem a eliminação de declarações não usadas, só para medir quanto
+     * ela reduziu a saída (Resultado.bytesEliminados)
+     */
+    public void setMedirEliminacao(boolean medirEliminacao) {
+        this.medirEliminacao = medirEliminacao;
+    }
+
+    /** Threads que geram os corpos das funções de cada programa (1 = geração sequencial) */
+    public void setThreadsGeracao(int threadsGeracao) {
+        this.threadsGeracao = threadsGeracao;
+    }
+
+    /**
+     * Programas que começam com o bloco desta interface têm só o restante analisado;
+     * os demais (e todos, com --inline ou --profile, que precisam das árvores do bloco,
+     * ou com --parallel, cujos laços o C da interface não marca) são compilados inteiros
+     */
+    public void setInterface(InterfaceDeclaracoes interfaceBloco) {
+        this.interfaceBloco = interfaceBloco;
+    }
+
+    /**
+     * Compila o fonte e escreve em pw o código C gerado ou as mensagens de erro.
+     * Retorna true se o código C foi gerado.
+     */
+    public boolean compilar(CharStream cs, PrintWriter pw) {
+        return gerar(cs, pw) != null;
+    }
+
+    // Gerador usado (para as estatísticas), tamanho do C sem eliminação (-1 se não medido)
+    // e se o bloco inicial veio da interface
+    private record Geracao(JanderGeradorC gerador, int bytesSemEliminacao, boolean usouInterface) {
+    }
+
+    // Compila e devolve a geração, ou null se houve erros
+    private Geracao gerar(CharStream cs, PrintWriter pw) {
+        return gerar(cs, pw, true);
+    }
+
+    private Geracao gerar(CharStream cs, PrintWriter pw, boolean usarInterface) {
+        InterfaceDeclaracoes externa = null;
+        ProgramaContext arvore;
+        int fimBloco = usarInterface ? fimDoBloco(cs) : -1;
+        if (fimBloco >= 0) {
+            // Só o que vem depois do bloco, com as linhas contadas a partir do fim dele
+            String fonte = cs.getText(Interval.of(0, cs.size() - 1));
+            int linha = 1;
+            for (int i = 0; i < fimBloco; i++) {
+                if (fonte.charAt(i) == '\n') {
+                    linha++;
+                }
+            }
+            int coluna = fimBloco - (fonte.lastIndexOf('\n', fimBloco - 1) + 1);
+            externa = interfaceBloco;
+            arvore = analisarSintaxe(CharStreams.fromString(fonte.substring(fimBloco), cs.getSourceName()),
+                    pw, linha, coluna);
+        } else {
+            arvore = analisarSintaxe(cs, pw, 1, 0);
+        }
+        if (arvore == null) {
+            return null;
+        }
+        JanderSemantico semantico = analisarSemantica(arvore,
+                externa != null ? externa.novaTabela() : new SymbolTable(), pw);
+        if (semantico == null) {
+            return null;
+        }
+
+        JanderGeradorC gerador = novoGerador(semantico, externa);
+        gerador.visit(arvore);
+        if (gerador.recusouInterface()) {
+            return gerar(cs, pw, false);
+        }
+        pw.print(gerador.getOutput());
+        int bytesSemEliminacao = -1;
+        if (medirEliminacao) {
+            JanderGeradorC completo = novoGerador(semantico, externa);
+            completo.setEliminarMortas(false);
+            completo.visit(arvore);
+            bytesSemEliminacao = completo.getOutput().length();
+        }
+        return new Geracao(gerador, bytesSemEliminacao, externa != null);
+    }
+
+    // Onde termina o bloco da interface no fonte, ou -1 se ela não se aplica a este programa
+    private int fimDoBloco(CharStream cs) {
+        if (interfaceBloco == null || expandirEmLinha || perfil || paralelizar || !interfaceBloco.compativel(verificarLimites)) {
+            return -1;
+        }
+        return interfaceBloco.fimDoBloco(cs.getText(Interval.of(0, cs.size() - 1)));
+    }
+
+    private JanderGeradorC novoGerador(JanderSemantico semantico, InterfaceDeclaracoes externa) {
+        JanderGeradorC gerador = new JanderGeradorC(semantico);
+        gerador.setVerificarLimites(verificarLimites);
+        gerador.setExpandirEmLinha(expandirEmLinha);
+        gerador.setPerfil(perfil);
+        gerador.setParalelizar(paralelizar);
+        gerador.setThreads(threadsGeracao);
+        gerador.setInterface(externa);
+        return gerador;
+    }
+
+    /**
+     * Compila um bloco só de declarações tipo, constante, procedimento e funcao
+     * para uma interface. Retorna null depois de escrever os erros em pw.
+     */
+    public InterfaceDeclaracoes gerarInterface(CharStream bloco, PrintWriter pw) {
+        String texto = bloco.getText(Interval.of(0, bloco.size() - 1));
+        // A gramática exige o algoritmo; um vazio depois do bloco não muda nada nele
+        ProgramaContext arvore = analisarSintaxe(
+                CharStreams.fromString(texto + "\nalgoritmo\nfim_algoritmo\n", bloco.getSourceName()), pw, 1, 0);
+        if (arvore == null) {
+            return null;
+        }
+        JanderSemantico semantico = analisarSemantica(arvore, new SymbolTable(), pw);
+        if (semantico == null) {
+            return null;
+        }
+        for (Decl_local_globalContext decl : arvore.declaracoes().decl_local_global()) {
+            if (decl.declaracao_local() != null && decl.declaracao_local().variavel() != null) {
+                JanderSemanticoUtils.addSemanticError(decl.start,
+                        "bloco de interface so pode ter tipo, constante, procedimento e funcao");
+            }
+        }
+        if (semantico.hasErrors()) {
+            semantico.printErrors();
+            return null;
+        }
+
+        JanderGeradorC gerador = novoGerador(semantico, null);
+        gerador.setEliminarMortas(false);
+        // Com --parallel os programas não usam a interface
+        gerador.setParalelizar(false);
+        Map<String, String[]> trechos = new HashMap<>();
+        gerador.setTrechos(trechos);
+        gerador.visit(arvore);
+
+        AnalisePureza pureza = gerador.getPureza();
+        List<InterfaceDeclaracoes.Declaracao> declaracoes = new ArrayList<>();
+        for (Decl_local_globalContext decl : arvore.declaracoes().decl_local_global()) {
+            InterfaceDeclaracoes.Declaracao d;
+            if (decl.declaracao_global() != null) {
+                Declaracao_globalContext global = decl.declaracao_global();
+                String nome = global.IDENT().getText();
+                String categoria = global.FUNCAO() != null ? "funcao" : "procedimento";
+                d = new InterfaceDeclaracoes.Declaracao(nome, categoria,
+                        AnaliseAlcance.dependencias(nome, global, categoria, pureza.getGrafo()),
+                        pureza.getEfeito(nome), gerador.getParametrosPorEndereco(nome), gerador.tipoRetornoC(nome),
+                        gerador.getApelidos().getPonteiros(nome), gerador.getApelidos().ehDisjunta(nome));
+            } else {
+                Declaracao_localContext local = decl.declaracao_local();
+                String nome = local.IDENT().getText();
+                String categoria = local.TIPO() != null ? "tipo" : "constante";
+                d = new InterfaceDeclaracoes.Declaracao(nome, categoria,
+                        AnaliseAlcance.dependencias(nome, local.tipo(), categoria, pureza.getGrafo()),
+                        null, List.of(), null, List.of(), false);
+            }
+            String[] c = trechos.get(d.nome);
+            if (c != null) {
+                System.arraycopy(c, 0, d.trechos, 0, c.length);
+            }
+            declaracoes.add(d);
+        }
+        return new InterfaceDeclaracoes(texto, verificarLimites, semantico.getSymbolTable(), declaracoes);
+    }
+
+    /**
+     * Executa só as fases de análise. Retorna a árvore verificada, pronta para
+     * o interpretador, ou null depois de escrever os erros em pw.
+     */
+    public ProgramaContext analisar(CharStream cs, PrintWriter pw) {
+        ProgramaContext arvore = analisarSintaxe(cs, pw, 1, 0);
+        if (arvore == null || analisarSemantica(arvore, new SymbolTable(), pw) == null) {
+            return null;
+        }
+        return arvore;
+    }
+
+    // linha e coluna: posição do primeiro caractere de cs no arquivo
+    private ProgramaContext analisarSintaxe(CharStream cs, PrintWriter pw, int linha, int coluna) {
+        JanderLexer lex = new JanderLexer(cs);
+        lex.setLine(linha);
+        lex.setCharPositionInLine(coluna);
+        FluxoTokensCompacto tokens = new FluxoTokensCompacto(lex);
+
+        JanderParser parser = new JanderParser(tokens);
+        MyCustomErrorListener mcel = new MyCustomErrorListener(pw);
+        parser.removeErrorListeners();
+        parser.addErrorListener(mcel);
+
+        ProgramaContext arvore = parser.programa();
+        return mcel.parada ? null : arvore;
+    }
+
+    private JanderSemantico analisarSemantica(ProgramaContext arvore, SymbolTable tabela, PrintWriter pw) {
+        JanderSemantico semantico = new JanderSemantico(pw, tabela);
+        semantico.setMaxErrors(maxErros);
+        semantico.visit(arvore);
+
+        if (semantico.hasErrors()) {
+            semantico.printErrors();
+            return null;
+        }
+        return semantico;
+    }
+
+    /** Resultado de uma compilação em memória: código C (se sucesso) ou mensagens de erro */
+    public static class Resultado {
+        public final boolean sucesso;
+        public final String saida;
+        public int verificacoesMantidas; // Verificações de limite no C gerado (com setVerificarLimites)
+        public int verificacoesRemovidas; // Verificações eliminadas pela análise de intervalos
+        public int chamadasExpandidas; // Chamadas substituídas pelo corpo (com setExpandirEmLinha)
+        public int funcoesEmLinha; // Funções e procedimentos emitidos como static inline
+        public List<String> eliminadas = List.of(); // Declarações globais não emitidas, "categoria nome"
+        public int bytesEliminados = -1; // Redução do C pela eliminação (com setMedirEliminacao)
+        public boolean usouInterface; // O bloco inicial veio da interface (setInterface)
+
+        Resultado(boolean sucesso, String saida) {
+            this.sucesso = sucesso;
+            this.saida = saida;
+        }
+    }
+
+    public Resultado compilar(CharStream cs) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        Geracao geracao = gerar(cs, pw);
+        pw.flush();
+        Resultado resultado = new Resultado(geracao != null, sw.toString());
+        if (geracao != null) {
+            JanderGeradorC gerador = geracao.gerador();
+            resultado.verificacoesMantidas = gerador.getVerificacoesMantidas();
+            resultado.verificacoesRemovidas = gerador.getVerificacoesRemovidas();
+            resultado.chamadasExpandidas = gerador.getChamadasExpandidas();
+            resultado.funcoesEmLinha = gerador.getFuncoesEmLinha();
+            resultado.eliminadas = gerador.getEliminadas();
+            resultado.usouInterface = geracao.usouInterface();
+            if (geracao.bytesSemEliminacao() >= 0) {
+                resultado.bytesEliminados = geracao.bytesSemEliminacao() - resultado.saida.length();
+            }
+        }
+        return resultado;
+    }
+}
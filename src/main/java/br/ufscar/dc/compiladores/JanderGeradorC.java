@@ -2,8 +2,19 @@ package br.ufscar.dc.compiladores;
 
 import br.ufscar.dc.compiladores.JanderParser.*;
 import br.ufscar.dc.compiladores.SymbolTable.JanderType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
 import java.util.ArrayList;
 
@@ -13,10 +24,239 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
     private final JanderSemantico semantico;
     private final SymbolTable symbolTable;
 
+    // Quantidade mínima de funções/procedimentos para compensar o custo do pool de threads
+    private static final int LIMIAR_PARALELO = 4;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // Verificação de limites de vetores (--bounds-check)
+    private boolean verificarLimites = false;
+    private final AtomicInteger verificacoesMantidas;
+    private final AtomicInteger verificacoesRemovidas;
+    private final AnaliseIntervalos intervalos;
+    // Locais de funções não ficam na tabela do gerador; suas dimensões são guardadas aqui
+    private final Map<String, int[]> dimensoesLocais;
+    private boolean emFuncao = false;
+
+    // Expansão em linha (--inline); expansao fica null quando desligada
+    private boolean expandirEmLinha = false;
+    private ExpansaoEmLinha expansao;
+    // Nomes do chamado trocados pelo texto C correspondente dentro de um corpo expandido
+    private final Map<String, String> renomeados;
+    // Estado da função C sendo gerada: nomes locais (para não capturar globais do chamado),
+    // tokens já expandidos nela e contador para nomes únicos
+    private final Set<String> nomesLocais;
+    private final AtomicInteger crescimento;
+    private final AtomicInteger expansoesNaFuncao;
+    private int profundidadeLaco = 0;
+    // Para cada função/procedimento, quais parâmetros são var passados por endereço (T*)
+    private Map<String, List<Boolean>> parametrosPorEndereco;
+    // Chamadas da função sendo gerada a si mesma em posição de cauda: viram reatribuição
+    // dos parâmetros e desvio para o início do corpo
+    private Declaracao_globalContext funcaoAtual;
+    private Set<ParseTree> chamadasCauda = Set.of();
+    // Efeitos colaterais de cada função; as puras ganham static e __attribute__((const/pure))
+    private boolean anotarPureza = true;
+    private AnalisePureza pureza;
+    // Chamadas constantes com argumentos invariantes na condição de um laço, calculadas
+    // uma vez antes dele, e o nome C que guarda cada resultado
+    private final Map<ParseTree, String> invariantes;
+    // Parâmetros ponteiro sem apelidos ganham restrict e laços para sem dependências pela
+    // memória ganham #pragma GCC ivdep
+    private boolean anotarApelidos = true;
+    private AnaliseApelidos apelidos;
+    private boolean recusouInterface = false;
+    // Laços para sem dependências entre iterações viram #pragma omp parallel for (--parallel);
+    // os aninhados num laço paralelo continuam sequenciais
+    private boolean paralelizar = false;
+    private boolean dentroDeParalelo = false;
+    // Declarações globais que o algoritmo não alcança não são emitidas
+    private boolean eliminarMortas = true;
+    private AnaliseAlcance alcance;
+    // Modo --profile: #line para o fonte LA, contadores de comandos, iterações de laços e braços
+    // de caso (um vetor por função C) e tempos por função, gravados ao fim da execução
+    private boolean perfil = false;
+    private List<String> funcoesPerfil = List.of();
+    private final SitiosPerfil sitios;
+    // Interface pré-compilada com as primeiras declarações do programa: o C delas é copiado
+    // dela; trechos, quando definido, recebe o C de cada declaração ao gerar uma interface
+    private InterfaceDeclaracoes interfaceBloco;
+    private Map<String, String[]> trechos;
+
     public JanderGeradorC(JanderSemantico semantico) {
         this.output = new StringBuilder();
         this.semantico = semantico;
         this.symbolTable = semantico.getSymbolTable();
+        this.verificacoesMantidas = new AtomicInteger();
+        this.verificacoesRemovidas = new AtomicInteger();
+        this.intervalos = new AnaliseIntervalos(symbolTable);
+        this.dimensoesLocais = new HashMap<>();
+        this.renomeados = Map.of();
+        this.nomesLocais = new HashSet<>();
+        this.crescimento = new AtomicInteger();
+        this.expansoesNaFuncao = new AtomicInteger();
+        this.invariantes = new HashMap<>();
+        this.sitios = new SitiosPerfil();
+    }
+
+    // Usado pelos visitantes auxiliares (mesmo escopo do pai) e pelas threads de geração
+    // (novaFuncao: tabela e intervalos próprios); contadores e opções são compartilhados
+    private JanderGeradorC(JanderGeradorC pai, SymbolTable symbolTable, boolean novaFuncao) {
+        this(pai, symbolTable, novaFuncao,
+                novaFuncao ? new AnaliseIntervalos(symbolTable) : pai.intervalos,
+                novaFuncao ? Map.of() : pai.renomeados);
+    }
+
+    // Corpo expandido em linha: mesma função C do pai, mas com os nomes do chamado
+    // renomeados e intervalos novos (as variáveis do chamado não são as do chamador)
+    private JanderGeradorC(JanderGeradorC pai, Map<String, String> renomeados) {
+        this(pai, pai.symbolTable, false, new AnaliseIntervalos(pai.symbolTable), renomeados);
+    }
+
+    private JanderGeradorC(JanderGeradorC pai, SymbolTable symbolTable, boolean novaFuncao,
+                           AnaliseIntervalos intervalos, Map<String, String> renomeados) {
+        this.output = new StringBuilder();
+        this.semantico = pai.semantico;
+        this.symbolTable = symbolTable;
+        this.threads = pai.threads;
+        this.verificarLimites = pai.verificarLimites;
+        this.verificacoesMantidas = pai.verificacoesMantidas;
+        this.verificacoesRemovidas = pai.verificacoesRemovidas;
+        this.intervalos = intervalos;
+        this.dimensoesLocais = novaFuncao ? new HashMap<>() : pai.dimensoesLocais;
+        this.emFuncao = novaFuncao || pai.emFuncao;
+        this.expandirEmLinha = pai.expandirEmLinha;
+        this.expansao = pai.expansao;
+        this.anotarPureza = pai.anotarPureza;
+        this.pureza = pai.pureza;
+        this.anotarApelidos = pai.anotarApelidos;
+        this.paralelizar = pai.paralelizar;
+        this.dentroDeParalelo = pai.dentroDeParalelo;
+        this.apelidos = pai.apelidos;
+        this.renomeados = renomeados;
+        this.nomesLocais = novaFuncao ? new HashSet<>() : pai.nomesLocais;
+        this.crescimento = novaFuncao ? new AtomicInteger() : pai.crescimento;
+        this.expansoesNaFuncao = novaFuncao ? new AtomicInteger() : pai.expansoesNaFuncao;
+        this.invariantes = novaFuncao ? new HashMap<>() : pai.invariantes;
+        this.perfil = pai.perfil;
+        this.funcoesPerfil = pai.funcoesPerfil;
+        this.sitios = novaFuncao ? new SitiosPerfil() : pai.sitios;
+        this.profundidadeLaco = novaFuncao ? 0 : pai.profundidadeLaco;
+        this.parametrosPorEndereco = pai.parametrosPorEndereco;
+        this.interfaceBloco = pai.interfaceBloco;
+        this.funcaoAtual = pai.funcaoAtual;
+        this.chamadasCauda = pai.chamadasCauda;
+    }
+
+    /** Define quantas threads podem gerar os corpos de funções (1 = geração sequencial) */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Emite verificação de limites nos acessos a vetores que a análise de intervalos não prova seguros */
+    public void setVerificarLimites(boolean verificarLimites) {
+        this.verificarLimites = verificarLimites;
+    }
+
+    /** Marca as funções sem efeitos colaterais com static e __attribute__((const)) ou ((pure)) */
+    public void setAnotarPureza(boolean anotarPureza) {
+        this.anotarPureza = anotarPureza;
+    }
+
+    /** Emite restrict e #pragma GCC ivdep onde a análise de apelidos prova que é seguro */
+    public void setAnotarApelidos(boolean anotarApelidos) {
+        this.anotarApelidos = anotarApelidos;
+    }
+
+    /**
+     * Emite #pragma omp parallel for, com as cláusulas de privadas e reduções, nos laços
+     * para cujas iterações são independentes; o C precisa ser compilado com -fopenmp
+     * para rodar em paralelo (sem ele o programa continua correto, sequencial)
+     */
+    public void setParalelizar(boolean paralelizar) {
+        this.paralelizar = paralelizar;
+    }
+
+    /**
+     * Instrumenta o C para medir a execução: diretivas #line apontando para o .alg, contadores
+     * por comando, por iteração de laço e por braço de caso e tempo por função. O programa
+     * grava os números em jander-perfil.txt (ou no arquivo de JANDER_PERFIL) ao terminar.
+     */
+    public void setPerfil(boolean perfil) {
+        this.perfil = perfil;
+    }
+
+    /** Deixa de emitir funções, procedimentos, tipos e constantes que o algoritmo não usa */
+    public void setEliminarMortas(boolean eliminarMortas) {
+        this.eliminarMortas = eliminarMortas;
+    }
+
+    /**
+     * Programa analisado sem o bloco inicial de declarações, que vem desta interface
+     * (a tabela do semântico já tem o escopo global dela)
+     */
+    public void setInterface(InterfaceDeclaracoes interfaceBloco) {
+        this.interfaceBloco = interfaceBloco;
+    }
+
+    // Guarda em trechos o C de cada declaração global, por seção (InterfaceDeclaracoes.TIPOS...)
+    void setTrechos(Map<String, String[]> trechos) {
+        this.trechos = trechos;
+    }
+
+    /** Declarações globais omitidas no último programa gerado, como "categoria nome" */
+    public List<String> getEliminadas() {
+        return alcance != null ? alcance.getEliminadas() : List.of();
+    }
+
+    // Quais parâmetros de nome são passados por endereço no último programa gerado
+    List<Boolean> getParametrosPorEndereco(String nome) {
+        return parametrosPorEndereco != null ? parametrosPorEndereco.getOrDefault(nome, List.of()) : List.of();
+    }
+
+    /** Resultado da análise de apelidos do último programa gerado (null se desligada) */
+    public AnaliseApelidos getApelidos() {
+        return apelidos;
+    }
+
+    /**
+     * O programa chama uma função da interface com argumentos que tornam o restrict dela
+     * inválido; a saída não serve e o programa precisa ser compilado sem a interface
+     */
+    public boolean recusouInterface() {
+        return recusouInterface;
+    }
+
+    /** Resultado da análise de efeitos colaterais do último programa gerado */
+    public AnalisePureza getPureza() {
+        return pureza;
+    }
+
+    /**
+     * Expande em linha chamadas a funções e procedimentos pequenos e não
+     * recursivos e marca as demais candidatas como static inline
+     */
+    public void setExpandirEmLinha(boolean expandirEmLinha) {
+        this.expandirEmLinha = expandirEmLinha;
+    }
+
+    /** Pontos de chamada substituídos pelo corpo do chamado */
+    public int getChamadasExpandidas() {
+        return expansao != null ? expansao.getSubstituicoes() : 0;
+    }
+
+    /** Funções e procedimentos emitidos como static inline */
+    public int getFuncoesEmLinha() {
+        return expansao != null ? expansao.getCandidatas() : 0;
+    }
+
+    /** Verificações de limite presentes no C gerado */
+    public int getVerificacoesMantidas() {
+        return verificacoesMantidas.get();
+    }
+
+    /** Verificações de limite eliminadas por serem provadas seguras */
+    public int getVerificacoesRemovidas() {
+        return verificacoesRemovidas.get();
     }
 
     public String getOutput() {
@@ -65,7 +305,7 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
     }
 
     private String visitAndCapture(ParseTree ctx) {
-        JanderGeradorC tempVisitor = new JanderGeradorC(this.semantico);
+        JanderGeradorC tempVisitor = new JanderGeradorC(this, this.symbolTable, false);
         tempVisitor.visit(ctx);
         return tempVisitor.getOutput().trim();
     }
@@ -76,42 +316,336 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
         output.append("#include <stdlib.h>\n");
         output.append("#include <stdbool.h>\n");
         output.append("#include <string.h>\n\n");
+        if (verificarLimites) {
+            output.append("static inline int jander_limite(int indice, int tamanho, int linha) {\n");
+            output.append("    if (indice < 0 || indice >= tamanho) {\n");
+            output.append("        fprintf(stderr, \"Linha %d: indice %d fora dos limites do vetor [0, %d)\\n\", linha, indice, tamanho);\n");
+            output.append("        exit(1);\n");
+            output.append("    }\n");
+            output.append("    return indice;\n");
+            output.append("}\n\n");
+        }
+        GrafoChamadas grafo = interfaceBloco != null
+                ? new GrafoChamadas(ctx, interfaceBloco.getFuncoes()) : new GrafoChamadas(ctx);
+        pureza = new AnalisePureza(ctx, grafo, interfaceBloco);
+        apelidos = anotarApelidos || paralelizar ? new AnaliseApelidos(ctx, pureza, interfaceBloco) : null;
+        if (apelidos != null && apelidos.violaInterface()) {
+            recusouInterface = true;
+            return null;
+        }
+        alcance = eliminarMortas ? new AnaliseAlcance(ctx, grafo, interfaceBloco) : null;
+        if (expandirEmLinha) {
+            expansao = new ExpansaoEmLinha(pureza);
+        }
+        if (perfil) {
+            funcoesPerfil = grafo.getFuncoes().stream().filter(this::emitir).collect(Collectors.toList());
+            gerarPreambuloPerfil();
+        }
+        parametrosPorEndereco = new HashMap<>();
+        if (interfaceBloco != null) {
+            for (InterfaceDeclaracoes.Declaracao d : interfaceBloco.getDeclaracoes()) {
+                if (d.efeito != null) {
+                    parametrosPorEndereco.put(d.nome, d.porEndereco);
+                }
+            }
+        }
+        if (ctx.declaracoes() != null) {
+            for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
+                if (decl.declaracao_global() != null) {
+                    parametrosPorEndereco.put(decl.declaracao_global().IDENT().getText(),
+                            parametrosPorEndereco(decl.declaracao_global()));
+                }
+            }
+        }
 
         if(ctx.declaracoes() != null) {
+            copiarDaInterface(InterfaceDeclaracoes.TIPOS);
             for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
-                if (decl.declaracao_local() != null && decl.declaracao_local().TIPO() != null) {
+                if (decl.declaracao_local() != null && decl.declaracao_local().TIPO() != null
+                        && emitir(decl.declaracao_local().IDENT().getText())) {
+                    int inicio = output.length();
                     visitDeclaracao_local(decl.declaracao_local());
+                    registrarTrecho(decl.declaracao_local().IDENT().getText(), InterfaceDeclaracoes.TIPOS, inicio);
                 }
             }
             
+            copiarDaInterface(InterfaceDeclaracoes.CONSTANTES);
             for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
-                if (decl.declaracao_local() != null && decl.declaracao_local().CONSTANTE() != null) {
+                if (decl.declaracao_local() != null && decl.declaracao_local().CONSTANTE() != null
+                        && emitir(decl.declaracao_local().IDENT().getText())) {
+                    int inicio = output.length();
                     visitDeclaracao_constante_global(decl.declaracao_local());
+                    registrarTrecho(decl.declaracao_local().IDENT().getText(), InterfaceDeclaracoes.CONSTANTES, inicio);
                 }
             }
 
+            copiarDaInterface(InterfaceDeclaracoes.PROTOTIPOS);
             for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
-                if (decl.declaracao_global() != null) {
+                if (decl.declaracao_global() != null && emitir(decl.declaracao_global().IDENT().getText())) {
+                    int inicio = output.length();
                     generateFunctionPrototype(decl.declaracao_global());
+                    registrarTrecho(decl.declaracao_global().IDENT().getText(), InterfaceDeclaracoes.PROTOTIPOS, inicio);
                 }
             }
             
+            copiarDaInterface(InterfaceDeclaracoes.CORPOS);
+            List<Declaracao_globalContext> globais = new ArrayList<>();
             for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
-                if (decl.declaracao_global() != null) {
-                    visitDeclaracao_global(decl.declaracao_global());
+                if (decl.declaracao_global() != null && emitir(decl.declaracao_global().IDENT().getText())) {
+                    globais.add(decl.declaracao_global());
                 }
             }
+            List<String> corpos = generateGlobalDeclarations(globais);
+            for (int i = 0; i < corpos.size(); i++) {
+                int inicio = output.length();
+                output.append(corpos.get(i));
+                registrarTrecho(globais.get(i).IDENT().getText(), InterfaceDeclaracoes.CORPOS, inicio);
+            }
         }
         
+        int inicioMain = output.length();
         output.append("int main() {\n");
+        if (perfil) {
+            output.append("    jander_perfil_inicio = jander_relogio();\n");
+            output.append("    atexit(jander_perfil_gravar);\n");
+        }
         if (ctx.corpo() != null) {
+            registrarNomesLocais(ctx.corpo().declaracao_local());
             visitCorpo(ctx.corpo());
         }
         output.append("    return 0;\n");
         output.append("}\n");
+        if (perfil) {
+            output.insert(inicioMain, tabelaPerfil("algoritmo"));
+            gerarGravacaoPerfil(ctx);
+        }
         return null;
     }
+
+    private boolean emitir(String nome) {
+        return alcance == null || alcance.ehViva(nome);
+    }
+
+    // C já gerado da seção para as declarações vivas da interface, antes das do programa
+    private void copiarDaInterface(int secao) {
+        if (interfaceBloco == null) {
+            return;
+        }
+        for (InterfaceDeclaracoes.Declaracao d : interfaceBloco.getDeclaracoes()) {
+            if (d.trechos[secao] != null && emitir(d.nome)) {
+                output.append(d.trechos[secao]);
+            }
+        }
+    }
+
+    private void registrarTrecho(String nome, int secao, int inicio) {
+        if (trechos != null) {
+            trechos.computeIfAbsent(nome, k -> new String[4])[secao] = output.substring(inicio);
+        }
+    }
+
+    private void gerarPreambuloPerfil() {
+        int funcoes = funcoesPerfil.size() + 1;
+        output.append("#include <time.h>\n");
+        output.append("#if defined(__x86_64__) || defined(__i386__)\n");
+        output.append("#include <x86intrin.h>\n");
+        output.append("#define JANDER_UNIDADE \"ciclos\"\n");
+        output.append("static inline unsigned long long jander_relogio(void) { return __rdtsc(); }\n");
+        output.append("#else\n");
+        output.append("#define JANDER_UNIDADE \"ns\"\n");
+        output.append("static inline unsigned long long jander_relogio(void) {\n");
+        output.append("    struct timespec t;\n");
+        output.append("    clock_gettime(CLOCK_MONOTONIC, &t);\n");
+        output.append("    return (unsigned long long) t.tv_sec * 1000000000ull + t.tv_nsec;\n");
+        output.append("}\n");
+        output.append("#endif\n\n");
+        // Tempo próprio: o de cada ativação menos o das chamadas feitas por ela (jander_filhos).
+        // Tempo total: só o da ativação mais externa de cada função (jander_ativas), senão uma
+        // recursão somaria o mesmo intervalo uma vez por nível
+        output.append("static unsigned long long jander_chamadas[").append(funcoes).append("], jander_proprio[")
+                .append(funcoes).append("], jander_total[").append(funcoes).append("];\n");
+        output.append("static unsigned long long jander_filhos, jander_perfil_inicio;\n");
+        output.append("static unsigned int jander_ativas[").append(funcoes).append("];\n");
+        output.append("static inline void jander_perfil_sair(int f, unsigned long long t0, unsigned long long f0) {\n");
+        output.append("    unsigned long long d = jander_relogio() - t0;\n");
+        output.append("    jander_proprio[f] += d - jander_filhos;\n");
+        output.append("    if (--jander_ativas[f] == 0) {\n");
+        output.append("        jander_total[f] += d;\n");
+        output.append("    }\n");
+        output.append("    jander_filhos = f0 + d;\n");
+        output.append("}\n");
+        output.append("static void jander_perfil_gravar(void);\n\n");
+    }
+
+    // Vetores de contadores da função C atual, com a linha LA e o tipo de cada um
+    private String tabelaPerfil(String nome) {
+        int n = sitios.linhas.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append("static unsigned long long jander_c_").append(nome).append("[").append(Math.max(n, 1)).append("];\n");
+        sb.append("static const int jander_l_").append(nome).append("[").append(Math.max(n, 1)).append("] = {");
+        sb.append(n == 0 ? "0" : sitios.linhas.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+        sb.append("};\n");
+        sb.append("static const char jander_t_").append(nome).append("[] = \"").append(sitios.tipos).append("\";\n");
+        sb.append("static const int jander_n_").append(nome).append(" = ").append(n).append(";\n\n");
+        return sb.toString();
+    }
+
+    private void gerarGravacaoPerfil(ProgramaContext ctx) {
+        output.append("\nstatic void jander_perfil_contadores(FILE* arq, const char* funcao, const unsigned long long* contagem,\n");
+        output.append("                                     const int* linhas, const char* tipos, int n) {\n");
+        output.append("    for (int i = 0; i < n; i++) {\n");
+        output.append("        fprintf(arq, \"contador %s %d %c %llu\\n\", funcao, linhas[i], tipos[i], contagem[i]);\n");
+        output.append("    }\n");
+        output.append("}\n\n");
+        output.append("static void jander_perfil_gravar(void) {\n");
+        output.append("    unsigned long long total = jander_relogio() - jander_perfil_inicio;\n");
+        output.append("    const char* nome = getenv(\"JANDER_PERFIL\");\n");
+        output.append("    FILE* arq = fopen(nome != NULL ? nome : \"jander-perfil.txt\", \"w\");\n");
+        output.append("    if (arq == NULL) {\n");
+        output.append("        return;\n");
+        output.append("    }\n");
+        output.append("    fprintf(arq, \"# jander-perfil %s\\n\", JANDER_UNIDADE);\n");
+        for (int i = 0; i < funcoesPerfil.size(); i++) {
+            String nome = funcoesPerfil.get(i);
+            int linha = pureza.getGrafo().getDeclaracao(nome).start.getLine();
+            output.append("    fprintf(arq, \"funcao ").append(nome).append(" ").append(linha)
+                    .append(" %llu %llu %llu\\n\", jander_chamadas[").append(i).append("], jander_proprio[")
+                    .append(i).append("], jander_total[").append(i).append("]);\n");
+        }
+        int linhaCorpo = ctx.corpo() != null ? ctx.corpo().start.getLine() : ctx.start.getLine();
+        output.append("    fprintf(arq, \"funcao algoritmo ").append(linhaCorpo)
+                .append(" 1 %llu %llu\\n\", total - jander_filhos, total);\n");
+        List<String> nomes = new ArrayList<>(funcoesPerfil);
+        nomes.add("algoritmo");
+        for (String nome : nomes) {
+            output.append("    jander_perfil_contadores(arq, \"").append(nome).append("\", jander_c_").append(nome)
+                    .append(", jander_l_").append(nome).append(", jander_t_").append(nome)
+                    .append(", jander_n_").append(nome).append(");\n");
+        }
+        output.append("    fclose(arq);\n");
+        output.append("}\n");
+    }
+
+    // Conta uma passagem pelo ponto atual. Tipos: c comando; p, e, f iteração de laço para,
+    // enquanto e faca; b braço de caso
+    private void contarPerfil(int linha, char tipo) {
+        if (perfil) {
+            output.append("    jander_c_").append(funcaoAtual != null ? funcaoAtual.IDENT().getText() : "algoritmo")
+                    .append("[").append(sitios.registrar(linha, tipo)).append("]++;\n");
+        }
+    }
+
+    private static final class SitiosPerfil {
+        private final List<Integer> linhas = new ArrayList<>();
+        private final StringBuilder tipos = new StringBuilder();
+
+        int registrar(int linha, char tipo) {
+            linhas.add(linha);
+            tipos.append(tipo);
+            return linhas.size() - 1;
+        }
+    }
+
+    @Override
+    public Void visitCmd(CmdContext ctx) {
+        if (perfil) {
+            String arquivo = ctx.start.getInputStream().getSourceName();
+            output.append("#line ").append(ctx.start.getLine()).append(" \"")
+                    .append(arquivo.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"\n");
+            contarPerfil(ctx.start.getLine(), 'c');
+        }
+        return visitChildren(ctx);
+    }
     
+    // Gera cada função/procedimento em um buffer próprio e devolve os buffers na ordem do código-fonte.
+    // Depois dos protótipos os corpos são independentes, então podem ser gerados em paralelo.
+    private List<String> generateGlobalDeclarations(List<Declaracao_globalContext> globais) {
+        List<String> corpos = new ArrayList<>();
+        int nThreads = Math.min(threads, globais.size());
+
+        if (nThreads <= 1 || globais.size() < LIMIAR_PARALELO) {
+            for (Declaracao_globalContext global : globais) {
+                corpos.add(generateGlobalDeclaration(global, symbolTable));
+            }
+            return corpos;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread t = new Thread(r, "jander-gerador");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<String>> futuros = new ArrayList<>();
+            for (Declaracao_globalContext global : globais) {
+                futuros.add(pool.submit(() -> generateGlobalDeclaration(global, symbolTable.forkGlobalScope())));
+            }
+            for (Future<String> futuro : futuros) {
+                corpos.add(futuro.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Geracao de codigo interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return corpos;
+    }
+
+    private String generateGlobalDeclaration(Declaracao_globalContext ctx, SymbolTable tabela) {
+        // Parâmetros var recebem um ponteiro: no corpo, o nome denota o valor apontado
+        Map<String, String> desreferenciados = new HashMap<>();
+        if (ctx.parametros() != null) {
+            for (ParametroContext p : ctx.parametros().parametro()) {
+                if (porEndereco(p)) {
+                    for (IdentificadorContext ident : p.identificador()) {
+                        desreferenciados.put(ident.IDENT(0).getText(), "(*" + ident.IDENT(0).getText() + ")");
+                    }
+                }
+            }
+        }
+        JanderGeradorC gerador = new JanderGeradorC(this, tabela, true, new AnaliseIntervalos(tabela), desreferenciados);
+        gerador.visitDeclaracao_global(ctx);
+        if (perfil) {
+            return gerador.tabelaPerfil(ctx.IDENT().getText()) + gerador.getOutput();
+        }
+        return gerador.getOutput();
+    }
+
+    // Parâmetro var cujo tipo C ganha um '*' (literais e ponteiros já são passados como ponteiro)
+    private boolean porEndereco(ParametroContext p) {
+        return p.VAR() != null && !getFullCTypeName(p.tipo_estendido()).endsWith("*");
+    }
+
+    private List<Boolean> parametrosPorEndereco(Declaracao_globalContext ctx) {
+        List<Boolean> porEndereco = new ArrayList<>();
+        if (ctx.parametros() != null) {
+            for (ParametroContext p : ctx.parametros().parametro()) {
+                for (int i = 0; i < p.identificador().size(); i++) {
+                    porEndereco.add(porEndereco(p));
+                }
+            }
+        }
+        return porEndereco;
+    }
+
+    // Argumentos de uma chamada fora de linha; os de parâmetros var são passados pelo endereço
+    private String argumentos(String funcao, List<ExpressaoContext> expressoes) {
+        List<Boolean> porEndereco = parametrosPorEndereco != null
+                ? parametrosPorEndereco.getOrDefault(funcao, List.of()) : List.of();
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < expressoes.size(); i++) {
+            String arg = visitAndCapture(expressoes.get(i));
+            args.add(i < porEndereco.size() && porEndereco.get(i) ? "&" + arg : arg);
+        }
+        return String.join(", ", args);
+    }
+
     public Void visitDeclaracao_constante_global(Declaracao_localContext ctx) {
         if (ctx.CONSTANTE() != null) {
             JanderType constJanderType;
@@ -139,11 +673,36 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
             returnType = "void";
         }
 
+        if (expansao != null && expansao.ehCandidata(funcName)) {
+            output.append("static inline ");
+        } else if (atributoPureza(ctx) != null) {
+            output.append("static ");
+        }
         output.append(returnType).append(" ").append(funcName).append("(");
         if (ctx.parametros() != null) {
             visitParametros(ctx.parametros());
         }
-        output.append(");\n\n");
+        output.append(")");
+        if (atributoPureza(ctx) != null) {
+            output.append(" ").append(atributoPureza(ctx));
+        }
+        output.append(";\n\n");
+    }
+
+    // Atributo do gcc para uma função sem efeitos colaterais, ou null. Funções que devolvem
+    // literal ficam de fora (o ponteiro devolvido aponta para memória que pode mudar), e com
+    // --bounds-check também, porque a verificação pode encerrar o programa. Com --profile as
+    // funções escrevem nos contadores, então não são puras no C
+    private String atributoPureza(Declaracao_globalContext ctx) {
+        if (!anotarPureza || pureza == null || perfil || verificarLimites || ctx.FUNCAO() == null
+                || getFullCTypeName(ctx.tipo_estendido()).endsWith("*")) {
+            return null;
+        }
+        switch (pureza.getEfeito(ctx.IDENT().getText())) {
+            case CONSTANTE: return "__attribute__((const))";
+            case PURA: return "__attribute__((pure))";
+            default: return null;
+        }
     }
 
     private JanderType getJanderTypeFromTipoEstendido(Tipo_estendidoContext ctx) {
@@ -172,6 +731,11 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
             returnType = "void";
         }
 
+        if (expansao != null && expansao.ehCandidata(funcName)) {
+            output.append("static inline ");
+        } else if (atributoPureza(ctx) != null) {
+            output.append("static ");
+        }
         output.append(returnType).append(" ").append(funcName).append("(");
         if (ctx.parametros() != null) {
             visitParametros(ctx.parametros());
@@ -185,17 +749,35 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
                 JanderType paramType = getJanderTypeFromTipoEstendido(paramCtx.tipo_estendido());
                 for (IdentificadorContext ident : paramCtx.identificador()) {
                     symbolTable.addSymbol(ident.getText(), paramType);
+                    nomesLocais.add(ident.IDENT(0).getText());
                 }
             }
         }
+        registrarNomesLocais(ctx.declaracao_local());
         
         for (Declaracao_localContext decl : ctx.declaracao_local()) {
             visitDeclaracao_local(decl);
         }
 
+        funcaoAtual = ctx;
+        chamadasCauda = chamadasDeCauda(ctx);
+        if (perfil) {
+            // Antes do rótulo: uma recursão de cauda continua sendo a mesma ativação
+            output.append("    unsigned long long jander_t0 = jander_relogio(), jander_f0 = jander_filhos;\n");
+            output.append("    jander_filhos = 0;\n");
+            output.append("    jander_chamadas[").append(funcoesPerfil.indexOf(funcName)).append("]++;\n");
+            output.append("    jander_ativas[").append(funcoesPerfil.indexOf(funcName)).append("]++;\n");
+        }
+        if (!chamadasCauda.isEmpty()) {
+            output.append("jander_inicio: ;\n");
+        }
+
         for (CmdContext cmd : ctx.cmd()) {
             visit(cmd);
         }
+        if (perfil) {
+            output.append("    jander_perfil_sair(").append(funcoesPerfil.indexOf(funcName)).append(", jander_t0, jander_f0);\n");
+        }
 
         symbolTable.closeScope();
 
@@ -216,9 +798,14 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
     public Void visitParametro(ParametroContext ctx) {
         String baseTypeName = getFullCTypeName(ctx.tipo_estendido());
 
-        final String finalTypeName = (ctx.VAR() != null && !baseTypeName.endsWith("*"))
+        String typeName = (ctx.VAR() != null && !baseTypeName.endsWith("*"))
                 ? baseTypeName + "*"
                 : baseTypeName;
+        Declaracao_globalContext funcao = (Declaracao_globalContext) ctx.getParent().getParent();
+        if (typeName.endsWith("*") && anotarApelidos && apelidos != null && apelidos.ehDisjunta(funcao.IDENT().getText())) {
+            typeName += " restrict";
+        }
+        final String finalTypeName = typeName;
 
         List<String> idents = ctx.identificador().stream()
                 .map(id -> finalTypeName + " " + id.getText())
@@ -297,9 +884,15 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
             String typeName = getFullCTypeName(ctx.tipo().tipo_estendido());
             boolean isLiteral = typeName.equals("char*");
 
+            if (verificarLimites && emFuncao) {
+                for (IdentificadorContext ident : ctx.identificador()) {
+                    registrarDimensoesLocais(ident);
+                }
+            }
+
             List<String> idents = ctx.identificador().stream()
                 .map(ident -> {
-                    String idStr = ident.getText();
+                    String idStr = nomeDeclarado(ident);
                     if (isLiteral) {
                         return idStr + "[100]";
                     }
@@ -316,12 +909,86 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
         return null;
     }
 
+    private void registrarDimensoesLocais(IdentificadorContext ident) {
+        List<Exp_aritmeticaContext> dims = ident.dimensao().exp_aritmetica();
+        if (dims.isEmpty()) {
+            return;
+        }
+        int[] tamanhos = new int[dims.size()];
+        for (int d = 0; d < tamanhos.length; d++) {
+            AnaliseIntervalos.Intervalo tamanho = intervalos.avaliar(dims.get(d));
+            tamanhos[d] = tamanho != null && tamanho.min == tamanho.max && tamanho.min > 0 ? (int) tamanho.min : -1;
+        }
+        dimensoesLocais.put(ident.IDENT(0).getText(), tamanhos);
+    }
+
+    private int[] dimensoes(String nome) {
+        return emFuncao ? dimensoesLocais.get(nome) : symbolTable.getArrayDimensions(nome);
+    }
+
+    // Texto do identificador; com --bounds-check, cada índice não provado seguro passa por jander_limite.
+    // Dentro de um corpo expandido em linha, o nome base e os índices usam os nomes renomeados.
+    private String acesso(IdentificadorContext ident) {
+        List<Exp_aritmeticaContext> indices = ident.dimensao().exp_aritmetica();
+        int[] dims = !verificarLimites || indices.isEmpty() || ident.IDENT().size() > 1
+                ? null : dimensoes(ident.IDENT(0).getText());
+        if (dims == null && renomeados.isEmpty()) {
+            return ident.getText();
+        }
+        StringBuilder sb = new StringBuilder(renomear(ident.IDENT(0).getText()));
+        for (int k = 1; k < ident.IDENT().size(); k++) {
+            sb.append('.').append(ident.IDENT(k).getText());
+        }
+        for (int k = 0; k < indices.size(); k++) {
+            Exp_aritmeticaContext indice = indices.get(k);
+            String texto = visitAndCapture(indice);
+            int tamanho = dims != null && k < dims.length ? dims[k] : -1;
+            if (tamanho < 0) {
+                // Dimensão não constante: nada a verificar
+                sb.append('[').append(texto).append(']');
+                continue;
+            }
+            AnaliseIntervalos.Intervalo intervalo = intervalos.avaliar(indice);
+            if (intervalo != null && intervalo.dentroDe(tamanho)) {
+                verificacoesRemovidas.incrementAndGet();
+                sb.append('[').append(texto).append(']');
+            } else {
+                verificacoesMantidas.incrementAndGet();
+                sb.append("[jander_limite(").append(texto).append(", ").append(tamanho)
+                  .append(", ").append(indice.start.getLine()).append(")]");
+            }
+        }
+        return sb.toString();
+    }
+
+    private String renomear(String nome) {
+        return renomeados.getOrDefault(nome, nome);
+    }
+
+    // Nome de uma variável declarada, renomeada se estiver num corpo expandido
+    private String nomeDeclarado(IdentificadorContext ident) {
+        String base = ident.IDENT(0).getText();
+        return renomear(base) + ident.getText().substring(base.length());
+    }
+
+    private void registrarNomesLocais(List<Declaracao_localContext> declaracoes) {
+        for (Declaracao_localContext decl : declaracoes) {
+            if (decl.variavel() != null) {
+                for (IdentificadorContext ident : decl.variavel().identificador()) {
+                    nomesLocais.add(ident.IDENT(0).getText());
+                }
+            } else {
+                nomesLocais.add(decl.IDENT().getText());
+            }
+        }
+    }
+
     @Override
     public Void visitCmdLeia(CmdLeiaContext ctx) {
         for (int i = 0; i < ctx.identificador().size(); i++) {
             IdentificadorContext ident = ctx.identificador(i);
-            String varName = ident.getText();
-            JanderType varType = symbolTable.getSymbolType(varName);
+            JanderType varType = symbolTable.getSymbolType(ident.getText());
+            String varName = acesso(ident);
 
             if (varType == JanderType.LITERAL) {
                 output.append("    gets(").append(varName).append(");\n");
@@ -446,12 +1113,14 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
                     output.append("        case ").append(i).append(":\n");
                 }
             }
+            contarPerfil(item.start.getLine(), 'b');
             item.cmd().forEach(this::visit);
             output.append("            break;\n");
         }
         
         if (ctx.SENAO() != null) {
             output.append("        default:\n");
+            contarPerfil(ctx.SENAO().getSymbol().getLine(), 'b');
             ctx.cmd().forEach(this::visit);
             output.append("            break;\n");
         }
@@ -462,29 +1131,203 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
 
     @Override
     public Void visitCmdPara(CmdParaContext ctx) {
-        String ident = ctx.IDENT().getText();
+        String ident = renomear(ctx.IDENT().getText());
+        // O início não pode alterar variáveis, senão o limite calculado antes dele mudaria
+        Set<String> chamadasInicio = new HashSet<>();
+        GrafoChamadas.coletarChamadas(ctx.exp_aritmetica(0), chamadasInicio);
+        boolean icou = chamadasInicio.stream().allMatch(this::ehPura)
+                && icarInvariantes(ctx.exp_aritmetica(1), ctx);
         String start = visitAndCapture(ctx.exp_aritmetica(0));
         String end = visitAndCapture(ctx.exp_aritmetica(1));
+        // Com --bounds-check e --profile o corpo chama funções e grava contadores
+        boolean analisar = apelidos != null && !verificarLimites && !perfil;
+        AnaliseApelidos.Paralelizacao paralelo = analisar && paralelizar && !dentroDeParalelo
+                ? apelidos.paralelizacao(ctx) : null;
+        if (paralelo != null) {
+            emitirParalelo(ctx, paralelo, ident, start);
+        }
+        // O #pragma omp parallel for precisa vir logo antes do for
+        if (paralelo == null && analisar && anotarApelidos && apelidos.semDependenciasDeMemoria(ctx)) {
+            output.append("    #pragma GCC ivdep\n");
+        }
         output.append("    for (").append(ident).append(" = ").append(start).append("; ").append(ident).append(" <= ").append(end).append("; ").append(ident).append("++) {\n");
-        ctx.cmd().forEach(this::visit);
+        contarPerfil(ctx.start.getLine(), 'p');
+        profundidadeLaco++;
+        dentroDeParalelo |= paralelo != null;
+        if (verificarLimites) {
+            // Dentro do corpo a variável do laço fica entre os limites, se o corpo não a altera
+            AnaliseIntervalos.Intervalo anterior = intervalos.entrarPara(ctx);
+            ctx.cmd().forEach(this::visit);
+            intervalos.sairPara(ctx, anterior);
+        } else {
+            ctx.cmd().forEach(this::visit);
+        }
+        if (paralelo != null) {
+            dentroDeParalelo = false;
+        }
+        profundidadeLaco--;
         output.append("    }\n");
+        if (icou) {
+            output.append("    }\n");
+        }
         return null;
     }
 
+    // Sem iterações o OpenMP deixa a variável do laço como estava; o for sequencial a deixaria
+    // com o início, então ela recebe o início antes quando é usada depois do laço
+    private void emitirParalelo(CmdParaContext ctx, AnaliseApelidos.Paralelizacao paralelo, String ident,
+                                String start) {
+        if (paralelo.ultimas().contains(ctx.IDENT().getText())) {
+            output.append("    ").append(ident).append(" = ").append(start).append(";\n");
+        }
+        output.append("    #pragma omp parallel for");
+        if (!paralelo.privadas().isEmpty()) {
+            output.append(" private(").append(nomesC(paralelo.privadas())).append(")");
+        }
+        if (!paralelo.ultimas().isEmpty()) {
+            output.append(" lastprivate(").append(nomesC(paralelo.ultimas())).append(")");
+        }
+        for (Map.Entry<String, String> reducao : paralelo.reducoes().entrySet()) {
+            output.append(" reduction(").append(reducao.getValue()).append(":")
+                  .append(renomear(reducao.getKey())).append(")");
+        }
+        output.append("\n");
+    }
+
+    private String nomesC(List<String> nomes) {
+        return nomes.stream().map(this::renomear).collect(Collectors.joining(", "));
+    }
+
     @Override
     public Void visitCmdEnquanto(CmdEnquantoContext ctx) {
+        // Só o primeiro operando de e/ou é sempre avaliado
+        boolean icou = icarInvariantes(ctx.expressao().termo_logico(0).fator_logico(0), ctx);
         output.append("    while (").append(visitAndCapture(ctx.expressao())).append(") {\n");
+        contarPerfil(ctx.start.getLine(), 'e');
+        profundidadeLaco++;
         ctx.cmd().forEach(this::visit);
+        profundidadeLaco--;
         output.append("    }\n");
+        if (icou) {
+            output.append("    }\n");
+        }
         return null;
     }
 
+    private boolean ehPura(String nome) {
+        return pureza != null && pureza.ehPura(nome);
+    }
+
+    // Abre um bloco com as chamadas constantes da condição que não dependem de nada que o laço
+    // altera, cada uma guardada numa variável; a condição é avaliada pelo menos uma vez, então
+    // calcular antes dá o mesmo resultado. Devolve true se abriu o bloco. Com --profile as
+    // chamadas ficam onde estão, para os contadores seguirem o programa LA
+    private boolean icarInvariantes(ParseTree condicao, ParserRuleContext laco) {
+        if (!anotarPureza || pureza == null || perfil) {
+            return false;
+        }
+        Set<String> escritos = new HashSet<>();
+        if (!escritosNoLaco(laco, escritos)) {
+            return false;
+        }
+        List<Parcela_unarioContext> chamadas = new ArrayList<>();
+        coletarInvariantes(condicao, escritos, chamadas);
+        if (chamadas.isEmpty()) {
+            return false;
+        }
+        output.append("    {\n");
+        for (Parcela_unarioContext chamada : chamadas) {
+            String nome = "jander_inv" + expansoesNaFuncao.incrementAndGet();
+            output.append("    ").append(tipoRetornoC(chamada.IDENT().getText())).append(" ").append(nome)
+                    .append(" = ").append(visitAndCapture(chamada)).append(";\n");
+            invariantes.put(chamada, nome);
+        }
+        return true;
+    }
+
+    // Acrescenta a escritos as variáveis que o laço pode alterar; false se ele escreve por
+    // ponteiro ou chama algo impuro, quando qualquer variável pode mudar
+    private boolean escritosNoLaco(ParseTree t, Set<String> escritos) {
+        if (t instanceof CmdAtribuicaoContext) {
+            CmdAtribuicaoContext atribuicao = (CmdAtribuicaoContext) t;
+            if (atribuicao.getChild(0).getText().equals("^")) {
+                return false;
+            }
+            escritos.add(atribuicao.identificador().IDENT(0).getText());
+        } else if (t instanceof CmdLeiaContext) {
+            if (t.getText().contains("^")) {
+                return false;
+            }
+            for (IdentificadorContext ident : ((CmdLeiaContext) t).identificador()) {
+                escritos.add(ident.IDENT(0).getText());
+            }
+        } else if (t instanceof CmdParaContext) {
+            escritos.add(((CmdParaContext) t).IDENT().getText());
+        } else if (t instanceof CmdChamadaContext && !ehPura(((CmdChamadaContext) t).IDENT().getText())) {
+            return false;
+        } else if (t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null
+                && !ehPura(((Parcela_unarioContext) t).IDENT().getText())) {
+            return false;
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (!escritosNoLaco(t.getChild(i), escritos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void coletarInvariantes(ParseTree t, Set<String> escritos, List<Parcela_unarioContext> destino) {
+        // Só o primeiro operando de e/ou é sempre avaliado, também entre parênteses: uma chamada
+        // depois dele pode depender do teste que a precede (d <> 0 e inv(d) > i)
+        if (t instanceof ExpressaoContext) {
+            coletarInvariantes(((ExpressaoContext) t).termo_logico(0), escritos, destino);
+            return;
+        }
+        if (t instanceof Termo_logicoContext) {
+            coletarInvariantes(((Termo_logicoContext) t).fator_logico(0), escritos, destino);
+            return;
+        }
+        if (t instanceof Parcela_unarioContext && ((Parcela_unarioContext) t).IDENT() != null) {
+            Parcela_unarioContext chamada = (Parcela_unarioContext) t;
+            String retorno = tipoRetornoC(chamada.IDENT().getText());
+            Set<String> chamadas = new HashSet<>();
+            Set<String> nomes = new HashSet<>();
+            for (ExpressaoContext arg : chamada.expressao()) {
+                GrafoChamadas.coletarChamadas(arg, chamadas);
+                ExpansaoEmLinha.coletarNomes(arg, nomes);
+            }
+            if (retorno != null && pureza.ehConstante(chamada.IDENT().getText()) && !retorno.endsWith("*")
+                    && chamadas.stream().allMatch(pureza::ehConstante)
+                    && Collections.disjoint(nomes, escritos) && !chamada.getText().contains("^")) {
+                destino.add(chamada);
+                return;
+            }
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            coletarInvariantes(t.getChild(i), escritos, destino);
+        }
+    }
+
+    // Tipo C do retorno da função nome (do programa ou da interface), ou null se não é função
+    String tipoRetornoC(String nome) {
+        Declaracao_globalContext decl = pureza.getGrafo().getDeclaracao(nome);
+        if (decl != null) {
+            return decl.FUNCAO() != null ? getFullCTypeName(decl.tipo_estendido()) : null;
+        }
+        InterfaceDeclaracoes.Declaracao externa = interfaceBloco != null ? interfaceBloco.getDeclaracao(nome) : null;
+        return externa != null ? externa.retornoC : null;
+    }
+
     @Override
     public Void visitCmdFaca(CmdFacaContext ctx) {
         output.append("    do {\n");
+        contarPerfil(ctx.start.getLine(), 'f');
+        profundidadeLaco++;
         for (CmdContext cmd : ctx.cmd()) {
             visit(cmd);
         }
+        profundidadeLaco--;
 
         ExpressaoContext expressaoJander = ctx.expressao();
         String whileCondition;
@@ -504,7 +1347,7 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
 
     @Override
     public Void visitCmdAtribuicao(CmdAtribuicaoContext ctx) {
-        String lhs = ctx.identificador().getText();
+        String lhs = acesso(ctx.identificador());
         String rhs = visitAndCapture(ctx.expressao());
 
         JanderParser.ExpressaoContext lhsExpr = new JanderParser.ExpressaoContext(ctx.identificador().getParent(), 0);
@@ -529,15 +1372,430 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
 
     @Override
     public Void visitCmdChamada(CmdChamadaContext ctx) {
-        List<String> args = ctx.expressao().stream()
-            .map(expr -> visitAndCapture(expr))
-            .collect(Collectors.toList());
-        output.append("    ").append(ctx.IDENT().getText()).append("(").append(String.join(", ", args)).append(");\n");
+        if (chamadasCauda.contains(ctx)) {
+            reiniciarFuncao(ctx.expressao());
+            return null;
+        }
+        if (expandirProcedimento(ctx)) {
+            return null;
+        }
+        output.append("    ").append(ctx.IDENT().getText()).append("(")
+              .append(argumentos(ctx.IDENT().getText(), ctx.expressao())).append(");\n");
         return null;
     }
 
+    // Chamadas de cauda que podem virar laço: "retorne f(...)" em qualquer ponto de uma função,
+    // ou a chamada ao próprio procedimento como último comando (inclusive no fim de um ramo de
+    // se/caso que seja o último comando). Ficam de fora funções que tomam endereços com '&' e
+    // chamadas em que o laço mudaria o que um ponteiro enxerga: parâmetro var que não recebe
+    // ele mesmo, ou literal/ponteiro calculado a partir de variáveis locais.
+    private Set<ParseTree> chamadasDeCauda(Declaracao_globalContext ctx) {
+        String nome = ctx.IDENT().getText();
+        List<ParseTree> sitios = new ArrayList<>();
+        if (ctx.FUNCAO() != null) {
+            coletarRetornosDeCauda(ctx, nome, sitios);
+        } else {
+            coletarChamadasDeCauda(ctx.cmd(), nome, sitios);
+        }
+        if (sitios.isEmpty() || tomaEndereco(ctx)) {
+            return Set.of();
+        }
+        // Memória do quadro atual: locais e registros recebidos por valor
+        Set<String> locais = new HashSet<>();
+        for (Declaracao_localContext decl : ctx.declaracao_local()) {
+            if (decl.variavel() != null) {
+                for (IdentificadorContext ident : decl.variavel().identificador()) {
+                    locais.add(ident.IDENT(0).getText());
+                }
+            }
+        }
+        if (ctx.parametros() != null) {
+            for (ParametroContext p : ctx.parametros().parametro()) {
+                if (p.VAR() == null && getJanderTypeFromTipoEstendido(p.tipo_estendido()) == JanderType.RECORD) {
+                    p.identificador().forEach(ident -> locais.add(ident.IDENT(0).getText()));
+                }
+            }
+        }
+        Set<ParseTree> cauda = new HashSet<>();
+        for (ParseTree sitio : sitios) {
+            List<ExpressaoContext> args = sitio instanceof CmdChamadaContext
+                    ? ((CmdChamadaContext) sitio).expressao()
+                    : parcelaSimples(((CmdRetorneContext) sitio).expressao()).expressao();
+            if (argumentosReutilizaveis(ctx, args, locais)) {
+                cauda.add(sitio);
+            }
+        }
+        return cauda;
+    }
+
+    private static void coletarRetornosDeCauda(ParseTree t, String nome, List<ParseTree> sitios) {
+        if (t instanceof CmdRetorneContext) {
+            Parcela_unarioContext parcela = parcelaSimples(((CmdRetorneContext) t).expressao());
+            if (parcela != null && parcela.IDENT() != null && parcela.IDENT().getText().equals(nome)) {
+                sitios.add(t);
+            }
+            return;
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            coletarRetornosDeCauda(t.getChild(i), nome, sitios);
+        }
+    }
+
+    private static void coletarChamadasDeCauda(List<CmdContext> cmds, String nome, List<ParseTree> sitios) {
+        if (cmds.isEmpty()) {
+            return;
+        }
+        CmdContext ultimo = cmds.get(cmds.size() - 1);
+        if (ultimo.cmdChamada() != null && ultimo.cmdChamada().IDENT().getText().equals(nome)) {
+            sitios.add(ultimo.cmdChamada());
+        } else if (ultimo.cmdSe() != null) {
+            CmdSeContext se = ultimo.cmdSe();
+            int senao = se.SENAO() != null ? se.SENAO().getSymbol().getTokenIndex() : Integer.MAX_VALUE;
+            coletarChamadasDeCauda(se.cmd().stream().filter(c -> c.getStart().getTokenIndex() < senao)
+                    .collect(Collectors.toList()), nome, sitios);
+            coletarChamadasDeCauda(se.cmd().stream().filter(c -> c.getStart().getTokenIndex() > senao)
+                    .collect(Collectors.toList()), nome, sitios);
+        } else if (ultimo.cmdCaso() != null) {
+            for (Item_selecaoContext item : ultimo.cmdCaso().selecao().item_selecao()) {
+                coletarChamadasDeCauda(item.cmd(), nome, sitios);
+            }
+            coletarChamadasDeCauda(ultimo.cmdCaso().cmd(), nome, sitios);
+        }
+    }
+
+    private static boolean tomaEndereco(ParseTree t) {
+        if (t instanceof Parcela_nao_unarioContext && ((Parcela_nao_unarioContext) t).identificador() != null) {
+            return true;
+        }
+        for (int i = 0; i < t.getChildCount(); i++) {
+            if (tomaEndereco(t.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean argumentosReutilizaveis(Declaracao_globalContext ctx, List<ExpressaoContext> args, Set<String> locais) {
+        int n = 0;
+        for (ParametroContext p : ctx.parametros() != null ? ctx.parametros().parametro() : List.<ParametroContext>of()) {
+            for (IdentificadorContext ident : p.identificador()) {
+                if (n >= args.size()) {
+                    return false;
+                }
+                ExpressaoContext arg = args.get(n++);
+                if (p.VAR() != null) {
+                    IdentificadorContext alvo = alvoVar(arg);
+                    if (alvo == null || !alvo.getText().equals(ident.getText())) {
+                        return false;
+                    }
+                } else if (getFullCTypeName(p.tipo_estendido()).endsWith("*")) {
+                    Set<String> usados = new HashSet<>();
+                    ExpansaoEmLinha.coletarNomes(arg, usados);
+                    if (!Collections.disjoint(usados, locais)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return n == args.size();
+    }
+
+    // Chamada de cauda: avalia todos os argumentos antes de reatribuir os parâmetros, como na
+    // passagem, e volta ao início do corpo. Parâmetros var recebem eles mesmos e não mudam.
+    private void reiniciarFuncao(List<ExpressaoContext> args) {
+        List<String> parametros = new ArrayList<>();
+        List<String> tipos = new ArrayList<>();
+        List<String> valores = new ArrayList<>();
+        int n = 0;
+        for (ParametroContext p : funcaoAtual.parametros() != null ? funcaoAtual.parametros().parametro() : List.<ParametroContext>of()) {
+            for (IdentificadorContext ident : p.identificador()) {
+                ExpressaoContext arg = args.get(n++);
+                String valor = visitAndCapture(arg);
+                if (p.VAR() == null && !valor.equals(ident.getText())) {
+                    parametros.add(ident.getText());
+                    tipos.add(getFullCTypeName(p.tipo_estendido()));
+                    valores.add(valor);
+                }
+            }
+        }
+        if (parametros.size() == 1) {
+            output.append("    ").append(parametros.get(0)).append(" = ").append(valores.get(0)).append(";\n");
+        } else if (parametros.size() > 1) {
+            output.append("    {\n");
+            for (int i = 0; i < parametros.size(); i++) {
+                output.append("    ").append(tipos.get(i)).append(" ").append(parametros.get(i)).append("__c = ")
+                      .append(valores.get(i)).append(";\n");
+            }
+            for (String parametro : parametros) {
+                output.append("    ").append(parametro).append(" = ").append(parametro).append("__c;\n");
+            }
+            output.append("    }\n");
+        }
+        output.append("    goto jander_inicio;\n");
+    }
+
+    private boolean podeExpandir(String nome) {
+        return expansao.cabe(nome, profundidadeLaco > 0, crescimento.get())
+                && Collections.disjoint(expansao.getNomesLivres(nome), nomesLocais);
+    }
+
+    // Procedimento pequeno: a chamada vira um bloco C com os parâmetros ligados aos argumentos
+    // (var pelo endereço, valor por cópia ou pelo próprio argumento quando isso não muda o
+    // resultado), seguidos das variáveis locais e do corpo com os nomes renomeados
+    private boolean expandirProcedimento(CmdChamadaContext ctx) {
+        String nome = ctx.IDENT().getText();
+        if (expansao == null || !expansao.ehProcedimentoExpansivel(nome) || !podeExpandir(nome)) {
+            return false;
+        }
+        Declaracao_globalContext decl = expansao.getGrafo().getDeclaracao(nome);
+        List<ParametroContext> params = decl.parametros() != null ? decl.parametros().parametro() : List.of();
+
+        // Primeiro só valida, para não gerar nada (nem contar verificações) se a chamada não for expandida
+        int n = 0;
+        Set<String> variaveisVar = new HashSet<>();
+        for (ParametroContext p : params) {
+            for (IdentificadorContext ident : p.identificador()) {
+                if (n >= ctx.expressao().size()) {
+                    return false;
+                }
+                IdentificadorContext alvo = alvoVar(ctx.expressao(n++));
+                if (p.VAR() == null) {
+                    continue;
+                }
+                if (alvo == null || (!alvo.dimensao().exp_aritmetica().isEmpty()
+                        && getFullCTypeName(p.tipo_estendido()).equals("char*"))) {
+                    return false;
+                }
+                variaveisVar.add(alvo.IDENT(0).getText());
+            }
+        }
+        if (n != ctx.expressao().size()) {
+            return false;
+        }
+
+        boolean corpoChama = expansao.chamaComEfeitos(nome);
+        String sufixo = "__l" + expansoesNaFuncao.incrementAndGet();
+        Map<String, String> nomes = new HashMap<>();
+        StringBuilder ligacoes = new StringBuilder();
+        n = 0;
+        for (ParametroContext p : params) {
+            String tipoC = getFullCTypeName(p.tipo_estendido());
+            for (IdentificadorContext ident : p.identificador()) {
+                ExpressaoContext arg = ctx.expressao(n++);
+                String param = ident.IDENT(0).getText();
+                if (p.VAR() != null) {
+                    IdentificadorContext alvo = alvoVar(arg);
+                    if (alvo.dimensao().exp_aritmetica().isEmpty()) {
+                        // Argumento sem índices: o nome denota sempre a mesma variável
+                        nomes.put(param, acesso(alvo));
+                    } else {
+                        // Índices são avaliados uma vez, como na passagem do endereço
+                        ligacoes.append("    ").append(tipoC).append("* ").append(param).append(sufixo)
+                                .append(" = &").append(acesso(alvo)).append(";\n");
+                        nomes.put(param, "(*" + param + sufixo + ")");
+                    }
+                } else if (!corpoChama && podeUsarArgumento(decl, p, param, arg, variaveisVar)) {
+                    nomes.put(param, visitAndCapture(arg));
+                } else {
+                    ligacoes.append("    ").append(tipoC).append(" ").append(param).append(sufixo)
+                            .append(" = ").append(visitAndCapture(arg)).append(";\n");
+                    nomes.put(param, param + sufixo);
+                }
+            }
+        }
+        for (Declaracao_localContext local : decl.declaracao_local()) {
+            for (IdentificadorContext ident : local.variavel().identificador()) {
+                nomes.put(ident.IDENT(0).getText(), ident.IDENT(0).getText() + sufixo);
+            }
+        }
+
+        crescimento.addAndGet(expansao.getGrafo().getTamanho(nome));
+        expansao.registrarSubstituicao();
+        JanderGeradorC corpo = new JanderGeradorC(this, nomes);
+        symbolTable.openScope();
+        for (ParametroContext p : params) {
+            for (IdentificadorContext ident : p.identificador()) {
+                declararNoEscopo(ident.IDENT(0).getText(), p.tipo_estendido());
+            }
+        }
+        for (Declaracao_localContext local : decl.declaracao_local()) {
+            for (IdentificadorContext ident : local.variavel().identificador()) {
+                declararNoEscopo(ident.IDENT(0).getText(), local.variavel().tipo().tipo_estendido());
+            }
+            corpo.visitDeclaracao_local(local);
+        }
+        for (CmdContext cmd : decl.cmd()) {
+            corpo.visit(cmd);
+        }
+        symbolTable.closeScope();
+
+        output.append("    { /* ").append(nome).append(" */\n");
+        output.append(ligacoes).append(corpo.getOutput());
+        output.append("    }\n");
+        return true;
+    }
+
+    // Função de uma só expressão: a chamada vira a expressão, com cada parâmetro trocado pelo
+    // argumento convertido ao tipo declarado e o resultado convertido ao tipo de retorno
+    private String expandirFuncao(Parcela_unarioContext ctx) {
+        String nome = ctx.IDENT().getText();
+        if (expansao == null || !expansao.ehExpressaoExpansivel(nome) || !podeExpandir(nome)) {
+            return null;
+        }
+        Declaracao_globalContext decl = expansao.getGrafo().getDeclaracao(nome);
+        ExpressaoContext retorno = decl.cmd(0).cmdRetorne().expressao();
+        List<ParametroContext> params = decl.parametros() != null ? decl.parametros().parametro() : List.of();
+
+        // Argumentos sem chamadas não têm efeitos colaterais, então podem ser repetidos; com
+        // chamadas só a funções puras o argumento pode ir para dentro da expressão se for usado
+        // uma vez e o corpo não chamar nada que altere variáveis. Um argumento que o corpo não
+        // usa só some se não puder falhar (nome ou número)
+        boolean corpoChama = expansao.chamaComEfeitos(nome);
+        int n = 0;
+        for (ParametroContext p : params) {
+            for (IdentificadorContext ident : p.identificador()) {
+                if (n >= ctx.expressao().size()) {
+                    return null;
+                }
+                ExpressaoContext arg = ctx.expressao(n++);
+                Set<String> chamadas = new HashSet<>();
+                GrafoChamadas.coletarChamadas(arg, chamadas);
+                int vezes = usos(retorno, ident.IDENT(0).getText());
+                if ((vezes == 0 && !trivial(arg)) || (!chamadas.isEmpty()
+                        && (vezes != 1 || corpoChama || !chamadas.stream().allMatch(pureza::ehPura)))) {
+                    return null;
+                }
+            }
+        }
+        if (n != ctx.expressao().size()) {
+            return null;
+        }
+
+        Map<String, String> nomes = new HashMap<>();
+        n = 0;
+        for (ParametroContext p : params) {
+            for (IdentificadorContext ident : p.identificador()) {
+                nomes.put(ident.IDENT(0).getText(),
+                        "((" + getFullCTypeName(p.tipo_estendido()) + ") (" + visitAndCapture(ctx.expressao(n++)) + "))");
+            }
+        }
+
+        crescimento.addAndGet(expansao.getGrafo().getTamanho(nome));
+        expansao.registrarSubstituicao();
+        symbolTable.openScope();
+        for (ParametroContext p : params) {
+            for (IdentificadorContext ident : p.identificador()) {
+                declararNoEscopo(ident.IDENT(0).getText(), p.tipo_estendido());
+            }
+        }
+        String corpo = new JanderGeradorC(this, nomes).visitAndCapture(retorno);
+        symbolTable.closeScope();
+        return "((" + getFullCTypeName(decl.tipo_estendido()) + ") (" + corpo + "))";
+    }
+
+    // Parâmetro por valor que o corpo não altera, com argumento que é um nome do mesmo tipo
+    // (que o corpo também não altera, nem por um parâmetro var) ou um número: usar o argumento
+    // direto evita a cópia
+    private boolean podeUsarArgumento(Declaracao_globalContext decl, ParametroContext p, String param,
+                                      ExpressaoContext arg, Set<String> variaveisVar) {
+        if (!trivial(arg) || p.tipo_estendido().getText().startsWith("^")) {
+            return false;
+        }
+        for (CmdContext cmd : decl.cmd()) {
+            if (AnaliseIntervalos.altera(cmd, param)) {
+                return false;
+            }
+        }
+        Parcela_unarioContext parcela = parcelaSimples(arg);
+        JanderType tipoParam = getJanderTypeFromTipoEstendido(p.tipo_estendido());
+        if (parcela.identificador() == null) {
+            return (parcela.NUM_INT() != null && tipoParam == JanderType.INTEGER)
+                    || (parcela.NUM_REAL() != null && tipoParam == JanderType.REAL);
+        }
+        String argNome = parcela.identificador().IDENT(0).getText();
+        if (variaveisVar.contains(argNome)) {
+            return false;
+        }
+        for (CmdContext cmd : decl.cmd()) {
+            if (AnaliseIntervalos.altera(cmd, argNome)) {
+                return false;
+            }
+        }
+        if (tipoParam == JanderType.RECORD) {
+            SymbolTable.RecordType registro = symbolTable.getRecordType(p.tipo_estendido().tipo_basico_ident().IDENT().getText());
+            return registro != null && registro == symbolTable.getRecordType(argNome);
+        }
+        return tipoParam != JanderType.INVALID && JanderSemanticoUtils.checkType(symbolTable, arg) == tipoParam;
+    }
+
+    // Declara no escopo atual um parâmetro ou local do chamado com o seu tipo LA
+    private void declararNoEscopo(String nome, Tipo_estendidoContext tipo) {
+        JanderType base = getJanderTypeFromTipoEstendido(tipo);
+        if (tipo.getText().startsWith("^")) {
+            symbolTable.addPointerSymbol(nome, base);
+        } else if (base == JanderType.RECORD) {
+            symbolTable.addRecordSymbol(nome, symbolTable.getRecordType(tipo.tipo_basico_ident().IDENT().getText()));
+        } else {
+            symbolTable.addSymbol(nome, base);
+        }
+    }
+
+    // A parcela de uma expressão sem nenhum operador, ou null
+    private static Parcela_unarioContext parcelaSimples(ExpressaoContext expr) {
+        Exp_aritmeticaContext aritmetica = AnaliseIntervalos.aritmetica(expr);
+        if (aritmetica == null || aritmetica.termo().size() != 1 || aritmetica.termo(0).fator().size() != 1
+                || aritmetica.termo(0).fator(0).parcela().size() != 1) {
+            return null;
+        }
+        ParcelaContext parcela = aritmetica.termo(0).fator(0).parcela(0);
+        return parcela.op_unario() == null ? parcela.parcela_unario() : null;
+    }
+
+    // Variável passada a um parâmetro var: um identificador sem '^'
+    private static IdentificadorContext alvoVar(ExpressaoContext arg) {
+        Parcela_unarioContext parcela = parcelaSimples(arg);
+        return parcela != null && parcela.identificador() != null && !parcela.getText().startsWith("^")
+                ? parcela.identificador() : null;
+    }
+
+    // Nome simples (sem índices nem '^') ou número
+    private static boolean trivial(ExpressaoContext arg) {
+        Parcela_unarioContext parcela = parcelaSimples(arg);
+        if (parcela == null) {
+            return false;
+        }
+        if (parcela.identificador() != null) {
+            return !parcela.getText().startsWith("^") && parcela.identificador().IDENT().size() == 1
+                    && parcela.identificador().dimensao().exp_aritmetica().isEmpty();
+        }
+        return parcela.NUM_INT() != null || parcela.NUM_REAL() != null;
+    }
+
+    private static int usos(ParseTree t, String nome) {
+        int usos = t instanceof IdentificadorContext && ((IdentificadorContext) t).IDENT(0).getText().equals(nome) ? 1 : 0;
+        for (int i = 0; i < t.getChildCount(); i++) {
+            usos += usos(t.getChild(i), nome);
+        }
+        return usos;
+    }
+
     @Override
     public Void visitCmdRetorne(CmdRetorneContext ctx) {
+        if (chamadasCauda.contains(ctx)) {
+            reiniciarFuncao(parcelaSimples(ctx.expressao()).expressao());
+            return null;
+        }
+        if (perfil && funcaoAtual != null) {
+            // O tempo é fechado depois de avaliar o valor, que pode chamar outras funções
+            output.append("    {\n");
+            output.append("    ").append(getFullCTypeName(funcaoAtual.tipo_estendido())).append(" jander_r = ")
+                    .append(visitAndCapture(ctx.expressao())).append(";\n");
+            output.append("    jander_perfil_sair(").append(funcoesPerfil.indexOf(funcaoAtual.IDENT().getText()))
+                    .append(", jander_t0, jander_f0);\n");
+            output.append("    return jander_r;\n");
+            output.append("    }\n");
+            return null;
+        }
         output.append("    return ").append(visitAndCapture(ctx.expressao())).append(";\n");
         return null;
     }
@@ -658,13 +1916,19 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
             output.append("*");
         }
         if (ctx.identificador() != null) {
-            output.append(ctx.identificador().getText());
+            output.append(acesso(ctx.identificador()));
         } else if (ctx.IDENT() != null) {
+            if (invariantes.containsKey(ctx)) {
+                output.append(invariantes.get(ctx));
+                return null;
+            }
+            String expandida = expandirFuncao(ctx);
+            if (expandida != null) {
+                output.append(expandida);
+                return null;
+            }
             output.append(ctx.IDENT().getText()).append("(");
-            List<String> args = ctx.expressao().stream()
-                                   .map(expr -> visitAndCapture(expr))
-                                   .collect(Collectors.toList());
-            output.append(String.join(", ", args));
+            output.append(argumentos(ctx.IDENT().getText(), ctx.expressao()));
             output.append(")");
         } else if (ctx.NUM_INT() != null) {
             output.append(ctx.NUM_INT().getText());
@@ -682,7 +1946,7 @@ public class JanderGeradorC extends JanderBaseVisitor<Void> {
             output.append("&");
         }
         if (ctx.identificador() != null) {
-            output.append(ctx.identificador().getText());
+            output.append(acesso(ctx.identificador()));
         } else {
             output.append(ctx.CADEIA().getText());
         }
@@ -0,0 +1,1000 @@
+package br.ufscar.dc.compiladores;
+
+import static br.ufscar.dc.compiladores.JanderVM.*;
+
+import br.ufscar.dc.compiladores.InterpretadorNos.AlocarVetor;
+import br.ufscar.dc.compiladores.InterpretadorNos.AtribuirIntLocal;
+import br.ufscar.dc.compiladores.InterpretadorNos.AtribuirObj;
+import br.ufscar.dc.compiladores.InterpretadorNos.AtribuirPrimitivo;
+import br.ufscar.dc.compiladores.InterpretadorNos.AtribuirRegistro;
+import br.ufscar.dc.compiladores.InterpretadorNos.Bloco;
+import br.ufscar.dc.compiladores.InterpretadorNos.Chamada;
+import br.ufscar.dc.compiladores.InterpretadorNos.ChamadaCmd;
+import br.ufscar.dc.compiladores.InterpretadorNos.Caso;
+import br.ufscar.dc.compiladores.InterpretadorNos.Cmd;
+import br.ufscar.dc.compiladores.InterpretadorNos.CompInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.CompLiteral;
+import br.ufscar.dc.compiladores.InterpretadorNos.CompReal;
+import br.ufscar.dc.compiladores.InterpretadorNos.Concatenar;
+import br.ufscar.dc.compiladores.InterpretadorNos.ConstInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.ConstLiteral;
+import br.ufscar.dc.compiladores.InterpretadorNos.ConstLogico;
+import br.ufscar.dc.compiladores.InterpretadorNos.ConstReal;
+import br.ufscar.dc.compiladores.InterpretadorNos.E;
+import br.ufscar.dc.compiladores.InterpretadorNos.Endereco;
+import br.ufscar.dc.compiladores.InterpretadorNos.Enquanto;
+import br.ufscar.dc.compiladores.InterpretadorNos.Escreva;
+import br.ufscar.dc.compiladores.InterpretadorNos.Expr;
+import br.ufscar.dc.compiladores.InterpretadorNos.Faca;
+import br.ufscar.dc.compiladores.InterpretadorNos.IntParaReal;
+import br.ufscar.dc.compiladores.InterpretadorNos.Leia;
+import br.ufscar.dc.compiladores.InterpretadorNos.Ler;
+import br.ufscar.dc.compiladores.InterpretadorNos.LerIntLocal;
+import br.ufscar.dc.compiladores.InterpretadorNos.LerRealLocal;
+import br.ufscar.dc.compiladores.InterpretadorNos.LogicoParaInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.Lugar;
+import br.ufscar.dc.compiladores.InterpretadorNos.LugarApontado;
+import br.ufscar.dc.compiladores.InterpretadorNos.LugarGlobal;
+import br.ufscar.dc.compiladores.InterpretadorNos.LugarLocal;
+import br.ufscar.dc.compiladores.InterpretadorNos.LugarVetor;
+import br.ufscar.dc.compiladores.InterpretadorNos.Nao;
+import br.ufscar.dc.compiladores.InterpretadorNos.NegInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.NegReal;
+import br.ufscar.dc.compiladores.InterpretadorNos.OpInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.OpReal;
+import br.ufscar.dc.compiladores.InterpretadorNos.Ou;
+import br.ufscar.dc.compiladores.InterpretadorNos.Para;
+import br.ufscar.dc.compiladores.InterpretadorNos.ParaLocal;
+import br.ufscar.dc.compiladores.InterpretadorNos.RealParaInt;
+import br.ufscar.dc.compiladores.InterpretadorNos.Retorne;
+import br.ufscar.dc.compiladores.InterpretadorNos.Se;
+import br.ufscar.dc.compiladores.InterpretadorNos.Tipo;
+import br.ufscar.dc.compiladores.SymbolTable.JanderType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Traduz a árvore de nós do JanderInterpretador para o código de registradores
+ * da JanderVM. Locais ocupam os primeiros registradores do quadro (nos mesmos
+ * índices do interpretador); temporários de expressão vêm depois e são
+ * liberados ao fim de cada comando, então o quadro tem tamanho fixo.
+ * Constantes numéricas usadas como operandos viram registradores de constante
+ * (índices negativos), sem instrução de carga dentro dos laços.
+ *
+ * Superinstruções: PARA_I/PARA_IK fazem incremento, comparação e salto do
+ * "para" numa só instrução (limite constante, local ou local ± constante),
+ * e ELOAD/ESTORE fazem o cálculo do endereço do elemento junto com a leitura
+ * ou a escrita de vetor[i].
+ */
+public class JanderGeradorVM {
+
+    private int[] codigo = new int[1024];
+    private int tamanho;
+    private final List<Double> reais = new ArrayList<>();
+    private final Map<Long, Integer> indiceReais = new HashMap<>();
+    private final List<String> textos = new ArrayList<>();
+    private final Map<String, Integer> indiceTextos = new HashMap<>();
+    private final Map<InterpretadorNos.Funcao, JanderVM.Funcao> funcoes = new IdentityHashMap<>();
+    private final List<JanderVM.Funcao> tabela = new ArrayList<>();
+    private final ArrayDeque<InterpretadorNos.Funcao> pendentes = new ArrayDeque<>();
+
+    // Estado da função sendo gerada
+    private int proxP;
+    private int proxO;
+    private int maxP;
+    private int maxO;
+    private final Map<Long, Integer> constantes = new HashMap<>();
+
+    public JanderVM.Programa compilar(JanderInterpretador.Programa programa) {
+        InterpretadorNos.Funcao principal = programa.principal;
+        funcao(principal);
+        gerarFuncao(principal, true);
+        while (!pendentes.isEmpty()) {
+            gerarFuncao(pendentes.poll(), false);
+        }
+        double[] r = new double[reais.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = reais.get(i);
+        }
+        return new JanderVM.Programa(Arrays.copyOf(codigo, tamanho), r, textos.toArray(new String[0]),
+                tabela.toArray(new JanderVM.Funcao[0]), programa.tamGlobaisP, programa.tamGlobaisO);
+    }
+
+    /** Entrada da tabela de funções; a geração do corpo fica pendente até a primeira chamada */
+    private JanderVM.Funcao funcao(InterpretadorNos.Funcao f) {
+        JanderVM.Funcao vm = funcoes.get(f);
+        if (vm != null) {
+            return vm;
+        }
+        vm = new JanderVM.Funcao(f.nome, tabela.size());
+        int n = f.modosParametros == null ? 0 : f.modosParametros.length;
+        vm.modos = n == 0 ? new int[0] : f.modosParametros.clone();
+        vm.slotsP = n == 0 ? new int[0] : f.slotsP.clone();
+        vm.slotsO = n == 0 ? new int[0] : f.slotsO.clone();
+        vm.tamRegP = new int[n];
+        vm.tamRegO = new int[n];
+        for (int i = 0; i < n; i++) {
+            vm.tamRegP[i] = f.tiposParametros[i].tamP;
+            vm.tamRegO[i] = f.tiposParametros[i].tamO;
+        }
+        if (f.retorno == null) {
+            vm.retorno = RETORNO_NENHUM;
+        } else {
+            vm.retorno = f.retorno.primitivo() ? RETORNO_P : RETORNO_O;
+        }
+        funcoes.put(f, vm);
+        tabela.add(vm);
+        if (tabela.size() > 1) {
+            pendentes.add(f);
+        }
+        return vm;
+    }
+
+    private void gerarFuncao(InterpretadorNos.Funcao f, boolean principal) {
+        JanderVM.Funcao vm = funcoes.get(f);
+        vm.entrada = tamanho;
+        proxP = maxP = f.tamP;
+        proxO = maxO = f.tamO;
+        constantes.clear();
+        cmd(f.corpo);
+        if (principal) {
+            emitir(HALT);
+        } else if (f.retorno == null) {
+            emitir(RET);
+        } else if (f.retorno.primitivo()) {
+            // Sem retorne: a função devolve zero, como o interpretador
+            int t = tempP();
+            emitir(CONST_I, t, 0);
+            emitir(RET_P, t);
+        } else {
+            int t = tempO();
+            emitir(RET_O, t);
+        }
+        vm.tamP = maxP;
+        vm.tamO = maxO;
+        // O registrador -1 é o último antes do quadro
+        vm.constantes = new long[constantes.size()];
+        for (Map.Entry<Long, Integer> k : constantes.entrySet()) {
+            vm.constantes[vm.constantes.length + k.getValue()] = k.getKey();
+        }
+    }
+
+    // ---------------------------------------------------------------- código e pools
+
+    private void emitir(int... ints) {
+        if (tamanho + ints.length > codigo.length) {
+            codigo = Arrays.copyOf(codigo, Math.max(codigo.length * 2, tamanho + ints.length));
+        }
+        System.arraycopy(ints, 0, codigo, tamanho, ints.length);
+        tamanho += ints.length;
+    }
+
+    /** Alvo de salto: posições a corrigir até a posição ser conhecida */
+    private final class Rotulo {
+        int posicao = -1;
+        int[] usos = new int[2];
+        int n;
+
+        /** Emite o alvo como operando */
+        void referenciar() {
+            if (posicao >= 0) {
+                emitir(posicao);
+                return;
+            }
+            if (n == usos.length) usos = Arrays.copyOf(usos, n * 2);
+            usos[n++] = tamanho;
+            emitir(-1);
+        }
+
+        void marcar() {
+            posicao = tamanho;
+            for (int i = 0; i < n; i++) {
+                codigo[usos[i]] = posicao;
+            }
+        }
+    }
+
+    private void saltar(int op, int a, int b, Rotulo alvo) {
+        emitir(op, a, b);
+        alvo.referenciar();
+    }
+
+    private void saltar(int op, int a, Rotulo alvo) {
+        emitir(op, a);
+        alvo.referenciar();
+    }
+
+    private int real(double valor) {
+        return indiceReais.computeIfAbsent(Double.doubleToRawLongBits(valor), k -> {
+            reais.add(valor);
+            return reais.size() - 1;
+        });
+    }
+
+    private int texto(String valor) {
+        return indiceTextos.computeIfAbsent(valor, k -> {
+            textos.add(valor);
+            return textos.size() - 1;
+        });
+    }
+
+    /** Registrador de constante da função atual: -1, -2, ... */
+    private int constante(long bits) {
+        return constantes.computeIfAbsent(bits, k -> -constantes.size() - 1);
+    }
+
+    private int tempP() {
+        int t = proxP++;
+        maxP = Math.max(maxP, proxP);
+        return t;
+    }
+
+    private int tempO() {
+        int t = proxO++;
+        maxO = Math.max(maxO, proxO);
+        return t;
+    }
+
+    private int alvoP(int destino) {
+        return destino >= 0 ? destino : tempP();
+    }
+
+    private int alvoO(int destino) {
+        return destino >= 0 ? destino : tempO();
+    }
+
+    // ---------------------------------------------------------------- expressões
+
+    private static boolean primitiva(Tipo t) {
+        return t != null && t.primitivo();
+    }
+
+    /** Valor inteiro (ou lógico como 0/1) de e; destino < 0 aceita qualquer registrador, inclusive o de uma local */
+    private int inteiro(Expr e, int destino) {
+        if (e instanceof ConstInt) {
+            if (destino < 0) {
+                return constante(((ConstInt) e).valor);
+            }
+            int d = destino;
+            emitir(CONST_I, d, ((ConstInt) e).valor);
+            return d;
+        }
+        if (e instanceof LerIntLocal) {
+            return mover(((LerIntLocal) e).slot, destino);
+        }
+        if (e instanceof Ler) {
+            return lerP(((Ler) e).lugar, destino);
+        }
+        if (e instanceof Chamada) {
+            return chamada((Chamada) e, destino);
+        }
+        if (e instanceof LogicoParaInt) {
+            return logico(((LogicoParaInt) e).e, destino);
+        }
+        if (e instanceof RealParaInt) {
+            int a = real(((RealParaInt) e).e, -1);
+            int d = alvoP(destino);
+            emitir(R2I, d, a);
+            return d;
+        }
+        if (e instanceof NegInt) {
+            int a = inteiro(((NegInt) e).e, -1);
+            int d = alvoP(destino);
+            emitir(NEG_I, d, a);
+            return d;
+        }
+        if (e instanceof OpInt) {
+            OpInt op = (OpInt) e;
+            // Soma e subtração de constante: uma instrução com imediato
+            if (op.op == InterpretadorNos.SOMA && op.a instanceof ConstInt) {
+                return somaImediata(op.b, ((ConstInt) op.a).valor, destino);
+            }
+            if (op.op == InterpretadorNos.SOMA && op.b instanceof ConstInt) {
+                return somaImediata(op.a, ((ConstInt) op.b).valor, destino);
+            }
+            if (op.op == InterpretadorNos.SUB && op.b instanceof ConstInt && ((ConstInt) op.b).valor != Integer.MIN_VALUE) {
+                return somaImediata(op.a, -((ConstInt) op.b).valor, destino);
+            }
+            int a = inteiro(op.a, -1);
+            int b = inteiro(op.b, -1);
+            int d = alvoP(destino);
+            emitir(ADD_I + op.op, d, a, b);
+            return d;
+        }
+        if (e.tipo != null && e.tipo.categoria == JanderType.LOGICAL) {
+            return logico(e, destino);
+        }
+        throw new IllegalStateException(e.getClass().getSimpleName() + " nao e inteira");
+    }
+
+    private int somaImediata(Expr e, int k, int destino) {
+        int a = inteiro(e, -1);
+        int d = alvoP(destino);
+        emitir(ADDK_I, d, a, k);
+        return d;
+    }
+
+    private int mover(int registrador, int destino) {
+        if (destino < 0 || destino == registrador) {
+            return registrador;
+        }
+        emitir(MOV_P, destino, registrador);
+        return destino;
+    }
+
+    /** Valor real de e, como bits de double */
+    private int real(Expr e, int destino) {
+        if (e instanceof ConstReal) {
+            if (destino < 0) {
+                return constante(Double.doubleToRawLongBits(((ConstReal) e).valor));
+            }
+            int d = destino;
+            emitir(CONST_R, d, real(((ConstReal) e).valor));
+            return d;
+        }
+        if (e instanceof LerRealLocal) {
+            return mover(((LerRealLocal) e).slot, destino);
+        }
+        if (e instanceof Ler) {
+            return lerP(((Ler) e).lugar, destino);
+        }
+        if (e instanceof Chamada) {
+            return chamada((Chamada) e, destino);
+        }
+        if (e instanceof IntParaReal) {
+            int a = inteiro(((IntParaReal) e).e, -1);
+            int d = alvoP(destino);
+            emitir(e.flutuante ? I2F : I2D, d, a);
+            return d;
+        }
+        if (e instanceof NegReal) {
+            int a = real(((NegReal) e).e, -1);
+            int d = alvoP(destino);
+            emitir(NEG_R, d, a);
+            return d;
+        }
+        if (e instanceof OpReal) {
+            OpReal op = (OpReal) e;
+            int a = real(op.a, -1);
+            int b = real(op.b, -1);
+            int d = alvoP(destino);
+            emitir((op.flutuante ? ADD_F : ADD_D) + op.op, d, a, b);
+            return d;
+        }
+        throw new IllegalStateException(e.getClass().getSimpleName() + " nao e real");
+    }
+
+    /** Valor lógico de e como 0/1 */
+    private int logico(Expr e, int destino) {
+        if (e instanceof ConstLogico) {
+            if (destino < 0) {
+                return constante(((ConstLogico) e).valor ? 1 : 0);
+            }
+            int d = destino;
+            emitir(CONST_I, d, ((ConstLogico) e).valor ? 1 : 0);
+            return d;
+        }
+        if (e instanceof Ler) {
+            return lerP(((Ler) e).lugar, destino);
+        }
+        if (e instanceof Chamada) {
+            return chamada((Chamada) e, destino);
+        }
+        if (e instanceof CompInt) {
+            CompInt c = (CompInt) e;
+            int a = inteiro(c.a, -1);
+            int b = inteiro(c.b, -1);
+            int d = alvoP(destino);
+            emitir(EQ_I + c.op, d, a, b);
+            return d;
+        }
+        if (e instanceof CompReal) {
+            CompReal c = (CompReal) e;
+            int a = real(c.a, -1);
+            int b = real(c.b, -1);
+            int d = alvoP(destino);
+            emitir(EQ_R + c.op, d, a, b);
+            return d;
+        }
+        if (e instanceof CompLiteral) {
+            CompLiteral c = (CompLiteral) e;
+            int a = objeto(c.a, -1);
+            int b = objeto(c.b, -1);
+            int d = alvoP(destino);
+            emitir(CMP_S, d, c.op, a, b);
+            return d;
+        }
+        if (e instanceof Nao) {
+            int a = logico(((Nao) e).e, -1);
+            int d = alvoP(destino);
+            emitir(NOT, d, a);
+            return d;
+        }
+        // E / Ou: curto-circuito com saltos
+        int d = alvoP(destino);
+        Rotulo falso = new Rotulo();
+        Rotulo fim = new Rotulo();
+        saltarSe(e, false, falso);
+        emitir(CONST_I, d, 1, JMP);
+        fim.referenciar();
+        falso.marcar();
+        emitir(CONST_I, d, 0);
+        fim.marcar();
+        return d;
+    }
+
+    /** Literal, ponteiro ou registro (como Ponteiro para os campos) */
+    private int objeto(Expr e, int destino) {
+        if (e instanceof ConstLiteral) {
+            int d = alvoO(destino);
+            emitir(CONST_S, d, texto(((ConstLiteral) e).valor));
+            return d;
+        }
+        if (e instanceof Ler) {
+            Lugar lugar = ((Ler) e).lugar;
+            if (lugar.tipo.categoria == JanderType.RECORD) {
+                return endereco(lugar, destino);
+            }
+            return lerO(lugar, destino);
+        }
+        if (e instanceof Endereco) {
+            return endereco(((Endereco) e).lugar, destino);
+        }
+        if (e instanceof Chamada) {
+            return chamada((Chamada) e, destino);
+        }
+        if (e instanceof Concatenar) {
+            Concatenar c = (Concatenar) e;
+            int a = objeto(c.a, -1);
+            int b = objeto(c.b, -1);
+            int d = alvoO(destino);
+            emitir(CONCAT, d, a, b);
+            return d;
+        }
+        throw new IllegalStateException(e.getClass().getSimpleName() + " nao e objeto");
+    }
+
+    /** Valor de e convertido para a representação de uma variável do tipo t (InterpretadorNos.valorPrimitivo) */
+    private int valorPrimitivo(Tipo t, Expr e, int destino) {
+        boolean eReal = e.tipo.categoria == JanderType.REAL;
+        switch (t.categoria) {
+            case INTEGER:
+                if (eReal) {
+                    int a = real(e, -1);
+                    int d = alvoP(destino);
+                    emitir(R2I, d, a);
+                    return d;
+                }
+                return inteiro(e, destino);
+            case REAL:
+                if (eReal) {
+                    if (e.flutuante) {
+                        return real(e, destino);
+                    }
+                    int a = real(e, -1);
+                    int d = alvoP(destino);
+                    emitir(ARRED_F, d, a);
+                    return d;
+                }
+                int a = inteiro(e, -1);
+                int d = alvoP(destino);
+                emitir(I2F, d, a);
+                return d;
+            default:
+                return logico(e, destino);
+        }
+    }
+
+    /** Salta para alvo quando e tem o valor "quando" */
+    private void saltarSe(Expr e, boolean quando, Rotulo alvo) {
+        if (e instanceof ConstLogico) {
+            if (((ConstLogico) e).valor == quando) {
+                emitir(JMP);
+                alvo.referenciar();
+            }
+        } else if (e instanceof CompInt) {
+            CompInt c = (CompInt) e;
+            int a = inteiro(c.a, -1);
+            int b = inteiro(c.b, -1);
+            saltar(JEQ_I + (quando ? c.op : negar(c.op)), a, b, alvo);
+        } else if (e instanceof Nao) {
+            saltarSe(((Nao) e).e, !quando, alvo);
+        } else if (e instanceof E || e instanceof Ou) {
+            // E salta no primeiro falso, Ou no primeiro verdadeiro
+            boolean conjuncao = e instanceof E;
+            Expr[] partes = conjuncao ? ((E) e).fatores : ((Ou) e).termos;
+            if (quando != conjuncao) {
+                for (Expr parte : partes) {
+                    saltarSe(parte, quando, alvo);
+                }
+            } else {
+                Rotulo fora = new Rotulo();
+                for (int i = 0; i < partes.length - 1; i++) {
+                    saltarSe(partes[i], !quando, fora);
+                }
+                saltarSe(partes[partes.length - 1], quando, alvo);
+                fora.marcar();
+            }
+        } else {
+            saltar(quando ? JNZ : JZ, logico(e, -1), alvo);
+        }
+    }
+
+    private static int negar(int op) {
+        switch (op) {
+            case InterpretadorNos.IGUAL: return InterpretadorNos.DIFERENTE;
+            case InterpretadorNos.DIFERENTE: return InterpretadorNos.IGUAL;
+            case InterpretadorNos.MAIOR: return InterpretadorNos.MENOR_IGUAL;
+            case InterpretadorNos.MAIOR_IGUAL: return InterpretadorNos.MENOR;
+            case InterpretadorNos.MENOR: return InterpretadorNos.MAIOR_IGUAL;
+            default: return InterpretadorNos.MAIOR;
+        }
+    }
+
+    private int chamada(Chamada c, int destino) {
+        InterpretadorNos.Funcao f = c.funcao;
+        JanderVM.Funcao vm = funcao(f);
+        int n = c.argumentos.length;
+        int[] args = new int[n];
+        for (int i = 0; i < n; i++) {
+            switch (f.modosParametros[i]) {
+                case InterpretadorNos.PARAM_PRIMITIVO:
+                    // Com mais de um argumento, copia para um temporário: chamadas seguintes podem alterar a local
+                    args[i] = valorPrimitivo(f.tiposParametros[i], c.argumentos[i], n > 1 ? tempP() : -1);
+                    break;
+                case InterpretadorNos.PARAM_REFERENCIA:
+                    args[i] = endereco(c.lugares[i], -1);
+                    break;
+                default:
+                    args[i] = objeto(c.argumentos[i], -1);
+                    break;
+            }
+        }
+        int d = -1;
+        if (vm.retorno == RETORNO_P) {
+            d = alvoP(destino);
+        } else if (vm.retorno == RETORNO_O) {
+            d = alvoO(destino);
+        }
+        emitir(CALL, vm.indice, d, n);
+        emitir(args);
+        return d;
+    }
+
+    // ---------------------------------------------------------------- lugares
+
+    private static final int LOCAL = 0;
+    private static final int GLOBAL = 1;
+    private static final int ELEMENTO = 2;
+    private static final int APONTADO = 3;
+
+    /** Lugar com os registradores de endereço já avaliados, para ler e escrever sem recalcular índices */
+    private static final class Resolvido {
+        int forma;
+        int base;   // slot local/global, registrador do vetor ou do ponteiro
+        int indice; // registrador do índice linear (ELEMENTO)
+        int escP;
+        int escO;
+        int dp;
+        int dO;
+    }
+
+    private Resolvido resolver(Lugar lugar) {
+        Resolvido r = new Resolvido();
+        if (lugar instanceof LugarLocal) {
+            r.forma = LOCAL;
+            r.dp = ((LugarLocal) lugar).p;
+            r.dO = ((LugarLocal) lugar).o;
+        } else if (lugar instanceof LugarGlobal) {
+            r.forma = GLOBAL;
+            r.dp = ((LugarGlobal) lugar).p;
+            r.dO = ((LugarGlobal) lugar).o;
+        } else if (lugar instanceof LugarVetor) {
+            LugarVetor lv = (LugarVetor) lugar;
+            Tipo elemento = lv.elementoBase != null ? lv.elementoBase : lv.tipo;
+            r.forma = ELEMENTO;
+            if (lv.global) {
+                r.base = tempO();
+                emitir(GLOAD_O, r.base, lv.slot);
+            } else {
+                r.base = lv.slot;
+            }
+            r.indice = indiceLinear(lv, r.base);
+            r.escP = elemento.tamP;
+            r.escO = elemento.tamO;
+            r.dp = lv.dp;
+            r.dO = lv.dO;
+        } else {
+            LugarApontado la = (LugarApontado) lugar;
+            r.forma = APONTADO;
+            r.base = objeto(la.ponteiro, -1);
+            r.dp = la.dp;
+            r.dO = la.dO;
+        }
+        return r;
+    }
+
+    private int indiceLinear(LugarVetor lv, int vetor) {
+        if (lv.indices.length == 1) {
+            return inteiro(lv.indices[0], -1);
+        }
+        int linear = tempP();
+        inteiro(lv.indices[0], linear);
+        int dim = tempP();
+        for (int i = 1; i < lv.indices.length; i++) {
+            emitir(VDIM, dim, vetor, i);
+            emitir(MUL_I, linear, linear, dim);
+            int x = inteiro(lv.indices[i], -1);
+            emitir(ADD_I, linear, linear, x);
+        }
+        return linear;
+    }
+
+    private int carregarP(Resolvido r, int destino) {
+        switch (r.forma) {
+            case LOCAL:
+                return mover(r.dp, destino);
+            case GLOBAL: {
+                int d = alvoP(destino);
+                emitir(GLOAD_P, d, r.dp);
+                return d;
+            }
+            case ELEMENTO: {
+                int d = alvoP(destino);
+                emitir(ELOAD_P, d, r.base, r.indice, r.escP, r.dp);
+                return d;
+            }
+            default: {
+                int d = alvoP(destino);
+                emitir(PLOAD_P, d, r.base, r.dp);
+                return d;
+            }
+        }
+    }
+
+    private void gravarP(Resolvido r, int valor) {
+        switch (r.forma) {
+            case LOCAL:
+                if (valor != r.dp) emitir(MOV_P, r.dp, valor);
+                break;
+            case GLOBAL:
+                emitir(GSTORE_P, r.dp, valor);
+                break;
+            case ELEMENTO:
+                emitir(ESTORE_P, r.base, r.indice, r.escP, r.dp, valor);
+                break;
+            default:
+                emitir(PSTORE_P, r.base, r.dp, valor);
+                break;
+        }
+    }
+
+    private int carregarO(Resolvido r, int destino) {
+        switch (r.forma) {
+            case LOCAL:
+                if (destino < 0 || destino == r.dO) return r.dO;
+                emitir(MOV_O, destino, r.dO);
+                return destino;
+            case GLOBAL: {
+                int d = alvoO(destino);
+                emitir(GLOAD_O, d, r.dO);
+                return d;
+            }
+            case ELEMENTO: {
+                int d = alvoO(destino);
+                emitir(ELOAD_O, d, r.base, r.indice, r.escO, r.dO);
+                return d;
+            }
+            default: {
+                int d = alvoO(destino);
+                emitir(PLOAD_O, d, r.base, r.dO);
+                return d;
+            }
+        }
+    }
+
+    private void gravarO(Resolvido r, int valor) {
+        switch (r.forma) {
+            case LOCAL:
+                if (valor != r.dO) emitir(MOV_O, r.dO, valor);
+                break;
+            case GLOBAL:
+                emitir(GSTORE_O, r.dO, valor);
+                break;
+            case ELEMENTO:
+                emitir(ESTORE_O, r.base, r.indice, r.escO, r.dO, valor);
+                break;
+            default:
+                emitir(PSTORE_O, r.base, r.dO, valor);
+                break;
+        }
+    }
+
+    private int lerP(Lugar lugar, int destino) {
+        return carregarP(resolver(lugar), destino);
+    }
+
+    private int lerO(Lugar lugar, int destino) {
+        return carregarO(resolver(lugar), destino);
+    }
+
+    private int endereco(Lugar lugar, int destino) {
+        Resolvido r = resolver(lugar);
+        int d = alvoO(destino);
+        switch (r.forma) {
+            case LOCAL:
+                emitir(ADDR_L, d, r.dp, r.dO);
+                break;
+            case GLOBAL:
+                emitir(ADDR_G, d, r.dp, r.dO);
+                break;
+            case ELEMENTO:
+                emitir(ADDR_E, d, r.base, r.indice, r.escP, r.escO, r.dp, r.dO);
+                break;
+            default:
+                emitir(ADDR_P, d, r.base, r.dp, r.dO);
+                break;
+        }
+        return d;
+    }
+
+    // ---------------------------------------------------------------- comandos
+
+    private void cmd(Cmd c) {
+        // Temporários de um comando valem só até o fim dele
+        int marcaP = proxP;
+        int marcaO = proxO;
+        if (c instanceof Bloco) {
+            for (Cmd filho : ((Bloco) c).cmds) {
+                cmd(filho);
+            }
+        } else if (c instanceof AtribuirIntLocal) {
+            AtribuirIntLocal a = (AtribuirIntLocal) c;
+            inteiro(a.e, a.slot);
+        } else if (c instanceof AtribuirPrimitivo) {
+            AtribuirPrimitivo a = (AtribuirPrimitivo) c;
+            if (a.lugar instanceof LugarLocal) {
+                valorPrimitivo(a.lugar.tipo, a.e, ((LugarLocal) a.lugar).p);
+            } else {
+                int v = valorPrimitivo(a.lugar.tipo, a.e, -1);
+                gravarP(resolver(a.lugar), v);
+            }
+        } else if (c instanceof AtribuirObj) {
+            AtribuirObj a = (AtribuirObj) c;
+            if (a.lugar instanceof LugarLocal) {
+                objeto(a.e, ((LugarLocal) a.lugar).o);
+            } else {
+                int v = objeto(a.e, -1);
+                gravarO(resolver(a.lugar), v);
+            }
+        } else if (c instanceof AtribuirRegistro) {
+            AtribuirRegistro a = (AtribuirRegistro) c;
+            int origem = objeto(a.e, -1);
+            int destino = endereco(a.lugar, -1);
+            emitir(COPY_REC, destino, origem, a.lugar.tipo.tamP, a.lugar.tipo.tamO);
+        } else if (c instanceof AlocarVetor) {
+            AlocarVetor a = (AlocarVetor) c;
+            int[] dims = new int[a.dims.length];
+            for (int i = 0; i < dims.length; i++) {
+                dims[i] = inteiro(a.dims[i], -1);
+            }
+            emitir(NEWVET, a.global ? 1 : 0, a.slot, dims.length, a.elemento.tamP, a.elemento.tamO);
+            emitir(dims);
+        } else if (c instanceof Leia) {
+            leia((Leia) c);
+        } else if (c instanceof Escreva) {
+            escreva((Escreva) c);
+        } else if (c instanceof Se) {
+            Se se = (Se) c;
+            Rotulo senao = new Rotulo();
+            saltarSe(se.condicao, false, senao);
+            cmd(se.entao);
+            if (se.senao != null) {
+                Rotulo fim = new Rotulo();
+                emitir(JMP);
+                fim.referenciar();
+                senao.marcar();
+                cmd(se.senao);
+                fim.marcar();
+            } else {
+                senao.marcar();
+            }
+        } else if (c instanceof Enquanto) {
+            // Teste no fim do laço: um salto por iteração
+            Enquanto en = (Enquanto) c;
+            Rotulo teste = new Rotulo();
+            Rotulo corpo = new Rotulo();
+            emitir(JMP);
+            teste.referenciar();
+            corpo.marcar();
+            cmd(en.corpo);
+            teste.marcar();
+            saltarSe(en.condicao, true, corpo);
+        } else if (c instanceof Faca) {
+            Faca fa = (Faca) c;
+            Rotulo corpo = new Rotulo();
+            corpo.marcar();
+            cmd(fa.corpo);
+            saltarSe(fa.condicao, true, corpo);
+        } else if (c instanceof ParaLocal) {
+            paraLocal((ParaLocal) c);
+        } else if (c instanceof Para) {
+            para((Para) c);
+        } else if (c instanceof Caso) {
+            caso((Caso) c);
+        } else if (c instanceof ChamadaCmd) {
+            chamada(((ChamadaCmd) c).chamada, -1);
+        } else if (c instanceof Retorne) {
+            retorne((Retorne) c);
+        } else {
+            throw new IllegalStateException("comando nao suportado: " + c.getClass().getSimpleName());
+        }
+        proxP = marcaP;
+        proxO = marcaO;
+    }
+
+    private void leia(Leia l) {
+        int op;
+        switch (l.lugar.tipo.categoria) {
+            case LITERAL: op = READ_S; break;
+            case REAL: op = READ_R; break;
+            case LOGICAL: op = READ_L; break;
+            default: op = READ_I; break;
+        }
+        Resolvido r = resolver(l.lugar);
+        boolean objeto = op == READ_S;
+        if (r.forma == LOCAL) {
+            emitir(op, objeto ? r.dO : r.dp);
+            return;
+        }
+        // Carrega o valor atual: se a leitura falhar, a gravação mantém o conteúdo
+        if (objeto) {
+            int t = carregarO(r, tempO());
+            emitir(op, t);
+            gravarO(r, t);
+        } else {
+            int t = carregarP(r, tempP());
+            emitir(op, t);
+            gravarP(r, t);
+        }
+    }
+
+    private void escreva(Escreva es) {
+        for (int i = 0; i < es.expressoes.length; i++) {
+            Expr e = es.expressoes[i];
+            int marcaP = proxP;
+            int marcaO = proxO;
+            if (e == null) {
+                emitir(WRITE_K, texto(es.textos[i]));
+                continue;
+            }
+            switch (e.tipo.categoria) {
+                case INTEGER: emitir(WRITE_I, inteiro(e, -1)); break;
+                case REAL: emitir(WRITE_R, real(e, -1)); break;
+                case LITERAL: emitir(WRITE_S, objeto(e, -1)); break;
+                case LOGICAL: emitir(WRITE_L, logico(e, -1)); break;
+                default: emitir(WRITE_K, texto("<ERRO_TIPO>")); break;
+            }
+            proxP = marcaP;
+            proxO = marcaO;
+        }
+    }
+
+    /** Teste na entrada e PARA_I/PARA_IK no fim quando o limite é constante ou uma local */
+    private void paraLocal(ParaLocal pa) {
+        inteiro(pa.inicio, pa.slot);
+        Rotulo fim = new Rotulo();
+        Rotulo corpo = new Rotulo();
+        saltar(JGT_I, pa.slot, inteiro(pa.fim, -1), fim);
+        int marcaP = proxP;
+        corpo.marcar();
+        cmd(pa.corpo);
+        proxP = marcaP;
+        if (pa.fim instanceof ConstInt) {
+            emitir(PARA_IK, pa.slot, ((ConstInt) pa.fim).valor);
+            corpo.referenciar();
+        } else if (pa.fim instanceof LerIntLocal) {
+            emitir(PARA_I, pa.slot, ((LerIntLocal) pa.fim).slot, 0);
+            corpo.referenciar();
+        } else if (localMaisConstante(pa.fim)) {
+            OpInt op = (OpInt) pa.fim;
+            int k = ((ConstInt) op.b).valor;
+            emitir(PARA_I, pa.slot, ((LerIntLocal) op.a).slot, op.op == InterpretadorNos.SOMA ? k : -k);
+            corpo.referenciar();
+        } else {
+            emitir(ADDK_I, pa.slot, pa.slot, 1);
+            saltar(JLE_I, pa.slot, inteiro(pa.fim, -1), corpo);
+        }
+        fim.marcar();
+    }
+
+    /** local + k ou local - k, sem estouro ao somar k ao limite */
+    private static boolean localMaisConstante(Expr e) {
+        if (!(e instanceof OpInt)) return false;
+        OpInt op = (OpInt) e;
+        return (op.op == InterpretadorNos.SOMA || op.op == InterpretadorNos.SUB)
+                && op.a instanceof LerIntLocal && op.b instanceof ConstInt
+                && ((ConstInt) op.b).valor != Integer.MIN_VALUE;
+    }
+
+    private void para(Para pa) {
+        int v = valorPrimitivo(pa.variavel.tipo, pa.inicio, -1);
+        gravarP(resolver(pa.variavel), v);
+        Rotulo teste = new Rotulo();
+        Rotulo fim = new Rotulo();
+        int marcaP = proxP;
+        int marcaO = proxO;
+        teste.marcar();
+        int atual = lerP(pa.variavel, -1);
+        int limite;
+        if (pa.fim.tipo.categoria == JanderType.REAL) {
+            int r = real(pa.fim, -1);
+            limite = tempP();
+            emitir(PISO, limite, r);
+        } else {
+            limite = inteiro(pa.fim, -1);
+        }
+        saltar(JGT_I, atual, limite, fim);
+        proxP = marcaP;
+        proxO = marcaO;
+        cmd(pa.corpo);
+        Resolvido r = resolver(pa.variavel);
+        int t = carregarP(r, tempP());
+        emitir(ADDK_I, t, t, 1);
+        gravarP(r, t);
+        emitir(JMP);
+        teste.referenciar();
+        fim.marcar();
+    }
+
+    private void caso(Caso c) {
+        int seletor = inteiro(c.seletor, -1);
+        Rotulo fim = new Rotulo();
+        Rotulo senao = new Rotulo();
+        Rotulo[] bracos = new Rotulo[c.bracos.length];
+        for (int i = 0; i < bracos.length; i++) {
+            bracos[i] = new Rotulo();
+        }
+        if (c.tabela != null) {
+            emitir(SWITCH_T, seletor, c.minimo, c.tabela.length);
+            senao.referenciar();
+            for (int braco : c.tabela) {
+                (braco >= 0 ? bracos[braco] : senao).referenciar();
+            }
+        } else {
+            emitir(SWITCH_B, seletor, c.chaves.length);
+            senao.referenciar();
+            emitir(c.chaves);
+            for (int braco : c.bracoDaChave) {
+                bracos[braco].referenciar();
+            }
+        }
+        for (int i = 0; i < bracos.length; i++) {
+            bracos[i].marcar();
+            cmd(c.bracos[i]);
+            emitir(JMP);
+            fim.referenciar();
+        }
+        senao.marcar();
+        if (c.senao != null) {
+            cmd(c.senao);
+        }
+        fim.marcar();
+    }
+
+    private void retorne(Retorne r) {
+        Tipo t = r.tipo;
+        if (primitiva(t)) {
+            emitir(RET_P, valorPrimitivo(t, r.e, -1));
+        } else if (t.categoria == JanderType.RECORD) {
+            emitir(RET_REC, objeto(r.e, -1), t.tamP, t.tamO);
+        } else {
+            emitir(RET_O, objeto(r.e, -1));
+        }
+    }
+}
@@ -0,0 +1,781 @@
+package br.ufscar.dc.compiladores;
+
+import br.ufscar.dc.compiladores.InterpretadorNos.*;
+import br.ufscar.dc.compiladores.JanderParser.*;
+import br.ufscar.dc.compiladores.SymbolTable.JanderType;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Interpretador de LA em processo. A árvore sintática, já verificada pelo
+ * JanderSemantico, é convertida uma única vez numa árvore de nós executáveis
+ * (InterpretadorNos) com tipos, slots de variáveis, deslocamentos de campos e
+ * funções chamadas resolvidos; a execução só percorre esses nós.
+ *
+ * A semântica segue o C produzido por JanderGeradorC e compilado pelo gcc:
+ * real é float, literais numéricos reais são double, divisão inteira trunca,
+ * o limite do para é reavaliado a cada iteração e faca/ate repete enquanto a
+ * condição for verdadeira.
+ */
+public class JanderInterpretador {
+
+    // Pilha da thread de execução: recursões profundas de LA não devem estourar antes do programa em C
+    static final long TAMANHO_PILHA = 512L * 1024 * 1024;
+
+    /** Programa compilado para nós, pronto para ser executado quantas vezes for preciso */
+    public static final class Programa {
+        final Funcao principal;
+        final int tamGlobaisP;
+        final int tamGlobaisO;
+
+        private Programa(Funcao principal, int tamGlobaisP, int tamGlobaisO) {
+            this.principal = principal;
+            this.tamGlobaisP = tamGlobaisP;
+            this.tamGlobaisO = tamGlobaisO;
+        }
+    }
+
+    /** Variável resolvida em tempo de compilação */
+    private static final class Variavel {
+        final Tipo tipo;
+        final boolean global;
+        final int p;
+        final int o;
+        final boolean vetor;
+        final boolean referencia;
+
+        Variavel(Tipo tipo, boolean global, int p, int o, boolean vetor, boolean referencia) {
+            this.tipo = tipo;
+            this.global = global;
+            this.p = p;
+            this.o = o;
+            this.vetor = vetor;
+            this.referencia = referencia;
+        }
+    }
+
+    /** Escopo de compilação: globais ou o quadro de uma função (ou do algoritmo) */
+    private static final class Escopo {
+        final Escopo pai;
+        final boolean global;
+        // Variavel, Tipo (tipos declarados) ou Expr (constantes)
+        final Map<String, Object> simbolos = new HashMap<>();
+        final List<Cmd> alocacoes = new ArrayList<>();
+        int proxP;
+        int proxO;
+
+        Escopo(Escopo pai) {
+            this.pai = pai;
+            this.global = pai == null;
+        }
+
+        Object buscar(String nome) {
+            for (Escopo e = this; e != null; e = e.pai) {
+                Object s = e.simbolos.get(nome);
+                if (s != null) return s;
+            }
+            return null;
+        }
+    }
+
+    private final Map<String, Funcao> funcoes = new HashMap<>();
+    private Funcao funcaoAtual;
+
+    /** Converte a árvore de um programa sem erros semânticos em nós executáveis */
+    public Programa compilar(ProgramaContext ctx) {
+        funcoes.clear();
+        Escopo globais = new Escopo(null);
+        List<Declaracao_globalContext> declaracoesGlobais = new ArrayList<>();
+
+        for (Decl_local_globalContext decl : ctx.declaracoes().decl_local_global()) {
+            if (decl.declaracao_local() != null) {
+                declaracaoLocal(decl.declaracao_local(), globais);
+            } else {
+                declaracoesGlobais.add(decl.declaracao_global());
+            }
+        }
+
+        // Assinaturas antes dos corpos: chamadas podem aparecer antes da declaração e ser recursivas
+        for (Declaracao_globalContext decl : declaracoesGlobais) {
+            Tipo retorno = decl.FUNCAO() != null ? tipoEstendido(decl.tipo_estendido(), globais) : null;
+            Funcao funcao = new Funcao(decl.IDENT().getText(), retorno);
+            assinatura(decl, funcao, globais);
+            funcoes.put(funcao.nome, funcao);
+        }
+        for (Declaracao_globalContext decl : declaracoesGlobais) {
+            declaracaoGlobal(decl, globais);
+        }
+
+        Funcao principal = new Funcao("algoritmo", null);
+        funcaoAtual = principal;
+        Escopo escopo = new Escopo(globais);
+        List<Cmd> cmds = new ArrayList<>(globais.alocacoes);
+        for (Declaracao_localContext decl : ctx.corpo().declaracao_local()) {
+            declaracaoLocal(decl, escopo);
+        }
+        cmds.addAll(escopo.alocacoes);
+        for (CmdContext cmd : ctx.corpo().cmd()) {
+            cmds.add(cmd(cmd, escopo));
+        }
+        principal.tiposParametros = new Tipo[0];
+        principal.modosParametros = new int[0];
+        principal.tamP = escopo.proxP;
+        principal.tamO = escopo.proxO;
+        principal.corpo = new Bloco(cmds.toArray(new Cmd[0]));
+        funcaoAtual = null;
+        return new Programa(principal, globais.proxP, globais.proxO);
+    }
+
+    /**
+     * Executa o programa lendo de in e escrevendo em out. Erros de execução
+     * (divisão por zero, estouro de pilha) são lançados como ErroExecucao
+     * depois de descarregar a saída produzida até ali.
+     */
+    public void executar(Programa programa, InputStream in, OutputStream out) throws InterruptedException {
+        ConsoleC console = new ConsoleC(in, out);
+        RuntimeException[] erro = new RuntimeException[1];
+        Thread thread = new Thread(null, () -> {
+            Execucao ex = new Execucao(new Memoria(programa.tamGlobaisP, programa.tamGlobaisO), console);
+            Funcao principal = programa.principal;
+            try {
+                principal.corpo.executar(new Quadro(principal.tamP, principal.tamO, ex));
+            } catch (RuntimeException e) {
+                erro[0] = e;
+            } catch (StackOverflowError e) {
+                erro[0] = new ErroExecucao("estouro de pilha");
+            } finally {
+                console.descarregar();
+            }
+        }, "jander-interpretador", TAMANHO_PILHA);
+        thread.start();
+        thread.join();
+        if (erro[0] != null) {
+            throw erro[0];
+        }
+    }
+
+    // -------------------------------------------------------- declarações
+
+    private void declaracaoLocal(Declaracao_localContext ctx, Escopo escopo) {
+        if (ctx.DECLARE() != null) {
+            Tipo tipo = tipo(ctx.variavel().tipo(), escopo);
+            for (IdentificadorContext ident : ctx.variavel().identificador()) {
+                declarar(ident, tipo, escopo);
+            }
+        } else if (ctx.CONSTANTE() != null) {
+            escopo.simbolos.put(ctx.IDENT().getText(), constante(ctx.tipo_basico(), ctx.valor_constante()));
+        } else {
+            escopo.simbolos.put(ctx.IDENT().getText(), tipo(ctx.tipo(), escopo));
+        }
+    }
+
+    private void declarar(IdentificadorContext ident, Tipo tipo, Escopo escopo) {
+        if (ident.IDENT().size() > 1) {
+            throw naoSuportado("declaracao de campo fora de registro", ident);
+        }
+        String nome = ident.IDENT(0).getText();
+        List<Exp_aritmeticaContext> dims = ident.dimensao().exp_aritmetica();
+        if (dims.isEmpty()) {
+            escopo.simbolos.put(nome, new Variavel(tipo, escopo.global, escopo.proxP, escopo.proxO, false, false));
+            escopo.proxP += tipo.tamP;
+            escopo.proxO += tipo.tamO;
+            return;
+        }
+        Expr[] tamanhos = new Expr[dims.size()];
+        for (int i = 0; i < tamanhos.length; i++) {
+            tamanhos[i] = paraInt(expAritmetica(dims.get(i), escopo));
+        }
+        int slot = escopo.proxO++;
+        escopo.simbolos.put(nome, new Variavel(tipo, escopo.global, -1, slot, true, false));
+        escopo.alocacoes.add(new AlocarVetor(escopo.global, slot, tamanhos, tipo));
+    }
+
+    private Expr constante(Tipo_basicoContext tipoBasico, Valor_constanteContext valor) {
+        Tipo tipo = tipoBasico(tipoBasico);
+        if (valor.CADEIA() != null) {
+            return new ConstLiteral(ConsoleC.cadeiaC(valor.CADEIA().getText()));
+        }
+        if (valor.VERDADEIRO() != null || valor.FALSO() != null) {
+            return new ConstLogico(valor.VERDADEIRO() != null);
+        }
+        double numero = Double.parseDouble(valor.getText());
+        // const float X = ...; arredonda o literal para float
+        if (tipo.categoria == JanderType.REAL) {
+            return new ConstReal((float) numero, true);
+        }
+        return new ConstInt((int) numero);
+    }
+
+    private void assinatura(Declaracao_globalContext ctx, Funcao funcao, Escopo globais) {
+        List<Tipo> tipos = new ArrayList<>();
+        List<Integer> modos = new ArrayList<>();
+        if (ctx.parametros() != null) {
+            for (ParametroContext param : ctx.parametros().parametro()) {
+                Tipo tipo = tipoEstendido(param.tipo_estendido(), globais);
+                int modo;
+                if (param.VAR() != null) {
+                    modo = InterpretadorNos.PARAM_REFERENCIA;
+                } else if (tipo.primitivo()) {
+                    modo = InterpretadorNos.PARAM_PRIMITIVO;
+                } else if (tipo.categoria == JanderType.RECORD) {
+                    modo = InterpretadorNos.PARAM_REGISTRO;
+                } else {
+                    modo = InterpretadorNos.PARAM_OBJETO;
+                }
+                for (int i = 0; i < param.identificador().size(); i++) {
+                    tipos.add(tipo);
+                    modos.add(modo);
+                }
+            }
+        }
+        funcao.tiposParametros = tipos.toArray(new Tipo[0]);
+        funcao.modosParametros = modos.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void declaracaoGlobal(Declaracao_globalContext ctx, Escopo globais) {
+        Funcao funcao = funcoes.get(ctx.IDENT().getText());
+        funcaoAtual = funcao;
+        Escopo escopo = new Escopo(globais);
+
+        int n = funcao.tiposParametros.length;
+        funcao.slotsP = new int[n];
+        funcao.slotsO = new int[n];
+        int i = 0;
+        if (ctx.parametros() != null) {
+            for (ParametroContext param : ctx.parametros().parametro()) {
+                for (IdentificadorContext ident : param.identificador()) {
+                    Tipo tipo = funcao.tiposParametros[i];
+                    Variavel v;
+                    switch (funcao.modosParametros[i]) {
+                        case InterpretadorNos.PARAM_REFERENCIA:
+                            v = new Variavel(tipo, false, -1, escopo.proxO++, false, true);
+                            break;
+                        case InterpretadorNos.PARAM_PRIMITIVO:
+                            v = new Variavel(tipo, false, escopo.proxP++, -1, false, false);
+                            break;
+                        case InterpretadorNos.PARAM_REGISTRO:
+                            v = new Variavel(tipo, false, escopo.proxP, escopo.proxO, false, false);
+                            escopo.proxP += tipo.tamP;
+                            escopo.proxO += tipo.tamO;
+                            break;
+                        default:
+                            v = new Variavel(tipo, false, -1, escopo.proxO++, false, false);
+                            break;
+                    }
+                    escopo.simbolos.put(ident.IDENT(0).getText(), v);
+                    funcao.slotsP[i] = v.p;
+                    funcao.slotsO[i] = v.o;
+                    i++;
+                }
+            }
+        }
+
+        for (Declaracao_localContext decl : ctx.declaracao_local()) {
+            declaracaoLocal(decl, escopo);
+        }
+        List<Cmd> cmds = new ArrayList<>(escopo.alocacoes);
+        for (CmdContext cmd : ctx.cmd()) {
+            cmds.add(cmd(cmd, escopo));
+        }
+        funcao.tamP = escopo.proxP;
+        funcao.tamO = escopo.proxO;
+        funcao.corpo = new Bloco(cmds.toArray(new Cmd[0]));
+        funcaoAtual = null;
+    }
+
+    // --------------------------------------------------------------- tipos
+
+    private Tipo tipo(TipoContext ctx, Escopo escopo) {
+        if (ctx.registro() == null) {
+            return tipoEstendido(ctx.tipo_estendido(), escopo);
+        }
+        List<String> nomes = new ArrayList<>();
+        List<Tipo> tipos = new ArrayList<>();
+        for (VariavelContext campo : ctx.registro().variavel()) {
+            Tipo tipoCampo = tipo(campo.tipo(), escopo);
+            for (IdentificadorContext ident : campo.identificador()) {
+                if (!ident.dimensao().exp_aritmetica().isEmpty()) {
+                    throw naoSuportado("vetor como campo de registro", ident);
+                }
+                nomes.add(ident.getText());
+                tipos.add(tipoCampo);
+            }
+        }
+        return Tipo.registro(nomes.toArray(new String[0]), tipos.toArray(new Tipo[0]));
+    }
+
+    private Tipo tipoEstendido(Tipo_estendidoContext ctx, Escopo escopo) {
+        Tipo base;
+        if (ctx.tipo_basico_ident().tipo_basico() != null) {
+            base = tipoBasico(ctx.tipo_basico_ident().tipo_basico());
+        } else {
+            Object simbolo = escopo.buscar(ctx.tipo_basico_ident().IDENT().getText());
+            if (!(simbolo instanceof Tipo)) {
+                throw naoSuportado("tipo desconhecido", ctx);
+            }
+            base = (Tipo) simbolo;
+        }
+        return ctx.getText().startsWith("^") ? Tipo.ponteiro(base) : base;
+    }
+
+    private Tipo tipoBasico(Tipo_basicoContext ctx) {
+        switch (ctx.getText()) {
+            case "inteiro": return Tipo.INTEIRO;
+            case "real": return Tipo.REAL;
+            case "logico": return Tipo.LOGICO;
+            default: return Tipo.LITERAL;
+        }
+    }
+
+    // ------------------------------------------------------------ comandos
+
+    private Cmd cmd(CmdContext ctx, Escopo escopo) {
+        ParseTree c = ctx.getChild(0);
+        if (c instanceof CmdLeiaContext) return cmdLeia((CmdLeiaContext) c, escopo);
+        if (c instanceof CmdEscrevaContext) return cmdEscreva((CmdEscrevaContext) c, escopo);
+        if (c instanceof CmdSeContext) return cmdSe((CmdSeContext) c, escopo);
+        if (c instanceof CmdCasoContext) return cmdCaso((CmdCasoContext) c, escopo);
+        if (c instanceof CmdParaContext) return cmdPara((CmdParaContext) c, escopo);
+        if (c instanceof CmdEnquantoContext) return cmdEnquanto((CmdEnquantoContext) c, escopo);
+        if (c instanceof CmdFacaContext) return cmdFaca((CmdFacaContext) c, escopo);
+        if (c instanceof CmdAtribuicaoContext) return cmdAtribuicao((CmdAtribuicaoContext) c, escopo);
+        if (c instanceof CmdChamadaContext) {
+            CmdChamadaContext chamada = (CmdChamadaContext) c;
+            return new ChamadaCmd(chamada(chamada.IDENT().getText(), chamada.expressao(), escopo, chamada));
+        }
+        return cmdRetorne((CmdRetorneContext) c, escopo);
+    }
+
+    private Cmd bloco(List<CmdContext> cmds, Escopo escopo) {
+        if (cmds.size() == 1) {
+            return cmd(cmds.get(0), escopo);
+        }
+        Cmd[] nos = new Cmd[cmds.size()];
+        for (int i = 0; i < nos.length; i++) {
+            nos[i] = cmd(cmds.get(i), escopo);
+        }
+        return new Bloco(nos);
+    }
+
+    private Cmd cmdLeia(CmdLeiaContext ctx, Escopo escopo) {
+        List<Cmd> leituras = new ArrayList<>();
+        boolean deref = false;
+        for (ParseTree filho : ctx.children) {
+            if (filho instanceof IdentificadorContext) {
+                leituras.add(new Leia(lugar((IdentificadorContext) filho, deref, escopo)));
+                deref = false;
+            } else if (filho.getText().equals("^")) {
+                deref = true;
+            }
+        }
+        return leituras.size() == 1 ? leituras.get(0) : new Bloco(leituras.toArray(new Cmd[0]));
+    }
+
+    private Cmd cmdEscreva(CmdEscrevaContext ctx, Escopo escopo) {
+        String[] textos = new String[ctx.expressao().size()];
+        Expr[] expressoes = new Expr[textos.length];
+        for (int i = 0; i < textos.length; i++) {
+            ExpressaoContext expr = ctx.expressao(i);
+            String texto = expr.getText();
+            // Como o gerador: uma expressão entre aspas vai direto para a string de formato do printf
+            if (texto.length() >= 2 && texto.startsWith("\"") && texto.endsWith("\"")) {
+                textos[i] = ConsoleC.cadeiaC(texto);
+            } else {
+                expressoes[i] = expressao(expr, escopo);
+            }
+        }
+        return new Escreva(textos, expressoes);
+    }
+
+    private Cmd cmdSe(CmdSeContext ctx, Escopo escopo) {
+        Expr condicao = paraLogico(expressao(ctx.expressao(), escopo));
+        if (ctx.SENAO() == null) {
+            return new Se(condicao, bloco(ctx.cmd(), escopo), null);
+        }
+        int senao = ctx.SENAO().getSymbol().getTokenIndex();
+        List<CmdContext> entao = new ArrayList<>();
+        List<CmdContext> outros = new ArrayList<>();
+        for (CmdContext cmd : ctx.cmd()) {
+            (cmd.getStart().getTokenIndex() < senao ? entao : outros).add(cmd);
+        }
+        return new Se(condicao, bloco(entao, escopo), bloco(outros, escopo));
+    }
+
+    private Cmd cmdCaso(CmdCasoContext ctx, Escopo escopo) {
+        Expr seletor = paraInt(expAritmetica(ctx.exp_aritmetica(), escopo));
+        List<Item_selecaoContext> itens = ctx.selecao().item_selecao();
+        Cmd[] bracos = new Cmd[itens.size()];
+        // Primeiro braço que menciona o valor vence, como a primeira ocorrência do case no switch
+        TreeMap<Integer, Integer> chaves = new TreeMap<>();
+        for (int b = 0; b < bracos.length; b++) {
+            Item_selecaoContext item = itens.get(b);
+            for (Numero_intervaloContext ni : item.constantes().numero_intervalo()) {
+                int inicio = Integer.parseInt(ni.NUM_INT(0).getText());
+                int fim = inicio;
+                if (ni.NUM_INT().size() > 1) {
+                    fim = Integer.parseInt(ni.NUM_INT(1).getText());
+                }
+                if (ni.op_unario(0) != null) inicio = -inicio;
+                if (ni.op_unario().size() > 1) fim = -fim;
+                for (long v = inicio; v <= fim; v++) {
+                    chaves.putIfAbsent((int) v, b);
+                }
+            }
+            bracos[b] = bloco(item.cmd(), escopo);
+        }
+        int[] valores = new int[chaves.size()];
+        int[] bracoDaChave = new int[chaves.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : chaves.entrySet()) {
+            valores[i] = e.getKey();
+            bracoDaChave[i++] = e.getValue();
+        }
+        Cmd senao = ctx.SENAO() != null ? bloco(ctx.cmd(), escopo) : null;
+        return new Caso(seletor, valores, bracoDaChave, bracos, senao);
+    }
+
+    private Cmd cmdPara(CmdParaContext ctx, Escopo escopo) {
+        Lugar variavel = lugarVariavel(ctx.IDENT().getText(), escopo, ctx);
+        Expr inicio = expAritmetica(ctx.exp_aritmetica(0), escopo);
+        Expr fim = expAritmetica(ctx.exp_aritmetica(1), escopo);
+        Cmd corpo = bloco(ctx.cmd(), escopo);
+        if (variavel instanceof LugarLocal && variavel.tipo == Tipo.INTEIRO && fim.tipo.categoria != JanderType.REAL) {
+            return new ParaLocal(((LugarLocal) variavel).p, paraInt(inicio), paraInt(fim), corpo);
+        }
+        return new Para(variavel, inicio, fim.tipo.categoria == JanderType.REAL ? fim : paraInt(fim), corpo);
+    }
+
+    private Cmd cmdEnquanto(CmdEnquantoContext ctx, Escopo escopo) {
+        return new Enquanto(paraLogico(expressao(ctx.expressao(), escopo)), bloco(ctx.cmd(), escopo));
+    }
+
+    private Cmd cmdFaca(CmdFacaContext ctx, Escopo escopo) {
+        ExpressaoContext expr = ctx.expressao();
+        Fator_logicoContext fator = expr.termo_logico(0).fator_logico(0);
+        Expr condicao;
+        // Mesma condição do while gerado: com "nao" inicial, só a primeira parcela é negada
+        if (fator.getChildCount() > 1 && fator.getChild(0).getText().equals("nao")) {
+            condicao = new Nao(paraLogico(parcelaLogica(fator.parcela_logica(), escopo)));
+        } else {
+            condicao = paraLogico(expressao(expr, escopo));
+        }
+        return new Faca(bloco(ctx.cmd(), escopo), condicao);
+    }
+
+    private Cmd cmdAtribuicao(CmdAtribuicaoContext ctx, Escopo escopo) {
+        boolean deref = ctx.getChild(0).getText().equals("^");
+        Lugar lugar = lugar(ctx.identificador(), deref, escopo);
+        Expr valor = expressao(ctx.expressao(), escopo);
+        switch (lugar.tipo.categoria) {
+            case INTEGER:
+            case REAL:
+            case LOGICAL:
+                if (lugar instanceof LugarLocal && lugar.tipo == Tipo.INTEIRO && valor.tipo.categoria == JanderType.INTEGER) {
+                    return new AtribuirIntLocal(((LugarLocal) lugar).p, valor);
+                }
+                return new AtribuirPrimitivo(lugar, valor);
+            case RECORD:
+                return new AtribuirRegistro(lugar, valor);
+            default:
+                return new AtribuirObj(lugar, valor);
+        }
+    }
+
+    private Cmd cmdRetorne(CmdRetorneContext ctx, Escopo escopo) {
+        if (funcaoAtual == null || funcaoAtual.retorno == null) {
+            throw naoSuportado("retorne fora de funcao", ctx);
+        }
+        return new Retorne(funcaoAtual.retorno, expressao(ctx.expressao(), escopo));
+    }
+
+    private Chamada chamada(String nome, List<ExpressaoContext> argumentos, Escopo escopo, ParseTree ctx) {
+        Funcao funcao = funcoes.get(nome);
+        if (funcao == null || argumentos.size() != funcao.tiposParametros.length) {
+            throw naoSuportado("chamada de " + nome, ctx);
+        }
+        Expr[] valores = new Expr[argumentos.size()];
+        Lugar[] lugares = new Lugar[argumentos.size()];
+        for (int i = 0; i < valores.length; i++) {
+            if (funcao.modosParametros[i] == InterpretadorNos.PARAM_REFERENCIA) {
+                lugares[i] = lugarDeExpressao(argumentos.get(i), escopo);
+            } else {
+                valores[i] = expressao(argumentos.get(i), escopo);
+            }
+        }
+        return new Chamada(funcao, valores, lugares);
+    }
+
+    /** Lugar passado a um parâmetro var: o argumento tem de ser um identificador, possivelmente com ^ */
+    private Lugar lugarDeExpressao(ExpressaoContext expr, Escopo escopo) {
+        if (expr.termo_logico().size() == 1 && expr.termo_logico(0).fator_logico().size() == 1) {
+            Fator_logicoContext fator = expr.termo_logico(0).fator_logico(0);
+            Exp_relacionalContext rel = fator.parcela_logica().exp_relacional();
+            if (fator.getChildCount() == 1 && rel != null && rel.op_relacional() == null) {
+                Exp_aritmeticaContext arit = rel.exp_aritmetica(0);
+                if (arit.termo().size() == 1 && arit.termo(0).fator().size() == 1
+                        && arit.termo(0).fator(0).parcela().size() == 1) {
+                    ParcelaContext parcela = arit.termo(0).fator(0).parcela(0);
+                    Parcela_unarioContext unario = parcela.parcela_unario();
+                    if (parcela.op_unario() == null && unario != null && unario.identificador() != null) {
+                        return lugar(unario.identificador(), unario.getText().startsWith("^"), escopo);
+                    }
+                }
+            }
+        }
+        throw naoSuportado("argumento de parametro var precisa ser uma variavel", expr);
+    }
+
+    // ------------------------------------------------------------- lugares
+
+    private Variavel variavel(String nome, Escopo escopo, ParseTree ctx) {
+        Object simbolo = escopo.buscar(nome);
+        if (!(simbolo instanceof Variavel)) {
+            throw naoSuportado("variavel desconhecida " + nome, ctx);
+        }
+        return (Variavel) simbolo;
+    }
+
+    private Lugar lugarVariavel(String nome, Escopo escopo, ParseTree ctx) {
+        Variavel v = variavel(nome, escopo, ctx);
+        if (v.vetor) {
+            throw naoSuportado("vetor sem indice", ctx);
+        }
+        return lugarVariavel(v);
+    }
+
+    private Lugar lugarVariavel(Variavel v) {
+        if (v.referencia) {
+            return new LugarApontado(v.tipo, new Ler(new LugarLocal(Tipo.ponteiro(v.tipo), -1, v.o)), 0, 0);
+        }
+        return v.global ? new LugarGlobal(v.tipo, v.p, v.o) : new LugarLocal(v.tipo, v.p, v.o);
+    }
+
+    private Lugar lugar(IdentificadorContext ctx, boolean deref, Escopo escopo) {
+        List<TerminalNode> nomes = ctx.IDENT();
+        Variavel v = variavel(nomes.get(0).getText(), escopo, ctx);
+        List<Exp_aritmeticaContext> dims = ctx.dimensao().exp_aritmetica();
+        Lugar lugar;
+        if (v.vetor) {
+            if (dims.isEmpty() || nomes.size() > 1) {
+                throw naoSuportado("acesso a vetor", ctx);
+            }
+            Expr[] indices = new Expr[dims.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = paraInt(expAritmetica(dims.get(i), escopo));
+            }
+            lugar = new LugarVetor(v.tipo, v.global, v.o, indices, 0, 0);
+        } else {
+            if (!dims.isEmpty()) {
+                throw naoSuportado("indice em variavel que nao e vetor", ctx);
+            }
+            lugar = lugarVariavel(v);
+        }
+        for (int i = 1; i < nomes.size(); i++) {
+            Tipo t = lugar.tipo;
+            int campo = t.categoria == JanderType.RECORD ? t.campo(nomes.get(i).getText()) : -1;
+            if (campo < 0) {
+                throw naoSuportado("campo desconhecido " + nomes.get(i).getText(), ctx);
+            }
+            lugar = lugar.campo(t.tiposCampos[campo], t.deslocP[campo], t.deslocO[campo]);
+        }
+        if (deref) {
+            if (lugar.tipo.categoria != JanderType.POINTER) {
+                throw naoSuportado("^ aplicado a nao ponteiro", ctx);
+            }
+            lugar = new LugarApontado(lugar.tipo.apontado, new Ler(lugar), 0, 0);
+        }
+        return lugar;
+    }
+
+    private static Expr ler(Lugar lugar) {
+        if (lugar instanceof LugarLocal) {
+            if (lugar.tipo == Tipo.INTEIRO) return new LerIntLocal(((LugarLocal) lugar).p);
+            if (lugar.tipo == Tipo.REAL) return new LerRealLocal(((LugarLocal) lugar).p);
+        }
+        return new Ler(lugar);
+    }
+
+    // ---------------------------------------------------------- expressões
+
+    private Expr expressao(ExpressaoContext ctx, Escopo escopo) {
+        if (ctx.termo_logico().size() == 1) {
+            return termoLogico(ctx.termo_logico(0), escopo);
+        }
+        Expr[] termos = new Expr[ctx.termo_logico().size()];
+        for (int i = 0; i < termos.length; i++) {
+            termos[i] = paraLogico(termoLogico(ctx.termo_logico(i), escopo));
+        }
+        return new Ou(termos);
+    }
+
+    private Expr termoLogico(Termo_logicoContext ctx, Escopo escopo) {
+        if (ctx.fator_logico().size() == 1) {
+            return fatorLogico(ctx.fator_logico(0), escopo);
+        }
+        Expr[] fatores = new Expr[ctx.fator_logico().size()];
+        for (int i = 0; i < fatores.length; i++) {
+            fatores[i] = paraLogico(fatorLogico(ctx.fator_logico(i), escopo));
+        }
+        return new E(fatores);
+    }
+
+    private Expr fatorLogico(Fator_logicoContext ctx, Escopo escopo) {
+        Expr parcela = parcelaLogica(ctx.parcela_logica(), escopo);
+        return ctx.getText().startsWith("nao") ? new Nao(paraLogico(parcela)) : parcela;
+    }
+
+    private Expr parcelaLogica(Parcela_logicaContext ctx, Escopo escopo) {
+        if (ctx.VERDADEIRO() != null) return new ConstLogico(true);
+        if (ctx.FALSO() != null) return new ConstLogico(false);
+        return expRelacional(ctx.exp_relacional(), escopo);
+    }
+
+    private Expr expRelacional(Exp_relacionalContext ctx, Escopo escopo) {
+        Expr a = expAritmetica(ctx.exp_aritmetica(0), escopo);
+        if (ctx.op_relacional() == null) {
+            return a;
+        }
+        Expr b = expAritmetica(ctx.exp_aritmetica(1), escopo);
+        int op;
+        switch (ctx.op_relacional().getText()) {
+            case "=": op = InterpretadorNos.IGUAL; break;
+            case "<>": op = InterpretadorNos.DIFERENTE; break;
+            case ">": op = InterpretadorNos.MAIOR; break;
+            case ">=": op = InterpretadorNos.MAIOR_IGUAL; break;
+            case "<": op = InterpretadorNos.MENOR; break;
+            default: op = InterpretadorNos.MENOR_IGUAL; break;
+        }
+        if (a.tipo.categoria == JanderType.LITERAL) {
+            return new CompLiteral(op, a, b);
+        }
+        if (real(a) || real(b)) {
+            boolean flutuante = flutuante(a, b);
+            return new CompReal(op, paraReal(a, flutuante), paraReal(b, flutuante));
+        }
+        return new CompInt(op, paraInt(a), paraInt(b));
+    }
+
+    private Expr expAritmetica(Exp_aritmeticaContext ctx, Escopo escopo) {
+        Expr e = termo(ctx.termo(0), escopo);
+        for (int i = 0; i < ctx.op1().size(); i++) {
+            int op = ctx.op1(i).getText().equals("+") ? InterpretadorNos.SOMA : InterpretadorNos.SUB;
+            e = aritmetica(op, e, termo(ctx.termo(i + 1), escopo));
+        }
+        return e;
+    }
+
+    private Expr termo(TermoContext ctx, Escopo escopo) {
+        Expr e = fator(ctx.fator(0), escopo);
+        for (int i = 0; i < ctx.op2().size(); i++) {
+            int op = ctx.op2(i).getText().equals("*") ? InterpretadorNos.MUL : InterpretadorNos.DIV;
+            e = aritmetica(op, e, fator(ctx.fator(i + 1), escopo));
+        }
+        return e;
+    }
+
+    private Expr fator(FatorContext ctx, Escopo escopo) {
+        Expr e = parcela(ctx.parcela(0), escopo);
+        for (int i = 0; i < ctx.op3().size(); i++) {
+            e = new OpInt(InterpretadorNos.MOD, paraInt(e), paraInt(parcela(ctx.parcela(i + 1), escopo)));
+        }
+        return e;
+    }
+
+    private Expr aritmetica(int op, Expr a, Expr b) {
+        if (op == InterpretadorNos.SOMA && a.tipo.categoria == JanderType.LITERAL) {
+            return new Concatenar(a, b);
+        }
+        if (real(a) || real(b)) {
+            boolean flutuante = flutuante(a, b);
+            return new OpReal(op, paraReal(a, flutuante), paraReal(b, flutuante), flutuante);
+        }
+        return new OpInt(op, paraInt(a), paraInt(b));
+    }
+
+    private Expr parcela(ParcelaContext ctx, Escopo escopo) {
+        if (ctx.parcela_nao_unario() != null) {
+            Parcela_nao_unarioContext nao = ctx.parcela_nao_unario();
+            if (nao.CADEIA() != null) {
+                return new ConstLiteral(ConsoleC.cadeiaC(nao.CADEIA().getText()));
+            }
+            return new Endereco(lugar(nao.identificador(), false, escopo));
+        }
+        Expr e = parcelaUnario(ctx.parcela_unario(), escopo);
+        if (ctx.op_unario() == null) {
+            return e;
+        }
+        if (e instanceof ConstInt) return new ConstInt(-((ConstInt) e).valor);
+        if (e instanceof ConstReal) return new ConstReal(-((ConstReal) e).valor, e.flutuante);
+        return real(e) ? new NegReal(e) : new NegInt(paraInt(e));
+    }
+
+    private Expr parcelaUnario(Parcela_unarioContext ctx, Escopo escopo) {
+        if (ctx.identificador() != null) {
+            IdentificadorContext ident = ctx.identificador();
+            boolean deref = ctx.getText().startsWith("^");
+            if (!deref && ident.IDENT().size() == 1 && ident.dimensao().exp_aritmetica().isEmpty()) {
+                Object simbolo = escopo.buscar(ident.IDENT(0).getText());
+                if (simbolo instanceof Expr) {
+                    return (Expr) simbolo;
+                }
+            }
+            return ler(lugar(ident, deref, escopo));
+        }
+        if (ctx.IDENT() != null) {
+            return chamada(ctx.IDENT().getText(), ctx.expressao(), escopo, ctx);
+        }
+        if (ctx.NUM_INT() != null) {
+            return new ConstInt(Integer.parseInt(ctx.NUM_INT().getText()));
+        }
+        if (ctx.NUM_REAL() != null) {
+            return new ConstReal(Double.parseDouble(ctx.NUM_REAL().getText()), false);
+        }
+        return expressao(ctx.expressao(0), escopo);
+    }
+
+    // ----------------------------------------------------------- conversões
+
+    private static boolean real(Expr e) {
+        return e.tipo != null && e.tipo.categoria == JanderType.REAL;
+    }
+
+    // Operação em float só se nenhum operando for double (literal real)
+    private static boolean flutuante(Expr a, Expr b) {
+        return !(real(a) && !a.flutuante) && !(real(b) && !b.flutuante);
+    }
+
+    private static Expr paraReal(Expr e, boolean flutuante) {
+        return real(e) ? e : new IntParaReal(paraInt(e), flutuante);
+    }
+
+    private static Expr paraInt(Expr e) {
+        switch (e.tipo == null ? JanderType.INVALID : e.tipo.categoria) {
+            case INTEGER: return e;
+            case REAL: return new RealParaInt(e);
+            case LOGICAL: return new LogicoParaInt(e);
+            default: throw new UnsupportedOperationException("expressao nao numerica");
+        }
+    }
+
+    private static Expr paraLogico(Expr e) {
+        switch (e.tipo == null ? JanderType.INVALID : e.tipo.categoria) {
+            case LOGICAL: return e;
+            case INTEGER: return new CompInt(InterpretadorNos.DIFERENTE, e, new ConstInt(0));
+            case REAL: return new CompReal(InterpretadorNos.DIFERENTE, e, new ConstReal(0, false));
+            default: throw new UnsupportedOperationException("expressao nao logica");
+        }
+    }
+
+    private static UnsupportedOperationException naoSuportado(String motivo, ParseTree ctx) {
+        String linha = ctx instanceof org.antlr.v4.runtime.ParserRuleContext
+                ? "Linha " + ((org.antlr.v4.runtime.ParserRuleContext) ctx).getStart().getLine() + ": " : "";
+        return new UnsupportedOperationException(linha + motivo + " nao suportado pelo interpretador");
+    }
+}
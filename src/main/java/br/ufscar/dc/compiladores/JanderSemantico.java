@@ -1,12 +1,15 @@
 package br.ufscar.dc.compiladores;
 
+import br.ufscar.dc.compiladores.Diagnosticos.TipoErro;
 import br.ufscar.dc.compiladores.JanderParser.*;
 import br.ufscar.dc.compiladores.SymbolTable.JanderType;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.RuleNode;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +18,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
     private PrintWriter pw; // PrintWriter para imprimir erros semânticos.
 
     private boolean dentroDeFuncao = false;
+    private int maxErrors = Integer.MAX_VALUE; // Limite de erros antes de interromper a análise.
 
     public SymbolTable.JanderType resolveIdentificadorType(
             IdentificadorContext identCtx,
@@ -34,41 +38,34 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         outFullAccessPath.append(baseVarName);
 
         if (!symbolTable.containsSymbol(baseVarName)) {
-            JanderSemanticoUtils.addSemanticError(baseVarToken, "identificador " + baseVarName + " nao declarado");
+            JanderSemanticoUtils.addSemanticError(baseVarToken, TipoErro.NAO_DECLARADO, baseVarName);
             return SymbolTable.JanderType.INVALID;
         }
 
         SymbolTable.JanderType currentResolvedType = symbolTable.getSymbolType(baseVarName);
 
-        // Lida com acesso a campos de registro (ex: ponto1.x)
-        for (int i = 1; i < idParts.size(); i++) {
-            String fieldName = idParts.get(i).getText();
-            Token fieldToken = idParts.get(i).getSymbol();
-            String currentRecordPath = outFullAccessPath.toString();
-            outFullAccessPath.append(".").append(fieldName);
-
-            if (currentResolvedType != SymbolTable.JanderType.RECORD) {
-                JanderSemanticoUtils.addSemanticError(idParts.get(i - 1).getSymbol(), "identificador " + currentRecordPath + " nao eh um registro para acessar o campo '" + fieldName + "'.");
-                return SymbolTable.JanderType.INVALID;
-            }
-            
-            String recordVariableForFieldLookup = idParts.get(0).getText();
-            if (i > 1) {
-                JanderSemanticoUtils.addSemanticError(fieldToken, "Acesso a campos de registros profundamente aninhados (ex: var.regcampo.subcampo) não é diretamente suportado por esta resolução simplificada.");
-                return SymbolTable.JanderType.INVALID;
+        // Lida com acesso a campos de registro em qualquer profundidade (ex: ponto1.x, linha.inicio.x)
+        if (idParts.size() > 1) {
+            List<String> path = new ArrayList<>(idParts.size() - 1);
+            for (int i = 1; i < idParts.size(); i++) {
+                path.add(idParts.get(i).getText());
             }
-
-            Map<String, SymbolTable.JanderType> fields = symbolTable.getRecordFields(recordVariableForFieldLookup);
-            if (fields.isEmpty() && currentResolvedType == SymbolTable.JanderType.RECORD) {
-                JanderSemanticoUtils.addSemanticError(idParts.get(i-1).getSymbol(), "identificador " + currentRecordPath + " é um registro, mas parece não ter campos definidos ou acessíveis.");
-                return SymbolTable.JanderType.INVALID;
+            SymbolTable.FieldPath resolved = symbolTable.resolveFieldPath(baseVarName, path);
+            int failed = resolved.failedAt + 1;
+            for (int i = 1; i < (resolved.isValid() ? idParts.size() : failed); i++) {
+                outFullAccessPath.append(".").append(idParts.get(i).getText());
             }
-
-            if (!fields.containsKey(fieldName)) {
-                JanderSemanticoUtils.addSemanticError(fieldToken, "identificador " + currentRecordPath + "." + fieldName + " nao declarado");
+            if (!resolved.isValid()) {
+                String fieldName = idParts.get(failed).getText();
+                if (resolved.notRecord) {
+                    JanderSemanticoUtils.addSemanticError(idParts.get(failed - 1).getSymbol(), "identificador " + outFullAccessPath + " nao eh um registro para acessar o campo '" + fieldName + "'.");
+                } else {
+                    JanderSemanticoUtils.addSemanticError(idParts.get(failed).getSymbol(), TipoErro.NAO_DECLARADO, outFullAccessPath + "." + fieldName);
+                }
+                outFullAccessPath.append(".").append(fieldName);
                 return SymbolTable.JanderType.INVALID;
             }
-            currentResolvedType = fields.get(fieldName);
+            currentResolvedType = resolved.type;
         }
 
         // Lida com acesso a dimensões de array
@@ -92,8 +89,9 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         return currentResolvedType;
     }
 
-    private Map<String, SymbolTable.JanderType> parseRecordStructure(RegistroContext regCtx, String recordTypeNameForContext) {
-        Map<String, SymbolTable.JanderType> recordFields = new HashMap<>();
+    private SymbolTable.RecordType parseRecordStructure(RegistroContext regCtx, String recordTypeNameForContext) {
+        Map<String, SymbolTable.JanderType> recordFields = new LinkedHashMap<>(); // Ordem de declaração define os slots
+        Map<String, SymbolTable.RecordType> fieldRecords = new HashMap<>();
 
         for (VariavelContext campoVarCtx : regCtx.variavel()) {
             TipoContext tipoDoCampoCtx = campoVarCtx.tipo();
@@ -149,6 +147,8 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
 
             if (campoBaseType == SymbolTable.JanderType.INVALID) continue;
             SymbolTable.JanderType tipoFinalDoCampo = campoIsPointer ? SymbolTable.JanderType.POINTER : campoBaseType;
+            SymbolTable.RecordType registroDoCampo = tipoFinalDoCampo == SymbolTable.JanderType.RECORD
+                    ? symbolTable.getRecordType(nomeDoTipoDoCampoStr) : null;
 
             for (IdentificadorContext nomeCampoIdentCtx : campoVarCtx.identificador()) {
                 String nomeCampo = nomeCampoIdentCtx.IDENT(0).getText(); 
@@ -160,10 +160,13 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                     JanderSemanticoUtils.addSemanticError(nomeCampoIdentCtx.start, "Campo '" + nomeCampo + "' declarado em duplicidade no registro '" + recordTypeNameForContext + "'.");
                 } else {
                     recordFields.put(nomeCampo, tipoFinalDoCampo);
+                    if (registroDoCampo != null) {
+                        fieldRecords.put(nomeCampo, registroDoCampo);
+                    }
                 }
             }
         }
-        return recordFields;
+        return symbolTable.internRecordType(recordFields, fieldRecords);
     }
 
     private static class TypeParsingResult {
@@ -228,27 +231,44 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
     public JanderSemantico(PrintWriter pw) {
         this.symbolTable = new SymbolTable();
         this.pw = pw;
-        JanderSemanticoUtils.semanticErrors.clear();
+        JanderSemanticoUtils.semanticErrors().clear();
+    }
+
+    // Usado pela análise incremental, que verifica uma declaração por vez sobre uma tabela já povoada.
+    JanderSemantico(PrintWriter pw, SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.pw = pw;
+        JanderSemanticoUtils.semanticErrors().clear();
     }
 
     // Verifica se algum erro semântico foi registrado.
     public boolean hasErrors() {
-        return !JanderSemanticoUtils.semanticErrors.isEmpty();
+        return !JanderSemanticoUtils.semanticErrors().isEmpty();
     }
 
     // Imprime todos os erros semânticos registrados no PrintWriter e uma mensagem final de compilação.
     public void printErrors() {
-        for (String error : JanderSemanticoUtils.semanticErrors) {
-            pw.println(error);
-        }
+        JanderSemanticoUtils.semanticErrors().imprimir(pw);
         pw.println("Fim da compilacao");
     }
 
+    // Define o número máximo de erros; ao atingi-lo a análise é interrompida.
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    // Interrompe a visita dos próximos nós quando o limite de erros foi atingido.
+    @Override
+    protected boolean shouldVisitNextChild(RuleNode node, Void currentResult) {
+        return !JanderSemanticoUtils.semanticErrors().limiteAtingido();
+    }
+
     // Chamado ao visitar a estrutura principal do programa.
     // Inicializa/reseta a tabela de símbolos e listas de erros para a unidade de compilação atual.
     @Override
     public Void visitPrograma(ProgramaContext ctx) {
-        JanderSemanticoUtils.semanticErrors.clear();
+        JanderSemanticoUtils.semanticErrors().clear();
+        JanderSemanticoUtils.semanticErrors().setLimite(maxErrors);
         JanderSemanticoUtils.clearCurrentAssignmentVariableStack();
         super.visitPrograma(ctx);
         return null;
@@ -341,12 +361,12 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                             symbolTable.addPointerSymbol(paramName, paramBaseTypeIfPointer);
                         } else if (paramFinalType == JanderType.RECORD) {
                             if (paramTypeNameIfRecord != null) {
-                                Map<String, JanderType> fields = symbolTable.getRecordFields(paramTypeNameIfRecord); 
-                                if (fields.isEmpty() && !(symbolTable.containsSymbol(paramTypeNameIfRecord) && symbolTable.getSymbolType(paramTypeNameIfRecord) == JanderType.RECORD)) {
+                                SymbolTable.RecordType recordType = symbolTable.getRecordType(paramTypeNameIfRecord);
+                                if (recordType == null) {
                                     JanderSemanticoUtils.addSemanticError(paramToken, "Tipo registro '" + paramTypeNameIfRecord + "' para o parametro '"+ paramName + "' não foi corretamente definido ou encontrado.");
                                     symbolTable.addSymbol(paramName, JanderType.INVALID);
                                 } else {
-                                    symbolTable.addRecordSymbol(paramName, fields);
+                                    symbolTable.addRecordSymbol(paramName, recordType);
                                 }
                             } else {
                                 JanderSemanticoUtils.addSemanticError(paramToken, "Tipo de parametro registro anonimo nao suportado.");
@@ -367,6 +387,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
             visitDeclaracao_local(localDeclCtx);
         }
         for (CmdContext cmdCtx : globalCtx.cmd()) {
+            if (JanderSemanticoUtils.semanticErrors().limiteAtingido()) break;
             visit(cmdCtx);
         }
 
@@ -398,10 +419,15 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
             }
 
             if (symbolTable.containsInCurrentScope(constName)) {
-                JanderSemanticoUtils.addSemanticError(ctx.IDENT().getSymbol(), "identificador " + constName + " ja declarado anteriormente");
+                JanderSemanticoUtils.addSemanticError(ctx.IDENT().getSymbol(), TipoErro.JA_DECLARADO, constName);
             } else {
                 if (constType != JanderType.INVALID) {
-                    symbolTable.addSymbol(constName, constType); 
+                    // Valor de constantes inteiras fica disponível para dimensões e análise de intervalos
+                    Long valor = null;
+                    if (constType == JanderType.INTEGER && ctx.valor_constante().NUM_INT() != null) {
+                        valor = Long.parseLong(ctx.valor_constante().NUM_INT().getText());
+                    }
+                    symbolTable.addConstantSymbol(constName, constType, valor); 
                 }
             }
         } else if (ctx.TIPO() != null) { 
@@ -415,9 +441,9 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
             }
 
             if (typeDefinitionCtx.registro() != null) {
-                Map<String, SymbolTable.JanderType> recordFields = parseRecordStructure(typeDefinitionCtx.registro(), typeName);
-                if (!recordFields.isEmpty() || (typeDefinitionCtx.registro().variavel() != null && typeDefinitionCtx.registro().variavel().isEmpty())) { 
-                    symbolTable.addRecordSymbol(typeName, recordFields); 
+                SymbolTable.RecordType recordType = parseRecordStructure(typeDefinitionCtx.registro(), typeName);
+                if (recordType.getFieldCount() > 0 || (typeDefinitionCtx.registro().variavel() != null && typeDefinitionCtx.registro().variavel().isEmpty())) { 
+                    symbolTable.addRecordSymbol(typeName, recordType); 
                 }
             } else if (typeDefinitionCtx.tipo_estendido() != null) {
                 Tipo_estendidoContext teCtx = typeDefinitionCtx.tipo_estendido();
@@ -449,8 +475,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                         if(symbolTable.containsSymbol(baseTypeNameStr)) {
                             JanderType referencedType = symbolTable.getSymbolType(baseTypeNameStr);
                             if (referencedType == JanderType.RECORD) {
-                                Map<String, JanderType> fieldsToCopy = symbolTable.getRecordFields(baseTypeNameStr);
-                                symbolTable.addRecordSymbol(typeName, fieldsToCopy);
+                                symbolTable.addRecordSymbol(typeName, symbolTable.getRecordType(baseTypeNameStr));
                                 return null; 
                             } else if (referencedType != JanderType.INVALID && referencedType != JanderType.POINTER) {
                                 underlyingBaseType = referencedType;
@@ -481,7 +506,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         TipoContext tipoPrincipalCtx = ctx.tipo();
 
         if (tipoPrincipalCtx.registro() != null) {
-            Map<String, SymbolTable.JanderType> recordFields = parseRecordStructure(tipoPrincipalCtx.registro(), "registro anônimo");
+            SymbolTable.RecordType recordType = parseRecordStructure(tipoPrincipalCtx.registro(), "registro anônimo");
 
             for (IdentificadorContext identCtx : ctx.identificador()) {
                 if (identCtx.IDENT().size() > 1) {
@@ -493,7 +518,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                 Token varTok = identCtx.start;
 
                 if (symbolTable.containsInCurrentScope(varName)) {
-                    JanderSemanticoUtils.addSemanticError(varTok, "identificador " + varName + " ja declarado anteriormente");
+                    JanderSemanticoUtils.addSemanticError(varTok, TipoErro.JA_DECLARADO, varName);
                     continue;
                 }
 
@@ -502,7 +527,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                 if (isArray) {
                     JanderSemanticoUtils.addSemanticError(identCtx.start, "Arrays de registros anônimos não são suportados.");
                 } else {
-                    symbolTable.addRecordSymbol(varName, recordFields);
+                    symbolTable.addRecordSymbol(varName, recordType);
                 }
             }
         } else {
@@ -570,32 +595,34 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
                 Token varTok = identCtx.start;
 
                 if (symbolTable.containsInCurrentScope(varName)) {
-                    JanderSemanticoUtils.addSemanticError(varTok, "identificador " + varName + " ja declarado anteriormente");
+                    JanderSemanticoUtils.addSemanticError(varTok, TipoErro.JA_DECLARADO, varName);
                     continue;
                 }
 
                 boolean isArray = identCtx.dimensao() != null && !identCtx.dimensao().exp_aritmetica().isEmpty();
 
                 if (isArray) {
-                    // Valida as expressões de dimensão
-                    for (Exp_aritmeticaContext dimExpr : identCtx.dimensao().exp_aritmetica()) {
+                    // Valida as expressões de dimensão e guarda o tamanho das que são constantes
+                    List<Exp_aritmeticaContext> dimExprs = identCtx.dimensao().exp_aritmetica();
+                    int[] dimensions = new int[dimExprs.size()];
+                    for (int d = 0; d < dimensions.length; d++) {
+                        Exp_aritmeticaContext dimExpr = dimExprs.get(d);
                         JanderType dimType = JanderSemanticoUtils.checkType(symbolTable, dimExpr);
                         if (dimType != JanderType.INTEGER) {
                             JanderSemanticoUtils.addSemanticError(dimExpr.start, "Dimensão de array deve ser do tipo inteiro");
                         }
+                        dimensions[d] = dimensaoConstante(dimExpr);
                     }
                     
                     if (baseType != JanderType.INVALID) {
-                        symbolTable.addArraySymbol(varName, baseType);
+                        symbolTable.addArraySymbol(varName, baseType, dimensions);
                     }
                 } else {
                     if (baseType == SymbolTable.JanderType.RECORD && !isPointer) {
-                        Map<String, SymbolTable.JanderType> fieldsToCopy = symbolTable.getRecordFields(typeString);
+                        SymbolTable.RecordType recordType = symbolTable.getRecordType(typeString);
                         
-                        if (fieldsToCopy.isEmpty() && !(symbolTable.containsSymbol(typeString) && symbolTable.getSymbolType(typeString) == JanderType.RECORD)) {
-                            // Erro já foi tratado
-                        } else {
-                            symbolTable.addRecordSymbol(varName, new HashMap<>(fieldsToCopy));
+                        if (recordType != null) { // Sem descritor o erro já foi tratado
+                            symbolTable.addRecordSymbol(varName, recordType);
                         }
                     } else if (isPointer) {
                         symbolTable.addPointerSymbol(varName, baseType); 
@@ -610,6 +637,12 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         return null;
     }
 
+    // Tamanho de uma dimensão calculável em tempo de compilação, ou -1
+    private int dimensaoConstante(Exp_aritmeticaContext dimExpr) {
+        AnaliseIntervalos.Intervalo tamanho = new AnaliseIntervalos(symbolTable).avaliar(dimExpr);
+        return tamanho != null && tamanho.min == tamanho.max && tamanho.min > 0 ? (int) tamanho.min : -1;
+    }
+
     // Chamado ao visitar um comando de atribuição (ex: variavel = expressao).
     @Override
     public Void visitCmdAtribuicao(CmdAtribuicaoContext ctx) {
@@ -640,7 +673,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         if (lhsResolvedType != SymbolTable.JanderType.INVALID && expressionType != SymbolTable.JanderType.INVALID) {
             if (JanderSemanticoUtils.areTypesIncompatible(lhsResolvedType, expressionType)) {
                 String alvo = temCircunflexo ? "^" + fullLhsText : fullLhsText;
-                JanderSemanticoUtils.addSemanticError(lhsToken, "atribuicao nao compativel para " + alvo);
+                JanderSemanticoUtils.addSemanticError(lhsToken, TipoErro.ATRIBUICAO_INCOMPATIVEL, alvo);
             }
         }
         return null;
@@ -721,8 +754,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
         String nome = ctx.IDENT().getText();
         Token t = ctx.IDENT().getSymbol();
         if (!symbolTable.containsSymbol(nome)) {
-            JanderSemanticoUtils.addSemanticError(t,
-                "identificador " + nome + " nao declarado");
+            JanderSemanticoUtils.addSemanticError(t, TipoErro.NAO_DECLARADO, nome);
         } else {
             JanderSemanticoUtils.validateCallArguments(
                 t, nome, ctx.expressao(), symbolTable);
@@ -734,8 +766,7 @@ public class JanderSemantico extends JanderBaseVisitor<Void> {
     public Void visitCmdRetorne(CmdRetorneContext ctx) {
         if (!dentroDeFuncao) {
             JanderSemanticoUtils.addSemanticError(
-                ctx.RETORNE().getSymbol(),
-                "comando retorne nao permitido nesse escopo");
+                ctx.RETORNE().getSymbol(), TipoErro.RETORNE_FORA_DE_FUNCAO, null);
         }
         return null;
     }
@@ -2,34 +2,43 @@ package br.ufscar.dc.compiladores;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import org.antlr.v4.runtime.Token;
 
+import br.ufscar.dc.compiladores.Diagnosticos.TipoErro;
 import br.ufscar.dc.compiladores.JanderParser.*;
 import br.ufscar.dc.compiladores.SymbolTable.JanderType;
 
 public class JanderSemanticoUtils {
-    // Lista para armazenar erros semânticos encontrados durante a análise.
-    public static List<String> semanticErrors = new ArrayList<>();
+    // Erros semânticos encontrados durante a análise, um conjunto por thread para permitir
+    // compilar vários programas em paralelo na mesma JVM.
+    private static final ThreadLocal<Diagnosticos> semanticErrors = ThreadLocal.withInitial(Diagnosticos::new);
     // Pilha para rastrear a variável atual que está sendo atribuída.
-    public static List<String> currentAssignmentVariableNameStack = new ArrayList<>();
+    private static final ThreadLocal<List<String>> currentAssignmentVariableNameStack = ThreadLocal.withInitial(ArrayList::new);
+
+    public static Diagnosticos semanticErrors() {
+        return semanticErrors.get();
+    }
 
     // Define a variável atual que está sendo atribuída.
     public static void setCurrentAssignmentVariable(String name) {
-        currentAssignmentVariableNameStack.add(name);
+        currentAssignmentVariableNameStack.get().add(name);
     }
 
     // Limpa a pilha de variáveis de atribuição atuais.
     public static void clearCurrentAssignmentVariableStack() {
-        currentAssignmentVariableNameStack.clear();
+        currentAssignmentVariableNameStack.get().clear();
     }
 
-    // Adiciona um erro semântico à lista.
+    // Adiciona um erro semântico com mensagem livre.
     public static void addSemanticError(Token t, String message) {
-        int line = (t != null) ? t.getLine() : 0; // Obtém o número da linha se o token não for nulo.
-        String linePrefix = (t != null) ? String.format("Linha %d: ", line) : "Error: "; // Formata o prefixo do erro.
-        semanticErrors.add(linePrefix + message);
+        addSemanticError(t, TipoErro.MENSAGEM, message);
+    }
+
+    // Adiciona um erro semântico de um tipo conhecido; o texto só é formatado na impressão.
+    public static void addSemanticError(Token t, TipoErro tipo, String simbolo) {
+        int line = (t != null) ? t.getLine() : -1; // Obtém o número da linha se o token não for nulo.
+        semanticErrors.get().adicionar(line, tipo, simbolo);
     }
 
     // Verifica se dois tipos Jander são incompatíveis.
@@ -223,41 +232,33 @@ public class JanderSemanticoUtils {
             fullAccessPathForError = baseVarName;
 
             if (!symbolTable.containsSymbol(baseVarName)) { //
-                addSemanticError(baseVarToken, "identificador " + identCtx.getText() +" nao declarado"); //
+                addSemanticError(baseVarToken, TipoErro.NAO_DECLARADO, identCtx.getText()); //
                 resolvedType = JanderType.INVALID;
             } else {
                 resolvedType = symbolTable.getSymbolType(baseVarName); //
-                for (int i = 1; i < idParts.size(); i++) {
-                    String fieldName = idParts.get(i).getText();
-                    Token fieldToken = idParts.get(i).getSymbol();
-                    String currentRecordPath = fullAccessPathForError;
-                    fullAccessPathForError += "." + fieldName;
-
-                    if (resolvedType != JanderType.RECORD) { //
-                        addSemanticError(idParts.get(i - 1).getSymbol(), "identificador '" + currentRecordPath + "' não é um registro para acessar o campo '" + fieldName + "'.");
-                        resolvedType = JanderType.INVALID;
-                        break; 
+                if (idParts.size() > 1) {
+                    // Campos em qualquer profundidade resolvidos pelos descritores internados
+                    List<String> path = new ArrayList<>(idParts.size() - 1);
+                    for (int i = 1; i < idParts.size(); i++) {
+                        path.add(idParts.get(i).getText());
                     }
-                    
-                    String recordVariableForFieldLookup = idParts.get(0).getText();
-                    if (i > 1) {
-                        addSemanticError(fieldToken, "Acesso a campos de registros aninhados (ex: var.regcampo.subcampo) em expressão não é diretamente suportado por esta resolução simplificada.");
-                        resolvedType = JanderType.INVALID;
-                        break;
+                    SymbolTable.FieldPath resolved = symbolTable.resolveFieldPath(baseVarName, path);
+                    int failed = resolved.failedAt + 1;
+                    for (int i = 1; i < (resolved.isValid() ? idParts.size() : failed); i++) {
+                        fullAccessPathForError += "." + idParts.get(i).getText();
                     }
-
-                    Map<String, JanderType> fields = symbolTable.getRecordFields(recordVariableForFieldLookup); //
-                    if (fields.isEmpty() && resolvedType == JanderType.RECORD) {
-                        addSemanticError(idParts.get(i-1).getSymbol(), "identificador '" + currentRecordPath + "' é um registro, mas parece não ter campos definidos ou acessíveis.");
-                        resolvedType = JanderType.INVALID;
-                        break;
-                    }
-                    if (!fields.containsKey(fieldName)) {
-                        addSemanticError(fieldToken, "Campo '" + fieldName + "' não existe no registro '" + currentRecordPath + "'.");
+                    if (resolved.isValid()) {
+                        resolvedType = resolved.type;
+                    } else {
+                        String fieldName = idParts.get(failed).getText();
+                        if (resolved.notRecord) {
+                            addSemanticError(idParts.get(failed - 1).getSymbol(), "identificador '" + fullAccessPathForError + "' não é um registro para acessar o campo '" + fieldName + "'.");
+                        } else {
+                            addSemanticError(idParts.get(failed).getSymbol(), "Campo '" + fieldName + "' não existe no registro '" + fullAccessPathForError + "'.");
+                        }
+                        fullAccessPathForError += "." + fieldName;
                         resolvedType = JanderType.INVALID;
-                        break; 
                     }
-                    resolvedType = fields.get(fieldName);
                 }
             }
             
@@ -340,7 +341,7 @@ public class JanderSemanticoUtils {
             Token idToken = ctx.identificador().getStart();
 
             if (!symbolTable.containsSymbol(simpleName)) {
-                addSemanticError(idToken, "identificador " + simpleName + " nao declarado");
+                addSemanticError(idToken, TipoErro.NAO_DECLARADO, simpleName);
                 return JanderType.INVALID;
             }
             return JanderType.POINTER;
@@ -353,7 +354,7 @@ public class JanderSemanticoUtils {
     // Verifica o tipo de um identificador pelo seu nome.
     public static JanderType checkTypeByName(SymbolTable symbolTable, Token nameToken, String name) {
         if (!symbolTable.containsSymbol(name)) {
-            addSemanticError(nameToken, "identificador " + name + " nao declarado");
+            addSemanticError(nameToken, TipoErro.NAO_DECLARADO, name);
             return JanderType.INVALID;
         }
         return symbolTable.getSymbolType(name);
@@ -475,8 +476,7 @@ public class JanderSemanticoUtils {
         List<JanderType> expectedParamTypes = symbolTable.getParamTypes(funcName);
 
         if (expectedParamTypes.size() != args.size()) {
-            addSemanticError(tCall,
-                String.format("incompatibilidade de parametros na chamada de %s", funcName));
+            addSemanticError(tCall, TipoErro.PARAMETROS_INCOMPATIVEIS, funcName);
             return;
         }
 
@@ -490,8 +490,7 @@ public class JanderSemanticoUtils {
 
             // Strict type checking - no automatic promotion
             if (expectedType != givenType) {
-                addSemanticError(args.get(i).getStart(),
-                    String.format("incompatibilidade de parametros na chamada de %s", funcName));
+                addSemanticError(args.get(i).getStart(), TipoErro.PARAMETROS_INCOMPATIVEIS, funcName);
             }
         }
     }
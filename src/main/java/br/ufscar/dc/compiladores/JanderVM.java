@@ -0,0 +1,865 @@
+package br.ufscar.dc.compiladores;
+
+import br.ufscar.dc.compiladores.InterpretadorNos.ErroExecucao;
+import br.ufscar.dc.compiladores.InterpretadorNos.Memoria;
+import br.ufscar.dc.compiladores.InterpretadorNos.Ponteiro;
+import br.ufscar.dc.compiladores.InterpretadorNos.Vetor;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Máquina virtual de registradores para LA. O programa é um único int[] de
+ * instruções (opcode seguido dos operandos), com reais e textos em pools de
+ * constantes. Registradores são índices relativos ao quadro da função numa
+ * pilha pré-alocada com duas partes, como InterpretadorNos.Memoria: "p" para
+ * inteiros, lógicos e reais (bits de double) e "o" para literais, ponteiros e
+ * vetores. Como a pilha é uma Memoria, &variavel local é só um Ponteiro para ela.
+ * As constantes numéricas de cada função ficam em registradores de índice
+ * negativo, logo abaixo do quadro, copiados do pool da função a cada chamada.
+ *
+ * Operações primitivas e chamadas não alocam; só &, registros inteiros,
+ * concatenação e declarações de vetores criam objetos.
+ *
+ * Programas compilados por JanderGeradorVM podem ser salvos e carregados
+ * (salvar/carregar) sem passar de novo por JanderParser e JanderSemantico.
+ */
+public class JanderVM {
+
+    // Operandos: d = destino, a/b = fontes, t = alvo de salto, k = índice em pool, v = imediato
+    static final int HALT = 0;
+    static final int MOV_P = 1;      // d s
+    static final int MOV_O = 2;      // d s
+    static final int CONST_I = 3;    // d v
+    static final int CONST_R = 4;    // d k
+    static final int CONST_S = 5;    // d k
+    static final int ADD_I = 6;      // d a b
+    static final int SUB_I = 7;
+    static final int MUL_I = 8;
+    static final int DIV_I = 9;
+    static final int MOD_I = 10;
+    static final int ADDK_I = 11;    // d a v
+    static final int NEG_I = 12;     // d a
+    static final int ADD_D = 13;     // d a b, em double
+    static final int SUB_D = 14;
+    static final int MUL_D = 15;
+    static final int DIV_D = 16;
+    static final int ADD_F = 17;     // d a b, arredondado para float
+    static final int SUB_F = 18;
+    static final int MUL_F = 19;
+    static final int DIV_F = 20;
+    static final int NEG_R = 21;     // d a
+    static final int I2D = 22;       // d a
+    static final int I2F = 23;
+    static final int R2I = 24;
+    static final int ARRED_F = 25;
+    static final int EQ_I = 26;      // d a b
+    static final int NE_I = 27;
+    static final int GT_I = 28;
+    static final int GE_I = 29;
+    static final int LT_I = 30;
+    static final int LE_I = 31;
+    static final int EQ_R = 32;
+    static final int NE_R = 33;
+    static final int GT_R = 34;
+    static final int GE_R = 35;
+    static final int LT_R = 36;
+    static final int LE_R = 37;
+    static final int CMP_S = 38;     // d op a b (op: InterpretadorNos.IGUAL...)
+    static final int NOT = 39;       // d a
+    static final int CONCAT = 40;    // d a b
+    static final int JMP = 41;       // t
+    static final int JZ = 42;        // a t
+    static final int JNZ = 43;       // a t
+    static final int JEQ_I = 44;     // a b t
+    static final int JNE_I = 45;
+    static final int JGT_I = 46;
+    static final int JGE_I = 47;
+    static final int JLT_I = 48;
+    static final int JLE_I = 49;
+    static final int PARA_I = 50;    // v lim k t: v++; se v <= lim + k salta
+    static final int PARA_IK = 51;   // v k t: v++; se v <= k salta
+    static final int GLOAD_P = 52;   // d i
+    static final int GSTORE_P = 53;  // i s
+    static final int GLOAD_O = 54;   // d i
+    static final int GSTORE_O = 55;  // i s
+    static final int ELOAD_P = 56;   // d vo i esc desl
+    static final int ESTORE_P = 57;  // vo i esc desl s
+    static final int ELOAD_O = 58;   // d vo i esc desl
+    static final int ESTORE_O = 59;  // vo i esc desl s
+    static final int VDIM = 60;      // d vo k
+    static final int PLOAD_P = 61;   // d po desl
+    static final int PSTORE_P = 62;  // po desl s
+    static final int PLOAD_O = 63;   // d po desl
+    static final int PSTORE_O = 64;  // po desl s
+    static final int ADDR_L = 65;    // d p o
+    static final int ADDR_G = 66;    // d p o
+    static final int ADDR_E = 67;    // d vo i escP escO dp dO
+    static final int ADDR_P = 68;    // d po dp dO
+    static final int COPY_REC = 69;  // destino origem tamP tamO (ponteiros)
+    static final int NEWVET = 70;    // global slot n tamP tamO dim0..dimN-1
+    static final int READ_I = 71;    // d
+    static final int READ_R = 72;
+    static final int READ_S = 73;
+    static final int READ_L = 74;
+    static final int WRITE_I = 75;   // a
+    static final int WRITE_R = 76;
+    static final int WRITE_S = 77;
+    static final int WRITE_L = 78;
+    static final int WRITE_K = 79;   // k
+    static final int SWITCH_T = 80;  // a min n padrao t0..tn-1
+    static final int SWITCH_B = 81;  // a n padrao k0..kn-1 t0..tn-1
+    static final int CALL = 82;      // f d n a0..an-1
+    static final int RET_P = 83;     // s
+    static final int RET_O = 84;     // s
+    static final int RET = 85;
+    static final int RET_REC = 86;   // s tamP tamO
+    static final int PISO = 87;      // d a: (int) floor(real), limite real de para
+
+    static final int RETORNO_NENHUM = 0;
+    static final int RETORNO_P = 1;
+    static final int RETORNO_O = 2;
+
+    private static final int MAGICO = 0x4A4C4142; // "JLAB"
+    private static final int VERSAO = 1;
+
+    // Pilha de valores padrão: 2M registros primitivos e 512K de objetos
+    private static final int PILHA_P = 1 << 21;
+    private static final int PILHA_O = 1 << 19;
+
+    /** Função compilada: ponto de entrada, tamanho do quadro (locais + temporários) e passagem de parâmetros */
+    static final class Funcao {
+        final String nome;
+        final int indice;
+        int entrada;
+        int tamP;
+        int tamO;
+        int retorno;
+        // Registradores -1, -2, ... (bits de inteiro ou de double)
+        long[] constantes;
+        int[] modos;
+        int[] slotsP;
+        int[] slotsO;
+        // Tamanho dos parâmetros registro
+        int[] tamRegP;
+        int[] tamRegO;
+
+        Funcao(String nome, int indice) {
+            this.nome = nome;
+            this.indice = indice;
+        }
+    }
+
+    /** Programa da VM: código, pools de constantes e tabela de funções; a função 0 é o algoritmo */
+    public static final class Programa {
+        final int[] codigo;
+        final double[] reais;
+        final String[] textos;
+        final Funcao[] funcoes;
+        final int tamGlobaisP;
+        final int tamGlobaisO;
+
+        Programa(int[] codigo, double[] reais, String[] textos, Funcao[] funcoes, int tamGlobaisP, int tamGlobaisO) {
+            this.codigo = codigo;
+            this.reais = reais;
+            this.textos = textos;
+            this.funcoes = funcoes;
+            this.tamGlobaisP = tamGlobaisP;
+            this.tamGlobaisO = tamGlobaisO;
+        }
+
+        /** Número de ints do código */
+        public int getTamanhoCodigo() {
+            return codigo.length;
+        }
+    }
+
+    private final int tamPilhaP;
+    private final int tamPilhaO;
+
+    public JanderVM() {
+        this(PILHA_P, PILHA_O);
+    }
+
+    public JanderVM(int tamPilhaP, int tamPilhaO) {
+        this.tamPilhaP = tamPilhaP;
+        this.tamPilhaO = tamPilhaO;
+    }
+
+    // ---------------------------------------------------------------- formato de arquivo
+
+    /** Verdadeiro se o arquivo começa com o cabeçalho do formato binário da VM */
+    public static boolean ehProgramaVm(Path arquivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(arquivo))) {
+            return in.readInt() == MAGICO;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /** Grava o programa no formato binário da VM */
+    public static void salvar(Programa programa, OutputStream saida) throws IOException {
+        DataOutputStream out = new DataOutputStream(saida);
+        out.writeInt(MAGICO);
+        out.writeShort(VERSAO);
+        out.writeInt(programa.tamGlobaisP);
+        out.writeInt(programa.tamGlobaisO);
+        out.writeInt(programa.funcoes.length);
+        for (Funcao f : programa.funcoes) {
+            out.writeUTF(f.nome);
+            out.writeInt(f.entrada);
+            out.writeInt(f.tamP);
+            out.writeInt(f.tamO);
+            out.writeByte(f.retorno);
+            out.writeInt(f.constantes.length);
+            for (long k : f.constantes) {
+                out.writeLong(k);
+            }
+            out.writeInt(f.modos.length);
+            for (int i = 0; i < f.modos.length; i++) {
+                out.writeByte(f.modos[i]);
+                out.writeInt(f.slotsP[i]);
+                out.writeInt(f.slotsO[i]);
+                out.writeInt(f.tamRegP[i]);
+                out.writeInt(f.tamRegO[i]);
+            }
+        }
+        out.writeInt(programa.reais.length);
+        for (double r : programa.reais) {
+            out.writeDouble(r);
+        }
+        out.writeInt(programa.textos.length);
+        for (String t : programa.textos) {
+            byte[] bytes = t.getBytes(StandardCharsets.ISO_8859_1);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(programa.codigo.length);
+        for (int c : programa.codigo) {
+            out.writeInt(c);
+        }
+        out.flush();
+    }
+
+    /** Lê um programa gravado por salvar */
+    public static Programa carregar(InputStream entrada) throws IOException {
+        DataInputStream in = new DataInputStream(entrada);
+        if (in.readInt() != MAGICO) {
+            throw new IOException("arquivo nao e um programa da VM de LA");
+        }
+        int versao = in.readShort();
+        if (versao != VERSAO) {
+            throw new IOException("versao " + versao + " do formato nao suportada (esperada " + VERSAO + ")");
+        }
+        int tamGlobaisP = in.readInt();
+        int tamGlobaisO = in.readInt();
+        Funcao[] funcoes = new Funcao[in.readInt()];
+        for (int i = 0; i < funcoes.length; i++) {
+            Funcao f = new Funcao(in.readUTF(), i);
+            f.entrada = in.readInt();
+            f.tamP = in.readInt();
+            f.tamO = in.readInt();
+            f.retorno = in.readByte();
+            f.constantes = new long[in.readInt()];
+            for (int j = 0; j < f.constantes.length; j++) {
+                f.constantes[j] = in.readLong();
+            }
+            int n = in.readInt();
+            f.modos = new int[n];
+            f.slotsP = new int[n];
+            f.slotsO = new int[n];
+            f.tamRegP = new int[n];
+            f.tamRegO = new int[n];
+            for (int j = 0; j < n; j++) {
+                f.modos[j] = in.readByte();
+                f.slotsP[j] = in.readInt();
+                f.slotsO[j] = in.readInt();
+                f.tamRegP[j] = in.readInt();
+                f.tamRegO[j] = in.readInt();
+            }
+            funcoes[i] = f;
+        }
+        double[] reais = new double[in.readInt()];
+        for (int i = 0; i < reais.length; i++) {
+            reais[i] = in.readDouble();
+        }
+        String[] textos = new String[in.readInt()];
+        for (int i = 0; i < textos.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            textos[i] = new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        int[] codigo = new int[in.readInt()];
+        for (int i = 0; i < codigo.length; i++) {
+            codigo[i] = in.readInt();
+        }
+        return new Programa(codigo, reais, textos, funcoes, tamGlobaisP, tamGlobaisO);
+    }
+
+    // ---------------------------------------------------------------- execução
+
+    /** Executa o programa na thread com pilha ampliada usada também pelo interpretador */
+    public void executar(Programa programa, InputStream in, OutputStream out) throws InterruptedException {
+        ConsoleC console = new ConsoleC(in, out);
+        RuntimeException[] erro = new RuntimeException[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                rodar(programa, console);
+            } catch (RuntimeException e) {
+                erro[0] = e;
+            } finally {
+                console.descarregar();
+            }
+        }, "jander-vm", JanderInterpretador.TAMANHO_PILHA);
+        thread.start();
+        thread.join();
+        if (erro[0] != null) {
+            throw erro[0];
+        }
+    }
+
+    private static String texto(Object o) {
+        return o == null ? "" : (String) o;
+    }
+
+    private static double r(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double d) {
+        return Double.doubleToRawLongBits(d);
+    }
+
+    private static long f(double d) {
+        return Double.doubleToRawLongBits((float) d);
+    }
+
+    private static long b(boolean v) {
+        return v ? 1L : 0L;
+    }
+
+    private void rodar(Programa programa, ConsoleC console) {
+        Funcao principal = programa.funcoes[0];
+        Maquina m = new Maquina(programa, console, tamPilhaP, tamPilhaO);
+        int bp = principal.constantes.length;
+        if (bp + principal.tamP > tamPilhaP || principal.tamO > tamPilhaO) {
+            throw new ErroExecucao("estouro de pilha");
+        }
+        System.arraycopy(principal.constantes, 0, m.p, 0, bp);
+        m.executar(principal, bp, 0);
+    }
+
+    /**
+     * Estado de uma execução. Cada chamada LA é uma chamada Java a executar,
+     * então bp e bo são fixos dentro do laço de despacho; instruções raras
+     * (entrada e saída, literais, endereços, caso) ficam em "frio" para manter
+     * o laço principal pequeno para o JIT.
+     */
+    private static final class Maquina {
+        final int[] c;
+        final double[] reais;
+        final String[] textos;
+        final Funcao[] funcoes;
+        final Memoria pilha;
+        final long[] p;
+        final Object[] o;
+        final Memoria globais;
+        final long[] gp;
+        final Object[] go;
+        final ConsoleC console;
+        final int tamPilhaP;
+        final int tamPilhaO;
+        // Valor devolvido pela última função que retornou
+        long retP;
+        Object retO;
+
+        Maquina(Programa programa, ConsoleC console, int tamPilhaP, int tamPilhaO) {
+            this.c = programa.codigo;
+            this.reais = programa.reais;
+            this.textos = programa.textos;
+            this.funcoes = programa.funcoes;
+            this.pilha = new Memoria(tamPilhaP, tamPilhaO);
+            this.p = pilha.p;
+            this.o = pilha.o;
+            this.globais = new Memoria(programa.tamGlobaisP, programa.tamGlobaisO);
+            this.gp = globais.p;
+            this.go = globais.o;
+            this.console = console;
+            this.tamPilhaP = tamPilhaP;
+            this.tamPilhaO = tamPilhaO;
+        }
+
+        void executar(Funcao atual, int bp, int bo) {
+            final int[] c = this.c;
+            final long[] p = this.p;
+            final Object[] o = this.o;
+            final long[] gp = this.gp;
+            final Object[] go = this.go;
+            int pc = atual.entrada;
+            while (true) {
+                switch (c[pc]) {
+                    case MOV_P:
+                        p[bp + c[pc + 1]] = p[bp + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case MOV_O:
+                        o[bo + c[pc + 1]] = o[bo + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case CONST_I:
+                        p[bp + c[pc + 1]] = c[pc + 2];
+                        pc += 3;
+                        break;
+                    case CONST_R:
+                        p[bp + c[pc + 1]] = bits(reais[c[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case ADD_I:
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] + (int) p[bp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case SUB_I:
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] - (int) p[bp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case MUL_I:
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] * (int) p[bp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case DIV_I: {
+                        int divisor = (int) p[bp + c[pc + 3]];
+                        if (divisor == 0) throw new ErroExecucao("divisao por zero");
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] / divisor;
+                        pc += 4;
+                        break;
+                    }
+                    case MOD_I: {
+                        int divisor = (int) p[bp + c[pc + 3]];
+                        if (divisor == 0) throw new ErroExecucao("divisao por zero");
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] % divisor;
+                        pc += 4;
+                        break;
+                    }
+                    case ADDK_I:
+                        p[bp + c[pc + 1]] = (int) p[bp + c[pc + 2]] + c[pc + 3];
+                        pc += 4;
+                        break;
+                    case NEG_I:
+                        p[bp + c[pc + 1]] = -(int) p[bp + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case ADD_D:
+                        p[bp + c[pc + 1]] = bits(r(p[bp + c[pc + 2]]) + r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case SUB_D:
+                        p[bp + c[pc + 1]] = bits(r(p[bp + c[pc + 2]]) - r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case MUL_D:
+                        p[bp + c[pc + 1]] = bits(r(p[bp + c[pc + 2]]) * r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case DIV_D:
+                        p[bp + c[pc + 1]] = bits(r(p[bp + c[pc + 2]]) / r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case ADD_F:
+                        p[bp + c[pc + 1]] = f(r(p[bp + c[pc + 2]]) + r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case SUB_F:
+                        p[bp + c[pc + 1]] = f(r(p[bp + c[pc + 2]]) - r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case MUL_F:
+                        p[bp + c[pc + 1]] = f(r(p[bp + c[pc + 2]]) * r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case DIV_F:
+                        p[bp + c[pc + 1]] = f(r(p[bp + c[pc + 2]]) / r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case NEG_R:
+                        p[bp + c[pc + 1]] = bits(-r(p[bp + c[pc + 2]]));
+                        pc += 3;
+                        break;
+                    case I2D:
+                        p[bp + c[pc + 1]] = bits((int) p[bp + c[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case I2F:
+                        p[bp + c[pc + 1]] = bits((float) (int) p[bp + c[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case R2I:
+                        p[bp + c[pc + 1]] = (int) r(p[bp + c[pc + 2]]);
+                        pc += 3;
+                        break;
+                    case ARRED_F:
+                        p[bp + c[pc + 1]] = f(r(p[bp + c[pc + 2]]));
+                        pc += 3;
+                        break;
+                    case EQ_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] == (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case NE_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] != (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case GT_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] > (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case GE_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] >= (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case LT_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] < (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case LE_I:
+                        p[bp + c[pc + 1]] = b((int) p[bp + c[pc + 2]] <= (int) p[bp + c[pc + 3]]);
+                        pc += 4;
+                        break;
+                    case EQ_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) == r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case NE_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) != r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case GT_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) > r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case GE_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) >= r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case LT_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) < r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case LE_R:
+                        p[bp + c[pc + 1]] = b(r(p[bp + c[pc + 2]]) <= r(p[bp + c[pc + 3]]));
+                        pc += 4;
+                        break;
+                    case NOT:
+                        p[bp + c[pc + 1]] = p[bp + c[pc + 2]] != 0 ? 0 : 1;
+                        pc += 3;
+                        break;
+                    case JMP:
+                        pc = c[pc + 1];
+                        break;
+                    case JZ:
+                        pc = p[bp + c[pc + 1]] == 0 ? c[pc + 2] : pc + 3;
+                        break;
+                    case JNZ:
+                        pc = p[bp + c[pc + 1]] != 0 ? c[pc + 2] : pc + 3;
+                        break;
+                    case JEQ_I:
+                        pc = (int) p[bp + c[pc + 1]] == (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case JNE_I:
+                        pc = (int) p[bp + c[pc + 1]] != (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case JGT_I:
+                        pc = (int) p[bp + c[pc + 1]] > (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case JGE_I:
+                        pc = (int) p[bp + c[pc + 1]] >= (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case JLT_I:
+                        pc = (int) p[bp + c[pc + 1]] < (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case JLE_I:
+                        pc = (int) p[bp + c[pc + 1]] <= (int) p[bp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case PARA_I: {
+                        int v = bp + c[pc + 1];
+                        int proximo = (int) p[v] + 1;
+                        p[v] = proximo;
+                        pc = proximo <= (int) p[bp + c[pc + 2]] + c[pc + 3] ? c[pc + 4] : pc + 5;
+                        break;
+                    }
+                    case PARA_IK: {
+                        int v = bp + c[pc + 1];
+                        int proximo = (int) p[v] + 1;
+                        p[v] = proximo;
+                        pc = proximo <= c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    }
+                    case GLOAD_P:
+                        p[bp + c[pc + 1]] = gp[c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case GSTORE_P:
+                        gp[c[pc + 1]] = p[bp + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case GLOAD_O:
+                        o[bo + c[pc + 1]] = go[c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case GSTORE_O:
+                        go[c[pc + 1]] = o[bo + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case ELOAD_P: {
+                        Vetor v = (Vetor) o[bo + c[pc + 2]];
+                        p[bp + c[pc + 1]] = v.p[(int) p[bp + c[pc + 3]] * c[pc + 4] + c[pc + 5]];
+                        pc += 6;
+                        break;
+                    }
+                    case ESTORE_P: {
+                        Vetor v = (Vetor) o[bo + c[pc + 1]];
+                        v.p[(int) p[bp + c[pc + 2]] * c[pc + 3] + c[pc + 4]] = p[bp + c[pc + 5]];
+                        pc += 6;
+                        break;
+                    }
+                    case ELOAD_O: {
+                        Vetor v = (Vetor) o[bo + c[pc + 2]];
+                        o[bo + c[pc + 1]] = v.o[(int) p[bp + c[pc + 3]] * c[pc + 4] + c[pc + 5]];
+                        pc += 6;
+                        break;
+                    }
+                    case ESTORE_O: {
+                        Vetor v = (Vetor) o[bo + c[pc + 1]];
+                        v.o[(int) p[bp + c[pc + 2]] * c[pc + 3] + c[pc + 4]] = o[bo + c[pc + 5]];
+                        pc += 6;
+                        break;
+                    }
+                    case PLOAD_P: {
+                        Ponteiro pt = ponteiro(o[bo + c[pc + 2]]);
+                        p[bp + c[pc + 1]] = pt.m.p[pt.p + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    }
+                    case PSTORE_P: {
+                        Ponteiro pt = ponteiro(o[bo + c[pc + 1]]);
+                        pt.m.p[pt.p + c[pc + 2]] = p[bp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    }
+                    case CALL:
+                        pc = chamar(atual, pc, bp, bo);
+                        break;
+                    case RET_P:
+                        retP = p[bp + c[pc + 1]];
+                        return;
+                    case RET_O:
+                        retO = o[bo + c[pc + 1]];
+                        return;
+                    case RET_REC: {
+                        Ponteiro origem = (Ponteiro) o[bo + c[pc + 1]];
+                        Memoria copia = new Memoria(c[pc + 2], c[pc + 3]);
+                        System.arraycopy(origem.m.p, origem.p, copia.p, 0, c[pc + 2]);
+                        System.arraycopy(origem.m.o, origem.o, copia.o, 0, c[pc + 3]);
+                        retO = new Ponteiro(copia, 0, 0);
+                        return;
+                    }
+                    case RET:
+                    case HALT:
+                        return;
+                    default:
+                        pc = frio(pc, bp, bo);
+                        break;
+                }
+            }
+        }
+
+        /** Novo quadro logo acima do atual: constantes, zeros e argumentos; devolve o pc seguinte */
+        private int chamar(Funcao atual, int pc, int bp, int bo) {
+            final int[] c = this.c;
+            final long[] p = this.p;
+            final Object[] o = this.o;
+            Funcao f = funcoes[c[pc + 1]];
+            int destino = c[pc + 2];
+            int n = c[pc + 3];
+            long[] constantes = f.constantes;
+            int novoBp = bp + atual.tamP + constantes.length;
+            int novoBo = bo + atual.tamO;
+            if (novoBp + f.tamP > tamPilhaP || novoBo + f.tamO > tamPilhaO) {
+                throw new ErroExecucao("estouro de pilha em " + f.nome);
+            }
+            System.arraycopy(constantes, 0, p, novoBp - constantes.length, constantes.length);
+            Arrays.fill(p, novoBp, novoBp + f.tamP, 0L);
+            Arrays.fill(o, novoBo, novoBo + f.tamO, null);
+            for (int i = 0; i < n; i++) {
+                int arg = c[pc + 4 + i];
+                switch (f.modos[i]) {
+                    case InterpretadorNos.PARAM_PRIMITIVO:
+                        p[novoBp + f.slotsP[i]] = p[bp + arg];
+                        break;
+                    case InterpretadorNos.PARAM_REGISTRO: {
+                        Ponteiro origem = (Ponteiro) o[bo + arg];
+                        System.arraycopy(origem.m.p, origem.p, p, novoBp + f.slotsP[i], f.tamRegP[i]);
+                        System.arraycopy(origem.m.o, origem.o, o, novoBo + f.slotsO[i], f.tamRegO[i]);
+                        break;
+                    }
+                    default:
+                        o[novoBo + f.slotsO[i]] = o[bo + arg];
+                        break;
+                }
+            }
+            try {
+                executar(f, novoBp, novoBo);
+            } catch (StackOverflowError e) {
+                throw new ErroExecucao("estouro de pilha em " + f.nome);
+            }
+            if (destino >= 0) {
+                if (f.retorno == RETORNO_P) {
+                    p[bp + destino] = retP;
+                } else if (f.retorno == RETORNO_O) {
+                    o[bo + destino] = retO;
+                }
+            }
+            retO = null;
+            return pc + 4 + n;
+        }
+
+        /** Instruções fora do caminho quente; devolve o pc seguinte */
+        private int frio(int pc, int bp, int bo) {
+            final int[] c = this.c;
+            final long[] p = this.p;
+            final Object[] o = this.o;
+            switch (c[pc]) {
+                case CONST_S:
+                    o[bo + c[pc + 1]] = textos[c[pc + 2]];
+                    return pc + 3;
+                case PISO:
+                    p[bp + c[pc + 1]] = (int) Math.floor(r(p[bp + c[pc + 2]]));
+                    return pc + 3;
+                case CMP_S: {
+                    int comparacao = texto(o[bo + c[pc + 3]]).compareTo(texto(o[bo + c[pc + 4]]));
+                    p[bp + c[pc + 1]] = b(InterpretadorNos.comparar(c[pc + 2], comparacao));
+                    return pc + 5;
+                }
+                case CONCAT:
+                    o[bo + c[pc + 1]] = texto(o[bo + c[pc + 2]]).concat(texto(o[bo + c[pc + 3]]));
+                    return pc + 4;
+                case VDIM: {
+                    Vetor v = (Vetor) o[bo + c[pc + 2]];
+                    int k = c[pc + 3];
+                    p[bp + c[pc + 1]] = k < v.dims.length ? v.dims[k] : 1;
+                    return pc + 4;
+                }
+                case PLOAD_O: {
+                    Ponteiro pt = ponteiro(o[bo + c[pc + 2]]);
+                    o[bo + c[pc + 1]] = pt.m.o[pt.o + c[pc + 3]];
+                    return pc + 4;
+                }
+                case PSTORE_O: {
+                    Ponteiro pt = ponteiro(o[bo + c[pc + 1]]);
+                    pt.m.o[pt.o + c[pc + 2]] = o[bo + c[pc + 3]];
+                    return pc + 4;
+                }
+                case ADDR_L:
+                    o[bo + c[pc + 1]] = new Ponteiro(pilha, bp + c[pc + 2], bo + c[pc + 3]);
+                    return pc + 4;
+                case ADDR_G:
+                    o[bo + c[pc + 1]] = new Ponteiro(globais, c[pc + 2], c[pc + 3]);
+                    return pc + 4;
+                case ADDR_E: {
+                    Vetor v = (Vetor) o[bo + c[pc + 2]];
+                    int i = (int) p[bp + c[pc + 3]];
+                    o[bo + c[pc + 1]] = new Ponteiro(v, i * c[pc + 4] + c[pc + 6], i * c[pc + 5] + c[pc + 7]);
+                    return pc + 8;
+                }
+                case ADDR_P: {
+                    Ponteiro pt = ponteiro(o[bo + c[pc + 2]]);
+                    o[bo + c[pc + 1]] = new Ponteiro(pt.m, pt.p + c[pc + 3], pt.o + c[pc + 4]);
+                    return pc + 5;
+                }
+                case COPY_REC: {
+                    Ponteiro destino = (Ponteiro) o[bo + c[pc + 1]];
+                    Ponteiro origem = (Ponteiro) o[bo + c[pc + 2]];
+                    // arraycopy trata sobreposição como se copiasse por um temporário
+                    System.arraycopy(origem.m.p, origem.p, destino.m.p, destino.p, c[pc + 3]);
+                    System.arraycopy(origem.m.o, origem.o, destino.m.o, destino.o, c[pc + 4]);
+                    return pc + 5;
+                }
+                case NEWVET: {
+                    int n = c[pc + 3];
+                    int[] dims = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        dims[i] = (int) p[bp + c[pc + 6 + i]];
+                    }
+                    Vetor v = new Vetor(dims, c[pc + 4], c[pc + 5]);
+                    if (c[pc + 1] != 0) {
+                        go[c[pc + 2]] = v;
+                    } else {
+                        o[bo + c[pc + 2]] = v;
+                    }
+                    return pc + 6 + n;
+                }
+                case READ_I: {
+                    int v = console.lerInteiro();
+                    if (console.leituraOk()) p[bp + c[pc + 1]] = v;
+                    return pc + 2;
+                }
+                case READ_R: {
+                    double v = console.lerReal();
+                    if (console.leituraOk()) p[bp + c[pc + 1]] = bits(v);
+                    return pc + 2;
+                }
+                case READ_S: {
+                    String v = console.lerLinha();
+                    if (console.leituraOk()) o[bo + c[pc + 1]] = v;
+                    return pc + 2;
+                }
+                case READ_L: {
+                    int v = console.lerInteiro();
+                    if (console.leituraOk()) p[bp + c[pc + 1]] = v != 0 ? 1 : 0;
+                    return pc + 2;
+                }
+                case WRITE_I:
+                    console.escreverInteiro((int) p[bp + c[pc + 1]]);
+                    return pc + 2;
+                case WRITE_R:
+                    console.escreverReal(r(p[bp + c[pc + 1]]));
+                    return pc + 2;
+                case WRITE_S:
+                    console.escrever(texto(o[bo + c[pc + 1]]));
+                    return pc + 2;
+                case WRITE_L:
+                    console.escrever(p[bp + c[pc + 1]] != 0 ? "verdadeiro" : "falso");
+                    return pc + 2;
+                case WRITE_K:
+                    console.escrever(textos[c[pc + 1]]);
+                    return pc + 2;
+                case SWITCH_T: {
+                    long i = (int) p[bp + c[pc + 1]] - (long) c[pc + 2];
+                    int n = c[pc + 3];
+                    return i >= 0 && i < n ? c[pc + 5 + (int) i] : c[pc + 4];
+                }
+                case SWITCH_B: {
+                    int v = (int) p[bp + c[pc + 1]];
+                    int n = c[pc + 2];
+                    int chaves = pc + 4;
+                    int i = Arrays.binarySearch(c, chaves, chaves + n, v);
+                    return i >= 0 ? c[i + n] : c[pc + 3];
+                }
+                default:
+                    throw new IllegalStateException("opcode invalido " + c[pc] + " em " + pc);
+            }
+        }
+    }
+
+    private static Ponteiro ponteiro(Object o) {
+        if (o == null) throw new ErroExecucao("acesso por ponteiro nulo");
+        return (Ponteiro) o;
+    }
+
+}
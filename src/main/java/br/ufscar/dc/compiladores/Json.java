@@ -0,0 +1,221 @@
+package br.ufscar.dc.compiladores;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura e escrita de JSON para o servidor LSP, sem dependências externas.
+ * Objetos viram LinkedHashMap, vetores ArrayList, números Long (inteiros) ou
+ * Double, e os demais valores String, Boolean ou null.
+ */
+final class Json {
+
+    private final String texto;
+    private int pos;
+
+    private Json(String texto) {
+        this.texto = texto;
+    }
+
+    static Object ler(String texto) {
+        Json json = new Json(texto);
+        Object valor = json.valor();
+        json.espacos();
+        if (json.pos != texto.length()) {
+            throw json.erro("conteudo apos o fim do valor");
+        }
+        return valor;
+    }
+
+    static String escrever(Object valor) {
+        StringBuilder sb = new StringBuilder();
+        escrever(valor, sb);
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void escrever(Object valor, StringBuilder sb) {
+        if (valor == null) {
+            sb.append("null");
+        } else if (valor instanceof String) {
+            escreverTexto((String) valor, sb);
+        } else if (valor instanceof Number || valor instanceof Boolean) {
+            sb.append(valor);
+        } else if (valor instanceof Map) {
+            sb.append('{');
+            boolean primeiro = true;
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) valor).entrySet()) {
+                if (!primeiro) sb.append(',');
+                primeiro = false;
+                escreverTexto(e.getKey(), sb);
+                sb.append(':');
+                escrever(e.getValue(), sb);
+            }
+            sb.append('}');
+        } else if (valor instanceof List) {
+            sb.append('[');
+            boolean primeiro = true;
+            for (Object item : (List<Object>) valor) {
+                if (!primeiro) sb.append(',');
+                primeiro = false;
+                escrever(item, sb);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("valor sem representacao JSON: " + valor.getClass());
+        }
+    }
+
+    private static void escreverTexto(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private Object valor() {
+        espacos();
+        if (pos >= texto.length()) {
+            throw erro("fim inesperado");
+        }
+        char c = texto.charAt(pos);
+        switch (c) {
+            case '{': return objeto();
+            case '[': return vetor();
+            case '"': return texto();
+            case 't': return palavra("true", Boolean.TRUE);
+            case 'f': return palavra("false", Boolean.FALSE);
+            case 'n': return palavra("null", null);
+            default: return numero();
+        }
+    }
+
+    private Map<String, Object> objeto() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        pos++;
+        espacos();
+        if (texto.charAt(pos) == '}') {
+            pos++;
+            return mapa;
+        }
+        while (true) {
+            espacos();
+            String chave = texto();
+            espacos();
+            esperar(':');
+            mapa.put(chave, valor());
+            espacos();
+            if (texto.charAt(pos) == ',') {
+                pos++;
+            } else {
+                esperar('}');
+                return mapa;
+            }
+        }
+    }
+
+    private List<Object> vetor() {
+        List<Object> lista = new ArrayList<>();
+        pos++;
+        espacos();
+        if (texto.charAt(pos) == ']') {
+            pos++;
+            return lista;
+        }
+        while (true) {
+            lista.add(valor());
+            espacos();
+            if (texto.charAt(pos) == ',') {
+                pos++;
+            } else {
+                esperar(']');
+                return lista;
+            }
+        }
+    }
+
+    private String texto() {
+        esperar('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = texto.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = texto.charAt(pos++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(e); break;
+            }
+        }
+    }
+
+    private Object numero() {
+        int inicio = pos;
+        boolean inteiro = true;
+        while (pos < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(pos)) >= 0) {
+            char c = texto.charAt(pos++);
+            if (c == '.' || c == 'e' || c == 'E') {
+                inteiro = false;
+            }
+        }
+        if (inicio == pos) {
+            throw erro("valor invalido");
+        }
+        String s = texto.substring(inicio, pos);
+        return inteiro ? (Object) Long.parseLong(s) : (Object) Double.parseDouble(s);
+    }
+
+    private Object palavra(String palavra, Object valor) {
+        if (!texto.startsWith(palavra, pos)) {
+            throw erro("valor invalido");
+        }
+        pos += palavra.length();
+        return valor;
+    }
+
+    private void esperar(char c) {
+        if (pos >= texto.length() || texto.charAt(pos) != c) {
+            throw erro("esperado '" + c + "'");
+        }
+        pos++;
+    }
+
+    private void espacos() {
+        while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException erro(String mensagem) {
+        return new IllegalArgumentException("JSON invalido na posicao " + pos + ": " + mensagem);
+    }
+}
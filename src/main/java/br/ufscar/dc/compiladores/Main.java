@@ -2,45 +2,345 @@ package br.ufscar.dc.compiladores;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
 import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 
 public class Main {
     public static void main(String[] args) {
+        // Servidor LSP: stdin/stdout ficam reservados para o protocolo
+        if (args.length > 0 && args[0].equals("--lsp")) {
+            try {
+                System.exit(new ServidorLsp(System.in, System.out).executar());
+            } catch (Exception e) {
+                System.err.println("Ocorreu um erro inesperado: " + e.getMessage());
+                System.exit(1);
+            }
+        }
         try {
-            CharStream cs = CharStreams.fromFileName(args[0]);
-            String arquivoSaida = args[1];
-            PrintWriter pw = new PrintWriter(arquivoSaida, "UTF-8");
+            // Opções "--nome valor" podem aparecer em qualquer posição; o restante são os arquivos
+            List<String> arquivos = new ArrayList<>();
+            int maxErros = Integer.MAX_VALUE;
+            String diretorioGcc = null;
+            String diretorioLote = null;
+            int jobs = Runtime.getRuntime().availableProcessors();
+            List<String> flagsGcc = new ArrayList<>();
+            boolean executar = false;
+            boolean jvm = false;
+            boolean vm = false;
+            String salvarVm = null;
+            String pastaRegressao = null;
+            long timeoutSegundos = 10;
+            boolean verificarLimites = false;
+            boolean expandirEmLinha = false;
+            boolean perfil = false;
+            boolean paralelizar = false;
+            boolean relatorioEliminacao = false;
+            String relatorioPerfil = null;
+            String pastaObservada = null;
+            // Sem --cache, a variável JANDER_CACHE (usada no CI) indica o diretório
+            String diretorioCache = System.getenv("JANDER_CACHE");
+            long limiteCacheMb = 512;
+            String arquivoInterface = null;
+            String gerarInterface = null;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--max-erros":
+                        maxErros = Integer.parseInt(args[++i]);
+                        break;
+                    case "--gcc":
+                        diretorioGcc = args[++i];
+                        break;
+                    case "--lote":
+                        diretorioLote = args[++i];
+                        break;
+                    case "--jobs":
+                        jobs = Integer.parseInt(args[++i]);
+                        break;
+                    case "--executar":
+                        executar = true;
+                        break;
+                    case "--executar-jvm":
+                        executar = true;
+                        jvm = true;
+                        break;
+                    case "--executar-vm":
+                        executar = true;
+                        vm = true;
+                        break;
+                    case "--salvar-vm":
+                        salvarVm = args[++i];
+                        break;
+                    case "--regressao":
+                        pastaRegressao = args[++i];
+                        break;
+                    case "--timeout":
+                        timeoutSegundos = Long.parseLong(args[++i]);
+                        break;
+                    case "--watch":
+                        pastaObservada = args[++i];
+                        break;
+                    case "--bounds-check":
+                        verificarLimites = true;
+                        break;
+                    case "--inline":
+                        expandirEmLinha = true;
+                        break;
+                    case "--parallel":
+                        paralelizar = true;
+                        break;
+                    case "--profile":
+                        perfil = true;
+                        break;
+                    case "--dead-code-report":
+                        relatorioEliminacao = true;
+                        break;
+                    case "--profile-report":
+                        relatorioPerfil = args[++i];
+                        break;
+                    case "--cache":
+                        diretorioCache = args[++i];
+                        break;
+                    case "--cache-max":
+                        limiteCacheMb = Long.parseLong(args[++i]);
+                        break;
+                    case "--interface":
+                        arquivoInterface = args[++i];
+                        break;
+                    case "--gerar-interface":
+                        gerarInterface = args[++i];
+                        break;
+                    case "--gcc-flags":
+                        flagsGcc.addAll(Arrays.asList(args[++i].trim().split("\\s+")));
+                        break;
+                    default:
+                        arquivos.add(args[i]);
+                        break;
+                }
+            }
+
+            JanderCompilador compilador = new JanderCompilador();
+            compilador.setMaxErros(maxErros);
+            compilador.setVerificarLimites(verificarLimites);
+            compilador.setExpandirEmLinha(expandirEmLinha);
+            compilador.setPerfil(perfil);
+            compilador.setParalelizar(paralelizar);
+            // O C paralelo só usa os núcleos compilado com OpenMP
+            if (paralelizar) {
+                flagsGcc.add("-fopenmp");
+            }
+            compilador.setMedirEliminacao(relatorioEliminacao);
+
+            // Modo --gerar-interface: compila o bloco de declarações comum a vários programas
+            if (gerarInterface != null) {
+                PrintWriter erros = new PrintWriter(System.out);
+                InterfaceDeclaracoes gerada = compilador.gerarInterface(CharStreams.fromFileName(arquivos.get(0)), erros);
+                erros.flush();
+                if (gerada == null) {
+                    System.exit(1);
+                }
+                gerada.gravar(Paths.get(gerarInterface));
+                System.err.printf("Interface: %d declaracoes em %s%n", gerada.getQuantidade(), gerarInterface);
+                return;
+            }
+
+            // Interface de outra versão do compilador: os programas são compilados inteiros
+            if (arquivoInterface != null) {
+                try {
+                    compilador.setInterface(InterfaceDeclaracoes.ler(Paths.get(arquivoInterface)));
+                } catch (InterfaceDeclaracoes.Incompativel e) {
+                    System.err.println("Interface ignorada: " + e.getMessage() + "; compilando os programas inteiros");
+                    arquivoInterface = null;
+                }
+            }
+
+            // Modo --profile-report: lista os pontos quentes de uma execução instrumentada
+            if (relatorioPerfil != null) {
+                new RelatorioPerfil(Paths.get(relatorioPerfil), Paths.get(arquivos.get(0))).imprimir(System.out);
+                return;
+            }
+
+            CacheBinarios cache = diretorioCache != null && !diretorioCache.isEmpty()
+                    ? new CacheBinarios(Paths.get(diretorioCache), limiteCacheMb * 1024 * 1024) : null;
+
+            // Modo --gcc: compila todos os arquivos até binários nativos, sem arquivos .c intermediários
+            if (diretorioGcc != null) {
+                GccPipeline pipeline = new GccPipeline(compilador, Paths.get(diretorioGcc), jobs);
+                pipeline.addFlagsGcc(flagsGcc);
+                pipeline.setCache(cache);
+                List<Path> fontes = new ArrayList<>();
+                for (String arquivo : arquivos) {
+                    fontes.add(Paths.get(arquivo));
+                }
+                List<GccPipeline.Relatorio> relatorios = pipeline.executar(fontes);
+                GccPipeline.imprimirRelatorio(relatorios, System.out);
+                if (cache != null) {
+                    cache.imprimirRelatorio(System.out);
+                }
+                if (relatorios.stream().anyMatch(r -> !r.sucesso)) {
+                    System.exit(1);
+                }
+                return;
+            }
+
+            // Modo --lote: compila muitos arquivos para C, sobrepondo leitura, compilação e gravação
+            if (diretorioLote != null) {
+                List<Path> fontes = new ArrayList<>();
+                List<Path> nomes = new ArrayList<>(); // Caminho de cada .c dentro de diretorioLote
+                for (String arquivo : arquivos) {
+                    Path caminho = Paths.get(arquivo);
+                    if (Files.isDirectory(caminho)) {
+                        // Mantém as subpastas: a/teste.alg e b/teste.alg não gravam o mesmo .c
+                        try (Stream<Path> s = Files.walk(caminho)) {
+                            s.filter(p -> p.toString().endsWith(".alg")).sorted().forEach(p -> {
+                                fontes.add(p);
+                                nomes.add(caminho.relativize(p));
+                            });
+                        }
+                    } else {
+                        fontes.add(caminho);
+                        nomes.add(caminho.getFileName());
+                    }
+                }
+                // O lote já ocupa os núcleos com um arquivo por thread; um pool de geração
+                // por arquivo só disputaria os mesmos núcleos
+                compilador.setThreadsGeracao(1);
+                CompiladorLote lote = new CompiladorLote(compilador, Paths.get(diretorioLote), jobs, 64);
+                long inicio = System.nanoTime();
+                List<CompiladorLote.Relatorio> relatorios = lote.executar(fontes, nomes, System.out);
+                lote.imprimirResumo(relatorios, System.nanoTime() - inicio, System.out);
+                if (relatorios.stream().anyMatch(r -> !r.sucesso || r.erro != null)) {
+                    System.exit(1);
+                }
+                return;
+            }
 
-            JanderLexer lex = new JanderLexer(cs);
-            CommonTokenStream tokens = new CommonTokenStream(lex);
+            // Modo --regressao: roda a pasta de casos de teste do corretor numa única JVM
+            if (pastaRegressao != null) {
+                RegressaoParalela regressao = new RegressaoParalela(compilador, Paths.get(pastaRegressao),
+                        Files.createTempDirectory("jander-regressao"), jobs, timeoutSegundos * 1000);
+                regressao.addFlagsGcc(flagsGcc);
+                regressao.setCache(cache);
+                long inicio = System.nanoTime();
+                List<RegressaoParalela.Caso> casos = regressao.executar();
+                int falhas = RegressaoParalela.imprimirRelatorio(casos, System.nanoTime() - inicio, System.out);
+                if (cache != null) {
+                    cache.imprimirRelatorio(System.out);
+                }
+                if (falhas > 0) {
+                    // Mantém C gerado e saídas dos casos para inspeção
+                    System.out.println("Arquivos dos casos em " + regressao.getTemporario());
+                    System.exit(1);
+                }
+                regressao.limpar();
+                return;
+            }
 
-            JanderParser parser = new JanderParser(tokens);
-            MyCustomErrorListener mcel = new MyCustomErrorListener(pw);
-            parser.removeErrorListeners();
-            parser.addErrorListener(mcel);
+            // Modo --watch: recompila os .alg modificados da pasta na mesma JVM até ser interrompido
+            if (pastaObservada != null) {
+                new ModoObservacao(compilador, Paths.get(pastaObservada), System.out).executar();
+                return;
+            }
 
-            ProgramaContext arvore = parser.programa();
+            // Programa da VM já compilado (reconhecido pelo cabeçalho): carrega sem analisar o fonte
+            if (vm && JanderVM.ehProgramaVm(Paths.get(arquivos.get(0)))) {
+                JanderVM.Programa programa;
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(arquivos.get(0))))) {
+                    programa = JanderVM.carregar(in);
+                }
+                executarVm(programa);
+                return;
+            }
 
-            if (!mcel.parada) {
-                JanderSemantico semantico = new JanderSemantico(pw);
-                semantico.visit(arvore);
+            CharStream cs = CharStreams.fromFileName(arquivos.get(0));
 
-                if (!semantico.hasErrors()) {
-                    JanderGeradorC gerador = new JanderGeradorC(semantico);
-                    gerador.visit(arvore);
-                    pw.print(gerador.getOutput());
-                } else {
-                    semantico.printErrors();
+            // Modo --executar: interpreta o programa em processo, com entrada e saída padrão;
+            // --executar-jvm compila antes para bytecode e executa como classe oculta;
+            // --executar-vm usa a máquina de registradores e --salvar-vm grava o programa dela
+            if (executar || salvarVm != null) {
+                PrintWriter erros = new PrintWriter(System.out);
+                ProgramaContext arvore = compilador.analisar(cs, erros);
+                erros.flush();
+                if (arvore == null) {
+                    System.exit(1);
                 }
+                JanderInterpretador interpretador = new JanderInterpretador();
+                try {
+                    JanderInterpretador.Programa programa = interpretador.compilar(arvore);
+                    if (salvarVm != null) {
+                        JanderVM.Programa compilado = new JanderGeradorVM().compilar(programa);
+                        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(salvarVm)))) {
+                            JanderVM.salvar(compilado, out);
+                        }
+                        if (vm) {
+                            executarVm(compilado);
+                        }
+                    } else if (vm) {
+                        executarVm(new JanderGeradorVM().compilar(programa));
+                    } else if (jvm) {
+                        JanderBytecode bytecode = new JanderBytecode();
+                        bytecode.executar(bytecode.compilar(programa), System.in, System.out);
+                    } else {
+                        interpretador.executar(programa, System.in, System.out);
+                    }
+                } catch (InterpretadorNos.ErroExecucao e) {
+                    System.err.println("Erro de execucao: " + e.getMessage());
+                    System.exit(1);
+                }
+                return;
+            }
+
+            String arquivoSaida = arquivos.get(1);
+            JanderCompilador.Resultado resultado = compilador.compilar(cs);
+            Files.writeString(Paths.get(arquivoSaida), resultado.saida, StandardCharsets.UTF_8);
+            if (verificarLimites && resultado.sucesso) {
+                int total = resultado.verificacoesMantidas + resultado.verificacoesRemovidas;
+                System.err.printf("Verificacoes de limite: %d de %d mantidas, %d removidas pela analise de intervalos%n",
+                        resultado.verificacoesMantidas, total, resultado.verificacoesRemovidas);
+            }
+            if (expandirEmLinha && resultado.sucesso) {
+                System.err.printf("Expansao em linha: %d chamadas substituidas, %d funcoes static inline%n",
+                        resultado.chamadasExpandidas, resultado.funcoesEmLinha);
+            }
+            if (relatorioEliminacao && resultado.sucesso) {
+                int total = resultado.saida.length() + resultado.bytesEliminados;
+                System.err.printf("Declaracoes nao usadas pelo algoritmo: %d omitidas%s%n", resultado.eliminadas.size(),
+                        resultado.eliminadas.isEmpty() ? "" : " (" + String.join(", ", resultado.eliminadas) + ")");
+                System.err.printf("C gerado: %d bytes em vez de %d (%.1f%% menor)%n", resultado.saida.length(), total,
+                        total > 0 ? 100.0 * resultado.bytesEliminados / total : 0.0);
+            }
+            if (arquivoInterface != null && resultado.sucesso && !resultado.usouInterface) {
+                System.err.println("Interface: o programa nao comeca com o bloco de " + arquivoInterface
+                        + " (ou as opcoes diferem, ou chama o bloco com argumentos que se sobrepoem); compilado inteiro");
+            }
+            if (perfil && resultado.sucesso) {
+                System.err.println("Perfil: ao terminar, o programa grava os contadores em jander-perfil.txt "
+                        + "(ou no arquivo de JANDER_PERFIL); veja com --profile-report");
             }
-            
-            pw.close();
 
         } catch (Exception e) {
             System.err.println("Ocorreu um erro inesperado: " + e.getMessage());
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+
+    private static void executarVm(JanderVM.Programa programa) throws InterruptedException {
+        try {
+            new JanderVM().executar(programa, System.in, System.out);
+        } catch (InterpretadorNos.ErroExecucao e) {
+            System.err.println("Erro de execucao: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import br.ufscar.dc.compiladores.JanderParser.ProgramaContext;
+
+/**
+ * Partes comuns dos benchmarks: análise do programa sintético, compilação do C
+ * com gcc, execução dos binários e mediana dos tempos. Cada benchmark fica só
+ * com o gerador do seu programa e com o que ele compara.
+ */
+final class Medicoes {
+
+    /** Trecho medido */
+    interface Medicao {
+        void executar() throws Exception;
+    }
+
+    /** Árvore do programa e a análise semântica que os geradores recebem */
+    record Programa(ProgramaContext arvore, JanderSemantico semantico) {
+    }
+
+    private Medicoes() {
+    }
+
+    // Encerra com código 1 se o programa sintético tiver erros semânticos
+    static Programa analisar(String fonte) {
+        JanderParser parser = new JanderParser(new CommonTokenStream(new JanderLexer(CharStreams.fromString(fonte))));
+        ProgramaContext arvore = parser.programa();
+        JanderSemantico semantico = new JanderSemantico(new PrintWriter(new StringWriter()));
+        semantico.visit(arvore);
+        if (semantico.hasErrors()) {
+            System.err.println("Programa sintetico contem erros semanticos");
+            System.exit(1);
+        }
+        return new Programa(arvore, semantico);
+    }
+
+    // Grava dir/nome.c e compila para dir/nome com gcc -w e as flags; encerra se o gcc falhar
+    static Path compilarGcc(Path dir, String nome, String codigo, String... flags)
+            throws IOException, InterruptedException {
+        Path arquivoC = dir.resolve(nome + ".c");
+        Path binario = dir.resolve(nome);
+        Files.writeString(arquivoC, codigo, StandardCharsets.UTF_8);
+        List<String> comando = new ArrayList<>(List.of("gcc", "-w"));
+        comando.addAll(Arrays.asList(flags));
+        comando.addAll(List.of(arquivoC.toString(), "-o", binario.toString()));
+        Process gcc = new ProcessBuilder(comando).inheritIO().start();
+        if (gcc.waitFor() != 0) {
+            System.err.println("gcc falhou");
+            System.exit(1);
+        }
+        return binario;
+    }
+
+    static byte[] executar(Path binario) throws IOException, InterruptedException {
+        return executar(binario, new byte[0], Map.of());
+    }
+
+    // Saída do binário (com a de erro), que recebe entrada e as variáveis de ambiente
+    static byte[] executar(Path binario, byte[] entrada, Map<String, String> ambiente)
+            throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(binario.toString()).redirectErrorStream(true);
+        pb.environment().putAll(ambiente);
+        Process p = pb.start();
+        try (OutputStream in = p.getOutputStream()) {
+            in.write(entrada);
+        }
+        byte[] saida;
+        try (InputStream out = p.getInputStream()) {
+            saida = out.readAllBytes();
+        }
+        p.waitFor();
+        return saida;
+    }
+
+    // Mediana das medições, em milissegundos, depois das execuções de aquecimento
+    static double mediana(int aquecimento, int medicoes, Medicao medicao) throws Exception {
+        for (int i = 0; i < aquecimento; i++) {
+            medicao.executar();
+        }
+        long[] tempos = new long[medicoes];
+        for (int i = 0; i < medicoes; i++) {
+            long inicio = System.nanoTime();
+            medicao.executar();
+            tempos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(tempos);
+        return tempos[medicoes / 2] / 1_000_000.0;
+    }
+
+    // "antes: ms", "depois: ms" e a aceleração, com os valores alinhados
+    static void imprimirComparacao(String antes, double msAntes, String depois, double msDepois) {
+        int largura = Math.max(Math.max(antes.length(), depois.length()), "Aceleracao".length()) + 1;
+        System.out.printf("%-" + largura + "s %10.2f ms%n", antes + ":", msAntes);
+        System.out.printf("%-" + largura + "s %10.2f ms%n", depois + ":", msDepois);
+        System.out.printf("%-" + largura + "s %10.2fx%n", "Aceleracao:", msAntes / msDepois);
+    }
+
+    // Apaga o diretório temporário de um benchmark com tudo o que ele gravou
+    static void apagar(Path dir) throws IOException {
+        List<Path> caminhos;
+        try (Stream<Path> s = Files.walk(dir)) {
+            caminhos = s.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path p : caminhos) {
+            Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Modo --watch: observa uma pasta (e subpastas) e recompila cada .alg
+ * modificado na mesma JVM, gravando o C ao lado do fonte. Vários eventos do
+ * mesmo arquivo dentro da janela de espera viram uma única compilação, e
+ * gravações que não mudam o conteúdo são ignoradas. Como a JVM continua viva,
+ * JIT e caches DFA do ANTLR (estáticos no lexer/parser) ficam quentes entre
+ * as compilações.
+ */
+public class ModoObservacao {
+
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final JanderCompilador compilador;
+    private final Path pasta;
+    private final PrintStream out;
+    private long esperaMillis = 40;
+
+    // Arquivos pendentes e o instante (nanoTime) a partir do qual podem ser compilados
+    private final Map<Path, Long> pendentes = new LinkedHashMap<>();
+    // Conteúdo da última compilação de cada arquivo, para ignorar gravações idênticas
+    private final Map<Path, byte[]> compilados = new HashMap<>();
+    private final Map<WatchKey, Path> pastas = new HashMap<>();
+
+    public ModoObservacao(JanderCompilador compilador, Path pasta, PrintStream out) {
+        this.compilador = compilador;
+        this.pasta = pasta;
+        this.out = out;
+    }
+
+    /** Janela de espera depois do último evento de um arquivo antes de recompilá-lo */
+    public void setEsperaMillis(long esperaMillis) {
+        this.esperaMillis = Math.max(0, esperaMillis);
+    }
+
+    /** Compila todos os .alg da pasta e passa a observá-la até a thread ser interrompida */
+    public void executar() throws IOException, InterruptedException {
+        try (WatchService observador = FileSystems.getDefault().newWatchService()) {
+            registrar(observador, pasta);
+            try (Stream<Path> arquivos = Files.walk(pasta)) {
+                for (Path fonte : arquivos.filter(ModoObservacao::ehFonte).sorted().toList()) {
+                    compilar(fonte);
+                }
+            }
+            out.println("Observando " + pasta + " (Ctrl+C para sair)");
+            out.flush();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey chave = pendentes.isEmpty()
+                        ? observador.take()
+                        : observador.poll(Math.max(0, proximoPrazo() - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (chave != null) {
+                    coletar(observador, chave);
+                    // Junta o que mais chegou na mesma rajada antes de decidir
+                    while ((chave = observador.poll()) != null) {
+                        coletar(observador, chave);
+                    }
+                }
+                compilarVencidos();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Encerrado por outra thread
+        }
+    }
+
+    private void coletar(WatchService observador, WatchKey chave) throws IOException {
+        Path dir = pastas.get(chave);
+        for (WatchEvent<?> evento : chave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                // Eventos perdidos: agenda todos os fontes conhecidos
+                for (Path fonte : compilados.keySet()) {
+                    agendar(fonte);
+                }
+                continue;
+            }
+            Path caminho = dir.resolve((Path) evento.context());
+            if (evento.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(caminho)) {
+                registrar(observador, caminho);
+            } else if (evento.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pendentes.remove(caminho);
+                compilados.remove(caminho);
+            } else if (ehFonte(caminho)) {
+                agendar(caminho);
+            }
+        }
+        if (!chave.reset()) {
+            pastas.remove(chave);
+        }
+    }
+
+    private void agendar(Path fonte) {
+        // Cada novo evento empurra o prazo: só compila quando o editor parar de gravar
+        pendentes.remove(fonte);
+        pendentes.put(fonte, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMillis));
+    }
+
+    private long proximoPrazo() {
+        long prazo = Long.MAX_VALUE;
+        for (long p : pendentes.values()) {
+            prazo = Math.min(prazo, p);
+        }
+        return prazo;
+    }
+
+    private void compilarVencidos() {
+        long agora = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Long>> it = pendentes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> pendente = it.next();
+            if (pendente.getValue() <= agora) {
+                it.remove();
+                compilar(pendente.getKey());
+            }
+        }
+    }
+
+    private void registrar(WatchService observador, Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : dirs.filter(Files::isDirectory).toList()) {
+                pastas.put(d.register(observador, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), d);
+            }
+        }
+    }
+
+    private static boolean ehFonte(Path p) {
+        return p.getFileName().toString().endsWith(".alg") && Files.isRegularFile(p);
+    }
+
+    /** Compila um fonte e imprime o resultado com o tempo gasto desde a leitura do arquivo */
+    void compilar(Path fonte) {
+        long inicio = System.nanoTime();
+        byte[] conteudo;
+        try {
+            conteudo = Files.readAllBytes(fonte);
+        } catch (IOException e) {
+            // Arquivo removido ou ainda sendo gravado; o próximo evento traz a versão final
+            return;
+        }
+        if (Arrays.equals(conteudo, compilados.get(fonte))) {
+            return;
+        }
+
+        JanderCompilador.Resultado resultado = compilador.compilar(
+                CharStreams.fromString(new String(conteudo, StandardCharsets.UTF_8), fonte.toString()));
+        String nome = pasta.relativize(fonte).toString();
+        String hora = LocalTime.now().format(HORA);
+        if (resultado.sucesso) {
+            Path saida = fonte.resolveSibling(nome(fonte) + ".c");
+            try {
+                // Grava num temporário e renomeia: quem lê o .c nunca vê um arquivo pela metade
+                Path temporario = fonte.resolveSibling("." + nome(fonte) + ".c.tmp");
+                Files.writeString(temporario, resultado.saida, StandardCharsets.UTF_8);
+                Files.move(temporario, saida, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                out.printf("[%s] %s: erro ao gravar %s: %s%n", hora, nome, saida.getFileName(), e.getMessage());
+                out.flush();
+                return;
+            }
+            // Só depois de gravar o .c: se a gravação falhar, o mesmo conteúdo é compilado de novo no próximo evento
+            compilados.put(fonte, conteudo);
+            out.printf("[%s] %s: ok (%.1f ms) -> %s%n", hora, nome, (System.nanoTime() - inicio) / 1e6, saida.getFileName());
+        } else {
+            compilados.put(fonte, conteudo);
+            out.printf("[%s] %s: erros (%.1f ms)%n", hora, nome, (System.nanoTime() - inicio) / 1e6);
+            for (String linha : List.of(resultado.saida.split("\n"))) {
+                if (!linha.isBlank()) {
+                    out.println("    " + linha);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static String nome(Path fonte) {
+        String arquivo = fonte.getFileName().toString();
+        return arquivo.substring(0, arquivo.length() - ".alg".length());
+    }
+}
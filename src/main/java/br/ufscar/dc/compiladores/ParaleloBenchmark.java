@@ -0,0 +1,95 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mede a escala do C gerado com --parallel: o programa sintético tem laços para
+ * sobre vetores grandes (um com um para aninhado por elemento, outro com uma
+ * redução de soma). O binário compilado com gcc -fopenmp roda com 1, 2, 4...
+ * até o número de processadores (OMP_NUM_THREADS) e é comparado com o C
+ * sequencial, que também confere a saída.
+ *
+ * Uso: ParaleloBenchmark [repeticoes]
+ */
+public class ParaleloBenchmark {
+
+    private static final int MEDICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int repeticoes = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+
+        Medicoes.Programa programa = Medicoes.analisar(gerarPrograma(repeticoes));
+        Path dir = Files.createTempDirectory("jander-paralelo");
+        JanderGeradorC gerador = new JanderGeradorC(programa.semantico());
+        gerador.visit(programa.arvore());
+        Path sequencial = Medicoes.compilarGcc(dir, "sequencial", gerador.getOutput(), "-O2");
+
+        gerador = new JanderGeradorC(programa.semantico());
+        gerador.setParalelizar(true);
+        gerador.visit(programa.arvore());
+        String codigo = gerador.getOutput();
+        Path paralelo = Medicoes.compilarGcc(dir, "paralelo", codigo, "-O2", "-fopenmp");
+        System.out.printf("Lacos paralelos: %d%n", codigo.split("#pragma omp parallel for", -1).length - 1);
+
+        byte[] esperado = executar(sequencial, 1);
+        int processadores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threads = new ArrayList<>();
+        for (int t = 1; t < processadores; t *= 2) {
+            threads.add(t);
+        }
+        threads.add(processadores);
+        boolean iguais = true;
+        for (int t : threads) {
+            iguais &= Arrays.equals(esperado, executar(paralelo, t));
+        }
+        System.out.printf("Saidas: %s%n", iguais ? "iguais" : "DIFERENTES");
+
+        double base = Medicoes.mediana(0, MEDICOES, () -> executar(sequencial, 1));
+        System.out.printf("%d repeticoes (gcc -O2, mediana de %d execucoes, %d processadores)%n",
+                repeticoes, MEDICOES, processadores);
+        System.out.printf("Sequencial:          %10.2f ms%n", base);
+        for (int t : threads) {
+            double ms = Medicoes.mediana(0, MEDICOES, () -> executar(paralelo, t));
+            System.out.printf("-fopenmp, %2d threads: %10.2f ms  (%.2fx)%n", t, ms, base / ms);
+        }
+        Medicoes.apagar(dir);
+    }
+
+    private static byte[] executar(Path binario, int threads) throws IOException, InterruptedException {
+        return Medicoes.executar(binario, new byte[0], Map.of("OMP_NUM_THREADS", String.valueOf(threads)));
+    }
+
+    static String gerarPrograma(int repeticoes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("algoritmo\n")
+          .append("  declare a[200000], b[200000], c[200000]: inteiro\n")
+          .append("  declare i, k, r, soma: inteiro\n")
+          .append("  para i <- 0 ate 199999 faca\n")
+          .append("    a[i] <- i % 101\n")
+          .append("    b[i] <- i % 37 + 1\n")
+          .append("    c[i] <- 0\n")
+          .append("  fim_para\n")
+          .append("  soma <- 0\n")
+          .append("  para r <- 1 ate ").append(repeticoes).append(" faca\n")
+          // Cada elemento é independente: o para de fora é dividido entre as threads
+          .append("    para i <- 0 ate 199999 faca\n")
+          .append("      para k <- 1 ate 16 faca\n")
+          .append("        c[i] <- (c[i] * 31 + a[i] * b[i] + k) % 1009\n")
+          .append("      fim_para\n")
+          .append("    fim_para\n")
+          // Redução: cada thread soma uma parte e as somas são juntadas no fim
+          .append("    para i <- 0 ate 199999 faca\n")
+          .append("      soma <- soma + c[i] % 7\n")
+          .append("    fim_para\n")
+          .append("  fim_para\n")
+          .append("  escreva(soma, \"\\n\")\n")
+          .append("fim_algoritmo\n");
+        return sb.toString();
+    }
+}
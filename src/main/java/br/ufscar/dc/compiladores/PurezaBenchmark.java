@@ -0,0 +1,92 @@
+package br.ufscar.dc.compiladores;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Mede o uso da análise de pureza no C gerado: o programa sintético chama, na
+ * condição de laços enquanto, funções caras cujo término o gcc não consegue
+ * provar sozinho (contam passos de Collatz). Com a análise a chamada constante
+ * é calculada uma vez antes do laço e a chamada pura com os mesmos argumentos
+ * é reaproveitada pelo gcc -O2 graças ao atributo; sem ela as duas são
+ * avaliadas a cada volta (o gcc expande a função no laço antes de tentar
+ * tirá-la de lá, e aí já não a reconhece como invariante).
+ *
+ * Uso: PurezaBenchmark [n]
+ */
+public class PurezaBenchmark {
+
+    private static final int MEDICOES = 5;
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+
+        Medicoes.Programa programa = Medicoes.analisar(gerarPrograma(n));
+        Path dir = Files.createTempDirectory("jander-pureza");
+        JanderGeradorC gerador = new JanderGeradorC(programa.semantico());
+        gerador.visit(programa.arvore());
+        Path comAnalise = Medicoes.compilarGcc(dir, "com", gerador.getOutput(), "-O2");
+        AnalisePureza pureza = gerador.getPureza();
+        for (String nome : pureza.getGrafo().getFuncoes()) {
+            System.out.printf("%-12s %s%n", nome, pureza.getEfeito(nome));
+        }
+
+        gerador = new JanderGeradorC(programa.semantico());
+        gerador.setAnotarPureza(false);
+        gerador.visit(programa.arvore());
+        Path semAnalise = Medicoes.compilarGcc(dir, "sem", gerador.getOutput(), "-O2");
+
+        byte[] saidaCom = Medicoes.executar(comAnalise);
+        byte[] saidaSem = Medicoes.executar(semAnalise);
+        System.out.printf("%nSaidas: %s%n", Arrays.equals(saidaCom, saidaSem) ? "iguais" : "DIFERENTES");
+
+        double com = Medicoes.mediana(0, MEDICOES, () -> Medicoes.executar(comAnalise));
+        double sem = Medicoes.mediana(0, MEDICOES, () -> Medicoes.executar(semAnalise));
+        System.out.printf("n = %d (gcc -O2, mediana de %d execucoes)%n", n, MEDICOES);
+        Medicoes.imprimirComparacao("Sem a analise", sem, "Com a analise", com);
+        Medicoes.apagar(dir);
+    }
+
+    static String gerarPrograma(int n) {
+        StringBuilder sb = new StringBuilder();
+        // Só parâmetros por valor e locais: const
+        sb.append("funcao passos(n: inteiro): inteiro\n")
+          .append("  declare k, x, total: inteiro\n")
+          .append("  total <- 0\n")
+          .append("  para k <- 1 ate n faca\n")
+          .append("    x <- k\n")
+          .append("    enquanto x <> 1 faca\n")
+          .append("      se x % 2 = 0 entao\n")
+          .append("        x <- x / 2\n")
+          .append("      senao\n")
+          .append("        x <- 3 * x + 1\n")
+          .append("      fim_se\n")
+          .append("      total <- total + 1\n")
+          .append("    fim_enquanto\n")
+          .append("  fim_para\n")
+          .append("  retorne n + total % 5\n")
+          .append("fim_funcao\n");
+        // Lê um parâmetro var: pure
+        sb.append("funcao passos_de(var n: inteiro): inteiro\n")
+          .append("  retorne passos(n)\n")
+          .append("fim_funcao\n");
+        sb.append("algoritmo\n")
+          .append("  declare i, n, soma: inteiro\n")
+          .append("  n <- ").append(n).append("\n")
+          .append("  soma <- 0\n")
+          .append("  i <- 0\n")
+          .append("  enquanto i < passos(n) faca\n")
+          .append("    soma <- soma + i % 7\n")
+          .append("    i <- i + 1\n")
+          .append("  fim_enquanto\n")
+          .append("  i <- 0\n")
+          .append("  enquanto i < passos_de(n) faca\n")
+          .append("    soma <- soma + i % 3\n")
+          .append("    i <- i + 1\n")
+          .append("  fim_enquanto\n")
+          .append("  escreva(soma, \"\\n\")\n")
+          .append("fim_algoritmo\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,317 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Executa a pasta de casos de teste do corretor automático numa única JVM.
+ * Os casos são compilados em paralelo por um pool de threads; gcc e os
+ * binários de T5 rodam com concorrência limitada e tempo máximo. Cada saída é
+ * comparada com a esperada e o relatório traz o tempo de cada etapa por caso.
+ *
+ * Estrutura esperada (a mesma do corretor):
+ *   N.casos_teste_tN/entrada/caso.txt e saida/caso.txt, para N = 1..4
+ *   5.casos_teste_t5/1.entrada/caso.txt, 3.entrada_execucao/caso.txt e 4.saida/caso.txt
+ */
+public class RegressaoParalela {
+
+    private static final String[] PASTAS = {
+        "1.casos_teste_t1", "2.casos_teste_t2", "3.casos_teste_t3", "4.casos_teste_t4", "5.casos_teste_t5"
+    };
+
+    /** Resultado de um caso de teste */
+    public static class Caso {
+        public final String tipo;
+        public final Path fonte;
+        public boolean passou;
+        public String status = "";
+        public String diferenca;
+        public long compilacaoNanos;
+        public long gccNanos;
+        public long execucaoNanos;
+
+        Caso(String tipo, Path fonte) {
+            this.tipo = tipo;
+            this.fonte = fonte;
+        }
+    }
+
+    private final JanderCompilador compilador;
+    private final Path casos;
+    private final Path temporario;
+    private final int jobs;
+    private final Semaphore processos;
+    private final long timeoutMillis;
+    private final List<String> flagsGcc = new ArrayList<>();
+    private CacheBinarios cache;
+
+    public RegressaoParalela(JanderCompilador compilador, Path casos, Path temporario, int jobs, long timeoutMillis) {
+        this.compilador = compilador;
+        this.casos = casos;
+        this.temporario = temporario;
+        this.jobs = Math.max(1, jobs);
+        // Processos externos limitados ao número de núcleos, mesmo com mais threads de compilação
+        this.processos = new Semaphore(Math.max(1, Math.min(jobs, Runtime.getRuntime().availableProcessors())));
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void addFlagsGcc(List<String> flags) {
+        flagsGcc.addAll(flags);
+    }
+
+    /** Reaproveita binários de T5 já compilados a partir do mesmo C, gcc e flags */
+    public void setCache(CacheBinarios cache) {
+        this.cache = cache;
+    }
+
+    /** Roda todos os casos encontrados; os resultados seguem a ordem das pastas e dos nomes */
+    public List<Caso> executar() throws IOException, InterruptedException {
+        List<Caso> todos = new ArrayList<>();
+        for (int i = 0; i < PASTAS.length; i++) {
+            Path pasta = casos.resolve(PASTAS[i]);
+            if (!Files.isDirectory(pasta)) {
+                continue;
+            }
+            Path entrada = pasta.resolve(i == 4 ? "1.entrada" : "entrada");
+            for (Path fonte : listar(entrada)) {
+                todos.add(new Caso("t" + (i + 1), fonte));
+            }
+        }
+        if (todos.isEmpty()) {
+            throw new IOException("nenhum caso de teste em " + casos + " (esperado " + PASTAS[0] + ", ...)");
+        }
+        Files.createDirectories(temporario);
+        Files.write(temporario.resolve("entrada-vazia"), new byte[0]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (Caso caso : todos) {
+                futuros.add(pool.submit(() -> {
+                    processar(caso);
+                    return null;
+                }));
+            }
+            for (Future<?> futuro : futuros) {
+                try {
+                    futuro.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return todos;
+    }
+
+    private static List<Path> listar(Path pasta) throws IOException {
+        if (!Files.isDirectory(pasta)) {
+            return List.of();
+        }
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            return arquivos.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    private void processar(Caso caso) throws InterruptedException {
+        Path pasta = caso.fonte.getParent().getParent();
+        String nome = caso.fonte.getFileName().toString();
+        boolean t5 = caso.tipo.equals("t5");
+
+        long inicio = System.nanoTime();
+        JanderCompilador.Resultado resultado;
+        try {
+            resultado = compilador.compilar(CharStreams.fromPath(caso.fonte, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            caso.compilacaoNanos = System.nanoTime() - inicio;
+            caso.status = "erro no compilador: " + e;
+            return;
+        }
+        caso.compilacaoNanos = System.nanoTime() - inicio;
+
+        try {
+            if (!t5) {
+                // T1 a T4: a própria saída do compilador (erros ou C) é comparada
+                comparar(caso, resultado.saida.getBytes(StandardCharsets.UTF_8), pasta.resolve("saida").resolve(nome));
+                return;
+            }
+            if (!resultado.sucesso) {
+                caso.status = "erro de compilacao";
+                caso.diferenca = primeiraLinha(resultado.saida);
+                return;
+            }
+            executarT5(caso, resultado.saida, pasta, nome);
+        } catch (IOException e) {
+            caso.status = "erro de E/S: " + e.getMessage();
+        }
+    }
+
+    private void executarT5(Caso caso, String codigoC, Path pasta, String nome) throws IOException, InterruptedException {
+        String base = GccPipeline.nomeBinario(caso.fonte);
+        Path arquivoC = temporario.resolve(caso.tipo + "-" + base + ".c");
+        Path binario = temporario.resolve(caso.tipo + "-" + base);
+        Path log = temporario.resolve(caso.tipo + "-" + base + ".gcc");
+        Path saida = temporario.resolve(caso.tipo + "-" + base + ".out");
+        Files.writeString(arquivoC, codigoC, StandardCharsets.UTF_8);
+
+        List<String> comando = new ArrayList<>();
+        comando.add("gcc");
+        comando.addAll(Arrays.asList(arquivoC.toString(), "-o", binario.toString()));
+        // Depois da entrada, para que bibliotecas (-lm) resolvam os símbolos do programa
+        comando.addAll(flagsGcc);
+        long inicio = System.nanoTime();
+        String chave = cache != null ? cache.chave("gcc", flagsGcc, codigoC) : null;
+        if (chave == null || !cache.buscar(chave, binario)) {
+            int codigo = rodar(new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(log.toFile()));
+            if (codigo != 0) {
+                caso.gccNanos = System.nanoTime() - inicio;
+                caso.status = codigo == TEMPO_ESGOTADO ? "gcc: tempo esgotado" : "gcc falhou";
+                caso.diferenca = primeiroErroGcc(Files.readString(log, StandardCharsets.ISO_8859_1));
+                return;
+            }
+            if (chave != null) {
+                cache.guardar(chave, binario);
+            }
+        }
+        caso.gccNanos = System.nanoTime() - inicio;
+
+        Path entradaExecucao = pasta.resolve("3.entrada_execucao").resolve(nome);
+        // Sem arquivo de entrada o programa lê um arquivo vazio, nunca o stdin do executor
+        if (!Files.isRegularFile(entradaExecucao)) {
+            entradaExecucao = temporario.resolve("entrada-vazia");
+        }
+        ProcessBuilder execucao = new ProcessBuilder(binario.toString()).redirectOutput(saida.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD).redirectInput(entradaExecucao.toFile());
+        inicio = System.nanoTime();
+        int codigo = rodar(execucao);
+        caso.execucaoNanos = System.nanoTime() - inicio;
+        if (codigo == TEMPO_ESGOTADO) {
+            caso.status = "execucao: tempo esgotado";
+            return;
+        }
+        comparar(caso, Files.readAllBytes(saida), pasta.resolve("4.saida").resolve(nome));
+    }
+
+    private static final int TEMPO_ESGOTADO = Integer.MIN_VALUE;
+
+    // Código de saída do processo ou TEMPO_ESGOTADO; no máximo "processos" ao mesmo tempo
+    private int rodar(ProcessBuilder pb) throws IOException, InterruptedException {
+        processos.acquire();
+        try {
+            Process processo = pb.start();
+            if (!processo.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                processo.destroyForcibly();
+                processo.waitFor();
+                return TEMPO_ESGOTADO;
+            }
+            return processo.exitValue();
+        } finally {
+            processos.release();
+        }
+    }
+
+    private static void comparar(Caso caso, byte[] obtido, Path esperado) throws IOException {
+        if (!Files.isRegularFile(esperado)) {
+            caso.status = "sem saida esperada";
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(esperado);
+        if (Arrays.equals(obtido, bytes)) {
+            caso.passou = true;
+            caso.status = "ok";
+            return;
+        }
+        caso.status = "saida diferente";
+        caso.diferenca = diferenca(new String(bytes, StandardCharsets.ISO_8859_1), new String(obtido, StandardCharsets.ISO_8859_1));
+    }
+
+    /** Primeira linha em que as saídas divergem */
+    static String diferenca(String esperado, String obtido) {
+        String[] e = esperado.split("\n", -1);
+        String[] o = obtido.split("\n", -1);
+        for (int i = 0; i < Math.max(e.length, o.length); i++) {
+            String le = i < e.length ? e[i] : "<fim>";
+            String lo = i < o.length ? o[i] : "<fim>";
+            if (!le.equals(lo)) {
+                return "linha " + (i + 1) + ": esperado \"" + le + "\", obtido \"" + lo + "\"";
+            }
+        }
+        return "diferenca apenas em finais de linha";
+    }
+
+    private static String primeiroErroGcc(String log) {
+        for (String linha : log.split("\n")) {
+            if (linha.contains("error")) {
+                return linha.strip();
+            }
+        }
+        return primeiraLinha(log);
+    }
+
+    private static String primeiraLinha(String texto) {
+        String t = texto.strip();
+        int fim = t.indexOf('\n');
+        return fim < 0 ? t : t.substring(0, fim);
+    }
+
+    /** Remove os arquivos temporários (C gerado, binários e saídas) */
+    public void limpar() throws IOException {
+        try (Stream<Path> arquivos = Files.walk(temporario)) {
+            for (Path p : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    public Path getTemporario() {
+        return temporario;
+    }
+
+    /** Imprime os casos e o resumo por tipo; devolve o número de falhas */
+    public static int imprimirRelatorio(List<Caso> casos, long totalNanos, PrintStream out) {
+        out.printf("%-4s %-36s %10s %10s %10s  %s%n", "tipo", "caso", "java(ms)", "gcc(ms)", "exec(ms)", "status");
+        for (Caso c : casos) {
+            out.printf("%-4s %-36s %10.2f %10.2f %10.2f  %s%n", c.tipo, c.fonte.getFileName(),
+                    c.compilacaoNanos / 1e6, c.gccNanos / 1e6, c.execucaoNanos / 1e6, c.status);
+            if (!c.passou && c.diferenca != null) {
+                out.println("     " + c.diferenca);
+            }
+        }
+        int falhas = 0;
+        StringBuilder resumo = new StringBuilder();
+        for (int i = 1; i <= PASTAS.length; i++) {
+            String tipo = "t" + i;
+            int total = 0;
+            int ok = 0;
+            for (Caso c : casos) {
+                if (c.tipo.equals(tipo)) {
+                    total++;
+                    if (c.passou) ok++;
+                }
+            }
+            if (total > 0) {
+                resumo.append(String.format("  %s %d/%d", tipo, ok, total));
+                falhas += total - ok;
+            }
+        }
+        out.printf("Resumo:%s  (%d falha(s), %.2f s)%n", resumo, falhas, totalNanos / 1e9);
+        return falhas;
+    }
+}
@@ -0,0 +1,139 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Relatório do arquivo gravado por um programa compilado com --profile. Junta
+ * os contadores por linha do fonte LA e lista as funções pelo tempo próprio,
+ * os laços (entradas e iterações), os braços de caso e as linhas mais
+ * executadas, cada uma com o texto correspondente do .alg.
+ *
+ * Formato do arquivo: "# jander-perfil unidade", depois linhas
+ * "funcao nome linha chamadas proprio total" (total conta só as ativações mais
+ * externas, então uma recursão não passa do tempo do programa) e
+ * "contador funcao linha tipo contagem" (tipos em JanderGeradorC.contarPerfil).
+ */
+public class RelatorioPerfil {
+
+    private static final int LINHAS_MAIS_EXECUTADAS = 15;
+
+    public record Funcao(String nome, int linha, long chamadas, long proprio, long total) {
+    }
+
+    public record Contador(String funcao, int linha, char tipo, long contagem) {
+    }
+
+    private final List<String> fonte;
+    private String unidade = "?";
+    private final List<Funcao> funcoes = new ArrayList<>();
+    private final List<Contador> contadores = new ArrayList<>();
+
+    public RelatorioPerfil(Path perfil, Path fonte) throws IOException {
+        this.fonte = Files.readAllLines(fonte, StandardCharsets.UTF_8);
+        for (String linha : Files.readAllLines(perfil, StandardCharsets.UTF_8)) {
+            String[] campos = linha.trim().split("\\s+");
+            if (linha.startsWith("# jander-perfil") && campos.length > 2) {
+                unidade = campos[2];
+            } else if (campos[0].equals("funcao") && campos.length == 6) {
+                funcoes.add(new Funcao(campos[1], Integer.parseInt(campos[2]), Long.parseUnsignedLong(campos[3]),
+                        Long.parseUnsignedLong(campos[4]), Long.parseUnsignedLong(campos[5])));
+            } else if (campos[0].equals("contador") && campos.length == 5) {
+                contadores.add(new Contador(campos[1], Integer.parseInt(campos[2]), campos[3].charAt(0),
+                        Long.parseUnsignedLong(campos[4])));
+            }
+        }
+    }
+
+    public List<Funcao> getFuncoes() {
+        return funcoes;
+    }
+
+    public List<Contador> getContadores() {
+        return contadores;
+    }
+
+    public void imprimir(PrintStream out) {
+        long programa = funcoes.stream().filter(f -> f.nome().equals("algoritmo"))
+                .mapToLong(Funcao::total).findFirst().orElse(0);
+
+        out.printf("Funcoes (tempo em %s; proprio = sem as chamadas feitas pela funcao)%n", unidade);
+        out.printf("  %-20s %6s %12s %16s %7s %16s%n", "funcao", "linha", "chamadas", "proprio", "%", "total");
+        List<Funcao> porTempo = new ArrayList<>(funcoes);
+        porTempo.sort(Comparator.comparingLong(Funcao::proprio).reversed());
+        for (Funcao f : porTempo) {
+            out.printf("  %-20s %6d %12d %16d %6.1f%% %16d%n", f.nome(), f.linha(), f.chamadas(), f.proprio(),
+                    programa > 0 ? 100.0 * f.proprio() / programa : 0.0, f.total());
+        }
+
+        // Um laço é a linha de um contador de iteração; suas entradas são as execuções do comando
+        Map<Integer, Long> execucoes = somarPorLinha('c');
+        List<Contador> lacos = new ArrayList<>();
+        List<Contador> bracos = new ArrayList<>();
+        for (Contador c : contadores) {
+            if (c.tipo() == 'p' || c.tipo() == 'e' || c.tipo() == 'f') {
+                lacos.add(c);
+            } else if (c.tipo() == 'b') {
+                bracos.add(c);
+            }
+        }
+        if (!lacos.isEmpty()) {
+            lacos.sort(Comparator.comparingLong(Contador::contagem).reversed());
+            out.printf("%nLacos%n");
+            out.printf("  %6s %-9s %12s %14s %12s  %s%n", "linha", "laco", "entradas", "iteracoes", "por entrada", "fonte");
+            for (Contador c : lacos) {
+                long entradas = execucoes.getOrDefault(c.linha(), 0L);
+                out.printf("  %6d %-9s %12d %14d %12.1f  %s%n", c.linha(), nomeLaco(c.tipo()), entradas, c.contagem(),
+                        entradas > 0 ? (double) c.contagem() / entradas : 0.0, texto(c.linha()));
+            }
+        }
+        if (!bracos.isEmpty()) {
+            out.printf("%nBracos de caso%n");
+            out.printf("  %6s %12s  %s%n", "linha", "execucoes", "fonte");
+            bracos.sort(Comparator.comparingInt(Contador::linha));
+            for (Contador c : bracos) {
+                out.printf("  %6d %12d  %s%n", c.linha(), c.contagem(), texto(c.linha()));
+            }
+        }
+
+        long todas = execucoes.values().stream().mapToLong(Long::longValue).sum();
+        List<Map.Entry<Integer, Long>> linhas = new ArrayList<>(execucoes.entrySet());
+        linhas.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+        out.printf("%nLinhas mais executadas (%d comandos executados)%n", todas);
+        out.printf("  %6s %14s %7s  %s%n", "linha", "execucoes", "%", "fonte");
+        for (Map.Entry<Integer, Long> e : linhas.subList(0, Math.min(LINHAS_MAIS_EXECUTADAS, linhas.size()))) {
+            out.printf("  %6d %14d %6.1f%%  %s%n", e.getKey(), e.getValue(),
+                    todas > 0 ? 100.0 * e.getValue() / todas : 0.0, texto(e.getKey()));
+        }
+    }
+
+    private Map<Integer, Long> somarPorLinha(char tipo) {
+        Map<Integer, Long> soma = new TreeMap<>();
+        for (Contador c : contadores) {
+            if (c.tipo() == tipo) {
+                soma.merge(c.linha(), c.contagem(), Long::sum);
+            }
+        }
+        return soma;
+    }
+
+    private static String nomeLaco(char tipo) {
+        switch (tipo) {
+            case 'p': return "para";
+            case 'e': return "enquanto";
+            default: return "faca";
+        }
+    }
+
+    private String texto(int linha) {
+        return linha >= 1 && linha <= fonte.size() ? fonte.get(linha - 1).trim() : "";
+    }
+}
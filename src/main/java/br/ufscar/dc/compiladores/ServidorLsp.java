@@ -0,0 +1,232 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servidor LSP (Language Server Protocol) sobre stdin/stdout. Mantém uma
+ * AnaliseIncremental por documento aberto, recebe as edições incrementais do
+ * editor e publica os mesmos diagnósticos que o compilador imprime.
+ *
+ * Métodos tratados: initialize, initialized, textDocument/didOpen,
+ * textDocument/didChange, textDocument/didClose, shutdown e exit.
+ */
+public class ServidorLsp {
+
+    private static final int METODO_NAO_ENCONTRADO = -32601;
+    private static final int SINCRONIZACAO_INCREMENTAL = 2;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Map<String, AnaliseIncremental> documentos = new HashMap<>();
+    private boolean desligando = false;
+
+    public ServidorLsp(InputStream in, OutputStream out) {
+        this.in = new BufferedInputStream(in);
+        this.out = out;
+    }
+
+    /** Atende mensagens até "exit" ou o fim da entrada; devolve o código de saída do processo */
+    public int executar() throws IOException {
+        while (true) {
+            String mensagem = lerMensagem();
+            if (mensagem == null) {
+                return desligando ? 0 : 1;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> json = (Map<String, Object>) Json.ler(mensagem);
+            String metodo = (String) json.get("method");
+            if ("exit".equals(metodo)) {
+                return desligando ? 0 : 1;
+            }
+            try {
+                tratar(metodo, json.get("id"), mapa(json.get("params")));
+            } catch (RuntimeException e) {
+                if (json.get("id") != null) {
+                    responderErro(json.get("id"), -32603, String.valueOf(e));
+                }
+            }
+        }
+    }
+
+    private void tratar(String metodo, Object id, Map<String, Object> params) throws IOException {
+        switch (metodo == null ? "" : metodo) {
+            case "initialize": {
+                Map<String, Object> sincronizacao = new LinkedHashMap<>();
+                sincronizacao.put("openClose", true);
+                sincronizacao.put("change", SINCRONIZACAO_INCREMENTAL);
+                Map<String, Object> capacidades = new LinkedHashMap<>();
+                capacidades.put("textDocumentSync", sincronizacao);
+                Map<String, Object> resultado = new LinkedHashMap<>();
+                resultado.put("capabilities", capacidades);
+                resultado.put("serverInfo", Map.of("name", "jander-lsp"));
+                responder(id, resultado);
+                break;
+            }
+            case "shutdown":
+                desligando = true;
+                responder(id, null);
+                break;
+            case "textDocument/didOpen": {
+                Map<String, Object> doc = mapa(params.get("textDocument"));
+                String uri = (String) doc.get("uri");
+                AnaliseIncremental analise = new AnaliseIncremental((String) doc.get("text"));
+                documentos.put(uri, analise);
+                publicar(uri, doc.get("version"), analise);
+                break;
+            }
+            case "textDocument/didChange": {
+                Map<String, Object> doc = mapa(params.get("textDocument"));
+                String uri = (String) doc.get("uri");
+                AnaliseIncremental analise = documentos.get(uri);
+                if (analise == null) {
+                    break;
+                }
+                for (Object item : (List<?>) params.get("contentChanges")) {
+                    Map<String, Object> mudanca = mapa(item);
+                    String novo = (String) mudanca.get("text");
+                    Map<String, Object> intervalo = mapa(mudanca.get("range"));
+                    if (intervalo.isEmpty()) {
+                        // Sem intervalo: o editor mandou o documento inteiro
+                        analise = new AnaliseIncremental(novo);
+                        documentos.put(uri, analise);
+                    } else {
+                        int inicio = posicao(analise, mapa(intervalo.get("start")));
+                        int fim = posicao(analise, mapa(intervalo.get("end")));
+                        analise.editar(inicio, fim, novo);
+                    }
+                }
+                publicar(uri, doc.get("version"), analise);
+                break;
+            }
+            case "textDocument/didClose": {
+                String uri = (String) mapa(params.get("textDocument")).get("uri");
+                documentos.remove(uri);
+                Map<String, Object> vazio = new LinkedHashMap<>();
+                vazio.put("uri", uri);
+                vazio.put("diagnostics", List.of());
+                notificar("textDocument/publishDiagnostics", vazio);
+                break;
+            }
+            default:
+                // Notificações desconhecidas (initialized, $/cancelRequest, ...) são ignoradas
+                if (id != null) {
+                    responderErro(id, METODO_NAO_ENCONTRADO, "metodo nao suportado: " + metodo);
+                }
+                break;
+        }
+    }
+
+    private static int posicao(AnaliseIncremental analise, Map<String, Object> pos) {
+        return analise.posicao(((Number) pos.get("line")).intValue(), ((Number) pos.get("character")).intValue());
+    }
+
+    private void publicar(String uri, Object versao, AnaliseIncremental analise) throws IOException {
+        List<Object> diagnosticos = new ArrayList<>();
+        for (AnaliseIncremental.Erro erro : analise.diagnosticos()) {
+            int linha = Math.max(0, erro.linha() - 1);
+            Map<String, Object> range = new LinkedHashMap<>();
+            range.put("start", Map.of("line", linha, "character", 0));
+            range.put("end", Map.of("line", linha, "character", analise.linha(linha + 1).length()));
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("range", range);
+            d.put("severity", 1);
+            d.put("source", "jander");
+            d.put("message", erro.mensagem());
+            diagnosticos.add(d);
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("uri", uri);
+        if (versao != null) {
+            params.put("version", versao);
+        }
+        params.put("diagnostics", diagnosticos);
+        notificar("textDocument/publishDiagnostics", params);
+    }
+
+    private void responder(Object id, Object resultado) throws IOException {
+        Map<String, Object> resposta = new LinkedHashMap<>();
+        resposta.put("jsonrpc", "2.0");
+        resposta.put("id", id);
+        resposta.put("result", resultado);
+        enviar(resposta);
+    }
+
+    private void responderErro(Object id, int codigo, String mensagem) throws IOException {
+        Map<String, Object> erro = new LinkedHashMap<>();
+        erro.put("code", codigo);
+        erro.put("message", mensagem);
+        Map<String, Object> resposta = new LinkedHashMap<>();
+        resposta.put("jsonrpc", "2.0");
+        resposta.put("id", id);
+        resposta.put("error", erro);
+        enviar(resposta);
+    }
+
+    private void notificar(String metodo, Object params) throws IOException {
+        Map<String, Object> notificacao = new LinkedHashMap<>();
+        notificacao.put("jsonrpc", "2.0");
+        notificacao.put("method", metodo);
+        notificacao.put("params", params);
+        enviar(notificacao);
+    }
+
+    private void enviar(Object mensagem) throws IOException {
+        byte[] corpo = Json.escrever(mensagem).getBytes(StandardCharsets.UTF_8);
+        out.write(("Content-Length: " + corpo.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(corpo);
+        out.flush();
+    }
+
+    // Lê os cabeçalhos e o corpo de uma mensagem; null no fim da entrada
+    private String lerMensagem() throws IOException {
+        int tamanho = -1;
+        while (true) {
+            String cabecalho = lerLinha();
+            if (cabecalho == null) {
+                return null;
+            }
+            if (cabecalho.isEmpty()) {
+                break;
+            }
+            if (cabecalho.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                tamanho = Integer.parseInt(cabecalho.substring(15).trim());
+            }
+        }
+        if (tamanho < 0) {
+            throw new IOException("mensagem sem Content-Length");
+        }
+        byte[] corpo = in.readNBytes(tamanho);
+        if (corpo.length < tamanho) {
+            return null;
+        }
+        return new String(corpo, StandardCharsets.UTF_8);
+    }
+
+    private String lerLinha() throws IOException {
+        ByteArrayOutputStream linha = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                String s = linha.toString(StandardCharsets.US_ASCII);
+                return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+            }
+            linha.write(c);
+        }
+        return linha.size() > 0 ? linha.toString(StandardCharsets.US_ASCII) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapa(Object valor) {
+        return valor instanceof Map ? (Map<String, Object>) valor : Map.of();
+    }
+}
@@ -1,11 +1,19 @@
 package br.ufscar.dc.compiladores;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.Collections; // Para Collections.unmodifiableMap
+import java.util.concurrent.ConcurrentHashMap;
 
 /** Tabela de símbolos com suporte a escopos aninhados e assinaturas de funções */
 public class SymbolTable {
@@ -21,20 +29,134 @@ public class SymbolTable {
         INVALID
     }
 
+    /**
+     * Descritor de um tipo registro. Cada estrutura distinta existe uma única
+     * vez (internada em recordTypes); variáveis, parâmetros e aliases apenas
+     * referenciam o descritor. Campos têm índices fixos (slots) e deslocamentos
+     * pré-calculados no layout achatado, com registros aninhados por valor.
+     */
+    public static final class RecordType {
+        private final String[] fieldNames;
+        private final JanderType[] fieldTypes;
+        private final RecordType[] fieldRecords; // Descritor do campo quando ele é um registro (null caso contrário)
+        private final int[] offsets;
+        private final int size;
+        private final Map<String, Integer> slots;
+        private final Map<String, JanderType> fields; // Visão nome -> tipo, criada uma única vez
+        private final String key; // Chave estrutural com que foi internado
+
+        private RecordType(String key, String[] fieldNames, JanderType[] fieldTypes, RecordType[] fieldRecords) {
+            this.key = key;
+            this.fieldNames = fieldNames;
+            this.fieldTypes = fieldTypes;
+            this.fieldRecords = fieldRecords;
+            this.offsets = new int[fieldNames.length];
+            Map<String, Integer> slots = new HashMap<>();
+            Map<String, JanderType> fields = new LinkedHashMap<>();
+            int offset = 0;
+            for (int i = 0; i < fieldNames.length; i++) {
+                offsets[i] = offset;
+                offset += fieldRecords[i] != null ? fieldRecords[i].size : 1;
+                slots.put(fieldNames[i], i);
+                fields.put(fieldNames[i], fieldTypes[i]);
+            }
+            this.size = offset;
+            this.slots = Collections.unmodifiableMap(slots);
+            this.fields = Collections.unmodifiableMap(fields);
+        }
+
+        /** Índice do campo, ou -1 se o registro não tem esse campo */
+        public int slot(String fieldName) {
+            Integer slot = slots.get(fieldName);
+            return slot != null ? slot : -1;
+        }
+
+        public int getFieldCount() {
+            return fieldNames.length;
+        }
+
+        public String getFieldName(int slot) {
+            return fieldNames[slot];
+        }
+
+        public JanderType getFieldType(int slot) {
+            return fieldTypes[slot];
+        }
+
+        /** Descritor do campo registro, ou null se o campo não é um registro */
+        public RecordType getFieldRecord(int slot) {
+            return fieldRecords[slot];
+        }
+
+        /** Deslocamento do campo no layout achatado do registro */
+        public int getOffset(int slot) {
+            return offsets[slot];
+        }
+
+        /** Número de campos primitivos (ou ponteiros) no layout achatado */
+        public int getSize() {
+            return size;
+        }
+
+        public Map<String, JanderType> getFields() {
+            return fields;
+        }
+
+        // Chave estrutural usada para internar: nomes, tipos e a chave dos descritores aninhados
+        // (já internados, então chaves iguais são estruturas iguais)
+        private static String key(String[] names, JanderType[] types, RecordType[] records) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < names.length; i++) {
+                sb.append(names[i]).append(':').append(types[i].ordinal());
+                if (records[i] != null) {
+                    sb.append('{').append(records[i].key).append('}');
+                }
+                sb.append(';');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Resultado da resolução de um caminho de campos (var.a.b.c). Quando falha,
+     * failedAt indica o índice do campo problemático e notRecord diz se o
+     * prefixo anterior não era um registro (caso contrário o campo não existe).
+     */
+    public static final class FieldPath {
+        public final JanderType type;
+        public final RecordType record; // Descritor do resultado, quando ele é um registro
+        public final int offset;
+        public final int failedAt;
+        public final boolean notRecord;
+
+        private FieldPath(JanderType type, RecordType record, int offset, int failedAt, boolean notRecord) {
+            this.type = type;
+            this.record = record;
+            this.offset = offset;
+            this.failedAt = failedAt;
+            this.notRecord = notRecord;
+        }
+
+        public boolean isValid() {
+            return failedAt < 0;
+        }
+    }
+
     static class SymbolTableEntry {
         String name;
         JanderType type;
         JanderType pointedType; // Tipo para o qual o ponteiro aponta (null se não for ponteiro)
         List<JanderType> paramTypes;    // tipos de parâmetros (vazio para variáveis)
         JanderType returnType;          // tipo de retorno de função (null se não for função)
-        Map<String, JanderType> recordFields; // Para campos de registro (nome -> tipo)
+        RecordType recordType; // Descritor compartilhado dos campos (null se não for registro)
         JanderType arrayElementType; // Tipo dos elementos do array (null se não for array)
+        int[] arrayDimensions; // Tamanho declarado de cada dimensão (-1 quando não é constante)
+        Long constantValue; // Valor de constante inteira conhecido em tempo de compilação
 
         private SymbolTableEntry(String name, JanderType type) {
             this.name = name;
             this.type = type;
             this.pointedType = null; // Default para não ponteiros
-            this.recordFields = Collections.emptyMap(); // Inicializa vazio para não-registros
             this.arrayElementType = null; // Default para não arrays
         }
         // Construtor para ponteiros
@@ -42,7 +164,6 @@ public class SymbolTable {
             this.name = name;
             this.type = type;
             this.pointedType = pointedType;
-            this.recordFields = Collections.emptyMap();
             this.arrayElementType = null;
         }
         // Construtor para funções/procedimentos
@@ -52,36 +173,195 @@ public class SymbolTable {
             this.returnType = returnType;
             this.paramTypes = paramTypes;
             this.pointedType = null;
-            this.recordFields = Collections.emptyMap();
             this.arrayElementType = null;
         }
         // Construtor para variáveis de registro (com seus campos)
-        private SymbolTableEntry(String name, JanderType type, Map<String, JanderType> recordFields) {
+        private SymbolTableEntry(String name, RecordType recordType) {
             this.name = name;
-            this.type = type; // Deve ser JanderType.RECORD
+            this.type = JanderType.RECORD;
             this.pointedType = null;
             this.paramTypes = null;
             this.returnType = null;
-            this.recordFields = Collections.unmodifiableMap(new HashMap<>(recordFields)); // Torna o mapa imutável
+            this.recordType = recordType;
             this.arrayElementType = null;
         }
         // Construtor para arrays
-        private SymbolTableEntry(String name, JanderType arrayElementType, boolean isArray) {
+        private SymbolTableEntry(String name, JanderType arrayElementType, int[] arrayDimensions) {
             this.name = name;
             this.type = JanderType.ARRAY;
             this.pointedType = null;
             this.paramTypes = null;
             this.returnType = null;
-            this.recordFields = Collections.emptyMap();
             this.arrayElementType = arrayElementType;
+            this.arrayDimensions = arrayDimensions;
         }
     }
 
     private final Deque<Map<String, SymbolTableEntry>> scopes;
+    // Registro de tipos registro internados; compartilhado pelas tabelas criadas por forkGlobalScope
+    private final Map<String, RecordType> recordTypes;
 
     public SymbolTable() {
         this.scopes = new ArrayDeque<>();
         this.scopes.push(new HashMap<>()); // escopo global
+        this.recordTypes = new ConcurrentHashMap<>();
+    }
+
+    // Construtor usado por forkGlobalScope: compartilha o mapa do escopo global
+    private SymbolTable(Map<String, SymbolTableEntry> globalScope, Map<String, RecordType> recordTypes) {
+        this.scopes = new ArrayDeque<>();
+        this.scopes.push(globalScope);
+        this.recordTypes = recordTypes;
+    }
+
+    /** Cria uma tabela que compartilha o escopo global desta (somente leitura), com escopos locais próprios */
+    public SymbolTable forkGlobalScope() {
+        return new SymbolTable(scopes.peekLast(), recordTypes);
+    }
+
+    // Usados pela análise incremental: o escopo global de cada declaração é
+    // montado a partir dos símbolos que as declarações anteriores criaram
+    Map<String, SymbolTableEntry> getGlobalScope() {
+        return scopes.peekLast();
+    }
+
+    SymbolTable withGlobalScope(Map<String, SymbolTableEntry> globalScope) {
+        return new SymbolTable(globalScope, recordTypes);
+    }
+
+    /**
+     * Grava o escopo global (usado pelas interfaces pré-compiladas). Os
+     * descritores de registro vão numa tabela, aninhados antes de quem os usa,
+     * e as entradas os referenciam pelo índice.
+     */
+    void writeGlobalScope(DataOutput out) throws IOException {
+        Map<String, SymbolTableEntry> global = new TreeMap<>(getGlobalScope());
+        Map<RecordType, Integer> indices = new IdentityHashMap<>();
+        List<RecordType> ordem = new ArrayList<>();
+        for (SymbolTableEntry entry : global.values()) {
+            numberRecord(entry.recordType, indices, ordem);
+        }
+        out.writeInt(ordem.size());
+        for (RecordType record : ordem) {
+            out.writeInt(record.fieldNames.length);
+            for (int i = 0; i < record.fieldNames.length; i++) {
+                out.writeUTF(record.fieldNames[i]);
+                writeType(out, record.fieldTypes[i]);
+                out.writeInt(record.fieldRecords[i] != null ? indices.get(record.fieldRecords[i]) : -1);
+            }
+        }
+        out.writeInt(global.size());
+        for (SymbolTableEntry entry : global.values()) {
+            out.writeUTF(entry.name);
+            writeType(out, entry.type);
+            writeType(out, entry.pointedType);
+            out.writeInt(entry.paramTypes != null ? entry.paramTypes.size() : -1);
+            if (entry.paramTypes != null) {
+                for (JanderType t : entry.paramTypes) {
+                    writeType(out, t);
+                }
+            }
+            writeType(out, entry.returnType);
+            out.writeInt(entry.recordType != null ? indices.get(entry.recordType) : -1);
+            writeType(out, entry.arrayElementType);
+            out.writeInt(entry.arrayDimensions != null ? entry.arrayDimensions.length : -1);
+            if (entry.arrayDimensions != null) {
+                for (int d : entry.arrayDimensions) {
+                    out.writeInt(d);
+                }
+            }
+            out.writeBoolean(entry.constantValue != null);
+            if (entry.constantValue != null) {
+                out.writeLong(entry.constantValue);
+            }
+        }
+    }
+
+    /** Lê um escopo global gravado por writeGlobalScope, internando de novo os registros */
+    static SymbolTable readGlobalScope(DataInput in) throws IOException {
+        SymbolTable table = new SymbolTable();
+        RecordType[] records = new RecordType[in.readInt()];
+        for (int r = 0; r < records.length; r++) {
+            int n = in.readInt();
+            Map<String, JanderType> fields = new LinkedHashMap<>();
+            Map<String, RecordType> fieldRecords = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                String name = in.readUTF();
+                fields.put(name, readType(in));
+                int nested = in.readInt();
+                if (nested >= 0) {
+                    fieldRecords.put(name, records[nested]);
+                }
+            }
+            records[r] = table.internRecordType(fields, fieldRecords);
+        }
+        int n = in.readInt();
+        for (int e = 0; e < n; e++) {
+            SymbolTableEntry entry = new SymbolTableEntry(in.readUTF(), readType(in));
+            entry.pointedType = readType(in);
+            int params = in.readInt();
+            if (params >= 0) {
+                entry.paramTypes = new ArrayList<>(params);
+                for (int i = 0; i < params; i++) {
+                    entry.paramTypes.add(readType(in));
+                }
+            }
+            entry.returnType = readType(in);
+            int record = in.readInt();
+            entry.recordType = record >= 0 ? records[record] : null;
+            entry.arrayElementType = readType(in);
+            int dims = in.readInt();
+            if (dims >= 0) {
+                entry.arrayDimensions = new int[dims];
+                for (int i = 0; i < dims; i++) {
+                    entry.arrayDimensions[i] = in.readInt();
+                }
+            }
+            entry.constantValue = in.readBoolean() ? in.readLong() : null;
+            table.getGlobalScope().put(entry.name, entry);
+        }
+        return table;
+    }
+
+    private static void numberRecord(RecordType record, Map<RecordType, Integer> indices, List<RecordType> ordem) {
+        if (record == null || indices.containsKey(record)) {
+            return;
+        }
+        for (RecordType nested : record.fieldRecords) {
+            numberRecord(nested, indices, ordem);
+        }
+        indices.put(record, ordem.size());
+        ordem.add(record);
+    }
+
+    private static void writeType(DataOutput out, JanderType type) throws IOException {
+        out.writeByte(type != null ? type.ordinal() : -1);
+    }
+
+    private static JanderType readType(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        return ordinal >= 0 ? JanderType.values()[ordinal] : null;
+    }
+
+    /**
+     * Devolve o descritor único para a estrutura dada. fieldRecords indica o
+     * descritor dos campos que são registros (campos ausentes do mapa não são).
+     */
+    public RecordType internRecordType(Map<String, JanderType> fields, Map<String, RecordType> fieldRecords) {
+        String[] names = fields.keySet().toArray(new String[0]);
+        JanderType[] types = new JanderType[names.length];
+        RecordType[] records = new RecordType[names.length];
+        for (int i = 0; i < names.length; i++) {
+            types[i] = fields.get(names[i]);
+            records[i] = types[i] == JanderType.RECORD ? fieldRecords.get(names[i]) : null;
+        }
+        return recordTypes.computeIfAbsent(RecordType.key(names, types, records),
+                k -> new RecordType(k, names, types, records));
+    }
+
+    /** Número de estruturas de registro distintas internadas */
+    public int getRecordTypeCount() {
+        return recordTypes.size();
     }
 
     public void openScope() {
@@ -97,19 +377,26 @@ public class SymbolTable {
         scopes.peek().put(name, new SymbolTableEntry(name, type));
     }
 
+    /** Insere constante no escopo atual, guardando o valor quando ela é inteira */
+    public void addConstantSymbol(String name, JanderType type, Long value) {
+        SymbolTableEntry entry = new SymbolTableEntry(name, type);
+        entry.constantValue = value;
+        scopes.peek().put(name, entry);
+    }
+
     /** Insere variável ponteiro no escopo atual */
     public void addPointerSymbol(String name, JanderType pointedType) {
         scopes.peek().put(name, new SymbolTableEntry(name, JanderType.POINTER, pointedType));
     }
 
-    /** Insere uma variável de registro com sua definição de campos */
-    public void addRecordSymbol(String name, Map<String, JanderType> fields) {
-        scopes.peek().put(name, new SymbolTableEntry(name, JanderType.RECORD, fields));
+    /** Insere uma variável (ou tipo) de registro que referencia o descritor internado */
+    public void addRecordSymbol(String name, RecordType recordType) {
+        scopes.peek().put(name, new SymbolTableEntry(name, recordType));
     }
 
-    /** Insere uma variável de array com o tipo dos elementos */
-    public void addArraySymbol(String name, JanderType elementType) {
-        scopes.peek().put(name, new SymbolTableEntry(name, elementType, true));
+    /** Insere uma variável de array com o tipo dos elementos e as dimensões declaradas */
+    public void addArraySymbol(String name, JanderType elementType, int[] dimensions) {
+        scopes.peek().put(name, new SymbolTableEntry(name, elementType, dimensions));
     }
 
     /** Insere função/procedimento com assinatura completa */
@@ -148,15 +435,42 @@ public class SymbolTable {
 
     /** Recupera os campos de um símbolo que é um registro */
     public Map<String, JanderType> getRecordFields(String name) {
+        RecordType recordType = getRecordType(name);
+        return recordType != null ? recordType.getFields() : Collections.emptyMap(); // Mapa vazio se não for um registro
+    }
+
+    /** Recupera o descritor de um símbolo que é um registro (null caso contrário) */
+    public RecordType getRecordType(String name) {
         for (Map<String, SymbolTableEntry> scope : scopes) {
-            if (scope.containsKey(name)) {
-                SymbolTableEntry entry = scope.get(name);
-                if (entry.type == JanderType.RECORD) {
-                    return entry.recordFields;
-                }
+            SymbolTableEntry entry = scope.get(name);
+            if (entry != null) {
+                return entry.type == JanderType.RECORD ? entry.recordType : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve var.campo1.campo2... pelos descritores: um acesso ao mapa de
+     * slots por nível, acumulando o deslocamento no layout achatado.
+     */
+    public FieldPath resolveFieldPath(String name, List<String> path) {
+        JanderType type = getSymbolType(name);
+        RecordType record = getRecordType(name);
+        int offset = 0;
+        for (int i = 0; i < path.size(); i++) {
+            if (type != JanderType.RECORD || record == null) {
+                return new FieldPath(JanderType.INVALID, null, offset, i, true);
+            }
+            int slot = record.slot(path.get(i));
+            if (slot < 0) {
+                return new FieldPath(JanderType.INVALID, null, offset, i, false);
             }
+            offset += record.getOffset(slot);
+            type = record.getFieldType(slot);
+            record = record.getFieldRecord(slot);
         }
-        return Collections.emptyMap(); // Retorna mapa vazio se não for um registro
+        return new FieldPath(type, record, offset, -1, false);
     }
 
     /** Recupera o tipo dos elementos de um símbolo que é um array */
@@ -172,6 +486,28 @@ public class SymbolTable {
         return JanderType.INVALID; // Retorna INVALID se não for um array
     }
 
+    /** Dimensões declaradas de um array (-1 nas não constantes), ou null se o símbolo não é um array */
+    public int[] getArrayDimensions(String name) {
+        for (Map<String, SymbolTableEntry> scope : scopes) {
+            SymbolTableEntry entry = scope.get(name);
+            if (entry != null) {
+                return entry.type == JanderType.ARRAY ? entry.arrayDimensions : null;
+            }
+        }
+        return null;
+    }
+
+    /** Valor de uma constante inteira, ou null se o símbolo não é uma constante inteira conhecida */
+    public Long getConstantValue(String name) {
+        for (Map<String, SymbolTableEntry> scope : scopes) {
+            SymbolTableEntry entry = scope.get(name);
+            if (entry != null) {
+                return entry.constantValue;
+            }
+        }
+        return null;
+    }
+
     public List<JanderType> getParamTypes(String name) {
         for (Map<String, SymbolTableEntry> scope : scopes) {
             if (scope.containsKey(name)) {
@@ -0,0 +1,41 @@
+package br.ufscar.dc.compiladores;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Execução de treino para o arquivo AppCDS dinâmico: compila todos os .alg dos
+ * diretórios informados passando por léxico, sintático, semântico e geração,
+ * para que as classes usadas numa compilação real sejam carregadas e arquivadas.
+ *
+ * Uso: java -XX:ArchiveClassesAtExit=jander.jsa -cp ... TreinamentoCds diretorio...
+ */
+public class TreinamentoCds {
+    public static void main(String[] args) throws IOException {
+        JanderCompilador compilador = new JanderCompilador();
+        PrintWriter descarte = new PrintWriter(OutputStream.nullOutputStream());
+        int compilados = 0;
+
+        for (String diretorio : args) {
+            List<Path> fontes;
+            try (Stream<Path> arquivos = Files.walk(Paths.get(diretorio))) {
+                fontes = arquivos.filter(p -> p.toString().endsWith(".alg")).sorted().collect(Collectors.toList());
+            }
+            for (Path fonte : fontes) {
+                compilador.compilar(CharStreams.fromPath(fonte, StandardCharsets.UTF_8), descarte);
+                compilados++;
+            }
+        }
+        System.out.println("Treino CDS: " + compilados + " programa(s) compilado(s)");
+    }
+}